@@ -1,27 +1,65 @@
 package gd.engineering.httplogmonitor;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import gd.engineering.httplogmonitor.aggregator.BlockingStatsAggregator;
+import gd.engineering.httplogmonitor.aggregator.EventTimeStatsAggregator;
+import gd.engineering.httplogmonitor.aggregator.ShardedStatsAggregator;
 import gd.engineering.httplogmonitor.alerter.AlertBuilder;
 import gd.engineering.httplogmonitor.alerter.AlerterManager;
-import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.backfill.BackfillReport;
+import gd.engineering.httplogmonitor.backfill.LogFileBackfill;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.CompressedMetricsStore;
 import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
 import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.OffHeapMetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.SectionIndex;
+import gd.engineering.httplogmonitor.model.metrics.SectionIndexedMetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.SegmentMetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.TieredMetricsStore;
+import gd.engineering.httplogmonitor.queue.BlockingLogLineQueue;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.LogLineQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
 import gd.engineering.httplogmonitor.reporter.HttpSectionConsoleReporter;
 import gd.engineering.httplogmonitor.reporter.MetricsReporter;
 import gd.engineering.httplogmonitor.tailer.ApacheAccessLogParser;
+import gd.engineering.httplogmonitor.tailer.BackoffPollingWaitStrategy;
+import gd.engineering.httplogmonitor.tailer.FastApacheAccessLogParser;
+import gd.engineering.httplogmonitor.tailer.HttpLogParser;
 import gd.engineering.httplogmonitor.tailer.HttpLogTailer;
 import gd.engineering.httplogmonitor.tailer.HttpLogTailerListener;
+import gd.engineering.httplogmonitor.tailer.LogTailer;
+import gd.engineering.httplogmonitor.tailer.MultiFileTailer;
+import gd.engineering.httplogmonitor.tailer.ParserWorkerPool;
+import gd.engineering.httplogmonitor.tailer.RotatedArchiveReader;
+import gd.engineering.httplogmonitor.tailer.TailerCheckpointStore;
+import gd.engineering.httplogmonitor.tailer.TailerListener;
+import gd.engineering.httplogmonitor.tailer.TailerWaitStrategy;
+import gd.engineering.httplogmonitor.tailer.WatchServiceWaitStrategy;
 
 /**
  * Entrypoint for the HttpLogMonitorLauncher
@@ -30,6 +68,11 @@ import gd.engineering.httplogmonitor.tailer.HttpLogTailerListener;
  * and extract various metrics. Those metrics are aggregated at regular intervals and stored in memory.
  * After each aggregation, a small reporting is displayed on the console and a list of alerts are ran onto the metrics stored in memory.
  * Those alerts are both displayed on the console and in an log file defaulted at /tmp/alerts.log
+ * <p>
+ * The lines can be parsed by a pool of parser workers instead of the tailer thread.
+ * Several log files can be tailed at once, listed and/or matched by globs, through a shared pool of reader threads.
+ * <p>
+ * In backfill mode, the existing log file is processed once in parallel instead, its metrics being aggregated by log time
  */
 public class HttpLogMonitorLauncher {
 
@@ -42,35 +85,76 @@ public class HttpLogMonitorLauncher {
     //Loading file & command line properties
     Properties properties = loadProperties(args);
     printPropertiesAndUsage(properties);
+    String mode = properties.getProperty("mode");
+    if ("backfill".equals(mode)) {
+      backfill(properties);
+      return;
+    }
+    if (!"tail".equals(mode)) {
+      throw new IllegalArgumentException("Unknown mode " + mode);
+    }
 
     //Instantiate main objects
-    BlockingQueue<HttpLogLine> queue = new ArrayBlockingQueue<>(Integer.parseInt(properties.getProperty("logqueue.size")));
-    MetricsStore store = new InMemoryMetricsStore();
+    OverloadCounters overloadCounters = new OverloadCounters();
+    OverloadPolicy overloadPolicy = OverloadPolicy.valueOf(properties.getProperty("logqueue.overload.policy").toUpperCase());
+    int sampleRate = Integer.parseInt(properties.getProperty("logqueue.sample.rate"));
+    String parserType = properties.getProperty("parser.type");
+    Supplier<LogLineQueue> queueFactory = () -> buildLogQueue(properties.getProperty("logqueue.type"), Integer.parseInt(properties.getProperty("logqueue.size")),
+        properties.getProperty("logqueue.wait.strategy"));
+    int parserWorkers = Integer.parseInt(properties.getProperty("parser.workers"));
+    ParserWorkerPool parserPool = parserWorkers > 0 ? new ParserWorkerPool(parserWorkers, Boolean.parseBoolean(properties.getProperty("parser.workers.ordered")),
+        () -> buildParser(parserType), queueFactory, QueueWaitStrategy.valueOf(properties.getProperty("logqueue.wait.strategy").toUpperCase()), overloadPolicy, sampleRate,
+        overloadCounters) : null;
+    LogLineQueue logQueue = parserPool != null ? null : queueFactory.get();
+    LogLineConsumerQueue queue = parserPool != null ? parserPool.getOutputQueue() : logQueue;
+    Function<String, TailerListener> listenerFactory = parserPool != null ? parserPool::newListener
+        : source -> new HttpLogTailerListener(buildParser(parserType), logQueue, overloadPolicy, sampleRate, overloadCounters, source);
+    long flushIntervalMs = Long.parseLong(properties.getProperty("aggregator.flush.interval.ms"));
+    MetricsStore store = buildMetricsStore(properties, flushIntervalMs);
     Clock clock = Clock.systemDefaultZone();
-    HttpLogTailerListener logTailerListener = new HttpLogTailerListener(new ApacheAccessLogParser(), queue);
-    HttpLogTailer logTailer = new HttpLogTailer(properties.getProperty("logfile"), logTailerListener, Integer.parseInt(properties.getProperty("tailer.delay.ms")));
-    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(queue, store, clock, Long.parseLong(properties.getProperty("aggregator.poll.timeout.ms")), Long.parseLong(properties.getProperty("aggregator.flush.interval.ms")));
-    MetricsReporter reporter = new HttpSectionConsoleReporter(store, Integer.parseInt(properties.getProperty("reporter.max.sections.displayed")));
-    AlerterManager alerter = new AlerterManager(store, Integer.parseInt(properties.getProperty("alerter.thread.pool.size")), clock);
+    BlockingStatsAggregator aggregator = buildAggregator(properties.getProperty("aggregator.time"), Integer.parseInt(properties.getProperty("aggregator.shards")), queue,
+        parserPool != null ? parserPool.getWorkerQueues() : Collections.<LogLineConsumerQueue>singletonList(queue), QueueWaitStrategy.valueOf(properties.getProperty("logqueue.wait.strategy").toUpperCase()),
+        overloadCounters, store, clock, Long.parseLong(properties.getProperty("aggregator.poll.timeout.ms")), flushIntervalMs, Long.parseLong(properties.getProperty("aggregator.allowed.lateness.ms")));
+    MetricsReporter reporter = new HttpSectionConsoleReporter(store, Integer.parseInt(properties.getProperty("reporter.max.sections.displayed")),
+        Long.parseLong(properties.getProperty("reporter.sections.window.ms")));
+    AlerterManager alerter = new AlerterManager(store, Integer.parseInt(properties.getProperty("alerter.thread.pool.size")));
     alerter.addAlerts(AlertBuilder.buildAlertsFromProperties(properties));
-    aggregator.addStatsFlushListener(reporter);
-    aggregator.addStatsFlushListener(alerter);
+    int listenerQueueSize = Integer.parseInt(properties.getProperty("aggregator.listener.queue.size"));
+    aggregator.addStatsFlushListener("reporter", reporter, listenerQueueSize);
+    aggregator.addStatsFlushListener("alerter", alerter, listenerQueueSize);
+    for (String window : properties.getProperty("aggregator.windows.ms").split(",")) {
+      if (!window.trim().isEmpty()) {
+        long windowMs = Long.parseLong(window.trim());
+        MetricsStore windowStore = new InMemoryMetricsStore(InMemoryMetricsStore.capacityFor(Long.parseLong(properties.getProperty("store.windows.retention.ms")), windowMs));
+        aggregator.addRollupWindow(windowMs, windowStore).addStatsFlushListener("reporter-" + windowMs + "ms",
+            new HttpSectionConsoleReporter(windowStore, Integer.parseInt(properties.getProperty("reporter.max.sections.displayed"))), listenerQueueSize);
+      }
+    }
 
     //Start tailer and aggregator threads
     Thread aggregatorThread = new Thread(aggregator, "aggregator");
     aggregatorThread.start();
-    logTailer.start();
+    LogTailer logTailer = startTailer(properties, listenerFactory, clock);
 
-    //Register graceful shutdown hook
+    //Register graceful shutdown hook: the lines read are processed down to the store before the checkpoints are saved
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       try {
-        logTailer.stop();
-        aggregatorThread.interrupt();
+        logTailer.stopReading();
+        if (parserPool != null) {
+          parserPool.stop();
+        }
+        aggregator.stop();
         aggregatorThread.join();
+        logTailer.saveCheckpoints();
         alerter.stop();
+        if (store instanceof Closeable) {
+          ((Closeable) store).close();
+        }
         LOG.info("Shutting down http monitor");
       } catch (InterruptedException e) {
         LOG.warn("Shutdown interruption");
+      } catch (IOException e) {
+        LOG.warn("Unable to close the metrics store", e);
       }
     }));
     try {
@@ -79,6 +163,233 @@ public class HttpLogMonitorLauncher {
     }
   }
 
+  /**
+   * Start tailing the log file, or the log files when several files or globs are provided, each log file having its own listener
+   *
+   * @param properties      Log monitor properties
+   * @param listenerFactory Builds the listener of a log file from the source of its lines, applied to null when a single log file is tailed so that its lines are not tagged
+   * @param clock           System clock
+   * @return Started tailer
+   */
+  private static LogTailer startTailer(Properties properties, Function<String, TailerListener> listenerFactory, Clock clock) {
+    String logFile = properties.getProperty("logfile");
+    int bufferSize = Integer.parseInt(properties.getProperty("tailer.buffer.size"));
+    long minDelayMs = Long.parseLong(properties.getProperty("tailer.delay.ms"));
+    long maxDelayMs = Long.parseLong(properties.getProperty("tailer.delay.max.ms"));
+    String checkpointFile = properties.getProperty("tailer.checkpoint.file");
+    long checkpointIntervalMs = Long.parseLong(properties.getProperty("tailer.checkpoint.interval.ms"));
+    List<String> logFilePatterns = Arrays.stream(logFile.split(",")).map(String::trim).filter(StringUtils::isNotEmpty).collect(Collectors.toList());
+    if (logFilePatterns.size() > 1 || MultiFileTailer.isGlob(logFile)) {
+      MultiFileTailer multiFileTailer = new MultiFileTailer(logFilePatterns, path -> listenerFactory.apply(path.toString()),
+          path -> buildCheckpointStore(StringUtils.isEmpty(checkpointFile) ? checkpointFile : checkpointFile + "." + path.toAbsolutePath().toString().replaceAll("[^A-Za-z0-9]", "_"),
+              checkpointIntervalMs),
+          Integer.parseInt(properties.getProperty("tailer.threads")), bufferSize, minDelayMs, maxDelayMs,
+          Long.parseLong(properties.getProperty("tailer.discovery.interval.ms")), clock);
+      multiFileTailer.start();
+      return multiFileTailer;
+    }
+    TailerListener logTailerListener = listenerFactory.apply(null);
+    TailerWaitStrategy waitStrategy = buildWaitStrategy(properties.getProperty("tailer.mode"), Paths.get(logFile), minDelayMs, maxDelayMs);
+    RotatedArchiveReader archiveReader = Boolean.parseBoolean(properties.getProperty("tailer.archives.read"))
+        ? new RotatedArchiveReader(Paths.get(logFile), logTailerListener, bufferSize) : null;
+    HttpLogTailer logTailer = new HttpLogTailer(logFile, logTailerListener, waitStrategy, buildCheckpointStore(checkpointFile, checkpointIntervalMs), archiveReader,
+        bufferSize, Long.parseLong(properties.getProperty("tailer.latency.report.ms")), clock);
+    logTailer.start();
+    return logTailer;
+  }
+
+  /**
+   * Process the whole log file in parallel byte ranges, report the backfill throughput and the metrics of the last interval then exit
+   *
+   * @param properties Log monitor properties
+   */
+  private static void backfill(Properties properties) {
+    long intervalMs = Long.parseLong(properties.getProperty("aggregator.flush.interval.ms"));
+    MetricsStore store = buildMetricsStore(properties, intervalMs);
+    String parserType = properties.getProperty("parser.type");
+    int threadCount = Integer.parseInt(properties.getProperty("backfill.threads"));
+    LogFileBackfill backfill = new LogFileBackfill(Paths.get(properties.getProperty("logfile")), () -> buildParser(parserType), store,
+        threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors(), Integer.parseInt(properties.getProperty("tailer.buffer.size")), intervalMs);
+    try {
+      BackfillReport report = backfill.run();
+      if (report.getIntervalCount() > 0) {
+        new HttpSectionConsoleReporter(store, Integer.parseInt(properties.getProperty("reporter.max.sections.displayed")),
+            Long.parseLong(properties.getProperty("reporter.sections.window.ms"))).report(store.getLatestMetrics());
+      }
+    } catch (IOException e) {
+      LOG.error("Unable to backfill {}", properties.getProperty("logfile"), e);
+    } catch (InterruptedException e) {
+      LOG.warn("Backfill interruption");
+    }
+  }
+
+  /**
+   * Build the metrics store, adding a section index to it if the sections have a retention
+   *
+   * @param properties      Log monitor properties
+   * @param flushIntervalMs Flush interval in milliseconds
+   * @return Metrics store
+   */
+  private static MetricsStore buildMetricsStore(Properties properties, long flushIntervalMs) {
+    MetricsStore store = buildStoreOfType(properties, flushIntervalMs);
+    long sectionsRetentionMs = Long.parseLong(properties.getProperty("store.sections.retention.ms"));
+    if (sectionsRetentionMs <= 0) {
+      return store;
+    }
+    return new SectionIndexedMetricsStore(store, new SectionIndex(HttpLogMetrics.COUNTER_SECTION + HttpLogMetrics.DELIMITER, HttpLogMetrics.DELIMITER, sectionsRetentionMs));
+  }
+
+  /**
+   * Build the metrics store from its type: either in memory (memory), compressed in memory per metric series (compressed),
+   * in direct memory slabs (offheap) or appended to memory mapped segment files surviving a restart (segment).
+   * In memory, the flushed intervals can be downsampled into coarser tiers as they age
+   *
+   * @param properties      Log monitor properties
+   * @param flushIntervalMs Flush interval in milliseconds
+   * @return Metrics store
+   * @throws IllegalArgumentException If the store type is unknown, a tier has no retention or its interval is not a multiple of the previous one
+   */
+  private static MetricsStore buildStoreOfType(Properties properties, long flushIntervalMs) {
+    String storeType = properties.getProperty("store.type");
+    long retentionMs = Long.parseLong(properties.getProperty("store.retention.ms"));
+    String tierIntervals = properties.getProperty("store.tiers.ms");
+    String tierRetentions = properties.getProperty("store.tiers.retention.ms");
+    if ("segment".equals(storeType)) {
+      String directory = properties.getProperty("store.directory");
+      try {
+        return new SegmentMetricsStore(Paths.get(directory), Long.parseLong(properties.getProperty("store.segment.ms")), retentionMs,
+            Integer.parseInt(properties.getProperty("store.segment.size")));
+      } catch (IOException e) {
+        LOG.error("Unable to open the metrics store {}", directory, e);
+        throw new UncheckedIOException(e);
+      }
+    }
+    if ("compressed".equals(storeType)) {
+      return new CompressedMetricsStore(retentionMs);
+    }
+    if ("offheap".equals(storeType)) {
+      return new OffHeapMetricsStore(retentionMs, Integer.parseInt(properties.getProperty("store.offheap.slab.size")),
+          Long.parseLong(properties.getProperty("store.offheap.max.bytes")));
+    }
+    if (!"memory".equals(storeType)) {
+      throw new IllegalArgumentException("Unknown metrics store type " + storeType);
+    }
+    if (tierIntervals.trim().isEmpty()) {
+      return new InMemoryMetricsStore(InMemoryMetricsStore.capacityFor(retentionMs, flushIntervalMs));
+    }
+    long[] intervalsMs = LongStream.concat(LongStream.of(flushIntervalMs), Arrays.stream(tierIntervals.split(",")).map(String::trim).mapToLong(Long::parseLong)).toArray();
+    long[] retentionsMs = LongStream.concat(LongStream.of(retentionMs), Arrays.stream(tierRetentions.split(",")).map(String::trim).filter(retention -> !retention.isEmpty())
+        .mapToLong(Long::parseLong)).toArray();
+    return new TieredMetricsStore(intervalsMs, retentionsMs, HttpLogMetrics.COUNTER_HITS, HttpLogMetrics.COUNTER_ERRORS);
+  }
+
+  /**
+   * Build the log queue between the tailer and the aggregator from its type: either the lock free ring buffer (spsc) or the blocking queue (blocking)
+   *
+   * @param queueType    Log queue type (spsc/blocking)
+   * @param size         Log queue size, rounded up to a power of two for the ring buffer
+   * @param waitStrategy Wait strategy of the ring buffer consumer (spin/yield/park)
+   * @return Log queue
+   * @throws IllegalArgumentException If the queue type or the wait strategy is unknown
+   */
+  private static LogLineQueue buildLogQueue(String queueType, int size, String waitStrategy) {
+    if ("spsc".equals(queueType)) {
+      return new SpscLogLineQueue(size, QueueWaitStrategy.valueOf(waitStrategy.toUpperCase()));
+    }
+    if ("blocking".equals(queueType)) {
+      return new BlockingLogLineQueue(size);
+    }
+    throw new IllegalArgumentException("Unknown log queue type " + queueType);
+  }
+
+  /**
+   * Build the aggregator from the time the lines are bucketed by: either the time they are drained at (processing) or their log timestamp (event).
+   * The processing time aggregation can be sharded over several threads, each one draining the queues of some of the parser workers
+   *
+   * @param aggregatorTime    Aggregator time (processing/event)
+   * @param shardCount        Number of aggregator threads, 1 for a single thread
+   * @param queue             Log queue
+   * @param shardQueues       Log queues the shards are draining
+   * @param waitStrategy      Shard wait strategy while its queues are empty
+   * @param overloadCounters  Lines dropped and sampled out by the tailer
+   * @param store             Metrics store
+   * @param clock             System clock
+   * @param pollTimeoutMs     Log queue poll frequency in milliseconds
+   * @param flushIntervalMs   Flush interval, or window length, in milliseconds
+   * @param allowedLatenessMs How late a line can be read and still be counted in event time, in milliseconds
+   * @return Aggregator
+   * @throws IllegalArgumentException If the aggregator time is unknown or the event time aggregation is sharded
+   */
+  private static BlockingStatsAggregator buildAggregator(String aggregatorTime, int shardCount, LogLineConsumerQueue queue,
+                                                         List<? extends LogLineConsumerQueue> shardQueues,
+                                                         QueueWaitStrategy waitStrategy, OverloadCounters overloadCounters, MetricsStore store, Clock clock,
+                                                         long pollTimeoutMs, long flushIntervalMs, long allowedLatenessMs) {
+    if (shardCount > 1) {
+      if (!"processing".equals(aggregatorTime)) {
+        throw new IllegalArgumentException("Only the processing time aggregation can be sharded, not " + aggregatorTime);
+      }
+      return new ShardedStatsAggregator(shardQueues, shardCount, waitStrategy, overloadCounters, store, clock, pollTimeoutMs, flushIntervalMs);
+    }
+    if ("processing".equals(aggregatorTime)) {
+      return new BlockingStatsAggregator(queue, overloadCounters, store, clock, pollTimeoutMs, flushIntervalMs);
+    }
+    if ("event".equals(aggregatorTime)) {
+      return new EventTimeStatsAggregator(queue, overloadCounters, store, clock, pollTimeoutMs, flushIntervalMs, allowedLatenessMs);
+    }
+    throw new IllegalArgumentException("Unknown aggregator time " + aggregatorTime);
+  }
+
+  /**
+   * Build the log line parser from its type: either the single pass parser (fast) with the regex parser as fallback or the regex parser only (regex)
+   *
+   * @param parserType Parser type (fast/regex)
+   * @return Log line parser
+   * @throws IllegalArgumentException If the parser type is unknown
+   */
+  private static HttpLogParser buildParser(String parserType) {
+    if ("fast".equals(parserType)) {
+      return new FastApacheAccessLogParser();
+    }
+    if ("regex".equals(parserType)) {
+      return new ApacheAccessLogParser();
+    }
+    throw new IllegalArgumentException("Unknown parser type " + parserType);
+  }
+
+  /**
+   * Build the tailer wait strategy from the tailer mode: either file events (watch), falling back to polling if not available, or polling with backoff (poll)
+   *
+   * @param tailerMode Tailer mode (watch/poll)
+   * @param logFile    Tailed log file
+   * @param minDelayMs Minimum polling delay in milliseconds
+   * @param maxDelayMs Maximum polling delay in milliseconds
+   * @return Tailer wait strategy
+   * @throws IllegalArgumentException If the tailer mode is unknown
+   */
+  private static TailerWaitStrategy buildWaitStrategy(String tailerMode, Path logFile, long minDelayMs, long maxDelayMs) {
+    if ("watch".equals(tailerMode)) {
+      return WatchServiceWaitStrategy.watchOrPoll(logFile, minDelayMs, maxDelayMs);
+    }
+    if ("poll".equals(tailerMode)) {
+      return new BackoffPollingWaitStrategy(minDelayMs, maxDelayMs);
+    }
+    throw new IllegalArgumentException("Unknown tailer mode " + tailerMode);
+  }
+
+  /**
+   * Build the tailer checkpoint store
+   *
+   * @param checkpointFile Checkpoint file, empty to disable the checkpointing
+   * @param saveIntervalMs Minimum interval between two checkpoint saves in milliseconds
+   * @return Tailer checkpoint store or null if disabled
+   */
+  private static TailerCheckpointStore buildCheckpointStore(String checkpointFile, long saveIntervalMs) {
+    if (StringUtils.isEmpty(checkpointFile)) {
+      return null;
+    }
+    return new TailerCheckpointStore(Paths.get(checkpointFile), saveIntervalMs);
+  }
+
   /**
    * Load the log monitor properties first from the default application.properties and
    * override then with any found on the command line
@@ -118,7 +429,7 @@ public class HttpLogMonitorLauncher {
   private static void parseArgsToProperties(String[] args, Properties properties) {
     for (String arg : args) {
       if (arg.startsWith(ARG_START)) {
-        String[] split = arg.substring(ARG_START.length()).split(ARG_DELIMITER);
+        String[] split = arg.substring(ARG_START.length()).split(ARG_DELIMITER, 2);
         if (split.length == 2) {
           String propertyName = split[0];
           String propertyValue = split[1];
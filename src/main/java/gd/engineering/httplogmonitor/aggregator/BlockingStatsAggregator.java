@@ -2,86 +2,247 @@ package gd.engineering.httplogmonitor.aggregator;
 
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import gd.engineering.httplogmonitor.model.HttpLogLine;
 import gd.engineering.httplogmonitor.model.HttpLogMetrics;
 import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
 import gd.engineering.httplogmonitor.model.metrics.MetricsFlushListener;
 import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
-
-import static gd.engineering.httplogmonitor.model.HttpLogMetrics.COUNTER_ERRORS;
-import static gd.engineering.httplogmonitor.model.HttpLogMetrics.COUNTER_HITS;
-import static gd.engineering.httplogmonitor.model.HttpLogMetrics.COUNTER_SUCCESSES;
-import static gd.engineering.httplogmonitor.model.HttpLogMetrics.DELIMITER;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
 
 /**
  * Log to metric aggregator.
- * The aggregator regularly polls the log queue for any newly parsed line and increments its current metrics.
+ * The aggregator regularly drains the log queue of all the newly parsed lines and increments its current metrics.
  * It periodically flushes those metrics to the metric store and send an event to all its listeners.
- * While flushing, rates are computed based upon the counter values. Those rates are per second.
+ * The intervals are aligned on the clock boundaries of the flush interval, e.g :00, :10, :20 for 10 seconds, the first one ending on the first boundary.
+ * While flushing, rates are computed based upon the counter values and the actual interval length. Those rates are per second.
+ * Longer windows, merged from the intervals, can be flushed at the same time to their own stores, see {@link #addRollupWindow(long, MetricsStore)}.
+ * The lines dropped or sampled out by the tailer during the interval are flushed with the metrics
+ * <p>
+ * The aggregator swaps in new metrics and hands the sealed ones over to its flush thread, which computes the rates, adds them to the metrics store
+ * and notifies the listeners: the log queue keeps being drained during the flush. A slow listener is given its own bounded queue and thread
+ * with {@link #addStatsFlushListener(String, MetricsFlushListener, int)}, so that it does not delay the flush either.
+ * The flushes run on the calling thread until the aggregator runs
+ * <p>
+ * The actions of the barrier lines drained during an interval, see {@link gd.engineering.httplogmonitor.model.HttpLogLine#getBarrier()},
+ * run on the flush thread once the interval has been added to the metrics store
+ * <p>
+ * {@link #stop()} stops the aggregator once the lines left in the log queue have been recorded and the current interval flushed,
+ * interrupting the aggregator thread stops it right away
+ * <p>
+ * The lines are bucketed by the time they are drained at (processing time), see {@link gd.engineering.httplogmonitor.aggregator.EventTimeStatsAggregator}
+ * to bucket them by their log timestamp instead
  */
 public class BlockingStatsAggregator implements Runnable {
 
-  private boolean running = true;
-  private BlockingQueue<HttpLogLine> logQueue;
-  private long pollTimeoutMs;
-  private long flushIntervalMs;
+  private static final Logger LOG = LoggerFactory.getLogger(BlockingStatsAggregator.class);
+  protected volatile boolean running = true;
+  protected LogLineConsumerQueue logQueue;
+  protected long pollTimeoutMs;
+  protected long flushIntervalMs;
   private MetricsStore metricsStore;
   private List<MetricsFlushListener> flushListeners;
-  private Clock clock;
+  private List<QueuedFlushListener> queuedFlushListeners;
+  private List<RollupWindow> rollupWindows;
+  private ExecutorService flushThread;
+  private Executor flushExecutor = Runnable::run;
+  protected Clock clock;
+  private IntervalMetrics currentMetrics;
+  private List<Runnable> barriers = new ArrayList<>();
+  private OverloadCounters overloadCounters;
 
   /**
    * Build a new aggregator listening to the provided log queue and flushing in the metrics store.
    * The log queue poll frequency is provided by pollTimeoutMs and the flush frequency is provided by flushIntervalMs.
    * The poll frequency has to be lower than the flush interval
    *
-   * @param logQueue        Blocking log queue
+   * @param logQueue        Log queue
    * @param metricsStore    Metrics store
    * @param clock           System clock
    * @param pollTimeoutMs   Log queue poll frequency in milliseconds
    * @param flushIntervalMs Aggregator flush frequency in milliseconds
    * @throws IllegalArgumentException if poll timeout is greater than flush interval
    */
-  public BlockingStatsAggregator(BlockingQueue<HttpLogLine> logQueue, MetricsStore metricsStore, Clock clock, long pollTimeoutMs, long flushIntervalMs) {
+  public BlockingStatsAggregator(LogLineConsumerQueue logQueue, MetricsStore metricsStore, Clock clock, long pollTimeoutMs, long flushIntervalMs) {
+    this(logQueue, null, metricsStore, clock, pollTimeoutMs, flushIntervalMs);
+  }
+
+  /**
+   * Build a new aggregator listening to the provided log queue and flushing in the metrics store along with the tailer overload counters.
+   * The log queue poll frequency is provided by pollTimeoutMs and the flush frequency is provided by flushIntervalMs.
+   * The poll frequency has to be lower than the flush interval
+   *
+   * @param logQueue         Log queue
+   * @param overloadCounters Lines dropped and sampled out by the tailer, null if not tracked
+   * @param metricsStore     Metrics store
+   * @param clock            System clock
+   * @param pollTimeoutMs    Log queue poll frequency in milliseconds
+   * @param flushIntervalMs  Aggregator flush frequency in milliseconds
+   * @throws IllegalArgumentException if poll timeout is greater than flush interval
+   */
+  public BlockingStatsAggregator(LogLineConsumerQueue logQueue, OverloadCounters overloadCounters, MetricsStore metricsStore, Clock clock, long pollTimeoutMs,
+                                 long flushIntervalMs) {
     if (pollTimeoutMs > flushIntervalMs) {
       throw new IllegalArgumentException("Poll timeout has to be lower than the flush interval otherwise metrics will not be accurate");
     }
     this.logQueue = logQueue;
+    this.overloadCounters = overloadCounters;
     this.pollTimeoutMs = pollTimeoutMs;
     this.flushIntervalMs = flushIntervalMs;
     this.metricsStore = metricsStore;
     this.flushListeners = new ArrayList<>();
+    this.queuedFlushListeners = new ArrayList<>();
+    this.rollupWindows = new ArrayList<>();
     this.clock = clock;
   }
 
   @Override
   public void run() {
-    long lastFlushTime = clock.millis();
-    IntervalMetrics stats = new IntervalMetrics();
-    while (running) {
-      try {
+    startFlushThread();
+    long intervalStartTime = clock.millis();
+    long nextFlushTime = alignedBoundary(intervalStartTime, flushIntervalMs) + flushIntervalMs;
+    currentMetrics = new IntervalMetrics();
+    try {
+      while (running) {
         long currentTime = clock.millis();
-        if (currentTime - lastFlushTime > flushIntervalMs) {
-          flush(stats, lastFlushTime, currentTime, TimeUnit.SECONDS);
-          stats = new IntervalMetrics();
-          lastFlushTime = clock.millis();
+        if (currentTime >= nextFlushTime) {
+          // The interval ends on the last boundary passed, several boundaries may have been passed if the aggregator was stalled
+          long intervalEndTime = alignedBoundary(currentTime, flushIntervalMs);
+          IntervalMetrics sealedMetrics = currentMetrics;
+          currentMetrics = new IntervalMetrics();
+          handOff(sealedMetrics, intervalStartTime, intervalEndTime);
+          intervalStartTime = intervalEndTime;
+          nextFlushTime = intervalEndTime + flushIntervalMs;
         }
-        HttpLogLine logLine = logQueue.poll(pollTimeoutMs, TimeUnit.MILLISECONDS);
-        if (logLine != null) {
-          incrementMetrics(stats, logLine);
+        // Wakes up on the next boundary at the latest, a busy queue returns right after its available lines
+        logQueue.drain(this::record, Math.min(pollTimeoutMs, nextFlushTime - currentTime));
+      }
+      // Stopped: the lines left belong to the current interval, flushed up to now
+      drainRemaining(logQueue, this::record);
+      handOff(currentMetrics, intervalStartTime, Math.max(clock.millis(), intervalStartTime));
+    } catch (InterruptedException e) {
+      running = false;
+    } finally {
+      stopFlushThread();
+    }
+  }
+
+  /**
+   * Stop the aggregator once the lines left in the log queue have been recorded and flushed.
+   * The producers of the log queue have to be stopped first, the aggregator thread exits within a poll timeout
+   */
+  public void stop() {
+    running = false;
+  }
+
+  /**
+   * Hand every log line left in the queue to the handler, without waiting for new ones
+   *
+   * @param queue   Log queue, its producers being stopped
+   * @param handler Log line handler
+   * @throws InterruptedException If interrupted while draining
+   */
+  static void drainRemaining(LogLineConsumerQueue queue, Consumer<HttpLogLine> handler) throws InterruptedException {
+    while (queue.drain(handler, 0L) > 0) {
+      // Until empty
+    }
+  }
+
+  /**
+   * Clock boundary of the provided interval length at or before the provided time, e.g :00, :10, :20 for 10 seconds intervals
+   *
+   * @param timeMs     Time in milliseconds since the epoch
+   * @param intervalMs Interval length in milliseconds
+   * @return Latest boundary in milliseconds since the epoch
+   */
+  static long alignedBoundary(long timeMs, long intervalMs) {
+    return timeMs - Math.floorMod(timeMs, intervalMs);
+  }
+
+  /**
+   * Hand the sealed metrics of an interval over to the flush thread, the metrics are not modified by the aggregator anymore
+   *
+   * @param sealedMetrics     Metrics to be flushed
+   * @param intervalStartTime Start of metrics being recorded in milliseconds
+   * @param intervalEndTime   End of metric being recorded in milliseconds
+   */
+  protected void handOff(IntervalMetrics sealedMetrics, long intervalStartTime, long intervalEndTime) {
+    List<Runnable> sealedBarriers = takeBarriers();
+    flushExecutor.execute(() -> {
+      flush(sealedMetrics, intervalStartTime, intervalEndTime, TimeUnit.SECONDS);
+      sealedBarriers.forEach(Runnable::run);
+    });
+  }
+
+  /**
+   * Add a barrier action to run once the next interval handed off has been flushed
+   *
+   * @param barrier Barrier action
+   */
+  protected void addBarrier(Runnable barrier) {
+    barriers.add(barrier);
+  }
+
+  /**
+   * Run the barrier actions added so far once the intervals already handed off have been flushed, without waiting for the next interval
+   */
+  protected void releaseBarriers() {
+    List<Runnable> sealedBarriers = takeBarriers();
+    if (!sealedBarriers.isEmpty()) {
+      flushExecutor.execute(() -> sealedBarriers.forEach(Runnable::run));
+    }
+  }
+
+  private List<Runnable> takeBarriers() {
+    if (barriers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Runnable> sealedBarriers = barriers;
+    barriers = new ArrayList<>();
+    return sealedBarriers;
+  }
+
+  /**
+   * Start the flush thread, the following flushes run on it
+   */
+  protected void startFlushThread() {
+    flushThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "flusher"));
+    flushExecutor = flushThread;
+  }
+
+  /**
+   * Stop the flush thread once the pending flushes are done, then the queued listeners
+   */
+  protected void stopFlushThread() {
+    if (flushThread != null) {
+      flushThread.shutdown();
+      try {
+        if (!flushThread.awaitTermination(1, TimeUnit.SECONDS)) {
+          LOG.warn("Pending flushes discarded on stop");
         }
       } catch (InterruptedException e) {
-        running = false;
+        Thread.currentThread().interrupt();
       }
     }
+    queuedFlushListeners.forEach(QueuedFlushListener::stop);
+    rollupWindows.forEach(RollupWindow::stop);
   }
 
   /**
    * Flush the aggregated stats to the metrics store.
-   * The method computes rates and notifies the listeners of the new metrics being available
+   * The method computes rates over the actual interval length, feeds the rollup windows, compacts the metrics for the store
+   * and notifies the listeners of the new metrics being available
    *
    * @param metrics           Metrics to be flushed
    * @param intervalStartTime Start of metrics being recorded in milliseconds
@@ -91,12 +252,32 @@ public class BlockingStatsAggregator implements Runnable {
   void flush(IntervalMetrics metrics, long intervalStartTime, long intervalEndTime, TimeUnit rateUnits) {
     metrics.setStartTime(intervalStartTime);
     metrics.setEndTime(intervalEndTime);
-    computeRates(metrics, rateUnits);
+    if (overloadCounters != null) {
+      overloadCounters.flushTo(metrics);
+    }
+    // Before the listener counters, which are only relevant to this interval
+    rollupWindows.forEach(window -> window.add(metrics));
+    queuedFlushListeners.forEach(listener -> listener.flushTo(metrics));
+    metrics.computeRates(intervalEndTime > intervalStartTime ? intervalEndTime - intervalStartTime : flushIntervalMs, rateUnits);
+    metrics.compact();
     if (metricsStore.add(metrics)) {
       flushListeners.forEach(fl -> fl.onFlush(metrics));
     }
   }
 
+  /**
+   * Record the log line in the current metrics, or its barrier with the current interval. The log line is not retained
+   *
+   * @param logLine Log line to be processed
+   */
+  private void record(HttpLogLine logLine) {
+    if (logLine.getBarrier() != null) {
+      barriers.add(logLine.getBarrier());
+      return;
+    }
+    HttpLogMetrics.record(currentMetrics, logLine);
+  }
+
   /**
    * Add a new listener to flush events
    *
@@ -107,33 +288,33 @@ public class BlockingStatsAggregator implements Runnable {
   }
 
   /**
-   * Compute the rates on the provided metrics counters
+   * Add a window longer than the flush interval, flushed to its own metrics store and listeners, e.g 1 minute windows besides 10 seconds intervals
    *
-   * @param metrics  Metrics to compute rates from
-   * @param rateUnit Rates time unit
+   * @param windowMs     Window length in milliseconds, a multiple of the flush interval
+   * @param metricsStore Metrics store of the windows
+   * @return Rollup window, to add its listeners
+   * @throws IllegalArgumentException If the window length is not a multiple of the flush interval
    */
-  private void computeRates(IntervalMetrics metrics, TimeUnit rateUnit) {
-    metrics.getCounters().forEach((counter, value) -> metrics.putRate(counter, value / (int) (rateUnit.convert(flushIntervalMs, TimeUnit.MILLISECONDS))));
+  public RollupWindow addRollupWindow(long windowMs, MetricsStore metricsStore) {
+    if (windowMs <= flushIntervalMs || windowMs % flushIntervalMs != 0) {
+      throw new IllegalArgumentException("Window length " + windowMs + " has to be a multiple of the flush interval " + flushIntervalMs);
+    }
+    RollupWindow window = new RollupWindow(windowMs, metricsStore, clock);
+    rollupWindows.add(window);
+    return window;
   }
 
   /**
-   * Increment the currently recorded metrics based upon the current log line
-   * Hits, errors, success overall and per section are recorded
+   * Add a new listener to flush events, notified through its own bounded queue and thread.
+   * Its lag and the flush events it dropped are flushed with the metrics in the listener:&lt;name&gt;:lag rate and listener:&lt;name&gt;:dropped counter
    *
-   * @param metrics Current interval metric
-   * @param logLine Log line to be processed
+   * @param name          Listener name
+   * @param listener      Flush listener
+   * @param queueCapacity Maximum number of flush events waiting for the listener, the oldest ones being dropped
    */
-  private void incrementMetrics(IntervalMetrics metrics, HttpLogLine logLine) {
-    String sectionPrefix = HttpLogMetrics.getSectionCounterPrefix(logLine.getHttpMethod() + logLine.getSection());
-    metrics.incr(COUNTER_HITS);
-    int statusCode = logLine.getStatusCode();
-    if (statusCode >= 400) {
-      metrics.incr(sectionPrefix + DELIMITER + COUNTER_ERRORS);
-      metrics.incr(COUNTER_ERRORS);
-    } else {
-      metrics.incr(sectionPrefix + DELIMITER + COUNTER_SUCCESSES);
-      metrics.incr(COUNTER_SUCCESSES);
-    }
-    metrics.incr(sectionPrefix + DELIMITER + COUNTER_HITS);
+  public void addStatsFlushListener(String name, MetricsFlushListener listener, int queueCapacity) {
+    QueuedFlushListener queuedListener = new QueuedFlushListener(name, listener, queueCapacity, clock);
+    queuedFlushListeners.add(queuedListener);
+    flushListeners.add(queuedListener);
   }
 }
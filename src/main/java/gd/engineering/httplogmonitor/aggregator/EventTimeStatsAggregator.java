@@ -0,0 +1,239 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+
+/**
+ * Log to metric aggregator bucketing the lines by their log timestamp (event time) instead of the time they are drained at.
+ * <p>
+ * The lines are recorded in tumbling windows of the flush interval length, aligned on the epoch. Several windows stay open at once
+ * so that a line read late, e.g because of an ingest lag or a replay, is still counted in the window of its log time.
+ * <p>
+ * The watermark is the log time up to which all the lines are expected to have been read: the latest log time read minus the allowed lateness.
+ * While no line is counted, the log time is assumed to go on with the wall clock so that the windows are still emitted without any traffic,
+ * or when all the lines read are late or ahead of the clock. If the first lines read are all ahead of the clock, the windows start from the wall clock.
+ * A window is flushed to the metrics store once the watermark passes its end, the windows being flushed in order, the empty ones included.
+ * <p>
+ * A line older than the oldest open window is not counted, it is reported in the late counter of the next flushed window.
+ * A line more than the allowed lateness ahead of the system clock, e.g because of a clock skew or a corrupt line, is not counted either:
+ * it would move the watermark far ahead and every line read afterwards would be late. It is reported in the future counter of the next flushed window.
+ * <p>
+ * Up to {@link #MAX_EMPTY_WINDOWS} empty windows in a row are flushed one by one, e.g while no line is read.
+ * A longer run of empty windows, e.g a replay jumping ahead in log time, is skipped
+ * <p>
+ * A barrier line waits for the windows open when it is drained, or for the next window to flush if none is open, so that its action runs
+ * once the lines drained before it have been flushed, the late and future ones included.
+ * On {@link #stop()}, the open windows are flushed without waiting for the watermark
+ */
+public class EventTimeStatsAggregator extends BlockingStatsAggregator {
+
+  public static final int MAX_EMPTY_WINDOWS = 16;
+  private long allowedLatenessMs;
+  private NavigableMap<Long, IntervalMetrics> openWindows = new TreeMap<>();
+  // Barrier actions by the start of the last window they wait for
+  private NavigableMap<Long, List<Runnable>> windowBarriers = new TreeMap<>();
+  // Start of the next window to flush, Long.MIN_VALUE until the first line is read
+  private long nextWindowStartMs = Long.MIN_VALUE;
+  private long maxEventTimeMs = Long.MIN_VALUE;
+  private long lastLineTimeMs;
+  private boolean lineCounted;
+  private long lateLines;
+  private long futureLines;
+
+  /**
+   * Build a new event time aggregator listening to the provided log queue and flushing in the metrics store along with the tailer overload counters.
+   * The log queue poll frequency is provided by pollTimeoutMs and the window length by flushIntervalMs.
+   * The poll frequency has to be lower than the flush interval
+   *
+   * @param logQueue          Log queue
+   * @param overloadCounters  Lines dropped and sampled out by the tailer, null if not tracked
+   * @param metricsStore      Metrics store
+   * @param clock             System clock
+   * @param pollTimeoutMs     Log queue poll frequency in milliseconds
+   * @param flushIntervalMs   Window length in milliseconds
+   * @param allowedLatenessMs How late a line can be read, compared to the latest log time read, and still be counted in milliseconds
+   * @throws IllegalArgumentException if poll timeout is greater than flush interval or the allowed lateness is negative
+   */
+  public EventTimeStatsAggregator(LogLineConsumerQueue logQueue, OverloadCounters overloadCounters, MetricsStore metricsStore, Clock clock, long pollTimeoutMs,
+                                  long flushIntervalMs, long allowedLatenessMs) {
+    super(logQueue, overloadCounters, metricsStore, clock, pollTimeoutMs, flushIntervalMs);
+    if (allowedLatenessMs < 0) {
+      throw new IllegalArgumentException("Allowed lateness cannot be negative");
+    }
+    this.allowedLatenessMs = allowedLatenessMs;
+  }
+
+  @Override
+  public void run() {
+    startFlushThread();
+    try {
+      while (running) {
+        logQueue.drain(this::record, pollTimeoutMs);
+        onDrained(clock.millis());
+      }
+      drainRemaining(logQueue, this::record);
+      onStopped(clock.millis());
+    } catch (InterruptedException e) {
+      running = false;
+    } finally {
+      stopFlushThread();
+    }
+  }
+
+  /**
+   * Record the log line in the window of its log time, or count it as late if this window has already been flushed
+   * or as future if it is too far ahead of the system clock. A barrier line is kept until the windows open so far are flushed
+   *
+   * @param logLine Log line to be processed
+   */
+  void record(HttpLogLine logLine) {
+    if (logLine.getBarrier() != null) {
+      windowBarriers.computeIfAbsent(openWindows.isEmpty() ? nextWindowStartMs : openWindows.lastKey(), windowStartMs -> new ArrayList<>())
+          .add(logLine.getBarrier());
+      return;
+    }
+    long timestampMs = logLine.getTimestampMs();
+    if (timestampMs > clock.millis() + allowedLatenessMs) {
+      futureLines += logLine.getWeight();
+      return;
+    }
+    long windowStartMs = timestampMs - Math.floorMod(timestampMs, flushIntervalMs);
+    if (windowStartMs < nextWindowStartMs) {
+      lateLines += logLine.getWeight();
+      return;
+    }
+    maxEventTimeMs = Math.max(maxEventTimeMs, timestampMs);
+    IntervalMetrics window = openWindows.get(windowStartMs);
+    if (window == null) {
+      window = new IntervalMetrics();
+      openWindows.put(windowStartMs, window);
+    }
+    HttpLogMetrics.record(window, logLine);
+    lineCounted = true;
+  }
+
+  /**
+   * Move the watermark after a queue drain and flush the windows it has passed.
+   * Only the lines counted in a window stop the log time from going on with the wall clock
+   *
+   * @param nowMs Current system time
+   */
+  void onDrained(long nowMs) {
+    if (lineCounted) {
+      lastLineTimeMs = nowMs;
+      lineCounted = false;
+    }
+    if (nextWindowStartMs == Long.MIN_VALUE) {
+      if (!openWindows.isEmpty()) {
+        nextWindowStartMs = openWindows.firstKey();
+      } else if (futureLines > 0) {
+        // Only lines ahead of the clock so far, e.g a source with a wrong clock: the windows follow the wall clock to report them
+        maxEventTimeMs = nowMs;
+        lastLineTimeMs = nowMs;
+        long firstTimeMs = nowMs - allowedLatenessMs;
+        nextWindowStartMs = firstTimeMs - Math.floorMod(firstTimeMs, flushIntervalMs);
+      } else {
+        return;
+      }
+    }
+    flushWindowsBefore(getWatermark(nowMs));
+  }
+
+  /**
+   * Flush all the open windows once the aggregator is stopped, along with the late and future lines not reported yet, then run the remaining barriers
+   *
+   * @param nowMs Current system time
+   */
+  void onStopped(long nowMs) {
+    onDrained(nowMs);
+    if (nextWindowStartMs == Long.MIN_VALUE) {
+      return;
+    }
+    if (!openWindows.isEmpty()) {
+      flushWindowsBefore(openWindows.lastKey() + flushIntervalMs);
+    } else if (lateLines > 0 || futureLines > 0) {
+      flushWindowsBefore(nextWindowStartMs + flushIntervalMs);
+    }
+    // Nothing left to flush for the remaining barriers
+    windowBarriers.values().forEach(barriers -> barriers.forEach(this::addBarrier));
+    windowBarriers.clear();
+    releaseBarriers();
+  }
+
+  /**
+   * Flush the windows ending at or before the watermark, in order
+   *
+   * @param watermarkMs Watermark in milliseconds
+   */
+  private void flushWindowsBefore(long watermarkMs) {
+    while (nextWindowStartMs + flushIntervalMs <= watermarkMs) {
+      IntervalMetrics window = openWindows.remove(nextWindowStartMs);
+      if (window == null) {
+        long gapEndMs = getGapEnd(watermarkMs);
+        if ((gapEndMs - nextWindowStartMs) / flushIntervalMs > MAX_EMPTY_WINDOWS) {
+          nextWindowStartMs = gapEndMs;
+          continue;
+        }
+        window = new IntervalMetrics();
+      }
+      if (lateLines > 0) {
+        window.incrBy(HttpLogMetrics.COUNTER_LATE, lateLines);
+        lateLines = 0;
+      }
+      if (futureLines > 0) {
+        window.incrBy(HttpLogMetrics.COUNTER_FUTURE, futureLines);
+        futureLines = 0;
+      }
+      NavigableMap<Long, List<Runnable>> dueBarriers = windowBarriers.headMap(nextWindowStartMs, true);
+      dueBarriers.values().forEach(barriers -> barriers.forEach(this::addBarrier));
+      dueBarriers.clear();
+      handOff(window, nextWindowStartMs, nextWindowStartMs + flushIntervalMs);
+      nextWindowStartMs += flushIntervalMs;
+    }
+  }
+
+  /**
+   * End of the run of empty windows starting at the next window to flush: the next open window or the window of the watermark
+   *
+   * @param watermarkMs Current watermark
+   * @return Start of the first window which is not empty or not yet passed by the watermark
+   */
+  private long getGapEnd(long watermarkMs) {
+    long watermarkWindowStartMs = watermarkMs - Math.floorMod(watermarkMs, flushIntervalMs);
+    Long nextOpenWindowStartMs = openWindows.ceilingKey(nextWindowStartMs);
+    return nextOpenWindowStartMs == null ? watermarkWindowStartMs : Math.min(nextOpenWindowStartMs, watermarkWindowStartMs);
+  }
+
+  /**
+   * Log time up to which all the lines are expected to have been read.
+   * The log time goes on with the wall clock since the last line read
+   *
+   * @param nowMs Current system time
+   * @return Watermark in milliseconds, Long.MIN_VALUE before the first line
+   */
+  long getWatermark(long nowMs) {
+    if (maxEventTimeMs == Long.MIN_VALUE) {
+      return Long.MIN_VALUE;
+    }
+    return maxEventTimeMs + Math.max(0, nowMs - lastLineTimeMs) - allowedLatenessMs;
+  }
+
+  /**
+   * Number of windows waiting for the watermark to pass their end
+   *
+   * @return Open window count
+   */
+  int getOpenWindowCount() {
+    return openWindows.size();
+  }
+}
@@ -0,0 +1,161 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry;
+import gd.engineering.httplogmonitor.model.metrics.MetricsFlushListener;
+
+/**
+ * Flush listener handing the flushed metrics to another listener through its own bounded queue and thread,
+ * so that a slow listener, e.g the console reporter, never delays the flush nor the other listeners.
+ * <p>
+ * When the queue is full, the oldest pending metrics are dropped for the newest ones.
+ * The lag, from the hand-off of the metrics to the end of their processing by the listener, and the dropped metrics are counted
+ * by the listener thread and moved to the interval metrics on each flush, as the {@link gd.engineering.httplogmonitor.queue.OverloadCounters}.
+ * The lag of the metrics still waiting or being processed is accounted as well, so that a stuck listener shows a growing lag.
+ * <p>
+ * The lag is the maximum over the interval, not an amount: it is put as a rate so that it is neither added to the store totals nor merged in the rollups
+ */
+public class QueuedFlushListener implements MetricsFlushListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(QueuedFlushListener.class);
+  private String name;
+  private MetricsFlushListener listener;
+  private BlockingQueue<PendingFlush> pendingFlushes;
+  private Clock clock;
+  private Thread listenerThread;
+  private AtomicLong maxLagMs = new AtomicLong();
+  // Hand-off time of the metrics being processed by the listener, -1 while waiting
+  private volatile long processedHandOffTimeMs = -1L;
+  private AtomicLong dropped = new AtomicLong();
+  private int lagRateId;
+  private int droppedCounterId;
+
+  /**
+   * Build a new queued listener and start its thread
+   *
+   * @param name          Listener name, used in its thread and counter names
+   * @param listener      Listener processing the flushed metrics
+   * @param queueCapacity Maximum number of flushed metrics waiting for the listener
+   * @param clock         System clock
+   */
+  public QueuedFlushListener(String name, MetricsFlushListener listener, int queueCapacity, Clock clock) {
+    this.name = name;
+    this.listener = listener;
+    this.pendingFlushes = new ArrayBlockingQueue<>(queueCapacity);
+    this.clock = clock;
+    String counterPrefix = HttpLogMetrics.getListenerCounterPrefix(name) + HttpLogMetrics.DELIMITER;
+    this.lagRateId = MetricKeyRegistry.intern(counterPrefix + HttpLogMetrics.RATE_LAG);
+    this.droppedCounterId = MetricKeyRegistry.intern(counterPrefix + HttpLogMetrics.COUNTER_DROPPED);
+    this.listenerThread = new Thread(this::processFlushes, "flush-" + name);
+    this.listenerThread.start();
+  }
+
+  /**
+   * Queue the flushed metrics for the listener, dropping the oldest pending ones if the queue is full
+   *
+   * @param latestMetrics Flushed metrics
+   */
+  @Override
+  public void onFlush(IntervalMetrics latestMetrics) {
+    PendingFlush pendingFlush = new PendingFlush(latestMetrics, clock.millis());
+    while (!pendingFlushes.offer(pendingFlush)) {
+      if (pendingFlushes.poll() != null) {
+        dropped.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Move the maximum lag and the flushed metrics dropped since the last call to the listener rate and counter of the provided metrics
+   *
+   * @param metrics Metrics being flushed
+   */
+  public void flushTo(IntervalMetrics metrics) {
+    long nowMs = clock.millis();
+    long lagMs = maxLagMs.getAndSet(0);
+    long handOffTimeMs = processedHandOffTimeMs;
+    if (handOffTimeMs >= 0) {
+      lagMs = Math.max(lagMs, nowMs - handOffTimeMs);
+    }
+    PendingFlush oldest = pendingFlushes.peek();
+    if (oldest != null) {
+      lagMs = Math.max(lagMs, nowMs - oldest.handOffTimeMs);
+    }
+    metrics.putRate(lagRateId, lagMs);
+    long droppedCount = dropped.getAndSet(0);
+    if (droppedCount > 0) {
+      metrics.incrBy(droppedCounterId, droppedCount);
+    }
+  }
+
+  /**
+   * Stop the listener thread, the pending metrics are discarded
+   */
+  public void stop() {
+    listenerThread.interrupt();
+    try {
+      listenerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Number of flushed metrics waiting for the listener
+   *
+   * @return Pending flush count
+   */
+  int getPendingFlushCount() {
+    return pendingFlushes.size();
+  }
+
+  /**
+   * Whether the listener thread is waiting for flushed metrics, the lag of the last ones processed being recorded
+   *
+   * @return True if no flushed metrics are pending nor being processed
+   */
+  boolean isIdle() {
+    return processedHandOffTimeMs < 0 && pendingFlushes.isEmpty();
+  }
+
+  private void processFlushes() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        PendingFlush pendingFlush = pendingFlushes.take();
+        processedHandOffTimeMs = pendingFlush.handOffTimeMs;
+        try {
+          listener.onFlush(pendingFlush.metrics);
+        } catch (RuntimeException e) {
+          LOG.error("Flush listener {} failed", name, e);
+        }
+        long lagMs = clock.millis() - pendingFlush.handOffTimeMs;
+        maxLagMs.accumulateAndGet(lagMs, Math::max);
+        processedHandOffTimeMs = -1L;
+      }
+    } catch (InterruptedException e) {
+      // The aggregator is being stopped
+    }
+  }
+
+  /**
+   * Flushed metrics waiting for the listener
+   */
+  private static class PendingFlush {
+    private IntervalMetrics metrics;
+    private long handOffTimeMs;
+
+    private PendingFlush(IntervalMetrics metrics, long handOffTimeMs) {
+      this.metrics = metrics;
+      this.handOffTimeMs = handOffTimeMs;
+    }
+  }
+}
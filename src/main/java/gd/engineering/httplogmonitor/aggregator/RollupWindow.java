@@ -0,0 +1,112 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.MetricsFlushListener;
+
+/**
+ * Window longer than the aggregator flush interval, e.g 1 minute windows on top of 10 seconds intervals, flushed to its own metrics store and listeners.
+ * <p>
+ * The window length is a multiple of the flush interval and both are aligned on the clock boundaries: the window metrics are the merge of
+ * the interval metrics flushed by the aggregator, the window being flushed along with its last interval. The rates are computed over the actual window length.
+ * <p>
+ * A window is only fed by the aggregator flush thread
+ */
+public class RollupWindow {
+
+  private long windowMs;
+  private MetricsStore metricsStore;
+  private Clock clock;
+  private List<MetricsFlushListener> flushListeners = new ArrayList<>();
+  private List<QueuedFlushListener> queuedFlushListeners = new ArrayList<>();
+  private IntervalMetrics currentMetrics;
+  private long windowStartTime;
+  private long windowEndTime;
+
+  /**
+   * Build a new rollup window
+   *
+   * @param windowMs     Window length in milliseconds
+   * @param metricsStore Metrics store of the windows
+   * @param clock        System clock
+   */
+  RollupWindow(long windowMs, MetricsStore metricsStore, Clock clock) {
+    this.windowMs = windowMs;
+    this.metricsStore = metricsStore;
+    this.clock = clock;
+  }
+
+  public long getWindowMs() {
+    return windowMs;
+  }
+
+  /**
+   * Add a new listener to the flush events of this window
+   *
+   * @param listener Flush listener
+   */
+  public void addStatsFlushListener(MetricsFlushListener listener) {
+    flushListeners.add(listener);
+  }
+
+  /**
+   * Add a new listener to the flush events of this window, notified through its own bounded queue and thread
+   *
+   * @param name          Listener name, distinct from the aggregator listener names
+   * @param listener      Flush listener
+   * @param queueCapacity Maximum number of flush events waiting for the listener, the oldest ones being dropped
+   */
+  public void addStatsFlushListener(String name, MetricsFlushListener listener, int queueCapacity) {
+    QueuedFlushListener queuedListener = new QueuedFlushListener(name, listener, queueCapacity, clock);
+    queuedFlushListeners.add(queuedListener);
+    flushListeners.add(queuedListener);
+  }
+
+  /**
+   * Merge the counters of an interval flushed by the aggregator, flushing the window when the interval reaches its end.
+   * The window starts with the first interval added, its end is the next window boundary
+   *
+   * @param intervalMetrics Interval metrics, with their start and end times set
+   */
+  void add(IntervalMetrics intervalMetrics) {
+    if (currentMetrics == null) {
+      startWindow(intervalMetrics.getStartTime());
+    }
+    currentMetrics.merge(intervalMetrics);
+    if (intervalMetrics.getEndTime() >= windowEndTime) {
+      // The aggregator may have skipped boundaries, the window then ends with the interval
+      flush(Math.max(windowEndTime, intervalMetrics.getEndTime()));
+    }
+  }
+
+  /**
+   * Stop the queued listeners
+   */
+  void stop() {
+    queuedFlushListeners.forEach(QueuedFlushListener::stop);
+  }
+
+  private void flush(long endTime) {
+    IntervalMetrics windowMetrics = currentMetrics;
+    windowMetrics.setStartTime(windowStartTime);
+    windowMetrics.setEndTime(endTime);
+    queuedFlushListeners.forEach(listener -> listener.flushTo(windowMetrics));
+    windowMetrics.computeRates(endTime - windowStartTime, TimeUnit.SECONDS);
+    windowMetrics.compact();
+    if (metricsStore.add(windowMetrics)) {
+      flushListeners.forEach(listener -> listener.onFlush(windowMetrics));
+    }
+    startWindow(endTime);
+  }
+
+  private void startWindow(long startTime) {
+    currentMetrics = new IntervalMetrics();
+    windowStartTime = startTime;
+    windowEndTime = BlockingStatsAggregator.alignedBoundary(startTime, windowMs) + windowMs;
+  }
+}
@@ -0,0 +1,197 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
+import gd.engineering.httplogmonitor.queue.FanInLogLineQueue;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+
+/**
+ * Log to metric aggregator spreading the aggregation over several shard threads.
+ * <p>
+ * Each shard drains its own log queues, e.g the queues of some of the parser workers, into its own metrics:
+ * the metrics of a shard are only written by the shard thread, the shards do not share any write.
+ * At each flush, on the clock boundaries of the flush interval, the aggregator thread asks every shard to hand over its metrics, the shard starting new ones right after its current drain,
+ * then merges them into the metrics of the interval flushed to the metrics store and sent to the listeners.
+ * <p>
+ * A shard hands over its metrics within a poll timeout: as for the single thread aggregator, the lines are bucketed to the poll timeout precision.
+ * On {@link #stop()}, each shard drains its queues before handing over its last metrics.
+ * The barrier lines drained by a shard are handed over with its metrics and run once the merged interval has been flushed
+ */
+public class ShardedStatsAggregator extends BlockingStatsAggregator {
+
+  private List<Shard> shards;
+
+  /**
+   * Build a new sharded aggregator on the provided log queues, flushing in the metrics store along with the tailer overload counters.
+   * The queues are spread among the shards, there cannot be more shards than queues.
+   * The log queue poll frequency is provided by pollTimeoutMs and the flush frequency is provided by flushIntervalMs.
+   * The poll frequency has to be lower than the flush interval
+   *
+   * @param logQueues        Log queues, each one filled by its own producer
+   * @param shardCount       Number of shards, capped to the number of queues
+   * @param waitStrategy     Shard wait strategy while all its queues are empty
+   * @param overloadCounters Lines dropped and sampled out by the tailer, null if not tracked
+   * @param metricsStore     Metrics store
+   * @param clock            System clock
+   * @param pollTimeoutMs    Log queue poll frequency in milliseconds
+   * @param flushIntervalMs  Aggregator flush frequency in milliseconds
+   * @throws IllegalArgumentException if poll timeout is greater than flush interval or the shard count is not strictly positive
+   */
+  public ShardedStatsAggregator(List<? extends LogLineConsumerQueue> logQueues, int shardCount, QueueWaitStrategy waitStrategy, OverloadCounters overloadCounters, MetricsStore metricsStore,
+                                Clock clock, long pollTimeoutMs, long flushIntervalMs) {
+    super(null, overloadCounters, metricsStore, clock, pollTimeoutMs, flushIntervalMs);
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Aggregator shard count has to be strictly positive");
+    }
+    int actualShardCount = Math.min(shardCount, logQueues.size());
+    this.shards = new ArrayList<>();
+    for (int i = 0; i < actualShardCount; i++) {
+      List<LogLineConsumerQueue> shardQueues = new ArrayList<>();
+      for (int queue = i; queue < logQueues.size(); queue += actualShardCount) {
+        shardQueues.add(logQueues.get(queue));
+      }
+      LogLineConsumerQueue shardQueue = shardQueues.size() == 1 ? shardQueues.get(0) : new FanInLogLineQueue(shardQueues, waitStrategy);
+      shards.add(new Shard(shardQueue, pollTimeoutMs, "aggregator-shard-" + (i + 1)));
+    }
+  }
+
+  @Override
+  public void run() {
+    shards.forEach(Thread::start);
+    startFlushThread();
+    long intervalStartTime = clock.millis();
+    long nextFlushTime = alignedBoundary(intervalStartTime, flushIntervalMs) + flushIntervalMs;
+    try {
+      while (running) {
+        long currentTime = clock.millis();
+        if (currentTime >= nextFlushTime) {
+          long intervalEndTime = alignedBoundary(currentTime, flushIntervalMs);
+          handOff(collectShards(), intervalStartTime, intervalEndTime);
+          intervalStartTime = intervalEndTime;
+          nextFlushTime = intervalEndTime + flushIntervalMs;
+        } else {
+          // Checks for a stop within a poll timeout
+          TimeUnit.MILLISECONDS.sleep(Math.min(pollTimeoutMs, nextFlushTime - currentTime));
+        }
+      }
+      shards.forEach(Shard::requestLastHandover);
+      handOff(collectShards(), intervalStartTime, Math.max(clock.millis(), intervalStartTime));
+    } catch (InterruptedException e) {
+      running = false;
+    } finally {
+      stopShards();
+      stopFlushThread();
+    }
+  }
+
+  /**
+   * Ask every shard for its metrics and merge them
+   *
+   * @return Merged metrics of all the shards
+   * @throws InterruptedException If interrupted while waiting for a shard
+   */
+  IntervalMetrics collectShards() throws InterruptedException {
+    shards.forEach(Shard::requestHandover);
+    List<IntervalMetrics> shardMetrics = new ArrayList<>(shards.size());
+    for (Shard shard : shards) {
+      shardMetrics.add(shard.handover.take());
+      // Published by the handover
+      shard.handedOverBarriers.forEach(this::addBarrier);
+    }
+    return IntervalMetrics.mergeAll(shardMetrics);
+  }
+
+  /**
+   * Number of shard threads
+   *
+   * @return Shard count
+   */
+  int getShardCount() {
+    return shards.size();
+  }
+
+  private void stopShards() {
+    shards.forEach(Thread::interrupt);
+    try {
+      for (Shard shard : shards) {
+        shard.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Shard thread aggregating its log queue into its own metrics, handed over on request
+   */
+  private static class Shard extends Thread {
+    private LogLineConsumerQueue queue;
+    private long pollTimeoutMs;
+    private IntervalMetrics currentMetrics = new IntervalMetrics();
+    private List<Runnable> barriers = new ArrayList<>();
+    private List<Runnable> handedOverBarriers;
+    private volatile boolean handoverRequested;
+    private volatile boolean lastHandover;
+    private BlockingQueue<IntervalMetrics> handover = new ArrayBlockingQueue<>(1);
+
+    private Shard(LogLineConsumerQueue queue, long pollTimeoutMs, String name) {
+      super(name);
+      this.queue = queue;
+      this.pollTimeoutMs = pollTimeoutMs;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!isInterrupted()) {
+          queue.drain(this::record, pollTimeoutMs);
+          if (handoverRequested) {
+            handoverRequested = false;
+            if (lastHandover) {
+              drainRemaining(queue, this::record);
+            }
+            handedOverBarriers = barriers;
+            barriers = new ArrayList<>();
+            handover.put(currentMetrics);
+            if (lastHandover) {
+              return;
+            }
+            currentMetrics = new IntervalMetrics();
+          }
+        }
+      } catch (InterruptedException e) {
+        // The aggregator is being stopped
+      }
+    }
+
+    private void requestHandover() {
+      handoverRequested = true;
+    }
+
+    /**
+     * The next handover is the last one, once the shard queues are drained
+     */
+    private void requestLastHandover() {
+      lastHandover = true;
+    }
+
+    private void record(HttpLogLine logLine) {
+      if (logLine.getBarrier() != null) {
+        barriers.add(logLine.getBarrier());
+        return;
+      }
+      HttpLogMetrics.record(currentMetrics, logLine);
+    }
+  }
+}
@@ -18,8 +18,8 @@ abstract class Alert {
   private static final DateTimeFormatter ALERT_DATETIME_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy HH:mm:ss");
   private boolean alerting;
   private long lastCheck;
-  private int value;
-  private int threshold;
+  private double value;
+  private double threshold;
   private int alertWindowInMs;
   private int recoveryWindowInMs;
 
@@ -30,7 +30,7 @@ abstract class Alert {
    * @param alertWindowInMs    Evaluation window in milliseconds
    * @param recoveryWindowInMs Recovery window in milliseconds
    */
-  Alert(int threshold, int alertWindowInMs, int recoveryWindowInMs) {
+  Alert(double threshold, int alertWindowInMs, int recoveryWindowInMs) {
     this.threshold = threshold;
     this.alertWindowInMs = alertWindowInMs;
     this.recoveryWindowInMs = recoveryWindowInMs;
@@ -44,7 +44,7 @@ abstract class Alert {
    * @param evaluationWindowMs Duration of the evaluation window in milliseconds
    * @return The current value associated to metric monitored by this alert
    */
-  abstract int computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs);
+  abstract double computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs);
 
   /**
    * Evaluate the provided value against the alert rule
@@ -52,7 +52,7 @@ abstract class Alert {
    * @param alertValue Alert value
    * @return True if the value triggers the alert, false otherwise
    */
-  abstract boolean evaluate(int alertValue);
+  abstract boolean evaluate(double alertValue);
 
   /**
    * Retrieve the alert message detailing this alert
@@ -95,11 +95,11 @@ abstract class Alert {
     this.lastCheck = lastCheck;
   }
 
-  public int getValue() {
+  public double getValue() {
     return value;
   }
 
-  public void setValue(int value) {
+  public void setValue(double value) {
     this.value = value;
   }
 
@@ -111,7 +111,7 @@ abstract class Alert {
     return recoveryWindowInMs;
   }
 
-  public int getThreshold() {
+  public double getThreshold() {
     return threshold;
   }
 }
@@ -56,7 +56,7 @@ public class AlertBuilder {
     String[] alertList = alertListStr.split(ALERTS_PROPERTY_SEPARATOR);
     for (String alertName : alertList) {
       try {
-        int threshold = Integer.parseInt(properties.getProperty(ALERT_PREFIX_PROPERTY + alertName + ALERT_THRESHOLD_SUFFIX));
+        double threshold = Double.parseDouble(properties.getProperty(ALERT_PREFIX_PROPERTY + alertName + ALERT_THRESHOLD_SUFFIX));
         int alertWindowMs = Integer.parseInt(properties.getProperty(ALERT_PREFIX_PROPERTY + alertName + ALERT_WINDOW_ALERT_SUFFIX));
         int alertRecoveryMs = Integer.parseInt(properties.getProperty(ALERT_PREFIX_PROPERTY + alertName + ALERT_WINDOW_RECOVERY_SUFFIX));
         Alert alert = buildAlert(alertName, threshold, alertWindowMs, alertRecoveryMs);
@@ -82,12 +82,12 @@ public class AlertBuilder {
    * @return An instance of the alert
    * @throws IllegalArgumentException If no alerts exist with the provided name
    */
-  static Alert buildAlert(String name, int threshold, int alertWindowMs, int recoveryWindowMs) {
+  static Alert buildAlert(String name, double threshold, int alertWindowMs, int recoveryWindowMs) {
     if (!SUPPORTED_ALERTS.containsKey(name)) {
       throw new IllegalArgumentException("No alerts supported named " + name);
     }
     try {
-      return SUPPORTED_ALERTS.get(name).getConstructor(int.class, int.class, int.class).newInstance(threshold, alertWindowMs, recoveryWindowMs);
+      return SUPPORTED_ALERTS.get(name).getConstructor(double.class, int.class, int.class).newInstance(threshold, alertWindowMs, recoveryWindowMs);
     } catch (Exception e) {
       LOG.error("Cannot instantiate alert {}", name);
     }
@@ -1,6 +1,5 @@
 package gd.engineering.httplogmonitor.alerter;
 
-import java.time.Clock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,7 +19,6 @@ public class AlertTask implements Runnable {
   private Alert alert;
   private MetricsStore metricsStore;
   private IntervalMetrics latestStats;
-  private Clock clock;
 
   /**
    * Build a new alert task on the provided alert
@@ -28,18 +26,17 @@ public class AlertTask implements Runnable {
    * @param alert        Alert to be run
    * @param latestStats  Latest flused stats
    * @param metricsStore Metrics store
-   * @param clock        System clock
    */
-  AlertTask(Alert alert, IntervalMetrics latestStats, MetricsStore metricsStore, Clock clock) {
+  AlertTask(Alert alert, IntervalMetrics latestStats, MetricsStore metricsStore) {
     this.alert = alert;
     this.metricsStore = metricsStore;
     this.latestStats = latestStats;
-    this.clock = clock;
   }
 
   @Override
   public void run() {
-    updateAlert(this.alert, this.metricsStore, latestStats.getEndTime(), clock.millis());
+    // Evaluated at the end of the flushed interval, which is the log time when the lines are aggregated by event time
+    updateAlert(this.alert, this.metricsStore, latestStats.getEndTime(), latestStats.getEndTime());
   }
 
   /**
@@ -49,11 +46,11 @@ public class AlertTask implements Runnable {
    * @param alert              Alert to run
    * @param store              Metrics store
    * @param latestCycleEndTime Latest metrics flush end time
-   * @param currentTimeMs      Current system time
+   * @param currentTimeMs      Time the alert is evaluated at
    */
   void updateAlert(Alert alert, MetricsStore store, long latestCycleEndTime, long currentTimeMs) {
     boolean isAlertCurrentlyActive = alert.isAlerting();
-    int currentValue = alert.computeAlertValue(store, currentTimeMs, isAlertCurrentlyActive ? alert.getRecoveryWindowInMs() : alert.getAlertWindowInMs());
+    double currentValue = alert.computeAlertValue(store, currentTimeMs, isAlertCurrentlyActive ? alert.getRecoveryWindowInMs() : alert.getAlertWindowInMs());
     alert.setValue(currentValue);
     alert.setLastCheck(latestCycleEndTime);
     boolean isAlerting = alert.evaluate(currentValue);
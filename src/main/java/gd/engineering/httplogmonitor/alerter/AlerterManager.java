@@ -1,6 +1,5 @@
 package gd.engineering.httplogmonitor.alerter;
 
-import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -20,18 +19,15 @@ public class AlerterManager implements MetricsFlushListener {
   private MetricsStore metricsStore;
   private List<Alert> alerts;
   private ExecutorService alertTaskPool;
-  private Clock clock;
 
   /**
    * Build a new AlerterManager
    *
    * @param store        Metrics store
    * @param taskPoolSize Size of the executor service managing the alerts
-   * @param clock        Clock provided to the alerts
    */
-  public AlerterManager(MetricsStore store, int taskPoolSize, Clock clock) {
+  public AlerterManager(MetricsStore store, int taskPoolSize) {
     this.metricsStore = store;
-    this.clock = clock;
     this.alerts = new ArrayList<>();
     this.alertTaskPool = Executors.newFixedThreadPool(taskPoolSize);
   }
@@ -39,7 +35,7 @@ public class AlerterManager implements MetricsFlushListener {
   @Override
   public void onFlush(IntervalMetrics statsFlushed) {
     for (Alert alert : alerts) {
-      alertTaskPool.submit(new AlertTask(alert, statsFlushed, this.metricsStore, this.clock));
+      alertTaskPool.submit(new AlertTask(alert, statsFlushed, this.metricsStore));
     }
   }
 
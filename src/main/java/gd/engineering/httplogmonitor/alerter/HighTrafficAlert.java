@@ -8,23 +8,23 @@ import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
  */
 public class HighTrafficAlert extends Alert {
 
-  public HighTrafficAlert(int threshold, int alertWindowInMs, int recoveryWindowInMs) {
+  public HighTrafficAlert(double threshold, int alertWindowInMs, int recoveryWindowInMs) {
     super(threshold, alertWindowInMs, recoveryWindowInMs);
   }
 
   @Override
-  public int computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs) {
+  public double computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs) {
     return metricsStore.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, nowMs, evaluationWindowMs);
   }
 
   @Override
-  public boolean evaluate(int alertValue) {
+  public boolean evaluate(double alertValue) {
     return alertValue > getThreshold();
   }
 
   @Override
   public String getMessage() {
-    return String.format("High traffic generated an alert - hits = %d RPS, triggered at %s", getValue(), getLastCheckHumanReadable());
+    return String.format("High traffic generated an alert - hits = %.2f RPS, triggered at %s", getValue(), getLastCheckHumanReadable());
   }
 
 }
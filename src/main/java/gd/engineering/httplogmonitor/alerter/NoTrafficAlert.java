@@ -9,17 +9,17 @@ import static gd.engineering.httplogmonitor.model.HttpLogMetrics.COUNTER_HITS;
  */
 public class NoTrafficAlert extends Alert {
 
-  public NoTrafficAlert(int threshold, int alertWindowInMs, int recoveryWindowInMs) {
+  public NoTrafficAlert(double threshold, int alertWindowInMs, int recoveryWindowInMs) {
     super(threshold, alertWindowInMs, recoveryWindowInMs);
   }
 
   @Override
-  public int computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs) {
+  public double computeAlertValue(MetricsStore metricsStore, long nowMs, long evaluationWindowMs) {
     return metricsStore.getSumCounterValue(COUNTER_HITS, nowMs, evaluationWindowMs);
   }
 
   @Override
-  public boolean evaluate(int alertValue) {
+  public boolean evaluate(double alertValue) {
     return alertValue > getThreshold();
   }
 
@@ -0,0 +1,70 @@
+package gd.engineering.httplogmonitor.backfill;
+
+/**
+ * POJO reporting the work done by a {@link gd.engineering.httplogmonitor.backfill.LogFileBackfill}
+ */
+public class BackfillReport {
+  private long byteCount;
+  private long lineCount;
+  private long invalidLineCount;
+  private int intervalCount;
+  private int rangeCount;
+  private long elapsedMs;
+
+  public BackfillReport(long byteCount, long lineCount, long invalidLineCount, int intervalCount, int rangeCount, long elapsedMs) {
+    this.byteCount = byteCount;
+    this.lineCount = lineCount;
+    this.invalidLineCount = invalidLineCount;
+    this.intervalCount = intervalCount;
+    this.rangeCount = rangeCount;
+    this.elapsedMs = elapsedMs;
+  }
+
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  public long getLineCount() {
+    return lineCount;
+  }
+
+  public long getInvalidLineCount() {
+    return invalidLineCount;
+  }
+
+  public int getIntervalCount() {
+    return intervalCount;
+  }
+
+  public int getRangeCount() {
+    return rangeCount;
+  }
+
+  public long getElapsedMs() {
+    return elapsedMs;
+  }
+
+  /**
+   * Throughput in megabytes (2^20 bytes) per second
+   *
+   * @return Throughput, 0 if nothing has been processed
+   */
+  public double getMegaBytesPerSecond() {
+    return elapsedMs == 0 ? 0. : byteCount * 1000. / (1024. * 1024. * elapsedMs);
+  }
+
+  /**
+   * Throughput in lines per second
+   *
+   * @return Throughput, 0 if nothing has been processed
+   */
+  public double getLinesPerSecond() {
+    return elapsedMs == 0 ? 0. : lineCount * 1000. / elapsedMs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d bytes | %d lines (%d invalid) | %d intervals | %d ranges in %d ms: %.1f MB/s | %.0f lines/s",
+        byteCount, lineCount, invalidLineCount, intervalCount, rangeCount, elapsedMs, getMegaBytesPerSecond(), getLinesPerSecond());
+  }
+}
@@ -0,0 +1,121 @@
+package gd.engineering.httplogmonitor.backfill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.InvalidLogLineException;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.tailer.HttpLogParser;
+import gd.engineering.httplogmonitor.tailer.LineFramer;
+
+/**
+ * Parses and aggregates the lines of a byte range of a log file, the range being aligned on line starts.
+ * <p>
+ * Lines are bucketed by their log timestamp into intervals of the provided length, aligned on the epoch,
+ * so that the partial metrics of all the ranges can be merged interval by interval.
+ * <p>
+ * Each range owns its parser, framer and read buffer: ranges are processed in parallel without any shared state
+ */
+class ByteRangeAggregator implements Callable<NavigableMap<Long, IntervalMetrics>> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ByteRangeAggregator.class);
+  private FileChannel channel;
+  private long start;
+  private long end;
+  private HttpLogParser parser;
+  private long intervalMs;
+  private ByteBuffer readBuffer;
+  private LineFramer framer;
+  private long lineCount;
+  private long invalidLineCount;
+
+  /**
+   * Build a new aggregator on the provided byte range
+   *
+   * @param channel    Log file channel, only read with positional reads so that it can be shared between ranges
+   * @param start      Range start offset, inclusive, at a line start
+   * @param end        Range end offset, exclusive, at a line start or the end of the file
+   * @param parser     Parser dedicated to this range
+   * @param intervalMs Length of the aggregation intervals in milliseconds
+   * @param bufferSize Size of the direct read buffer in bytes
+   */
+  ByteRangeAggregator(FileChannel channel, long start, long end, HttpLogParser parser, long intervalMs, int bufferSize) {
+    this.channel = channel;
+    this.start = start;
+    this.end = end;
+    this.parser = parser;
+    this.intervalMs = intervalMs;
+    this.readBuffer = ByteBuffer.allocateDirect(bufferSize);
+    this.framer = new LineFramer(StandardCharsets.UTF_8, bufferSize);
+  }
+
+  /**
+   * Parse and aggregate every line of the range
+   *
+   * @return Metrics of the range by interval start time
+   * @throws IOException If the log file cannot be read
+   */
+  @Override
+  public NavigableMap<Long, IntervalMetrics> call() throws IOException {
+    NavigableMap<Long, IntervalMetrics> metrics = new TreeMap<>();
+    List<String> lines = new ArrayList<>();
+    long position = start;
+    while (position < end) {
+      readBuffer.clear();
+      if (end - position < readBuffer.capacity()) {
+        readBuffer.limit((int) (end - position));
+      }
+      int read = channel.read(readBuffer, position);
+      if (read <= 0) {
+        break;
+      }
+      position += read;
+      readBuffer.flip();
+      framer.frame(readBuffer, lines);
+      aggregate(lines, metrics);
+    }
+    // The last line of the file may have no line feed
+    framer.flush(lines);
+    aggregate(lines, metrics);
+    return metrics;
+  }
+
+  long getLineCount() {
+    return lineCount + framer.getMalformedLineCount();
+  }
+
+  long getInvalidLineCount() {
+    return invalidLineCount + framer.getMalformedLineCount();
+  }
+
+  /**
+   * Parse the lines, record them in the metrics of their interval and clear them
+   */
+  private void aggregate(List<String> lines, NavigableMap<Long, IntervalMetrics> metrics) {
+    for (String line : lines) {
+      lineCount++;
+      try {
+        HttpLogLine logLine = parser.parse(line);
+        long timestampMs = logLine.getTimestampMs();
+        long intervalStart = timestampMs - Math.floorMod(timestampMs, intervalMs);
+        HttpLogMetrics.record(metrics.computeIfAbsent(intervalStart, k -> new IntervalMetrics()), logLine);
+      } catch (InvalidLogLineException e) {
+        invalidLineCount++;
+        LOG.debug("Invalid log line skipped", e);
+      }
+    }
+    lines.clear();
+  }
+}
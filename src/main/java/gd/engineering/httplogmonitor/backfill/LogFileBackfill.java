@@ -0,0 +1,205 @@
+package gd.engineering.httplogmonitor.backfill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricsStore;
+import gd.engineering.httplogmonitor.tailer.HttpLogParser;
+
+/**
+ * Batch processing of an existing log file, e.g for incident postmortems on historical access logs.
+ * <p>
+ * Instead of tailing the file line by line, the file is split in byte ranges aligned on line starts, one per thread.
+ * Each range is parsed and aggregated on its own thread by a {@link gd.engineering.httplogmonitor.backfill.ByteRangeAggregator}
+ * with its own parser, bucketing the lines by their log timestamp. The partial metrics of the ranges are then merged interval by interval
+ * and added to the metrics store in time order, the intervals being keyed by their log time instead of the wall clock time.
+ * As the aggregators flush the idle intervals, an empty interval is added for each interval without any line between the first and the last line,
+ * so that the averages over a window of the backfilled range count the idle intervals.
+ */
+public class LogFileBackfill {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogFileBackfill.class);
+  private static final byte LF = '\n';
+  private static final int ALIGNMENT_BUFFER_SIZE = 8192;
+  private Path logFile;
+  private Supplier<HttpLogParser> parserFactory;
+  private MetricsStore metricsStore;
+  private int threadCount;
+  private int bufferSize;
+  private long intervalMs;
+
+  /**
+   * Build a new backfill of the provided log file
+   *
+   * @param logFile       Log file to be processed
+   * @param parserFactory Parser factory, called once per range as parsers are not thread safe
+   * @param metricsStore  Metrics store receiving the metrics of each interval
+   * @param threadCount   Number of threads, also the number of byte ranges the file is split in
+   * @param bufferSize    Size in bytes of the direct read buffer of each thread
+   * @param intervalMs    Length of the aggregation intervals in milliseconds
+   * @throws IllegalArgumentException If the thread count is not strictly positive
+   */
+  public LogFileBackfill(Path logFile, Supplier<HttpLogParser> parserFactory, MetricsStore metricsStore, int threadCount, int bufferSize, long intervalMs) {
+    if (threadCount <= 0) {
+      throw new IllegalArgumentException("Backfill thread count has to be strictly positive");
+    }
+    this.logFile = logFile;
+    this.parserFactory = parserFactory;
+    this.metricsStore = metricsStore;
+    this.threadCount = threadCount;
+    this.bufferSize = bufferSize;
+    this.intervalMs = intervalMs;
+  }
+
+  /**
+   * Process the whole log file and store its metrics
+   *
+   * @return Backfill report
+   * @throws IOException          If the log file cannot be read
+   * @throws InterruptedException If interrupted while waiting for the ranges to be processed
+   */
+  public BackfillReport run() throws IOException, InterruptedException {
+    long startNanos = System.nanoTime();
+    AtomicInteger threadIndex = new AtomicInteger();
+    ExecutorService rangePool = Executors.newFixedThreadPool(threadCount, r -> new Thread(r, "backfill-" + threadIndex.incrementAndGet()));
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+      long[] boundaries = splitOnLines(channel, threadCount);
+      List<ByteRangeAggregator> ranges = new ArrayList<>();
+      List<Future<NavigableMap<Long, IntervalMetrics>>> results = new ArrayList<>();
+      for (int i = 0; i < boundaries.length - 1; i++) {
+        if (boundaries[i] < boundaries[i + 1]) {
+          ByteRangeAggregator range = new ByteRangeAggregator(channel, boundaries[i], boundaries[i + 1], parserFactory.get(), intervalMs, bufferSize);
+          ranges.add(range);
+          results.add(rangePool.submit(range));
+        }
+      }
+      NavigableMap<Long, IntervalMetrics> merged = new TreeMap<>();
+      for (Future<NavigableMap<Long, IntervalMetrics>> result : results) {
+        merge(get(result), merged);
+      }
+      fillGaps(merged);
+      store(merged);
+      long lineCount = ranges.stream().mapToLong(ByteRangeAggregator::getLineCount).sum();
+      long invalidLineCount = ranges.stream().mapToLong(ByteRangeAggregator::getInvalidLineCount).sum();
+      BackfillReport report = new BackfillReport(boundaries[boundaries.length - 1], lineCount, invalidLineCount, merged.size(), ranges.size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      LOG.info("Backfill of {}: {}", logFile, report);
+      return report;
+    } finally {
+      rangePool.shutdownNow();
+    }
+  }
+
+  /**
+   * Split the file in byte ranges of roughly the same size, each boundary being moved forward to the next line start
+   *
+   * @param channel    File channel
+   * @param rangeCount Number of ranges
+   * @return The rangeCount + 1 range boundaries, from 0 to the file size. Two consecutive boundaries are equal for an empty range
+   * @throws IOException If the file cannot be read
+   */
+  static long[] splitOnLines(FileChannel channel, int rangeCount) throws IOException {
+    long size = channel.size();
+    long[] boundaries = new long[rangeCount + 1];
+    boundaries[rangeCount] = size;
+    ByteBuffer buffer = ByteBuffer.allocate(ALIGNMENT_BUFFER_SIZE);
+    for (int i = 1; i < rangeCount; i++) {
+      long target = Math.max(size / rangeCount * i, boundaries[i - 1]);
+      boundaries[i] = target == 0 ? 0 : nextLineStart(channel, target, size, buffer);
+    }
+    return boundaries;
+  }
+
+  /**
+   * Find the first line start at or after the provided offset
+   *
+   * @return Line start offset or the file size if no line starts after the offset
+   */
+  private static long nextLineStart(FileChannel channel, long offset, long size, ByteBuffer buffer) throws IOException {
+    // A line starts at offset if the previous byte is a line feed
+    long position = offset - 1;
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == LF) {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Merge the metrics of a range, interval by interval
+   */
+  private void merge(NavigableMap<Long, IntervalMetrics> rangeMetrics, NavigableMap<Long, IntervalMetrics> merged) {
+    for (Map.Entry<Long, IntervalMetrics> entry : rangeMetrics.entrySet()) {
+      IntervalMetrics intervalMetrics = merged.get(entry.getKey());
+      if (intervalMetrics == null) {
+        merged.put(entry.getKey(), entry.getValue());
+      } else {
+        intervalMetrics.merge(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Add an empty interval for each interval without any line between the first and the last interval
+   */
+  private void fillGaps(NavigableMap<Long, IntervalMetrics> merged) {
+    if (merged.isEmpty()) {
+      return;
+    }
+    for (long intervalStart = merged.firstKey(); intervalStart < merged.lastKey(); intervalStart += intervalMs) {
+      merged.computeIfAbsent(intervalStart, k -> new IntervalMetrics());
+    }
+  }
+
+  /**
+   * Compute the rates of each merged interval and add it to the store, in time order
+   */
+  private void store(NavigableMap<Long, IntervalMetrics> merged) {
+    merged.forEach((intervalStart, metrics) -> {
+      metrics.setStartTime(intervalStart);
+      metrics.setEndTime(intervalStart + intervalMs);
+      metrics.computeRates(intervalMs, TimeUnit.SECONDS);
+      metrics.compact();
+      metricsStore.add(metrics);
+    });
+  }
+
+  private NavigableMap<Long, IntervalMetrics> get(Future<NavigableMap<Long, IntervalMetrics>> result) throws IOException, InterruptedException {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Backfill range failed", e.getCause());
+    }
+  }
+}
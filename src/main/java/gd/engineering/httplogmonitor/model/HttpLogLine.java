@@ -1,22 +1,37 @@
 package gd.engineering.httplogmonitor.model;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 /**
  * POJO representing an apache access.log line.
  * Stores the original log line as well
+ * <p>
+ * The log timestamp is kept as epoch milliseconds and zone offset, the {@link java.time.ZonedDateTime} is only built on demand
+ * <p>
+ * The weight is the number of log lines this line stands for in the metrics: 1, or more when the lines are sampled under overload
+ * <p>
+ * The source is the log file the line has been read from when several log files are tailed, null otherwise
+ * <p>
+ * A barrier line stands for no log line: it carries an action to run once the lines published before it have been flushed to the metrics store,
+ * e.g saving a tailer checkpoint
  */
 public class HttpLogLine {
   private String remoteHost;
   private String remoteUser;
   private String user;
-  private ZonedDateTime dateTime;
+  private long timestampMs;
+  private int zoneOffsetSeconds;
   private String fullRequest;
   private int statusCode;
   private int requestSize;
   private String httpMethod;
   private String section;
   private String originalLogLine;
+  private int weight = 1;
+  private String source;
+  private Runnable barrier;
 
   public String getRemoteHost() {
     return remoteHost;
@@ -43,11 +58,30 @@ public class HttpLogLine {
   }
 
   public ZonedDateTime getDateTime() {
-    return dateTime;
+    return ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneOffset.ofTotalSeconds(zoneOffsetSeconds));
   }
 
   public void setDateTime(ZonedDateTime dateTime) {
-    this.dateTime = dateTime;
+    setTimestamp(dateTime.toInstant().toEpochMilli(), dateTime.getOffset().getTotalSeconds());
+  }
+
+  public long getTimestampMs() {
+    return timestampMs;
+  }
+
+  public int getZoneOffsetSeconds() {
+    return zoneOffsetSeconds;
+  }
+
+  /**
+   * Set the log timestamp
+   *
+   * @param timestampMs       Log timestamp as epoch milliseconds
+   * @param zoneOffsetSeconds Zone offset of the log timestamp in seconds
+   */
+  public void setTimestamp(long timestampMs, int zoneOffsetSeconds) {
+    this.timestampMs = timestampMs;
+    this.zoneOffsetSeconds = zoneOffsetSeconds;
   }
 
   public String getFullRequest() {
@@ -98,13 +132,59 @@ public class HttpLogLine {
     this.httpMethod = httpMethod;
   }
 
+  public int getWeight() {
+    return weight;
+  }
+
+  public void setWeight(int weight) {
+    this.weight = weight;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  public Runnable getBarrier() {
+    return barrier;
+  }
+
+  public void setBarrier(Runnable barrier) {
+    this.barrier = barrier;
+  }
+
+  /**
+   * Copy every field of the provided log line, e.g to fill a reusable log line
+   *
+   * @param other Log line to copy
+   */
+  public void copyFrom(HttpLogLine other) {
+    this.remoteHost = other.remoteHost;
+    this.remoteUser = other.remoteUser;
+    this.user = other.user;
+    this.timestampMs = other.timestampMs;
+    this.zoneOffsetSeconds = other.zoneOffsetSeconds;
+    this.fullRequest = other.fullRequest;
+    this.statusCode = other.statusCode;
+    this.requestSize = other.requestSize;
+    this.httpMethod = other.httpMethod;
+    this.section = other.section;
+    this.originalLogLine = other.originalLogLine;
+    this.weight = other.weight;
+    this.source = other.source;
+    this.barrier = other.barrier;
+  }
+
   @Override
   public String toString() {
     return "HttpLogLine{" +
         "remoteHost='" + remoteHost + '\'' +
         ", remoteUser='" + remoteUser + '\'' +
         ", user='" + user + '\'' +
-        ", dateTime=" + dateTime +
+        ", dateTime=" + getDateTime() +
         ", fullRequest='" + fullRequest + '\'' +
         ", statusCode=" + statusCode +
         ", requestSize=" + requestSize +
@@ -1,16 +1,39 @@
 package gd.engineering.httplogmonitor.model;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.commons.lang3.StringUtils;
 
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry;
+
 /**
- * Metrics recorded by the http log monitor and helpful methods for section metrics
+ * Metrics recorded by the http log monitor and helpful methods for section metrics.
+ * <p>
+ * The counter ids of each section and file are interned once, the recording of a log line looks them up by http method, section and source
+ * without building any counter name
  */
 public class HttpLogMetrics {
   public static final String COUNTER_HITS = "hits";
   public static final String COUNTER_ERRORS = "errors";
   public static final String COUNTER_SUCCESSES = "successes";
   public static final String COUNTER_SECTION = "section";
+  public static final String COUNTER_FILE = "file";
+  public static final String COUNTER_DROPPED = "dropped";
+  public static final String COUNTER_SAMPLED = "sampled";
+  public static final String COUNTER_LATE = "late";
+  public static final String COUNTER_FUTURE = "future";
+  public static final String COUNTER_LISTENER = "listener";
+  public static final String RATE_LAG = "lag";
   public static final String DELIMITER = ":";
+  private static final int HITS_ID = MetricKeyRegistry.intern(COUNTER_HITS);
+  private static final int ERRORS_ID = MetricKeyRegistry.intern(COUNTER_ERRORS);
+  private static final int SUCCESSES_ID = MetricKeyRegistry.intern(COUNTER_SUCCESSES);
+  // Section counter ids by http method then section
+  private static final Map<String, Map<String, CounterIds>> SECTION_COUNTER_IDS = new ConcurrentHashMap<>();
+  // File counter ids by source
+  private static final Map<String, CounterIds> FILE_COUNTER_IDS = new ConcurrentHashMap<>();
 
   /**
    * Build the a section counter prefix.
@@ -42,6 +65,114 @@ public class HttpLogMetrics {
     return counterParts[1];
   }
 
+  /**
+   * Build the file counter prefix of a log line source.
+   * e.g: file:<source>
+   *
+   * @param source Log line source
+   * @return File counter prefix
+   */
+  public static String getFileCounterPrefix(String source) {
+    return COUNTER_FILE + DELIMITER + source;
+  }
+
+  /**
+   * Based upon a file counter, extracts the log file name, which may contain the delimiter
+   * e.g: file:/var/log/vhost1.log:hits will return /var/log/vhost1.log
+   *
+   * @param counter Any counter name
+   * @return The log file name
+   * @throws IllegalArgumentException If the counter is not a specific file counter
+   */
+  public static String getFileNameFromCounter(String counter) {
+    String prefix = COUNTER_FILE + DELIMITER;
+    int lastDelimiter = counter == null ? -1 : counter.lastIndexOf(DELIMITER);
+    if (counter == null || !counter.startsWith(prefix) || lastDelimiter < prefix.length()) {
+      throw new IllegalArgumentException("GetFileName: Invalid counter name " + counter);
+    }
+    return counter.substring(prefix.length(), lastDelimiter);
+  }
+
+  /**
+   * Build the counter prefix of a flush listener.
+   * e.g: listener:<listenername>
+   *
+   * @param listenerName Flush listener name
+   * @return Listener counter prefix
+   */
+  public static String getListenerCounterPrefix(String listenerName) {
+    return COUNTER_LISTENER + DELIMITER + listenerName;
+  }
+
+  /**
+   * Increment the metrics recorded for the provided log line, by the log line weight.
+   * Hits, errors, success overall, per section and per source file if any are recorded
+   *
+   * @param metrics Current interval metric
+   * @param logLine Log line to be processed
+   */
+  public static void record(IntervalMetrics metrics, HttpLogLine logLine) {
+    CounterIds sectionIds = getSectionCounterIds(logLine.getHttpMethod(), logLine.getSection());
+    int weight = logLine.getWeight();
+    metrics.incrBy(HITS_ID, weight);
+    int statusCode = logLine.getStatusCode();
+    if (statusCode >= 400) {
+      metrics.incrBy(sectionIds.errors, weight);
+      metrics.incrBy(ERRORS_ID, weight);
+    } else {
+      metrics.incrBy(sectionIds.successes, weight);
+      metrics.incrBy(SUCCESSES_ID, weight);
+    }
+    metrics.incrBy(sectionIds.hits, weight);
+    if (logLine.getSource() != null) {
+      CounterIds fileIds = FILE_COUNTER_IDS.get(logLine.getSource());
+      if (fileIds == null) {
+        fileIds = FILE_COUNTER_IDS.computeIfAbsent(logLine.getSource(), source -> new CounterIds(getFileCounterPrefix(source)));
+      }
+      metrics.incrBy(fileIds.hits, weight);
+      if (statusCode >= 400) {
+        metrics.incrBy(fileIds.errors, weight);
+      }
+    }
+  }
+
+  /**
+   * Look up the counter ids of a section, interning them the first time the section is seen
+   *
+   * @param httpMethod Http method
+   * @param section    Section
+   * @return Section counter ids
+   */
+  private static CounterIds getSectionCounterIds(String httpMethod, String section) {
+    // The lookups only allocate the first time, String.valueOf keeps the null values as "null" as in the counter names
+    String method = String.valueOf(httpMethod);
+    Map<String, CounterIds> methodSections = SECTION_COUNTER_IDS.get(method);
+    if (methodSections == null) {
+      methodSections = SECTION_COUNTER_IDS.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+    }
+    String sectionKey = String.valueOf(section);
+    CounterIds ids = methodSections.get(sectionKey);
+    if (ids == null) {
+      ids = methodSections.computeIfAbsent(sectionKey, s -> new CounterIds(getSectionCounterPrefix(method + s)));
+    }
+    return ids;
+  }
+
+  /**
+   * Interned ids of the hits, errors and successes counters sharing a prefix
+   */
+  private static class CounterIds {
+    private final int hits;
+    private final int errors;
+    private final int successes;
+
+    private CounterIds(String prefix) {
+      this.hits = MetricKeyRegistry.intern(prefix + DELIMITER + COUNTER_HITS);
+      this.errors = MetricKeyRegistry.intern(prefix + DELIMITER + COUNTER_ERRORS);
+      this.successes = MetricKeyRegistry.intern(prefix + DELIMITER + COUNTER_SUCCESSES);
+    }
+  }
+
   private HttpLogMetrics() {
   }
 }
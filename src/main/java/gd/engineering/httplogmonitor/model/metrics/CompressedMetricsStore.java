@@ -0,0 +1,151 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compressed in memory implementation of the metrics store, keeping the history column by column instead of interval by interval.
+ * <p>
+ * Each counter and each rate has its own {@link CompressedSeries}, holding the intervals in which it was recorded only: a section seen once
+ * costs nothing in the other intervals, where even a compacted interval keeps an id and a value per metric it holds.
+ * The interval start times and lengths form an additional series, used to count the intervals of a window.
+ * The series are compressed in fixed size blocks, the blocks of which all the intervals are older than the retention being dropped.
+ * <p>
+ * A window query decodes the blocks of the queried series overlapping the window in a streaming way, without materializing the intervals.
+ * The latest metrics are kept decoded, the counters are aggregated in the totals metrics for global values.
+ * <p>
+ * The metrics have to be added in time order: metrics not after the latest ones are refused.
+ * To manage the alerts, each average and sum method looks for a full evaluation window as the {@link InMemoryMetricsStore} does
+ */
+public class CompressedMetricsStore implements MetricsStore {
+
+  private long retentionMs;
+  // Start time and length of each interval
+  private CompressedSeries intervals = new CompressedSeries(false);
+  private Map<Integer, CompressedSeries> counterSeries = new HashMap<>();
+  private Map<Integer, CompressedSeries> rateSeries = new HashMap<>();
+  private IntervalMetrics latest;
+  private IntervalMetrics totals = new IntervalMetrics();
+  private long adds;
+
+  /**
+   * Build a new store
+   *
+   * @param retentionMs Retention in milliseconds, the intervals being dropped block by block once older
+   * @throws IllegalArgumentException If the retention is not strictly positive
+   */
+  public CompressedMetricsStore(long retentionMs) {
+    if (retentionMs <= 0) {
+      throw new IllegalArgumentException("Metrics store retention has to be strictly positive");
+    }
+    this.retentionMs = retentionMs;
+  }
+
+  /**
+   * Append the metrics to the series of the interval and of each of its metrics, dropping the blocks older than the retention
+   *
+   * @param stats New metrics to be added
+   * @return False if the metrics are not after the latest ones, they are not stored
+   */
+  @Override
+  public synchronized boolean add(IntervalMetrics stats) {
+    long startTime = stats.getStartTime();
+    if (latest != null && startTime <= latest.getStartTime()) {
+      return false;
+    }
+    intervals.append(startTime, stats.getEndTime() - startTime);
+    stats.getCounters().forEach((name, value) -> counterSeries.computeIfAbsent(MetricKeyRegistry.intern(name), id -> new CompressedSeries(false))
+        .append(startTime, value));
+    stats.getRates().forEach((name, value) -> rateSeries.computeIfAbsent(MetricKeyRegistry.intern(name), id -> new CompressedSeries(true))
+        .append(startTime, Double.doubleToRawLongBits(value)));
+    latest = stats;
+    totals.merge(stats);
+    // Blocks are dropped whole, looking for them once per block of intervals is enough
+    if (++adds % CompressedSeries.BLOCK_SAMPLES == 0) {
+      evict(startTime - retentionMs);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized long getTotalSumCounterValue(String counterName) {
+    return totals.getCounterValue(counterName);
+  }
+
+  @Override
+  public synchronized double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    long lowerBound = nowMs - timeFromNowMs;
+    if (latest == null || lowerBound < intervals.getFirstTime()) {
+      return 0;
+    }
+    int count = intervals.count(lowerBound, nowMs);
+    CompressedSeries series = rateSeries.get(MetricKeyRegistry.find(rateName));
+    return count == 0 || series == null ? 0 : series.sumDouble(lowerBound, nowMs) / count;
+  }
+
+  @Override
+  public synchronized double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    long lowerBound = nowMs - timeFromNowMs;
+    if (latest == null || timeFromNowMs < intervals.getFirstTime() || lowerBound < intervals.getFirstTime()) {
+      return 0;
+    }
+    int count = intervals.count(lowerBound, nowMs);
+    return count == 0 ? 0 : sumCounter(counterName, lowerBound, nowMs) / (double) count;
+  }
+
+  @Override
+  public synchronized long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    long lowerBound = nowMs - timeFromNowMs;
+    if (latest == null || timeFromNowMs < intervals.getFirstTime() || lowerBound < intervals.getFirstTime()) {
+      return 0;
+    }
+    return sumCounter(counterName, lowerBound, nowMs);
+  }
+
+  @Override
+  public synchronized IntervalMetrics getLatestMetrics() {
+    return latest;
+  }
+
+  @Override
+  public synchronized int getIntervalCount() {
+    return intervals.getSampleCount();
+  }
+
+  /**
+   * Memory used by the compressed series and the latest and total metrics
+   *
+   * @return Approximate memory usage in bytes
+   */
+  @Override
+  public synchronized long getMemoryUsage() {
+    long usage = intervals.getMemoryFootprint() + totals.getMemoryFootprint() + (latest == null ? 0 : latest.getMemoryFootprint());
+    for (CompressedSeries series : counterSeries.values()) {
+      usage += 32 + series.getMemoryFootprint();
+    }
+    for (CompressedSeries series : rateSeries.values()) {
+      usage += 32 + series.getMemoryFootprint();
+    }
+    return usage;
+  }
+
+  private long sumCounter(String counterName, long lowerBound, long upperBound) {
+    CompressedSeries series = counterSeries.get(MetricKeyRegistry.find(counterName));
+    return series == null ? 0 : series.sum(lowerBound, upperBound);
+  }
+
+  /**
+   * Drop the blocks older than the provided time, and the series left empty
+   */
+  private void evict(long timeMs) {
+    intervals.evictBefore(timeMs);
+    counterSeries.values().removeIf(series -> {
+      series.evictBefore(timeMs);
+      return series.isEmpty();
+    });
+    rateSeries.values().removeIf(series -> {
+      series.evictBefore(timeMs);
+      return series.isEmpty();
+    });
+  }
+}
@@ -0,0 +1,326 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time series of a single metric of the {@link CompressedMetricsStore}, compressed in blocks of a fixed number of samples.
+ * <p>
+ * The sample times are encoded as zigzag varints of their delta of delta: regular flush intervals take a single byte per sample.
+ * The values are encoded either as zigzag varints of their delta to the previous value (counters), or as the XOR of their bits with the previous
+ * value bits (rates), only the bytes between the leading and trailing zero bytes of the XOR being written after a control byte.
+ * Each block starts over from a zero time and value, so that it is decoded on its own, and keeps its first and last times and the sum of its values.
+ * A window query finds its first block with a binary search, takes the sums of the blocks within the window and only decodes, sample by sample,
+ * the blocks on its edges
+ */
+class CompressedSeries {
+
+  static final int BLOCK_SAMPLES = 128;
+
+  private boolean xorValues;
+  private List<Block> blocks = new ArrayList<>();
+  private Block current;
+  // Encoding state of the current block
+  private long lastTime;
+  private long lastDelta;
+  private long lastValue;
+
+  /**
+   * Build a new empty series
+   *
+   * @param xorValues True to XOR encode the values, e.g double bits, false to delta encode them, e.g counters
+   */
+  CompressedSeries(boolean xorValues) {
+    this.xorValues = xorValues;
+  }
+
+  /**
+   * Append a sample, the time being after the time of the previous sample
+   *
+   * @param time  Sample time in milliseconds
+   * @param value Sample value, the raw bits for a double
+   */
+  void append(long time, long value) {
+    if (current == null || current.count == BLOCK_SAMPLES) {
+      if (current != null) {
+        current.seal();
+      }
+      current = new Block(time);
+      blocks.add(current);
+      lastTime = 0;
+      lastDelta = 0;
+      lastValue = 0;
+    }
+    long delta = time - lastTime;
+    current.writeVarLong(zigzag(delta - lastDelta));
+    if (xorValues) {
+      current.writeXor(value ^ lastValue);
+      current.doubleSum += Double.longBitsToDouble(value);
+    } else {
+      current.writeVarLong(zigzag(value - lastValue));
+      current.sum += value;
+    }
+    current.lastTime = time;
+    current.count++;
+    lastTime = time;
+    lastDelta = delta;
+    lastValue = value;
+  }
+
+  /**
+   * Sum the values of the samples between the bounds, decoding the blocks on the bounds only
+   *
+   * @param fromMs Inclusive time lower bound
+   * @param toMs   Exclusive time upper bound
+   * @return Sum of the values
+   */
+  long sum(long fromMs, long toMs) {
+    long sum = 0;
+    for (int i = firstBlockEndingFrom(fromMs); i < blocks.size(); i++) {
+      Block block = blocks.get(i);
+      if (block.firstTime >= toMs) {
+        break;
+      }
+      if (block.firstTime >= fromMs && block.lastTime < toMs) {
+        sum += block.sum;
+        continue;
+      }
+      for (Decoder decoder = new Decoder(block); decoder.next() && decoder.time < toMs; ) {
+        if (decoder.time >= fromMs) {
+          sum += decoder.value;
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the double values of the samples between the bounds, decoding the blocks on the bounds only
+   *
+   * @param fromMs Inclusive time lower bound
+   * @param toMs   Exclusive time upper bound
+   * @return Sum of the values
+   */
+  double sumDouble(long fromMs, long toMs) {
+    double sum = 0;
+    for (int i = firstBlockEndingFrom(fromMs); i < blocks.size(); i++) {
+      Block block = blocks.get(i);
+      if (block.firstTime >= toMs) {
+        break;
+      }
+      if (block.firstTime >= fromMs && block.lastTime < toMs) {
+        sum += block.doubleSum;
+        continue;
+      }
+      for (Decoder decoder = new Decoder(block); decoder.next() && decoder.time < toMs; ) {
+        if (decoder.time >= fromMs) {
+          sum += Double.longBitsToDouble(decoder.value);
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Count the samples between the bounds
+   *
+   * @param fromMs Inclusive time lower bound
+   * @param toMs   Exclusive time upper bound
+   * @return Sample count
+   */
+  int count(long fromMs, long toMs) {
+    int count = 0;
+    for (int i = firstBlockEndingFrom(fromMs); i < blocks.size(); i++) {
+      Block block = blocks.get(i);
+      if (block.firstTime >= toMs) {
+        break;
+      }
+      if (block.firstTime >= fromMs && block.lastTime < toMs) {
+        count += block.count;
+        continue;
+      }
+      for (Decoder decoder = new Decoder(block); decoder.next() && decoder.time < toMs; ) {
+        if (decoder.time >= fromMs) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Drop the blocks of which all the samples are older than the provided time
+   *
+   * @param timeMs Time in milliseconds
+   */
+  void evictBefore(long timeMs) {
+    int evicted = firstBlockEndingFrom(timeMs);
+    if (evicted == blocks.size()) {
+      current = null;
+    }
+    blocks.subList(0, evicted).clear();
+  }
+
+  boolean isEmpty() {
+    return blocks.isEmpty();
+  }
+
+  /**
+   * Time of the oldest sample
+   *
+   * @return First time, Long.MAX_VALUE if the series is empty
+   */
+  long getFirstTime() {
+    return blocks.isEmpty() ? Long.MAX_VALUE : blocks.get(0).firstTime;
+  }
+
+  int getSampleCount() {
+    return blocks.stream().mapToInt(block -> block.count).sum();
+  }
+
+  /**
+   * Heap size of the series, encoded bytes and block headers
+   *
+   * @return Approximate size in bytes
+   */
+  long getMemoryFootprint() {
+    return 48 + 4L * blocks.size() + blocks.stream().mapToLong(block -> 72 + block.bytes.length).sum();
+  }
+
+  /**
+   * Binary search of the first block of which the last sample is at or after the provided time
+   *
+   * @return Block index, the block count if there is none
+   */
+  private int firstBlockEndingFrom(long timeMs) {
+    int low = 0;
+    int high = blocks.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (blocks.get(middle).lastTime < timeMs) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Encoded samples, the byte array being trimmed once the block is full
+   */
+  private static class Block {
+    private long firstTime;
+    private long lastTime;
+    private int count;
+    // Sum of the values, of the double values for XOR encoded values
+    private long sum;
+    private double doubleSum;
+    private byte[] bytes = new byte[64];
+    private int length;
+
+    private Block(long firstTime) {
+      this.firstTime = firstTime;
+    }
+
+    private void writeVarLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        write((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      write((int) value);
+    }
+
+    /**
+     * Control byte 0 for an unchanged value, otherwise 1 + the leading and trailing zero byte counts followed by the bytes in between
+     */
+    private void writeXor(long xor) {
+      if (xor == 0) {
+        write(0);
+        return;
+      }
+      int leading = Long.numberOfLeadingZeros(xor) / 8;
+      int trailing = Long.numberOfTrailingZeros(xor) / 8;
+      write(1 + (leading << 3 | trailing));
+      for (int shift = (7 - leading) * 8; shift >= trailing * 8; shift -= 8) {
+        write((int) (xor >>> shift));
+      }
+    }
+
+    private void write(int b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      bytes[length++] = (byte) b;
+    }
+
+    private void seal() {
+      bytes = Arrays.copyOf(bytes, length);
+    }
+  }
+
+  /**
+   * Streaming decoder of a block
+   */
+  private class Decoder {
+    private Block block;
+    private int position;
+    private int decoded;
+    private long time;
+    private long delta;
+    private long value;
+
+    private Decoder(Block block) {
+      this.block = block;
+    }
+
+    private boolean next() {
+      if (decoded == block.count) {
+        return false;
+      }
+      delta += unzigzag(readVarLong());
+      time += delta;
+      if (xorValues) {
+        value ^= readXor();
+      } else {
+        value += unzigzag(readVarLong());
+      }
+      decoded++;
+      return true;
+    }
+
+    private long readVarLong() {
+      long result = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = block.bytes[position++];
+        result |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return result;
+        }
+      }
+    }
+
+    private long readXor() {
+      int control = block.bytes[position++] & 0xFF;
+      if (control == 0) {
+        return 0;
+      }
+      int leading = (control - 1) >>> 3;
+      int trailing = (control - 1) & 0x7;
+      long xor = 0;
+      for (int shift = (7 - leading) * 8; shift >= trailing * 8; shift -= 8) {
+        xor |= (long) (block.bytes[position++] & 0xFF) << shift;
+      }
+      return xor;
+    }
+  }
+}
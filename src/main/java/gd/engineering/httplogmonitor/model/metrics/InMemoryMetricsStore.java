@@ -1,111 +1,471 @@
 package gd.engineering.httplogmonitor.model.metrics;
 
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.OptionalDouble;
-import java.util.TreeMap;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 /**
- * In memory implementation of the metrics store.
- * Each flushed metrics is stored in a TreeMap ordered by startTime.
- * Counters are aggregated in the counters map for global values
- * <p> Visual representation:
+ * In memory implementation of the metrics store with a bounded retention.
+ * Each flushed metrics is stored in a fixed capacity ring of interval slots, in startTime order.
+ * Once the ring is full, the oldest interval is evicted in constant time by the newest one.
+ * The metrics are looked up by time with a binary search on the slots.
+ * Counters are aggregated in the totals metrics for global values, evicted intervals included
+ * <p>
+ * Each counter or rate queried over a window is tracked from its first query on: a ring of running sums, aligned with the interval slots,
+ * is then maintained on each add. Only the metrics found in the added intervals are tracked, a query of any other name returns 0 without registering it. A window sum is the difference of the running sums at its bounds, so the window queries cost a binary search
+ * whatever the window length and the retained history. The running sums are never reset, the eviction leaves them consistent
+ * <p> Visual representation, capacity 4:
  * Values |1|1|3|2|
  * Time   1 2 3 4 5
- * Map:
+ * Ring:
  * 1-1
  * 2-1
  * 3-3
  * 4-2
+ * Adding 5-4 evicts 1-1 and takes its slot
  * </p>
  * To manage the alerts, each average and sum method looks for a full evaluation window by
- * looking if there is an entry in the map before the lower bound of the alert evaluation window
+ * looking if there is a retained interval before the lower bound of the alert evaluation window:
+ * the retention has to cover the longest evaluation window
+ * <p>
+ * The metrics have to be added in time order, as flushed by the aggregator. Metrics with the start time of the latest ones replace them
+ * <p>
+ * The store has a single writer, the flusher thread, and many readers, the alert evaluations and the reporter. The writes take the write lock
+ * of a {@link StampedLock}, the reads are optimistic: they run without any lock and are validated against the lock stamp afterwards,
+ * being retried under the read lock if an add ran meanwhile. The added metrics are not modified afterwards, so a validated read saw a consistent store.
+ * Tracking a new metric on its first query builds its running sums under the write lock
  */
 public class InMemoryMetricsStore implements MetricsStore {
 
-  private NavigableMap<Long, IntervalMetrics> historicalMetrics;
-  private Map<String, Integer> counters;
+  /**
+   * Default capacity, one day of 10 seconds intervals
+   */
+  public static final int DEFAULT_CAPACITY = 8640;
+
+  private IntervalMetrics[] slots;
+  // Footprint of each slot when added, the metrics could still grow afterwards
+  private long[] footprints;
+  // Slot of the oldest interval
+  private int head;
+  private int size;
+  private long memoryUsage;
+  private IntervalMetrics totals;
+  // Rates found in the added intervals, the totals only holding the counters
+  private BitSet addedRateIds = new BitSet();
+  // Running sums of the tracked counters and rates by metric id, slot by slot
+  private Map<Integer, long[]> counterSums = new ConcurrentHashMap<>();
+  private Map<Integer, double[]> rateSums = new ConcurrentHashMap<>();
+  private final StampedLock lock = new StampedLock();
 
   public InMemoryMetricsStore() {
-    this.historicalMetrics = new TreeMap<>();
-    this.counters = new HashMap<>();
+    this(DEFAULT_CAPACITY);
   }
 
+  /**
+   * Build a new store retaining the provided number of intervals
+   *
+   * @param capacity Maximum number of intervals retained
+   * @throws IllegalArgumentException If the capacity is not strictly positive
+   */
+  public InMemoryMetricsStore(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Metrics store capacity has to be strictly positive");
+    }
+    this.slots = new IntervalMetrics[capacity];
+    this.footprints = new long[capacity];
+    this.totals = new IntervalMetrics();
+  }
+
+  /**
+   * Number of intervals needed to retain the provided duration, e.g to size the store of each window length
+   *
+   * @param retentionMs Retention in milliseconds
+   * @param intervalMs  Interval length in milliseconds
+   * @return Capacity covering the retention, 1 at least
+   */
+  public static int capacityFor(long retentionMs, long intervalMs) {
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, (retentionMs + intervalMs - 1) / intervalMs));
+  }
+
+  /**
+   * Add the metrics in the slot following the latest ones, evicting the oldest ones when the ring is full
+   *
+   * @param intervalMetrics New metrics to be added
+   * @return False if the metrics are older than the latest ones, they are not stored
+   */
   @Override
   public boolean add(IntervalMetrics intervalMetrics) {
-    this.historicalMetrics.put(intervalMetrics.getStartTime(), intervalMetrics);
-    Map<String, Integer> intervalCounters = intervalMetrics.getCounters();
-    intervalCounters.forEach((counter, value) ->
-        this.counters.put(counter, value + this.counters.getOrDefault(counter, 0))
-    );
+    long stamp = lock.writeLock();
+    try {
+      return addLocked(intervalMetrics);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private boolean addLocked(IntervalMetrics intervalMetrics) {
+    if (size > 0) {
+      IntervalMetrics latest = get(size - 1);
+      if (intervalMetrics.getStartTime() < latest.getStartTime()) {
+        return false;
+      }
+      if (intervalMetrics.getStartTime() == latest.getStartTime()) {
+        set(size - 1, intervalMetrics);
+        updateSums(size - 1);
+        this.totals.merge(intervalMetrics);
+        intervalMetrics.addRateIdsTo(addedRateIds);
+        return true;
+      }
+    }
+    if (size == slots.length) {
+      memoryUsage -= footprints[head];
+      slots[head] = null;
+      footprints[head] = 0;
+      head = (head + 1) % slots.length;
+      size--;
+    }
+    size++;
+    set(size - 1, intervalMetrics);
+    updateSums(size - 1);
+    this.totals.merge(intervalMetrics);
+    intervalMetrics.addRateIdsTo(addedRateIds);
     return true;
   }
 
   @Override
-  public int getTotalSumCounterValue(String counterName) {
-    return counters.getOrDefault(counterName, 0);
+  public long getTotalSumCounterValue(String counterName) {
+    return read(() -> totals.getCounterValue(counterName));
   }
 
   @Override
-  public int getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
-    if (historicalMetrics.isEmpty()) {
+  public double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    int rateId = MetricKeyRegistry.find(rateName);
+    if (!trackRate(rateId)) {
       return 0;
     }
-    long lowerBound = nowMs - timeFromNowMs;
-    if (lowerBound < historicalMetrics.firstEntry().getKey()) {
-      return 0;
-    }
-    OptionalDouble average = getIntervalStartTimeBetween(nowMs, lowerBound)
-        .mapToInt(intervalStartTime -> historicalMetrics.get(intervalStartTime).getRates().getOrDefault(rateName, 0))
-        .average();
-    return (int) average.orElse(0.);
+    return read(() -> {
+      if (size == 0) {
+        return 0.0;
+      }
+      long lowerBound = nowMs - timeFromNowMs;
+      if (lowerBound < get(0).getStartTime()) {
+        return 0.0;
+      }
+      int start = indexFrom(lowerBound);
+      int end = indexFrom(nowMs);
+      return start >= end ? 0.0 : sumRate(rateId, start, end) / (end - start);
+    });
   }
 
   @Override
-  public int getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
-    if (historicalMetrics.isEmpty() || timeFromNowMs < historicalMetrics.firstEntry().getKey()) {
+  public double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    int counterId = MetricKeyRegistry.find(counterName);
+    if (!trackCounter(counterId)) {
       return 0;
     }
-    long lowerBound = nowMs - timeFromNowMs;
-    if (lowerBound < historicalMetrics.firstEntry().getKey()) {
+    return read(() -> {
+      if (size == 0 || timeFromNowMs < get(0).getStartTime()) {
+        return 0.0;
+      }
+      long lowerBound = nowMs - timeFromNowMs;
+      if (lowerBound < get(0).getStartTime()) {
+        return 0.0;
+      }
+      int start = indexFrom(lowerBound);
+      int end = indexFrom(nowMs);
+      return start >= end ? 0.0 : sumCounter(counterId, start, end) / (double) (end - start);
+    });
+  }
+
+  @Override
+  public long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    int counterId = MetricKeyRegistry.find(counterName);
+    if (!trackCounter(counterId)) {
       return 0;
     }
-    OptionalDouble average = getIntervalStartTimeBetween(nowMs, lowerBound)
-        .mapToInt(intervalStartTime -> historicalMetrics.get(intervalStartTime).getCounters().getOrDefault(counterName, 0))
-        .average();
-    return (int) average.orElse(0.);
+    return read(() -> {
+      if (size == 0 || timeFromNowMs < get(0).getStartTime()) {
+        return 0L;
+      }
+      long lowerBound = nowMs - timeFromNowMs;
+      if (lowerBound < get(0).getStartTime()) {
+        return 0L;
+      }
+      return sumCounter(counterId, indexFrom(lowerBound), indexFrom(nowMs));
+    });
+  }
+
+  @Override
+  public IntervalMetrics getLatestMetrics() {
+    return read(() -> size == 0 ? null : get(size - 1));
+  }
+
+  @Override
+  public int getIntervalCount() {
+    return read(() -> size);
   }
 
+  /**
+   * Memory used by the retained intervals and the totals, the ring slots and the running sums included
+   *
+   * @return Approximate memory usage in bytes
+   */
   @Override
-  public int getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
-    if (historicalMetrics.isEmpty() || timeFromNowMs < historicalMetrics.firstEntry().getKey()) {
+  public long getMemoryUsage() {
+    return read(() -> memoryUsage + totals.getMemoryFootprint() + 32 + (12L + 8L * (counterSums.size() + rateSums.size())) * slots.length);
+  }
+
+  /**
+   * Maximum number of intervals retained
+   *
+   * @return Ring capacity
+   */
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * Sum of the counter over the intervals from start inclusive to end exclusive, from the running sums.
+   * The package methods take no lock: the caller is the only one accessing the store, e.g the tiered store
+   *
+   * @param counterId Counter id
+   * @param start     Index of the first interval from the oldest one
+   * @param end       Index following the last interval
+   * @return Counter sum, 0 if there is no interval between the indexes or the counter was never added
+   */
+  long sumCounter(int counterId, int start, int end) {
+    if (start >= end || !totals.hasCounter(counterId)) {
       return 0;
     }
-    long lowerBound = nowMs - timeFromNowMs;
-    if (lowerBound < historicalMetrics.firstEntry().getKey()) {
+    long[] sums = getCounterSums(counterId);
+    return sums[slot(end - 1)] - sums[slot(start)] + get(start).getCounterValue(counterId);
+  }
+
+  /**
+   * Sum of the rate over the intervals from start inclusive to end exclusive, from the running sums
+   *
+   * @param rateId Rate id
+   * @param start  Index of the first interval from the oldest one
+   * @param end    Index following the last interval
+   * @return Rate sum, 0 if there is no interval between the indexes or the rate was never added
+   */
+  double sumRate(int rateId, int start, int end) {
+    if (start >= end || rateId < 0 || !addedRateIds.get(rateId)) {
       return 0;
     }
-    return getIntervalStartTimeBetween(nowMs, lowerBound)
-        .mapToInt(intervalStartTime -> historicalMetrics.get(intervalStartTime).getCounters().getOrDefault(counterName, 0))
-        .sum();
+    double[] sums = getRateSums(rateId);
+    return sums[slot(end - 1)] - sums[slot(start)] + get(start).getRateValue(rateId);
   }
 
-  @Override
-  public IntervalMetrics getLatestMetrics() {
-    return historicalMetrics.lastEntry().getValue();
+  /**
+   * Check whether the running sums of the metric are maintained, so that {@link #sumCounter(int, int, int)} and {@link #sumRate(int, int, int)}
+   * only read the store
+   *
+   * @param metricId Counter or rate id
+   * @param rate     True for a rate, false for a counter
+   * @return True if the running sums are built
+   */
+  boolean isTracked(int metricId, boolean rate) {
+    return rate ? rateSums.containsKey(metricId) : counterSums.containsKey(metricId);
+  }
+
+  /**
+   * Build the running sums of the metric, whether it has been added or not, the caller holding the only access to the store
+   *
+   * @param metricId Counter or rate id
+   * @param rate     True for a rate, false for a counter
+   */
+  void track(int metricId, boolean rate) {
+    if (rate) {
+      getRateSums(metricId);
+    } else {
+      getCounterSums(metricId);
+    }
+  }
+
+  /**
+   * Binary search of the first retained interval ending after the provided time
+   *
+   * @param timeMs Time in milliseconds
+   * @return Index of the interval from the oldest one, size if there is none
+   */
+  int indexEndingAfter(long timeMs) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (get(middle).getEndTime() <= timeMs) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Retained interval at the provided index
+   *
+   * @param index Index of the interval from the oldest one
+   * @return Interval metrics
+   */
+  IntervalMetrics get(int index) {
+    return slots[slot(index)];
+  }
+
+  /**
+   * Build the running sums of the counter under the write lock if it is queried for the first time
+   *
+   * @return False if the counter was never added, there is nothing to sum
+   */
+  private boolean trackCounter(int counterId) {
+    if (counterSums.containsKey(counterId)) {
+      return true;
+    }
+    if (!read(() -> totals.hasCounter(counterId))) {
+      return false;
+    }
+    long stamp = lock.writeLock();
+    try {
+      getCounterSums(counterId);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    return true;
+  }
+
+  /**
+   * Build the running sums of the rate under the write lock if it is queried for the first time
+   *
+   * @return False if the rate was never added, there is nothing to sum
+   */
+  private boolean trackRate(int rateId) {
+    if (rateSums.containsKey(rateId)) {
+      return true;
+    }
+    if (rateId < 0 || !read(() -> addedRateIds.get(rateId))) {
+      return false;
+    }
+    long stamp = lock.writeLock();
+    try {
+      getRateSums(rateId);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    return true;
+  }
+
+  private <T> T read(Supplier<T> query) {
+    return optimisticRead(lock, query);
+  }
+
+  /**
+   * Run the query optimistically, then under the read lock if a write ran meanwhile.
+   * An optimistic query can see a store being modified, any exception it raises is then discarded with its result
+   *
+   * @param lock  Lock of the store, the writes taking its write lock
+   * @param query Query reading the store without modifying it
+   * @param <T>   Query result type
+   * @return Query result
+   */
+  static <T> T optimisticRead(StampedLock lock, Supplier<T> query) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        T result = query.get();
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        if (lock.validate(stamp)) {
+          throw e;
+        }
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return query.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Running sums of the counter, built over the retained intervals on its first query
+   */
+  private long[] getCounterSums(int counterId) {
+    long[] sums = counterSums.get(counterId);
+    if (sums == null) {
+      sums = new long[slots.length];
+      long sum = 0;
+      for (int i = 0; i < size; i++) {
+        sum += get(i).getCounterValue(counterId);
+        sums[slot(i)] = sum;
+      }
+      counterSums.put(counterId, sums);
+    }
+    return sums;
+  }
+
+  /**
+   * Running sums of the rate, built over the retained intervals on its first query
+   */
+  private double[] getRateSums(int rateId) {
+    double[] sums = rateSums.get(rateId);
+    if (sums == null) {
+      sums = new double[slots.length];
+      double sum = 0;
+      for (int i = 0; i < size; i++) {
+        sum += get(i).getRateValue(rateId);
+        sums[slot(i)] = sum;
+      }
+      rateSums.put(rateId, sums);
+    }
+    return sums;
   }
 
   /**
-   * Look for all the metrics recorded between lowerBound inclusive and upperBound exclusive.
-   * UpperBound is exclusive as the time stored are the metrics interval start time (the metrics are not recorded at that time)
+   * Extend the running sums of the tracked metrics to the interval at the provided index
+   */
+  private void updateSums(int index) {
+    IntervalMetrics intervalMetrics = get(index);
+    int slot = slot(index);
+    int previousSlot = slot(index - 1);
+    counterSums.forEach((counterId, sums) -> sums[slot] = (index > 0 ? sums[previousSlot] : 0) + intervalMetrics.getCounterValue(counterId));
+    rateSums.forEach((rateId, sums) -> sums[slot] = (index > 0 ? sums[previousSlot] : 0) + intervalMetrics.getRateValue(rateId));
+  }
+
+  /**
+   * Binary search of the first retained interval starting at or after the provided time
    *
-   * @param upperBoundMs Exclusive time upper bound
-   * @param lowerBoundMs Inclusive time lower bound
-   * @return Stream of interval start time found between the lower and upper bounds
+   * @param timeMs Time in milliseconds
+   * @return Index of the interval from the oldest one, size if there is none
    */
-  private Stream<Long> getIntervalStartTimeBetween(long upperBoundMs, long lowerBoundMs) {
-    return historicalMetrics.descendingKeySet().stream().filter(intervalStartTime -> intervalStartTime >= lowerBoundMs && intervalStartTime < upperBoundMs);
+  int indexFrom(long timeMs) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (get(middle).getStartTime() < timeMs) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int slot(int index) {
+    return Math.floorMod(head + index, slots.length);
+  }
+
+  private void set(int index, IntervalMetrics intervalMetrics) {
+    int slot = slot(index);
+    slots[slot] = intervalMetrics;
+    memoryUsage -= footprints[slot];
+    footprints[slot] = intervalMetrics.getMemoryFootprint();
+    memoryUsage += footprints[slot];
   }
 }
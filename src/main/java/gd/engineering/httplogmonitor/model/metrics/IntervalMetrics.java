@@ -1,27 +1,50 @@
 package gd.engineering.httplogmonitor.model.metrics;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * POJO for metrics recorded during a time interval.
- * The metrics supported are counters and rates and stored as string separated with colons.
+ * The metrics supported are counters and rates and named as strings separated with colons.
  * E.g:
  * section.GET/api.hits = 1
  * errors = 2
  * hits = 4
  * <p>
+ * The names are interned by the {@link gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry} and the values are stored in primitive arrays
+ * indexed by the metric ids: the hot path increments a counter by id without any allocation. The methods taking a name are views on top of the ids.
+ * A counter or rate exists once it has been set, even to 0. Counters are 64 bits and rates are doubles.
+ * <p>
+ * The arrays of an interval being recorded are sized to the registry, which grows with every section ever seen. Once the interval is closed,
+ * {@link #compact()} shrinks them to the metrics actually set, as sorted id and value arrays when fewer than two thirds of the ids are set,
+ * so that a store retaining thousands of intervals does not hold a slot per registered metric in each of them.
+ * <p>
  * The time interval is represented by two long as milliseconds for the start and end recording time. Those timings are managed by the {@link gd.engineering.httplogmonitor.aggregator.BlockingStatsAggregator}
  */
 public class IntervalMetrics {
+  // Object headers and fields, assuming compressed oops
+  private static final long OBJECT_FOOTPRINT = 48;
+  private static final long ARRAY_HEADER = 16;
+  private static final long BITSET_FOOTPRINT = 40;
   private long startTime;
   private long endTime;
-  private Map<String, Integer> counters;
-  private Map<String, Integer> rates;
+  private long[] counters;
+  private BitSet counterIds;
+  private double[] rates;
+  private BitSet rateIds;
+  // Sorted ids of the compacted values, null while the values are indexed by id and the ids held in the bit sets
+  private int[] counterKeys;
+  private int[] rateKeys;
 
   public IntervalMetrics() {
-    counters = new HashMap<>();
-    rates = new HashMap<>();
+    counters = new long[MetricKeyRegistry.size()];
+    counterIds = new BitSet();
+    rates = new double[0];
+    rateIds = new BitSet();
   }
 
   /**
@@ -39,8 +62,25 @@ public class IntervalMetrics {
    * @param counter Counter to be incremented
    * @param value   Value to increment the counter
    */
-  public void incrBy(String counter, int value) {
-    counters.put(counter, counters.getOrDefault(counter, 0) + value);
+  public void incrBy(String counter, long value) {
+    incrBy(MetricKeyRegistry.intern(counter), value);
+  }
+
+  /**
+   * Increment the counter of the provided id by value
+   *
+   * @param counterId Id of the counter to be incremented, interned by the {@link gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry}
+   * @param value     Value to increment the counter
+   */
+  public void incrBy(int counterId, long value) {
+    if (counterKeys != null) {
+      inflateCounters();
+    }
+    if (counterId >= counters.length) {
+      counters = grow(counters, counterId);
+    }
+    counters[counterId] += value;
+    counterIds.set(counterId);
   }
 
   /**
@@ -49,8 +89,117 @@ public class IntervalMetrics {
    * @param rate Rate name
    * @param l    Rate value
    */
-  public void putRate(String rate, int l) {
-    rates.put(rate, l);
+  public void putRate(String rate, double l) {
+    putRate(MetricKeyRegistry.intern(rate), l);
+  }
+
+  /**
+   * Store the value of the rate of the provided id
+   *
+   * @param rateId Id of the rate, interned by the {@link gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry}
+   * @param value  Rate value
+   */
+  public void putRate(int rateId, double value) {
+    if (rateKeys != null) {
+      inflateRates();
+    }
+    if (rateId >= rates.length) {
+      rates = Arrays.copyOf(rates, Math.max(rateId + 1, Math.max(MetricKeyRegistry.size(), rates.length * 2)));
+    }
+    rates[rateId] = value;
+    rateIds.set(rateId);
+  }
+
+  /**
+   * Add the counters of the provided metrics to these ones, e.g to reduce the metrics recorded by several threads over the same interval.
+   * The time interval of these metrics is left untouched and rates are not merged, they have to be computed on the merged counters
+   *
+   * @param other Metrics to be merged into these ones
+   */
+  public void merge(IntervalMetrics other) {
+    if (other.counterKeys != null) {
+      for (int i = 0; i < other.counterKeys.length; i++) {
+        incrBy(other.counterKeys[i], other.counters[i]);
+      }
+      return;
+    }
+    for (int id = other.counterIds.nextSetBit(0); id >= 0; id = other.counterIds.nextSetBit(id + 1)) {
+      incrBy(id, other.counters[id]);
+    }
+  }
+
+  /**
+   * Merge the counters of the provided metrics into new metrics, e.g to reduce the shards of an interval recorded by several threads.
+   * The merge is associative and commutative: the merged counters do not depend on the order of the metrics nor on how the lines were spread among them.
+   * The provided metrics are left untouched
+   *
+   * @param metrics Metrics to be merged
+   * @return New metrics holding the sum of the counters, without time interval nor rates
+   */
+  public static IntervalMetrics mergeAll(Collection<IntervalMetrics> metrics) {
+    IntervalMetrics merged = new IntervalMetrics();
+    metrics.forEach(merged::merge);
+    return merged;
+  }
+
+  /**
+   * Compute the rates from the counter values recorded over the provided interval length
+   *
+   * @param intervalMs Interval length in milliseconds
+   * @param rateUnit   Rates time unit
+   */
+  public void computeRates(long intervalMs, TimeUnit rateUnit) {
+    double intervalLength = TimeUnit.MILLISECONDS.toNanos(intervalMs) / (double) rateUnit.toNanos(1);
+    if (counterKeys != null) {
+      for (int i = 0; i < counterKeys.length; i++) {
+        putRate(counterKeys[i], counters[i] / intervalLength);
+      }
+      return;
+    }
+    for (int id = counterIds.nextSetBit(0); id >= 0; id = counterIds.nextSetBit(id + 1)) {
+      putRate(id, counters[id] / intervalLength);
+    }
+  }
+
+  /**
+   * Shrink the values to the metrics set, once the interval is closed and before it is retained by a store.
+   * The values are kept indexed by id up to the highest id set, or as sorted id and value arrays without the id bit sets if smaller.
+   * The metrics can still be updated afterwards, the values being indexed by id again
+   */
+  public void compact() {
+    if (counterKeys == null) {
+      int count = counterIds.cardinality();
+      int length = counterIds.length();
+      if (12L * count < 8L * length) {
+        counterKeys = counterIds.stream().toArray();
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+          values[i] = counters[counterKeys[i]];
+        }
+        counters = values;
+        counterIds = null;
+      } else {
+        counters = Arrays.copyOf(counters, length);
+        // A clone is trimmed to the highest bit set
+        counterIds = (BitSet) counterIds.clone();
+      }
+    }
+    if (rateKeys == null) {
+      int count = rateIds.cardinality();
+      int length = rateIds.length();
+      if (12L * count < 8L * length) {
+        rateKeys = rateIds.stream().toArray();
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+          values[i] = rates[rateKeys[i]];
+        }
+        rates = values;
+        rateIds = null;
+      } else {
+        rates = Arrays.copyOf(rates, length);
+        rateIds = (BitSet) rateIds.clone();
+      }
+    }
   }
 
   /**
@@ -59,8 +208,22 @@ public class IntervalMetrics {
    * @param counterName Counter name
    * @return Counter value or 0 if the counter name does not exist
    */
-  public int getCounterValue(String counterName) {
-    return counters.getOrDefault(counterName, 0);
+  public long getCounterValue(String counterName) {
+    return getCounterValue(MetricKeyRegistry.find(counterName));
+  }
+
+  /**
+   * Retrieve the value of the counter of the provided id or 0 if not found
+   *
+   * @param counterId Counter id
+   * @return Counter value or 0 if the counter does not exist
+   */
+  public long getCounterValue(int counterId) {
+    if (counterKeys != null) {
+      int position = counterId < 0 ? -1 : Arrays.binarySearch(counterKeys, counterId);
+      return position >= 0 ? counters[position] : 0;
+    }
+    return counterId >= 0 && counterId < counters.length ? counters[counterId] : 0;
   }
 
   /**
@@ -69,16 +232,86 @@ public class IntervalMetrics {
    * @param rateName Rate name
    * @return Rate value or 0 if the rate name does not exist
    */
-  public int getRateValue(String rateName) {
-    return rates.getOrDefault(rateName, 0);
+  public double getRateValue(String rateName) {
+    return getRateValue(MetricKeyRegistry.find(rateName));
+  }
+
+  /**
+   * Retrieve the value of the rate of the provided id or 0 if not found
+   *
+   * @param rateId Rate id
+   * @return Rate value or 0 if the rate does not exist
+   */
+  public double getRateValue(int rateId) {
+    if (rateKeys != null) {
+      int position = rateId < 0 ? -1 : Arrays.binarySearch(rateKeys, rateId);
+      return position >= 0 ? rates[position] : 0;
+    }
+    return rateId >= 0 && rateId < rates.length ? rates[rateId] : 0;
   }
 
-  public Map<String, Integer> getCounters() {
-    return counters;
+  /**
+   * Whether the counter of the provided id has been set
+   *
+   * @param counterId Counter id, {@link gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry#UNKNOWN_ID} included
+   * @return True if the counter exists
+   */
+  boolean hasCounter(int counterId) {
+    if (counterKeys != null) {
+      return counterId >= 0 && Arrays.binarySearch(counterKeys, counterId) >= 0;
+    }
+    return counterId >= 0 && counterIds.get(counterId);
   }
 
-  public Map<String, Integer> getRates() {
-    return rates;
+  /**
+   * Add the ids of the rates set in these metrics to the provided ids
+   *
+   * @param ids Rate ids
+   */
+  void addRateIdsTo(BitSet ids) {
+    if (rateKeys != null) {
+      Arrays.stream(rateKeys).forEach(ids::set);
+    } else {
+      ids.or(rateIds);
+    }
+  }
+
+  /**
+   * Build a map of the counters by name, e.g to look for the section counters
+   *
+   * @return New map of the counter values by name
+   */
+  public Map<String, Long> getCounters() {
+    Map<String, Long> map = new HashMap<>();
+    if (counterKeys != null) {
+      for (int i = 0; i < counterKeys.length; i++) {
+        map.put(MetricKeyRegistry.name(counterKeys[i]), counters[i]);
+      }
+      return map;
+    }
+    for (int id = counterIds.nextSetBit(0); id >= 0; id = counterIds.nextSetBit(id + 1)) {
+      map.put(MetricKeyRegistry.name(id), counters[id]);
+    }
+    return map;
+  }
+
+  /**
+   * Build a map of the rates by name
+   *
+   * @return New map of the rate values by name
+   */
+  public Map<String, Double> getRates() {
+    Map<String, Double> map = new HashMap<>();
+    if (rateKeys != null) {
+      for (int i = 0; i < rateKeys.length; i++) {
+        map.put(MetricKeyRegistry.name(rateKeys[i]), rates[i]);
+      }
+      return map;
+    }
+    for (int id = rateIds.nextSetBit(0); id >= 0; id = rateIds.nextSetBit(id + 1)) {
+      map.put(MetricKeyRegistry.name(id), rates[id]);
+    }
+    return map;
   }
 
   public void setStartTime(long startTime) {
@@ -97,5 +330,52 @@ public class IntervalMetrics {
     return endTime;
   }
 
+  /**
+   * Approximate heap size of these metrics, e.g to report the memory retained by a metrics store
+   *
+   * @return Approximate size in bytes
+   */
+  public long getMemoryFootprint() {
+    return OBJECT_FOOTPRINT + 2 * ARRAY_HEADER + 8L * (counters.length + rates.length)
+        + getIdsFootprint(counterIds, counterKeys) + getIdsFootprint(rateIds, rateKeys);
+  }
+
+  private static long getIdsFootprint(BitSet ids, int[] keys) {
+    return keys == null ? BITSET_FOOTPRINT + ids.size() / 8 : ARRAY_HEADER + 4L * keys.length;
+  }
+
+  /**
+   * Index the compacted counter values by id again, before an update
+   */
+  private void inflateCounters() {
+    long[] values = new long[counterKeys.length == 0 ? 0 : counterKeys[counterKeys.length - 1] + 1];
+    for (int i = 0; i < counterKeys.length; i++) {
+      values[counterKeys[i]] = counters[i];
+    }
+    counters = values;
+    counterIds = new BitSet(values.length);
+    Arrays.stream(counterKeys).forEach(counterIds::set);
+    counterKeys = null;
+  }
+
+  /**
+   * Index the compacted rate values by id again, before an update
+   */
+  private void inflateRates() {
+    double[] values = new double[rateKeys.length == 0 ? 0 : rateKeys[rateKeys.length - 1] + 1];
+    for (int i = 0; i < rateKeys.length; i++) {
+      values[rateKeys[i]] = rates[i];
+    }
+    rates = values;
+    rateIds = new BitSet(values.length);
+    Arrays.stream(rateKeys).forEach(rateIds::set);
+    rateKeys = null;
+  }
 
+  /**
+   * Grow the values array to hold the provided id, to the registry size at least so that the following new ids fit
+   */
+  private static long[] grow(long[] values, int id) {
+    return Arrays.copyOf(values, Math.max(id + 1, Math.max(MetricKeyRegistry.size(), values.length * 2)));
+  }
 }
@@ -0,0 +1,84 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry interning the metric names into small consecutive ids, shared by all the {@link gd.engineering.httplogmonitor.model.metrics.IntervalMetrics}.
+ * <p>
+ * The ids index the primitive counter and rate arrays of the interval metrics so that the hot path increments a counter by id,
+ * without building nor hashing its name. The names are only used to resolve an id once, e.g when a new section is first seen,
+ * and to query the metrics by name.
+ * <p>
+ * A name is never unregistered: the registry grows with the number of distinct metric names, i.e of distinct sections and files.
+ * This class is thread safe, looking up an existing id does not lock
+ */
+public final class MetricKeyRegistry {
+
+  public static final int UNKNOWN_ID = -1;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+  private static volatile String[] names = new String[INITIAL_CAPACITY];
+  private static volatile int size;
+
+  /**
+   * Retrieve the id of the provided metric name, registering it if needed
+   *
+   * @param name Metric name
+   * @return Metric id
+   */
+  public static int intern(String name) {
+    Integer id = IDS.get(name);
+    return id != null ? id : register(name);
+  }
+
+  /**
+   * Retrieve the id of the provided metric name without registering it
+   *
+   * @param name Metric name
+   * @return Metric id or {@link #UNKNOWN_ID} if the name has never been registered
+   */
+  public static int find(String name) {
+    Integer id = name == null ? null : IDS.get(name);
+    return id != null ? id : UNKNOWN_ID;
+  }
+
+  /**
+   * Retrieve the name of a registered metric id
+   *
+   * @param id Metric id
+   * @return Metric name
+   */
+  public static String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * Number of metric names registered, all the ids are lower
+   *
+   * @return Registry size
+   */
+  public static int size() {
+    return size;
+  }
+
+  private static synchronized int register(String name) {
+    Integer id = IDS.get(name);
+    if (id != null) {
+      return id;
+    }
+    int newId = size;
+    if (newId == names.length) {
+      names = Arrays.copyOf(names, names.length * 2);
+    }
+    names[newId] = name;
+    size = newId + 1;
+    // Published last so that any thread reading the id can read its name
+    IDS.put(name, newId);
+    return newId;
+  }
+
+  private MetricKeyRegistry() {
+  }
+}
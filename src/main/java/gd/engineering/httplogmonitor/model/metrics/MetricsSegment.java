@@ -0,0 +1,295 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Segment of intervals flushed during a time range: a memory mapped segment file of the {@link SegmentMetricsStore}
+ * or a direct memory slab of the {@link OffHeapMetricsStore}.
+ * <p>
+ * The buffer is allocated to its capacity and the intervals are appended one after the other with the following layout:
+ * int record length | long start time | long end time | int counter count | counter count x (int name id, long value) | int rate count | rate count x (int name id, double value)
+ * <p>
+ * The name ids are the ids of the store names dictionary, or the registry ids off heap, sorted so that a value is found with a binary search in the record.
+ * The record length is written last: a record torn by a crash is left with a 0 length, which marks the end of the segment.
+ * The start and end times and the offset of each record are indexed in memory, rebuilt at opening by reading the record headers only
+ */
+class MetricsSegment {
+
+  static final String SUFFIX = ".seg";
+  // Record length, start and end times, counter count
+  private static final int HEADER_SIZE = 24;
+  private static final int ENTRY_SIZE = 12;
+
+  private Path file;
+  private ByteBuffer buffer;
+  private int position;
+  private long[] startTimes = new long[64];
+  private long[] endTimes = new long[64];
+  private int[] offsets = new int[64];
+  private int size;
+
+  private MetricsSegment(Path file, ByteBuffer buffer) {
+    this.file = file;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Create a new segment file named after the start time of its first interval
+   *
+   * @param directory      Store directory
+   * @param firstStartTime Start time of the first interval
+   * @param capacity       Segment file size in bytes
+   * @return New segment
+   * @throws IOException If the file cannot be created or mapped
+   */
+  static MetricsSegment create(Path directory, long firstStartTime, int capacity) throws IOException {
+    Path file = directory.resolve(firstStartTime + SUFFIX);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return new MetricsSegment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+  }
+
+  /**
+   * Build an empty segment in memory, e.g a direct memory slab
+   *
+   * @param buffer Segment buffer, written from its start
+   * @return New segment
+   */
+  static MetricsSegment wrap(ByteBuffer buffer) {
+    return new MetricsSegment(null, buffer);
+  }
+
+  /**
+   * Open an existing segment file and index its records
+   *
+   * @param file Segment file
+   * @return Opened segment, positioned after its last complete record
+   * @throws IOException If the file cannot be mapped
+   */
+  static MetricsSegment open(Path file) throws IOException {
+    MetricsSegment segment;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      segment = new MetricsSegment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+    ByteBuffer buffer = segment.buffer;
+    while (segment.position + HEADER_SIZE <= buffer.capacity()) {
+      int length = buffer.getInt(segment.position);
+      if (length <= 0 || segment.position + length > buffer.capacity()) {
+        break;
+      }
+      segment.index(segment.position, buffer.getLong(segment.position + 4), buffer.getLong(segment.position + 12));
+      segment.position += length;
+    }
+    return segment;
+  }
+
+  /**
+   * Append an interval if it fits in the remaining capacity
+   *
+   * @param startTime     Interval start time
+   * @param endTime       Interval end time
+   * @param counterIds    Counter name ids, sorted
+   * @param counterValues Counter values
+   * @param counterCount  Number of counters
+   * @param rateIds       Rate name ids, sorted
+   * @param rateValues    Rate values
+   * @param rateCount     Number of rates
+   * @return False if the interval does not fit in the segment
+   */
+  boolean append(long startTime, long endTime, int[] counterIds, long[] counterValues, int counterCount, int[] rateIds, double[] rateValues, int rateCount) {
+    int length = recordSize(counterCount, rateCount);
+    if (position + length > buffer.capacity()) {
+      return false;
+    }
+    int offset = position + 4;
+    buffer.putLong(offset, startTime);
+    buffer.putLong(offset + 8, endTime);
+    buffer.putInt(offset + 16, counterCount);
+    offset += 20;
+    for (int i = 0; i < counterCount; i++, offset += ENTRY_SIZE) {
+      buffer.putInt(offset, counterIds[i]);
+      buffer.putLong(offset + 4, counterValues[i]);
+    }
+    buffer.putInt(offset, rateCount);
+    offset += 4;
+    for (int i = 0; i < rateCount; i++, offset += ENTRY_SIZE) {
+      buffer.putInt(offset, rateIds[i]);
+      buffer.putDouble(offset + 4, rateValues[i]);
+    }
+    // Commits the record
+    buffer.putInt(position, length);
+    index(position, startTime, endTime);
+    position += length;
+    return true;
+  }
+
+  /**
+   * Size of a record in bytes
+   *
+   * @param counterCount Number of counters
+   * @param rateCount    Number of rates
+   * @return Record size
+   */
+  static int recordSize(int counterCount, int rateCount) {
+    return HEADER_SIZE + 4 + ENTRY_SIZE * (counterCount + rateCount);
+  }
+
+  /**
+   * Read a counter of an interval in its record
+   *
+   * @param index  Interval index in the segment
+   * @param nameId Counter name id
+   * @return Counter value, 0 if not recorded
+   */
+  long getCounterValue(int index, int nameId) {
+    int entry = find(offsets[index] + HEADER_SIZE, nameId);
+    return entry < 0 ? 0 : buffer.getLong(entry + 4);
+  }
+
+  /**
+   * Read a rate of an interval in its record
+   *
+   * @param index  Interval index in the segment
+   * @param nameId Rate name id
+   * @return Rate value, 0 if not recorded
+   */
+  double getRateValue(int index, int nameId) {
+    int entry = find(rateEntriesOffset(index), nameId);
+    return entry < 0 ? 0 : buffer.getDouble(entry + 4);
+  }
+
+  /**
+   * Decode a whole interval, e.g the latest one at opening
+   *
+   * @param index Interval index in the segment
+   * @param names Names dictionary
+   * @return Decoded metrics
+   */
+  IntervalMetrics read(int index, String[] names) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.setStartTime(startTimes[index]);
+    metrics.setEndTime(endTimes[index]);
+    int counters = offsets[index] + HEADER_SIZE;
+    for (int i = 0, count = buffer.getInt(counters - 4); i < count; i++) {
+      int entry = counters + i * ENTRY_SIZE;
+      metrics.incrBy(names[buffer.getInt(entry)], buffer.getLong(entry + 4));
+    }
+    int rates = rateEntriesOffset(index);
+    for (int i = 0, count = buffer.getInt(rates - 4); i < count; i++) {
+      int entry = rates + i * ENTRY_SIZE;
+      metrics.putRate(names[buffer.getInt(entry)], buffer.getDouble(entry + 4));
+    }
+    metrics.compact();
+    return metrics;
+  }
+
+  /**
+   * Binary search of the first interval starting at or after the provided time
+   *
+   * @param timeMs Time in milliseconds
+   * @return Interval index, size if there is none
+   */
+  int indexFrom(long timeMs) {
+    int index = Arrays.binarySearch(startTimes, 0, size, timeMs);
+    if (index < 0) {
+      return -index - 1;
+    }
+    while (index > 0 && startTimes[index - 1] == timeMs) {
+      index--;
+    }
+    return index;
+  }
+
+  long getStartTime(int index) {
+    return startTimes[index];
+  }
+
+  long getEndTime(int index) {
+    return endTimes[index];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Bytes written in the segment
+   *
+   * @return Write position
+   */
+  int getPosition() {
+    return position;
+  }
+
+  /**
+   * Heap size of the in memory index
+   *
+   * @return Approximate size in bytes
+   */
+  long getIndexFootprint() {
+    return 20L * startTimes.length;
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Flush the written records to the file, if the segment is memory mapped
+   */
+  void force() {
+    if (buffer instanceof MappedByteBuffer) {
+      ((MappedByteBuffer) buffer).force();
+    }
+  }
+
+  private int rateEntriesOffset(int index) {
+    int counters = offsets[index] + HEADER_SIZE;
+    return counters + buffer.getInt(counters - 4) * ENTRY_SIZE + 4;
+  }
+
+  /**
+   * Binary search of a name id in the entries following their count
+   *
+   * @return Entry offset, -1 if not found
+   */
+  private int find(int entries, int nameId) {
+    int low = 0;
+    int high = buffer.getInt(entries - 4) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleId = buffer.getInt(entries + middle * ENTRY_SIZE);
+      if (middleId < nameId) {
+        low = middle + 1;
+      } else if (middleId > nameId) {
+        high = middle - 1;
+      } else {
+        return entries + middle * ENTRY_SIZE;
+      }
+    }
+    return -1;
+  }
+
+  private void index(int offset, long startTime, long endTime) {
+    if (size == startTimes.length) {
+      startTimes = Arrays.copyOf(startTimes, size * 2);
+      endTimes = Arrays.copyOf(endTimes, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2);
+    }
+    startTimes[size] = startTime;
+    endTimes[size] = endTime;
+    offsets[size] = offset;
+    size++;
+  }
+}
@@ -0,0 +1,167 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Window queries and record encoding shared by the stores of {@link MetricsSegment}, the {@link SegmentMetricsStore} and the {@link OffHeapMetricsStore}.
+ * <p>
+ * The segments are iterated in time order and the metrics are referred to by the ids written in the records, the dictionary ids or the registry ids.
+ * As the {@link InMemoryMetricsStore} does, each average and sum looks for a full evaluation window: 0 is returned when the window starts before
+ * the first retained interval
+ */
+final class MetricsSegments {
+
+  /**
+   * Id of a metric name in the records
+   *
+   * @param <E> Exception raised when the name cannot be registered
+   */
+  interface IdMapper<E extends Exception> {
+
+    /**
+     * Retrieve the record id of the provided metric name, registering it if needed
+     *
+     * @param name Metric name
+     * @return Record id, negative for a metric to be left out of the record
+     * @throws E If the name cannot be registered
+     */
+    int getId(String name) throws E;
+  }
+
+  /**
+   * Average of the rate over the intervals of the window
+   *
+   * @param segments      Segments in time order
+   * @param rateId        Record id of the rate, negative if never recorded
+   * @param nowMs         Window end in milliseconds
+   * @param timeFromNowMs Window length in milliseconds
+   * @return Average rate, 0 if the window is not full
+   */
+  static double getAverageRateValue(Iterable<MetricsSegment> segments, int rateId, long nowMs, long timeFromNowMs) {
+    long lowerBound = nowMs - timeFromNowMs;
+    if (lowerBound < getFirstStartTime(segments)) {
+      return 0;
+    }
+    double sum = 0;
+    int count = 0;
+    for (MetricsSegment segment : segments) {
+      for (int i = segment.indexFrom(lowerBound), end = segment.indexFrom(nowMs); i < end; i++) {
+        sum += rateId < 0 ? 0 : segment.getRateValue(i, rateId);
+        count++;
+      }
+    }
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * Average of the counter over the intervals of the window
+   *
+   * @param segments      Segments in time order
+   * @param counterId     Record id of the counter, negative if never recorded
+   * @param nowMs         Window end in milliseconds
+   * @param timeFromNowMs Window length in milliseconds
+   * @return Average counter value, 0 if the window is not full
+   */
+  static double getAverageCounterValue(Iterable<MetricsSegment> segments, int counterId, long nowMs, long timeFromNowMs) {
+    long firstStartTime = getFirstStartTime(segments);
+    long lowerBound = nowMs - timeFromNowMs;
+    if (timeFromNowMs < firstStartTime || lowerBound < firstStartTime) {
+      return 0;
+    }
+    int count = 0;
+    for (MetricsSegment segment : segments) {
+      count += Math.max(0, segment.indexFrom(nowMs) - segment.indexFrom(lowerBound));
+    }
+    return count == 0 ? 0 : sumCounter(segments, counterId, lowerBound, nowMs) / (double) count;
+  }
+
+  /**
+   * Sum of the counter over the intervals of the window
+   *
+   * @param segments      Segments in time order
+   * @param counterId     Record id of the counter, negative if never recorded
+   * @param nowMs         Window end in milliseconds
+   * @param timeFromNowMs Window length in milliseconds
+   * @return Counter sum, 0 if the window is not full
+   */
+  static long getSumCounterValue(Iterable<MetricsSegment> segments, int counterId, long nowMs, long timeFromNowMs) {
+    long firstStartTime = getFirstStartTime(segments);
+    long lowerBound = nowMs - timeFromNowMs;
+    if (timeFromNowMs < firstStartTime || lowerBound < firstStartTime) {
+      return 0;
+    }
+    return sumCounter(segments, counterId, lowerBound, nowMs);
+  }
+
+  /**
+   * Start time of the first interval of the segments
+   *
+   * @param segments Segments in time order
+   * @return Start time in milliseconds, {@link Long#MAX_VALUE} if there is no interval
+   */
+  static long getFirstStartTime(Iterable<MetricsSegment> segments) {
+    for (MetricsSegment segment : segments) {
+      if (segment.size() > 0) {
+        return segment.getStartTime(0);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Fill the ids and values of the metrics sorted by record id, as a record expects them.
+   * The metrics mapped to a negative id are skipped
+   *
+   * @param metrics      Metric values by name
+   * @param idMapper     Record id of each name
+   * @param ids          Sorted ids to be filled, of the metrics size
+   * @param longValues   Counter values to be filled, null for rates
+   * @param doubleValues Rate values to be filled, null for counters
+   * @param <E>          Exception raised when a name cannot be registered
+   * @return Number of metrics
+   * @throws E If a name cannot be registered
+   */
+  static <E extends Exception> int sortById(Map<String, ? extends Number> metrics, IdMapper<E> idMapper, int[] ids, long[] longValues, double[] doubleValues) throws E {
+    long[] entries = new long[metrics.size()];
+    Number[] values = new Number[metrics.size()];
+    int count = 0;
+    for (Map.Entry<String, ? extends Number> metric : metrics.entrySet()) {
+      int id = idMapper.getId(metric.getKey());
+      if (id < 0) {
+        continue;
+      }
+      // Id in the high bits and position in the low bits so that the values follow the sort
+      entries[count] = (long) id << 32 | count;
+      values[count] = metric.getValue();
+      count++;
+    }
+    Arrays.sort(entries, 0, count);
+    for (int i = 0; i < count; i++) {
+      ids[i] = (int) (entries[i] >>> 32);
+      Number value = values[(int) entries[i]];
+      if (longValues != null) {
+        longValues[i] = value.longValue();
+      } else {
+        doubleValues[i] = value.doubleValue();
+      }
+    }
+    return count;
+  }
+
+  private static long sumCounter(Iterable<MetricsSegment> segments, int counterId, long lowerBound, long upperBound) {
+    if (counterId < 0) {
+      return 0;
+    }
+    long sum = 0;
+    for (MetricsSegment segment : segments) {
+      for (int i = segment.indexFrom(lowerBound), end = segment.indexFrom(upperBound); i < end; i++) {
+        sum += segment.getCounterValue(i, counterId);
+      }
+    }
+    return sum;
+  }
+
+  private MetricsSegments() {
+  }
+}
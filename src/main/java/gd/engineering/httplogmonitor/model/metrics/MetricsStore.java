@@ -1,9 +1,14 @@
 package gd.engineering.httplogmonitor.model.metrics;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Abstraction of a metrics store managing counters and rates.
  * <p>
  * The store is able to add newly flushed metrics and compute sum and averages on counters and rates.
+ * Counter sums are 64 bits, averages and rates are doubles.
+ * The stores keeping a section history, see {@link SectionIndexedMetricsStore}, also rank the sections and sum their counters over a window.
  */
 public interface MetricsStore {
   /**
@@ -20,7 +25,7 @@ public interface MetricsStore {
    * @param counterName Counter name
    * @return Counter aggregated value since the counter has emitted data for the first time
    */
-  int getTotalSumCounterValue(String counterName);
+  long getTotalSumCounterValue(String counterName);
 
   /**
    * Return the average value of the given counter from nowMs to nowMs-timeFromNowMs
@@ -30,7 +35,7 @@ public interface MetricsStore {
    * @param timeFromNowMs Time delta from now in milliseconds
    * @return The average value of the given counter in the provided time window
    */
-  int getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs);
+  double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs);
 
   /**
    * Return the sum of the given counter from nowMs to nowMs-timeFromNowMs
@@ -40,7 +45,7 @@ public interface MetricsStore {
    * @param timeFromNowMs Time delta from now in milliseconds
    * @return The sum of the given counter in the provided time window
    */
-  int getSumCounterValue(String counterName, long nowMs, long timeFromNowMs);
+  long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs);
 
   /**
    * Return the average value of the given rate from nowMs to nowMs-timeFromNowMs
@@ -50,7 +55,7 @@ public interface MetricsStore {
    * @param timeFromNowMs Time delta from now in milliseconds
    * @return The average value of the given rate in the provided time window
    */
-  int getAverageRateValue(String rateName, long nowMs, long timeFromNowMs);
+  double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs);
 
   /**
    * Return the latest flushed metrics
@@ -58,4 +63,53 @@ public interface MetricsStore {
    * @return Latest flushed metrics
    */
   IntervalMetrics getLatestMetrics();
+
+  /**
+   * Return the number of flushed metrics retained by the store
+   *
+   * @return Retained interval count
+   */
+  int getIntervalCount();
+
+  /**
+   * Return the approximate memory used by the retained metrics
+   *
+   * @return Memory usage in bytes
+   */
+  long getMemoryUsage();
+
+  /**
+   * Return the part of the memory usage outside of the heap, e.g direct memory
+   *
+   * @return Off heap memory usage in bytes, 0 for a store on the heap
+   */
+  default long getOffHeapMemoryUsage() {
+    return 0;
+  }
+
+  /**
+   * Return the sections ranked by the sum of the given section counter from nowMs to nowMs-timeFromNowMs
+   *
+   * @param counterName   Section counter name, e.g hits
+   * @param nowMs         Upper time bound for the counter values in milliseconds
+   * @param timeFromNowMs Time delta from now in milliseconds
+   * @param maxSections   Number of sections to return
+   * @return Up to maxSections section names by decreasing sum, empty for a store without section history
+   */
+  default List<String> getTopSections(String counterName, long nowMs, long timeFromNowMs, int maxSections) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Return the sum of the given counter of a section from nowMs to nowMs-timeFromNowMs
+   *
+   * @param section       Section name, e.g GET/api
+   * @param counterName   Section counter name, e.g errors
+   * @param nowMs         Upper time bound for the counter values in milliseconds
+   * @param timeFromNowMs Time delta from now in milliseconds
+   * @return The sum of the section counter in the provided time window, 0 for a store without section history
+   */
+  default long getSumSectionCounterValue(String section, String counterName, long nowMs, long timeFromNowMs) {
+    return 0;
+  }
 }
@@ -0,0 +1,165 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Off heap implementation of the metrics store, so that a long retention with many sections is not a large old generation object graph
+ * scanned by the garbage collector.
+ * <p>
+ * Each flushed interval is appended as a record to a direct memory {@link MetricsSegment} slab, taken from a {@link SlabAllocator} bounded to
+ * a maximum number of bytes. A slab is released to the allocator once all its intervals are older than the retention, or earlier if all the slabs
+ * are in use, the oldest intervals being evicted first. The records refer to the metrics by their registry id.
+ * <p>
+ * Only the metadata stays on the heap: the start and end times and the offset of each record, the latest metrics and the totals.
+ * The window queries read the values of the queried metric in the records, without decoding the intervals.
+ * <p>
+ * The metrics have to be added in time order: metrics not after the latest ones are refused.
+ * The window queries and the record encoding are shared with the {@link SegmentMetricsStore} in {@link MetricsSegments}
+ */
+public class OffHeapMetricsStore implements MetricsStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapMetricsStore.class);
+
+  private long retentionMs;
+  private SlabAllocator allocator;
+  private Deque<MetricsSegment> slabs = new ArrayDeque<>();
+  private IntervalMetrics latest;
+  private IntervalMetrics totals = new IntervalMetrics();
+
+  /**
+   * Build a new store
+   *
+   * @param retentionMs Retention in milliseconds
+   * @param slabSize    Size of a slab in bytes, an interval record has to fit in a slab
+   * @param maxBytes    Maximum direct memory used by the slabs in bytes, 1 slab at least
+   * @throws IllegalArgumentException If the slab size is not strictly positive
+   */
+  public OffHeapMetricsStore(long retentionMs, int slabSize, long maxBytes) {
+    this.retentionMs = retentionMs;
+    this.allocator = new SlabAllocator(slabSize, maxBytes);
+  }
+
+  /**
+   * Append the metrics to the current slab, taking a new slab when full, then release the slabs older than the retention
+   *
+   * @param stats New metrics to be added
+   * @return False if the metrics are not after the latest ones or do not fit in a slab
+   */
+  @Override
+  public synchronized boolean add(IntervalMetrics stats) {
+    if (latest != null && stats.getStartTime() <= latest.getStartTime()) {
+      return false;
+    }
+    Map<String, Long> counters = stats.getCounters();
+    Map<String, Double> rates = stats.getRates();
+    if (MetricsSegment.recordSize(counters.size(), rates.size()) > allocator.getSlabSize()) {
+      LOG.warn("Metrics of {} counters and {} rates do not fit in a {} bytes slab, not stored", counters.size(), rates.size(), allocator.getSlabSize());
+      return false;
+    }
+    int[] counterIds = new int[counters.size()];
+    long[] counterValues = new long[counters.size()];
+    int[] rateIds = new int[rates.size()];
+    double[] rateValues = new double[rates.size()];
+    int counterCount = MetricsSegments.sortById(counters, MetricKeyRegistry::intern, counterIds, counterValues, null);
+    int rateCount = MetricsSegments.sortById(rates, MetricKeyRegistry::intern, rateIds, null, rateValues);
+    MetricsSegment slab = slabs.peekLast();
+    if (slab == null || !slab.append(stats.getStartTime(), stats.getEndTime(), counterIds, counterValues, counterCount, rateIds, rateValues, rateCount)) {
+      slab = MetricsSegment.wrap(allocateSlab());
+      slabs.addLast(slab);
+      slab.append(stats.getStartTime(), stats.getEndTime(), counterIds, counterValues, counterCount, rateIds, rateValues, rateCount);
+    }
+    latest = stats;
+    totals.merge(stats);
+    evict(stats.getStartTime());
+    return true;
+  }
+
+  @Override
+  public synchronized long getTotalSumCounterValue(String counterName) {
+    return totals.getCounterValue(counterName);
+  }
+
+  @Override
+  public synchronized double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getAverageRateValue(slabs, MetricKeyRegistry.find(rateName), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getAverageCounterValue(slabs, MetricKeyRegistry.find(counterName), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getSumCounterValue(slabs, MetricKeyRegistry.find(counterName), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized IntervalMetrics getLatestMetrics() {
+    return latest;
+  }
+
+  @Override
+  public synchronized int getIntervalCount() {
+    return slabs.stream().mapToInt(MetricsSegment::size).sum();
+  }
+
+  /**
+   * Memory used by the record indexes and the latest and total metrics on the heap, and by the allocated slabs
+   *
+   * @return Approximate memory usage in bytes
+   */
+  @Override
+  public synchronized long getMemoryUsage() {
+    long usage = totals.getMemoryFootprint() + (latest == null ? 0 : latest.getMemoryFootprint()) + allocator.getAllocatedBytes();
+    for (MetricsSegment slab : slabs) {
+      usage += slab.getIndexFootprint();
+    }
+    return usage;
+  }
+
+  @Override
+  public synchronized long getOffHeapMemoryUsage() {
+    return allocator.getAllocatedBytes();
+  }
+
+  /**
+   * Number of slabs holding intervals
+   *
+   * @return Slab count
+   */
+  synchronized int getSlabCount() {
+    return slabs.size();
+  }
+
+  /**
+   * Take a slab from the allocator, releasing the oldest slab if all of them are in use
+   */
+  private ByteBuffer allocateSlab() {
+    ByteBuffer buffer = allocator.allocate();
+    if (buffer == null) {
+      buffer = slabs.removeFirst().getBuffer();
+      LOG.debug("Off heap metrics store full, oldest slab evicted before the retention");
+    }
+    return buffer;
+  }
+
+  /**
+   * Release the slabs of which all the intervals are older than the retention, the current slab being always kept
+   */
+  private void evict(long latestStartTime) {
+    while (slabs.size() > 1) {
+      MetricsSegment oldest = slabs.peekFirst();
+      if (oldest.getEndTime(oldest.size() - 1) > latestStartTime - retentionMs) {
+        return;
+      }
+      allocator.release(slabs.removeFirst().getBuffer());
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * History of the section counters, e.g section:GET/api:hits, indexed by section so that the range aggregations of a section
+ * and the top sections over any window do not scan the stored intervals.
+ * <p>
+ * Each section has its own series, holding the start times of the intervals in which the section was seen and, for each of its counters,
+ * the running sums of the counter from the first retained interval: the sum of a section counter over a window is the difference of the running sums
+ * at the window bounds, found with a binary search.
+ * The sections are also indexed by the start time of their latest interval: the top sections over a window only visit the sections seen
+ * since the window start, a short window over a long history visiting the recently active sections only.
+ * <p>
+ * The intervals have to be indexed in time order, the ones not after the latest one are ignored. The sections not seen during the retention are dropped
+ */
+public class SectionIndex {
+
+  private static final Comparator<SectionSeries> BY_RECENCY = Comparator.comparingLong((SectionSeries series) -> series.lastStartTime).reversed()
+      .thenComparing(series -> series.name);
+
+  private String sectionPrefix;
+  private String delimiter;
+  private long retentionMs;
+  private Map<String, SectionSeries> sections = new HashMap<>();
+  // Sections from the most recently seen one
+  private TreeSet<SectionSeries> byRecency = new TreeSet<>(BY_RECENCY);
+  private long latestStartTime = Long.MIN_VALUE;
+
+  /**
+   * Build a new index of the counters named after the section prefix, the section name, the delimiter and the counter name
+   *
+   * @param sectionPrefix Prefix of the section counters, e.g section:
+   * @param delimiter     Delimiter between the section name and the counter name, e.g :
+   * @param retentionMs   Retention in milliseconds
+   */
+  public SectionIndex(String sectionPrefix, String delimiter, long retentionMs) {
+    this.sectionPrefix = sectionPrefix;
+    this.delimiter = delimiter;
+    this.retentionMs = retentionMs;
+  }
+
+  /**
+   * Append the section counters of the interval to their section series, then drop the sections not seen during the retention
+   *
+   * @param metrics Flushed metrics
+   * @return False if the metrics are not after the latest indexed ones, they are ignored
+   */
+  public synchronized boolean add(IntervalMetrics metrics) {
+    long startTime = metrics.getStartTime();
+    if (startTime <= latestStartTime) {
+      return false;
+    }
+    latestStartTime = startTime;
+    Map<String, Map<String, Long>> sectionCounters = new HashMap<>();
+    metrics.getCounters().forEach((counter, value) -> {
+      int counterStart = counter.lastIndexOf(delimiter);
+      if (counter.startsWith(sectionPrefix) && counterStart > sectionPrefix.length()) {
+        sectionCounters.computeIfAbsent(counter.substring(sectionPrefix.length(), counterStart), section -> new HashMap<>())
+            .put(counter.substring(counterStart + delimiter.length()), value);
+      }
+    });
+    long evictionTime = startTime - retentionMs;
+    sectionCounters.forEach((section, counters) -> {
+      SectionSeries series = sections.computeIfAbsent(section, SectionSeries::new);
+      byRecency.remove(series);
+      series.evictBefore(evictionTime);
+      series.append(startTime, counters);
+      byRecency.add(series);
+    });
+    // The least recently seen sections are last
+    while (!byRecency.isEmpty() && byRecency.last().lastStartTime < evictionTime) {
+      sections.remove(byRecency.pollLast().name);
+    }
+    return true;
+  }
+
+  /**
+   * Sum a counter of a section over the intervals starting between the bounds
+   *
+   * @param section     Section name, e.g GET/api
+   * @param counterName Counter name, e.g hits
+   * @param fromMs      Inclusive time lower bound
+   * @param toMs        Exclusive time upper bound
+   * @return Counter sum, 0 if the section or the counter was not seen
+   */
+  public synchronized long sum(String section, String counterName, long fromMs, long toMs) {
+    SectionSeries series = sections.get(section);
+    return series == null ? 0 : series.sum(counterName, fromMs, toMs);
+  }
+
+  /**
+   * Rank the sections by the sum of a counter over the intervals starting between the bounds
+   *
+   * @param counterName Ranking counter name, e.g hits
+   * @param fromMs      Inclusive time lower bound
+   * @param toMs        Exclusive time upper bound
+   * @param maxSections Number of sections to keep
+   * @return Up to maxSections section names with a strictly positive sum, by decreasing sum then by name
+   */
+  public synchronized List<String> top(String counterName, long fromMs, long toMs, int maxSections) {
+    if (maxSections <= 0) {
+      return new ArrayList<>();
+    }
+    // Smallest sum of the current top first
+    PriorityQueue<SectionSum> top = new PriorityQueue<>(maxSections + 1, Comparator.reverseOrder());
+    for (SectionSeries series : byRecency) {
+      if (series.lastStartTime < fromMs) {
+        break;
+      }
+      long sum = series.sum(counterName, fromMs, toMs);
+      if (sum > 0) {
+        top.add(new SectionSum(series.name, sum));
+        if (top.size() > maxSections) {
+          top.poll();
+        }
+      }
+    }
+    List<SectionSum> ranked = new ArrayList<>(top);
+    Collections.sort(ranked);
+    List<String> names = new ArrayList<>(ranked.size());
+    ranked.forEach(sectionSum -> names.add(sectionSum.name));
+    return names;
+  }
+
+  /**
+   * Number of sections seen during the retention
+   *
+   * @return Section count
+   */
+  public synchronized int getSectionCount() {
+    return sections.size();
+  }
+
+  /**
+   * Memory used by the section series
+   *
+   * @return Approximate memory usage in bytes
+   */
+  public synchronized long getMemoryUsage() {
+    long usage = 0;
+    for (SectionSeries series : sections.values()) {
+      usage += 96 + 2L * series.name.length() + (8L + 8L * series.sums.size()) * series.startTimes.length + 64L * series.sums.size();
+    }
+    return usage;
+  }
+
+  /**
+   * Intervals of a section: start times from head inclusive to size exclusive, and for each counter the sums of the counter before each interval,
+   * the sums at size being the sums up to the latest interval
+   */
+  private static class SectionSeries {
+    private String name;
+    private long[] startTimes = new long[16];
+    private Map<String, long[]> sums = new HashMap<>();
+    private int head;
+    private int size;
+    private long lastStartTime;
+
+    private SectionSeries(String name) {
+      this.name = name;
+    }
+
+    private void append(long startTime, Map<String, Long> counters) {
+      if (size == startTimes.length) {
+        makeRoom();
+      }
+      startTimes[size] = startTime;
+      sums.forEach((counter, counterSums) -> counterSums[size + 1] = counterSums[size] + counters.getOrDefault(counter, 0L));
+      counters.forEach((counter, value) -> sums.computeIfAbsent(counter, c -> {
+        // Nothing before for a new counter
+        long[] counterSums = new long[startTimes.length + 1];
+        counterSums[size + 1] = value;
+        return counterSums;
+      }));
+      size++;
+      lastStartTime = startTime;
+    }
+
+    private long sum(String counter, long fromMs, long toMs) {
+      long[] counterSums = sums.get(counter);
+      if (counterSums == null) {
+        return 0;
+      }
+      int start = indexFrom(fromMs);
+      int end = indexFrom(toMs);
+      return start >= end ? 0 : counterSums[end] - counterSums[start];
+    }
+
+    private void evictBefore(long timeMs) {
+      while (head < size && startTimes[head] < timeMs) {
+        head++;
+      }
+    }
+
+    /**
+     * Binary search of the first interval starting at or after the provided time
+     */
+    private int indexFrom(long timeMs) {
+      int low = head;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (startTimes[middle] < timeMs) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Shift the retained intervals to the start of the arrays if half of them are evicted, grow the arrays otherwise
+     */
+    private void makeRoom() {
+      if (head >= startTimes.length / 2) {
+        System.arraycopy(startTimes, head, startTimes, 0, size - head);
+        sums.values().forEach(counterSums -> System.arraycopy(counterSums, head, counterSums, 0, size - head + 1));
+        size -= head;
+        head = 0;
+      } else {
+        startTimes = Arrays.copyOf(startTimes, startTimes.length * 2);
+        sums.replaceAll((counter, counterSums) -> Arrays.copyOf(counterSums, startTimes.length + 1));
+      }
+    }
+  }
+
+  /**
+   * Window sum of a section, ordered by decreasing sum then by name
+   */
+  private static class SectionSum implements Comparable<SectionSum> {
+    private String name;
+    private long sum;
+
+    private SectionSum(String name, long sum) {
+      this.name = name;
+      this.sum = sum;
+    }
+
+    @Override
+    public int compareTo(SectionSum other) {
+      int bySum = Long.compare(other.sum, sum);
+      return bySum != 0 ? bySum : name.compareTo(other.name);
+    }
+  }
+}
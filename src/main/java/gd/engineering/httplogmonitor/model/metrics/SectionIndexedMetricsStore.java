@@ -0,0 +1,101 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Metrics store adding a {@link SectionIndex} to any other store, so that the section queries are answered over any window within the section retention.
+ * <p>
+ * The metrics added to the store are indexed once stored. The other queries are answered by the store
+ */
+public class SectionIndexedMetricsStore implements MetricsStore, Closeable {
+
+  private MetricsStore store;
+  private SectionIndex sectionIndex;
+
+  /**
+   * Build a new store indexing the sections of the provided one
+   *
+   * @param store        Store of the metrics
+   * @param sectionIndex Section index
+   */
+  public SectionIndexedMetricsStore(MetricsStore store, SectionIndex sectionIndex) {
+    this.store = store;
+    this.sectionIndex = sectionIndex;
+  }
+
+  @Override
+  public boolean add(IntervalMetrics stats) {
+    if (!store.add(stats)) {
+      return false;
+    }
+    sectionIndex.add(stats);
+    return true;
+  }
+
+  @Override
+  public long getTotalSumCounterValue(String counterName) {
+    return store.getTotalSumCounterValue(counterName);
+  }
+
+  @Override
+  public double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return store.getAverageCounterValue(counterName, nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return store.getSumCounterValue(counterName, nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    return store.getAverageRateValue(rateName, nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public IntervalMetrics getLatestMetrics() {
+    return store.getLatestMetrics();
+  }
+
+  @Override
+  public int getIntervalCount() {
+    return store.getIntervalCount();
+  }
+
+  /**
+   * Memory used by the store and the section index
+   *
+   * @return Approximate memory usage in bytes
+   */
+  @Override
+  public long getMemoryUsage() {
+    return store.getMemoryUsage() + sectionIndex.getMemoryUsage();
+  }
+
+  @Override
+  public long getOffHeapMemoryUsage() {
+    return store.getOffHeapMemoryUsage();
+  }
+
+  @Override
+  public List<String> getTopSections(String counterName, long nowMs, long timeFromNowMs, int maxSections) {
+    return sectionIndex.top(counterName, nowMs - timeFromNowMs, nowMs, maxSections);
+  }
+
+  @Override
+  public long getSumSectionCounterValue(String section, String counterName, long nowMs, long timeFromNowMs) {
+    return sectionIndex.sum(section, counterName, nowMs - timeFromNowMs, nowMs);
+  }
+
+  /**
+   * Close the store if it holds resources, e.g files
+   */
+  @Override
+  public void close() throws IOException {
+    if (store instanceof Closeable) {
+      ((Closeable) store).close();
+    }
+  }
+}
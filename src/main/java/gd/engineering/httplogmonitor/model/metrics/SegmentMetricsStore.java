@@ -0,0 +1,328 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disk backed implementation of the metrics store, so that the alert evaluation windows survive a restart.
+ * <p>
+ * Each flushed interval is appended to a memory mapped {@link MetricsSegment} file, a new segment being started on each segment length boundary,
+ * e.g every hour, or when the current one is full. The segments older than the retention are deleted.
+ * The metric names are stored once in an append only names dictionary (unsigned short length and UTF-8 bytes), the records referring to them by their dictionary id.
+ * The new names are forced to the dictionary file before the record referring to them is written, so that the dictionary never lags behind the records.
+ * A metric of which the name does not fit in {@link #MAX_NAME_BYTES}, e.g a section of a very long request path, is left out of the records and counted as skipped.
+ * <p>
+ * At startup the segments are mapped and indexed from their record headers only, the latest interval being the only one decoded.
+ * The window queries read the values of the queried metric in the mapped records, without decoding the intervals, as done in {@link MetricsSegments}.
+ * <p>
+ * The metrics have to be added in time order: the store is append only, metrics not after the latest ones are refused.
+ * The totals are the sums since the store was opened
+ */
+public class SegmentMetricsStore implements MetricsStore, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentMetricsStore.class);
+  static final String NAMES_FILE = "names";
+  static final int MAX_NAME_BYTES = 0xFFFF;
+  // Dictionary id of the names too long for the dictionary
+  private static final int SKIPPED_ID = -2;
+
+  private Path directory;
+  private long segmentMs;
+  private long retentionMs;
+  private int segmentCapacity;
+  private List<MetricsSegment> segments = new ArrayList<>();
+  private FileChannel namesChannel;
+  private List<String> names = new ArrayList<>();
+  // Dictionary id of each registry id, -1 if not in the dictionary yet
+  private int[] dictionaryIds = new int[0];
+  private boolean namesWritten;
+  private long skippedMetrics;
+  private IntervalMetrics latest;
+  private IntervalMetrics totals = new IntervalMetrics();
+
+  /**
+   * Open the store in the provided directory, indexing the existing segments and dropping the ones older than the retention
+   *
+   * @param directory       Store directory, created if needed
+   * @param segmentMs       Time range of a segment in milliseconds
+   * @param retentionMs     Retention in milliseconds
+   * @param segmentCapacity Segment file size in bytes
+   * @throws IOException If the directory or the segments cannot be read
+   */
+  public SegmentMetricsStore(Path directory, long segmentMs, long retentionMs, int segmentCapacity) throws IOException {
+    this.directory = directory;
+    this.segmentMs = segmentMs;
+    this.retentionMs = retentionMs;
+    this.segmentCapacity = segmentCapacity;
+    Files.createDirectories(directory);
+    openNames();
+    List<Path> segmentFiles = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + MetricsSegment.SUFFIX)) {
+      files.forEach(segmentFiles::add);
+    }
+    segmentFiles.sort((file, other) -> Long.compare(getFirstStartTime(file), getFirstStartTime(other)));
+    for (Path segmentFile : segmentFiles) {
+      segments.add(MetricsSegment.open(segmentFile));
+    }
+    String[] dictionary = names.toArray(new String[0]);
+    for (int i = segments.size() - 1; i >= 0 && latest == null; i--) {
+      MetricsSegment segment = segments.get(i);
+      if (segment.size() > 0) {
+        latest = segment.read(segment.size() - 1, dictionary);
+      }
+    }
+    if (latest != null) {
+      evict(latest.getStartTime());
+    }
+    LOG.info("Metrics store {} opened with {} intervals in {} segments", directory, getIntervalCount(), segments.size());
+  }
+
+  /**
+   * Append the metrics to the current segment, starting a new segment on the segment length boundary or when the current one is full
+   *
+   * @param stats New metrics to be added
+   * @return False if the metrics are not after the latest ones or cannot be written
+   */
+  @Override
+  public synchronized boolean add(IntervalMetrics stats) {
+    if (latest != null && stats.getStartTime() <= latest.getStartTime()) {
+      return false;
+    }
+    try {
+      Map<String, Long> counters = stats.getCounters();
+      Map<String, Double> rates = stats.getRates();
+      int[] counterIds = new int[counters.size()];
+      long[] counterValues = new long[counters.size()];
+      int[] rateIds = new int[rates.size()];
+      double[] rateValues = new double[rates.size()];
+      int counterCount = MetricsSegments.sortById(counters, this::addToDictionary, counterIds, counterValues, null);
+      int rateCount = MetricsSegments.sortById(rates, this::addToDictionary, rateIds, null, rateValues);
+      if (namesWritten) {
+        namesChannel.force(false);
+        namesWritten = false;
+      }
+      MetricsSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      boolean segmentOver = segment == null || segment.size() > 0 && alignedBoundary(segment.getStartTime(0)) + segmentMs <= stats.getStartTime();
+      if (segmentOver || !segment.append(stats.getStartTime(), stats.getEndTime(), counterIds, counterValues, counterCount, rateIds, rateValues, rateCount)) {
+        if (segment != null) {
+          segment.force();
+        }
+        segment = MetricsSegment.create(directory, stats.getStartTime(), Math.max(segmentCapacity, MetricsSegment.recordSize(counterCount, rateCount)));
+        segments.add(segment);
+        segment.append(stats.getStartTime(), stats.getEndTime(), counterIds, counterValues, counterCount, rateIds, rateValues, rateCount);
+      }
+    } catch (IOException e) {
+      LOG.error("Unable to append the metrics to the store {}", directory, e);
+      return false;
+    }
+    latest = stats;
+    totals.merge(stats);
+    evict(stats.getStartTime());
+    return true;
+  }
+
+  @Override
+  public synchronized long getTotalSumCounterValue(String counterName) {
+    return totals.getCounterValue(counterName);
+  }
+
+  @Override
+  public synchronized double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getAverageRateValue(segments, getDictionaryId(MetricKeyRegistry.find(rateName)), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getAverageCounterValue(segments, getDictionaryId(MetricKeyRegistry.find(counterName)), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    return MetricsSegments.getSumCounterValue(segments, getDictionaryId(MetricKeyRegistry.find(counterName)), nowMs, timeFromNowMs);
+  }
+
+  @Override
+  public synchronized IntervalMetrics getLatestMetrics() {
+    return latest;
+  }
+
+  @Override
+  public synchronized int getIntervalCount() {
+    return segments.stream().mapToInt(MetricsSegment::size).sum();
+  }
+
+  /**
+   * Memory used by the segment indexes, the names dictionary and the latest and total metrics on the heap, and by the mapped records
+   *
+   * @return Approximate memory usage in bytes
+   */
+  @Override
+  public synchronized long getMemoryUsage() {
+    long usage = totals.getMemoryFootprint() + (latest == null ? 0 : latest.getMemoryFootprint()) + 4L * dictionaryIds.length + 64L * names.size();
+    for (MetricsSegment segment : segments) {
+      usage += segment.getIndexFootprint() + segment.getPosition();
+    }
+    return usage;
+  }
+
+  /**
+   * Bytes written in the mapped segments
+   *
+   * @return Off heap memory usage in bytes
+   */
+  @Override
+  public synchronized long getOffHeapMemoryUsage() {
+    return segments.stream().mapToLong(MetricsSegment::getPosition).sum();
+  }
+
+  /**
+   * Number of metric values left out of the records since the store was opened, their name being longer than {@link #MAX_NAME_BYTES}
+   *
+   * @return Skipped metric count
+   */
+  public synchronized long getSkippedMetricCount() {
+    return skippedMetrics;
+  }
+
+  /**
+   * Flush the current segment and close the names dictionary
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!segments.isEmpty()) {
+      segments.get(segments.size() - 1).force();
+    }
+    namesChannel.close();
+  }
+
+  /**
+   * Number of segment files
+   *
+   * @return Segment count
+   */
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Delete the segments of which all the intervals are older than the retention, the current segment being always kept
+   */
+  private void evict(long latestStartTime) {
+    while (segments.size() > 1) {
+      MetricsSegment oldest = segments.get(0);
+      if (oldest.size() > 0 && oldest.getEndTime(oldest.size() - 1) > latestStartTime - retentionMs) {
+        return;
+      }
+      segments.remove(0);
+      try {
+        Files.delete(oldest.getFile());
+      } catch (IOException e) {
+        LOG.warn("Unable to delete the expired metrics segment {}", oldest.getFile(), e);
+      }
+    }
+  }
+
+  private long alignedBoundary(long timeMs) {
+    return timeMs - Math.floorMod(timeMs, segmentMs);
+  }
+
+  private static long getFirstStartTime(Path segmentFile) {
+    String fileName = segmentFile.getFileName().toString();
+    return Long.parseLong(fileName.substring(0, fileName.length() - MetricsSegment.SUFFIX.length()));
+  }
+
+  /**
+   * Dictionary id of the provided registry id
+   *
+   * @return Dictionary id, negative if the name is not in the dictionary
+   */
+  private int getDictionaryId(int registryId) {
+    return registryId >= 0 && registryId < dictionaryIds.length ? dictionaryIds[registryId] : -1;
+  }
+
+  /**
+   * Append the name to the dictionary file if new, the file being forced before the next record is written.
+   * A name too long for the dictionary is counted as a skipped metric
+   *
+   * @return Dictionary id of the name, {@link #SKIPPED_ID} if the name is too long
+   */
+  private int addToDictionary(String name) throws IOException {
+    int registryId = MetricKeyRegistry.intern(name);
+    int dictionaryId = getDictionaryId(registryId);
+    if (dictionaryId >= 0) {
+      return dictionaryId;
+    }
+    if (dictionaryId == SKIPPED_ID) {
+      skippedMetrics++;
+      return SKIPPED_ID;
+    }
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_NAME_BYTES) {
+      LOG.warn("Metric name of {} bytes too long for the store {}, its values are not stored: {}...", bytes.length, directory, name.substring(0, 64));
+      setDictionaryId(registryId, SKIPPED_ID);
+      skippedMetrics++;
+      return SKIPPED_ID;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(2 + bytes.length);
+    buffer.putShort((short) bytes.length).put(bytes).flip();
+    while (buffer.hasRemaining()) {
+      namesChannel.write(buffer);
+    }
+    namesWritten = true;
+    return register(name);
+  }
+
+  private int register(String name) {
+    int registryId = MetricKeyRegistry.intern(name);
+    setDictionaryId(registryId, names.size());
+    names.add(name);
+    return dictionaryIds[registryId];
+  }
+
+  private void setDictionaryId(int registryId, int dictionaryId) {
+    if (registryId >= dictionaryIds.length) {
+      int previousLength = dictionaryIds.length;
+      dictionaryIds = Arrays.copyOf(dictionaryIds, Math.max(registryId + 1, MetricKeyRegistry.size()));
+      Arrays.fill(dictionaryIds, previousLength, dictionaryIds.length, -1);
+    }
+    dictionaryIds[registryId] = dictionaryId;
+  }
+
+  /**
+   * Read the names dictionary and open it for appends, a name torn by a crash being truncated
+   */
+  private void openNames() throws IOException {
+    Path namesFile = directory.resolve(NAMES_FILE);
+    namesChannel = FileChannel.open(namesFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long validLength = 0;
+    try (InputStream input = Files.newInputStream(namesFile); DataInputStream data = new DataInputStream(input)) {
+      while (true) {
+        byte[] bytes = new byte[data.readUnsignedShort()];
+        data.readFully(bytes);
+        register(new String(bytes, StandardCharsets.UTF_8));
+        validLength += 2 + bytes.length;
+      }
+    } catch (EOFException e) {
+      // End of the dictionary
+    }
+    namesChannel.truncate(validLength);
+    namesChannel.position(validLength);
+  }
+}
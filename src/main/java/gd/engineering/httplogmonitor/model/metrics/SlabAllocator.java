@@ -0,0 +1,72 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Allocator of fixed size direct memory slabs, bounded to a maximum number of bytes.
+ * <p>
+ * A slab is allocated with {@link ByteBuffer#allocateDirect(int)} the first time it is needed, then recycled through a free list once released:
+ * the direct memory is never handed back to the JVM, so that a steady retention neither allocates direct buffers nor relies on their cleaner.
+ * The JVM direct memory limit, -XX:MaxDirectMemorySize, has to cover the maximum number of bytes
+ */
+class SlabAllocator {
+
+  private int slabSize;
+  private int maxSlabs;
+  private int allocatedSlabs;
+  private Deque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+
+  /**
+   * Build a new allocator
+   *
+   * @param slabSize Size of a slab in bytes
+   * @param maxBytes Maximum number of bytes allocated, 1 slab at least
+   * @throws IllegalArgumentException If the slab size is not strictly positive
+   */
+  SlabAllocator(int slabSize, long maxBytes) {
+    if (slabSize <= 0) {
+      throw new IllegalArgumentException("Slab size has to be strictly positive");
+    }
+    this.slabSize = slabSize;
+    this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / slabSize));
+  }
+
+  /**
+   * Take a free slab, allocating a new one if there is none and the maximum is not reached
+   *
+   * @return Cleared slab, null if all the slabs are in use
+   */
+  ByteBuffer allocate() {
+    ByteBuffer slab = freeSlabs.pollFirst();
+    if (slab == null && allocatedSlabs < maxSlabs) {
+      slab = ByteBuffer.allocateDirect(slabSize);
+      allocatedSlabs++;
+    }
+    return slab;
+  }
+
+  /**
+   * Give a slab back for a later allocation
+   *
+   * @param slab Slab taken from this allocator
+   */
+  void release(ByteBuffer slab) {
+    slab.clear();
+    freeSlabs.addFirst(slab);
+  }
+
+  int getSlabSize() {
+    return slabSize;
+  }
+
+  /**
+   * Direct memory reserved by the allocated slabs, free ones included
+   *
+   * @return Allocated bytes
+   */
+  long getAllocatedBytes() {
+    return (long) allocatedSlabs * slabSize;
+  }
+}
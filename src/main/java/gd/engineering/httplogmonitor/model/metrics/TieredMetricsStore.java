@@ -0,0 +1,381 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Metrics store downsampling the flushed metrics into coarser tiers as they age, e.g 10 seconds, 1 minute and 1 hour intervals,
+ * so that weeks of history are kept without keeping every flushed interval.
+ * <p>
+ * Each tier is an {@link InMemoryMetricsStore} with its own retention. The first tier holds the flushed intervals, each following tier
+ * merges the intervals of the previous one into rollups aligned on its clock boundaries, a rollup being added to the tier and to the following one
+ * once its boundary is reached or an interval starts after it, e.g after a gap in the flushed intervals.
+ * A rollup holds the merged counters, sections included for the top sections, the number of flushed intervals merged named {@link #INTERVALS_COUNTER},
+ * the average rates over these flushed intervals and the minimum and maximum rates of the tracked rates,
+ * named after {@link #getMinRateName(String)} and {@link #getMaxRateName(String)}.
+ * <p>
+ * A window query sums the complete intervals of the coarsest tier within the window, then the finer tiers for the window edges, down to the
+ * flushed intervals for the most recent edge. An interval of a coarser tier accounts for the flushed intervals merged into it.
+ * The edge older than the retention of the finer tiers is left out: the window starts on the boundary of the coarsest tier covering it
+ * <p>
+ * The metrics have to be added in time order, as flushed by the aggregator, aligned on the flush interval. Replaced metrics are not rolled up again
+ * <p>
+ * As for the {@link InMemoryMetricsStore}, the adds take the write lock of a {@link StampedLock} and the queries are optimistic, validated against the lock
+ * stamp and retried under the read lock if an add ran meanwhile. The running sums of a metric are built in every tier under the write lock on its first query,
+ * so that the queries only read the tiers
+ */
+public class TieredMetricsStore implements MetricsStore {
+
+  private static final String MIN_RATE_SUFFIX = ":min";
+  private static final String MAX_RATE_SUFFIX = ":max";
+  /**
+   * Counter of the number of flushed intervals merged into a rollup
+   */
+  public static final String INTERVALS_COUNTER = "rollup:intervals";
+
+  private long[] intervalsMs;
+  private InMemoryMetricsStore[] tiers;
+  private int[] trackedRateIds;
+  private int[] minRateIds;
+  private int[] maxRateIds;
+  // Rollup in progress of each tier, null for the first tier
+  private IntervalMetrics[] rollups;
+  private long[] rollupEndTimes;
+  private double[][] minRates;
+  private double[][] maxRates;
+  private int intervalsCounterId;
+  private final StampedLock lock = new StampedLock();
+
+  /**
+   * Build a new tiered store
+   *
+   * @param intervalsMs  Interval length of each tier in milliseconds, the first one being the flush interval. Each one is a multiple of the previous one
+   * @param retentionsMs Retention of each tier in milliseconds
+   * @param trackedRates Rates of which the minimum and maximum are rolled up, e.g hits
+   * @throws IllegalArgumentException If an interval length is not a multiple of the previous one or the retentions do not match the intervals
+   */
+  public TieredMetricsStore(long[] intervalsMs, long[] retentionsMs, String... trackedRates) {
+    if (intervalsMs.length == 0 || intervalsMs.length != retentionsMs.length) {
+      throw new IllegalArgumentException("Each metrics store tier needs an interval length and a retention");
+    }
+    for (int tier = 1; tier < intervalsMs.length; tier++) {
+      if (intervalsMs[tier] <= intervalsMs[tier - 1] || intervalsMs[tier] % intervalsMs[tier - 1] != 0) {
+        throw new IllegalArgumentException("Tier interval " + intervalsMs[tier] + " has to be a multiple of the previous tier interval " + intervalsMs[tier - 1]);
+      }
+    }
+    this.intervalsMs = intervalsMs.clone();
+    this.tiers = new InMemoryMetricsStore[intervalsMs.length];
+    for (int tier = 0; tier < intervalsMs.length; tier++) {
+      tiers[tier] = new InMemoryMetricsStore(InMemoryMetricsStore.capacityFor(retentionsMs[tier], intervalsMs[tier]));
+    }
+    this.trackedRateIds = new int[trackedRates.length];
+    this.minRateIds = new int[trackedRates.length];
+    this.maxRateIds = new int[trackedRates.length];
+    for (int i = 0; i < trackedRates.length; i++) {
+      trackedRateIds[i] = MetricKeyRegistry.intern(trackedRates[i]);
+      minRateIds[i] = MetricKeyRegistry.intern(getMinRateName(trackedRates[i]));
+      maxRateIds[i] = MetricKeyRegistry.intern(getMaxRateName(trackedRates[i]));
+    }
+    this.intervalsCounterId = MetricKeyRegistry.intern(INTERVALS_COUNTER);
+    this.rollups = new IntervalMetrics[intervalsMs.length];
+    this.rollupEndTimes = new long[intervalsMs.length];
+    this.minRates = new double[intervalsMs.length][trackedRates.length];
+    this.maxRates = new double[intervalsMs.length][trackedRates.length];
+  }
+
+  /**
+   * Name of the minimum of the provided rate over the intervals of a rollup
+   *
+   * @param rateName Rate name
+   * @return Minimum rate name
+   */
+  public static String getMinRateName(String rateName) {
+    return rateName + MIN_RATE_SUFFIX;
+  }
+
+  /**
+   * Name of the maximum of the provided rate over the intervals of a rollup
+   *
+   * @param rateName Rate name
+   * @return Maximum rate name
+   */
+  public static String getMaxRateName(String rateName) {
+    return rateName + MAX_RATE_SUFFIX;
+  }
+
+  /**
+   * Add the flushed metrics to the first tier and roll them up into the following tiers
+   *
+   * @param stats New metrics to be added
+   * @return False if the metrics are older than the latest ones, they are not stored
+   */
+  @Override
+  public boolean add(IntervalMetrics stats) {
+    long stamp = lock.writeLock();
+    try {
+      IntervalMetrics latest = tiers[0].getLatestMetrics();
+      boolean replaced = latest != null && latest.getStartTime() == stats.getStartTime();
+      if (!tiers[0].add(stats)) {
+        return false;
+      }
+      if (!replaced && tiers.length > 1) {
+        rollUp(1, stats);
+      }
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public long getTotalSumCounterValue(String counterName) {
+    return tiers[0].getTotalSumCounterValue(counterName);
+  }
+
+  @Override
+  public double getAverageCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    int counterId = MetricKeyRegistry.find(counterName);
+    if (!track(counterId, false)) {
+      return 0;
+    }
+    return read(() -> {
+      WindowSums sums = sumWindow(nowMs - timeFromNowMs, nowMs, counterId, false);
+      return sums == null || sums.intervals == 0 ? 0 : sums.counterSum / (double) sums.intervals;
+    });
+  }
+
+  @Override
+  public long getSumCounterValue(String counterName, long nowMs, long timeFromNowMs) {
+    int counterId = MetricKeyRegistry.find(counterName);
+    if (!track(counterId, false)) {
+      return 0;
+    }
+    return read(() -> {
+      WindowSums sums = sumWindow(nowMs - timeFromNowMs, nowMs, counterId, false);
+      return sums == null ? 0 : sums.counterSum;
+    });
+  }
+
+  @Override
+  public double getAverageRateValue(String rateName, long nowMs, long timeFromNowMs) {
+    int rateId = MetricKeyRegistry.find(rateName);
+    if (!track(rateId, true)) {
+      return 0;
+    }
+    return read(() -> {
+      WindowSums sums = sumWindow(nowMs - timeFromNowMs, nowMs, rateId, true);
+      return sums == null || sums.intervals == 0 ? 0 : sums.rateSum / sums.intervals;
+    });
+  }
+
+  @Override
+  public IntervalMetrics getLatestMetrics() {
+    return tiers[0].getLatestMetrics();
+  }
+
+  @Override
+  public int getIntervalCount() {
+    return read(() -> Arrays.stream(tiers).mapToInt(InMemoryMetricsStore::getIntervalCount).sum());
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    return read(() -> Arrays.stream(tiers).mapToLong(InMemoryMetricsStore::getMemoryUsage).sum());
+  }
+
+  /**
+   * Store of the provided tier
+   *
+   * @param tier Tier index, 0 for the flushed intervals
+   * @return Tier store
+   */
+  InMemoryMetricsStore getTier(int tier) {
+    return tiers[tier];
+  }
+
+  /**
+   * Merge the interval of the previous tier into the rollup of the provided tier, closing the rollup first if the interval starts after it,
+   * and closing the rollup once its boundary is reached
+   */
+  private void rollUp(int tier, IntervalMetrics intervalMetrics) {
+    if (rollups[tier] != null && intervalMetrics.getStartTime() >= rollupEndTimes[tier]) {
+      closeRollup(tier);
+    }
+    if (rollups[tier] == null) {
+      startRollup(tier, intervalMetrics.getStartTime());
+    }
+    IntervalMetrics rollup = rollups[tier];
+    rollup.merge(intervalMetrics);
+    if (tier == 1) {
+      rollup.incrBy(intervalsCounterId, 1);
+    }
+    for (int i = 0; i < trackedRateIds.length; i++) {
+      // The first rollup tier takes the flushed rates, the following ones the extremes of the previous tier
+      minRates[tier][i] = Math.min(minRates[tier][i], intervalMetrics.getRateValue(tier == 1 ? trackedRateIds[i] : minRateIds[i]));
+      maxRates[tier][i] = Math.max(maxRates[tier][i], intervalMetrics.getRateValue(tier == 1 ? trackedRateIds[i] : maxRateIds[i]));
+    }
+    if (intervalMetrics.getEndTime() >= rollupEndTimes[tier]) {
+      closeRollup(tier);
+    }
+  }
+
+  /**
+   * Add the rollup of the provided tier to the tier and roll it up into the following one
+   */
+  private void closeRollup(int tier) {
+    IntervalMetrics rollup = rollups[tier];
+    rollups[tier] = null;
+    rollup.setEndTime(rollupEndTimes[tier]);
+    // Averaged over the flushed intervals merged, a partial rollup is not diluted over the intervals it missed
+    rollup.computeRates(rollup.getCounterValue(intervalsCounterId) * intervalsMs[0], TimeUnit.SECONDS);
+    for (int i = 0; i < trackedRateIds.length; i++) {
+      rollup.putRate(minRateIds[i], minRates[tier][i]);
+      rollup.putRate(maxRateIds[i], maxRates[tier][i]);
+    }
+    rollup.compact();
+    tiers[tier].add(rollup);
+    if (tier + 1 < tiers.length) {
+      rollUp(tier + 1, rollup);
+    }
+  }
+
+  private void startRollup(int tier, long startTime) {
+    long alignedStartTime = startTime - Math.floorMod(startTime, intervalsMs[tier]);
+    IntervalMetrics rollup = new IntervalMetrics();
+    rollup.setStartTime(alignedStartTime);
+    rollups[tier] = rollup;
+    rollupEndTimes[tier] = alignedStartTime + intervalsMs[tier];
+    Arrays.fill(minRates[tier], Double.MAX_VALUE);
+    Arrays.fill(maxRates[tier], 0);
+  }
+
+  private <T> T read(Supplier<T> query) {
+    return InMemoryMetricsStore.optimisticRead(lock, query);
+  }
+
+  /**
+   * Build the running sums summed by the window queries of the metric under the write lock if it is queried for the first time:
+   * the metric in the first tier, the flushed interval counter and the counter in the rollup tiers
+   *
+   * @return False if the metric was never registered, there is nothing to sum
+   */
+  private boolean track(int metricId, boolean rate) {
+    if (metricId == MetricKeyRegistry.UNKNOWN_ID) {
+      return false;
+    }
+    if (!isTracked(metricId, rate)) {
+      long stamp = lock.writeLock();
+      try {
+        tiers[0].track(metricId, rate);
+        for (int tier = 1; tier < tiers.length; tier++) {
+          tiers[tier].track(intervalsCounterId, false);
+          if (!rate) {
+            tiers[tier].track(metricId, false);
+          }
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+    return true;
+  }
+
+  private boolean isTracked(int metricId, boolean rate) {
+    if (!tiers[0].isTracked(metricId, rate)) {
+      return false;
+    }
+    for (int tier = 1; tier < tiers.length; tier++) {
+      if (!tiers[tier].isTracked(intervalsCounterId, false) || !rate && !tiers[tier].isTracked(metricId, false)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sum the metric over the intervals starting between the bounds, from the coarsest tiers
+   *
+   * @param lowerBoundMs Inclusive time lower bound
+   * @param upperBoundMs Exclusive time upper bound
+   * @param metricId     Counter or rate id, tracked by the tiers
+   * @param rate         True to sum a rate, false to sum a counter
+   * @return Window sums, null if the window starts before the retained history
+   */
+  private WindowSums sumWindow(long lowerBoundMs, long upperBoundMs, int metricId, boolean rate) {
+    long firstStartTime = Long.MAX_VALUE;
+    for (InMemoryMetricsStore tier : tiers) {
+      if (tier.getIntervalCount() > 0) {
+        firstStartTime = Math.min(firstStartTime, tier.get(0).getStartTime());
+      }
+    }
+    if (lowerBoundMs < firstStartTime) {
+      return null;
+    }
+    WindowSums sums = new WindowSums(rate);
+    sumWindow(tiers.length - 1, lowerBoundMs, upperBoundMs, metricId, sums);
+    return sums;
+  }
+
+  private void sumWindow(int tier, long lowerBoundMs, long upperBoundMs, int metricId, WindowSums sums) {
+    if (lowerBoundMs >= upperBoundMs) {
+      return;
+    }
+    InMemoryMetricsStore store = tiers[tier];
+    if (tier == 0) {
+      int start = store.indexFrom(lowerBoundMs);
+      int end = store.indexFrom(upperBoundMs);
+      sums.add(store, metricId, start, end);
+      return;
+    }
+    // Complete intervals of the tier within the bounds
+    int start = store.indexFrom(lowerBoundMs);
+    int end = store.indexEndingAfter(upperBoundMs);
+    if (start >= end) {
+      sumWindow(tier - 1, lowerBoundMs, upperBoundMs, metricId, sums);
+      return;
+    }
+    long startTime = store.get(start).getStartTime();
+    long endTime = store.get(end - 1).getEndTime();
+    sums.addRollups(store, metricId, start, end, intervalsCounterId);
+    sumWindow(tier - 1, lowerBoundMs, startTime, metricId, sums);
+    sumWindow(tier - 1, endTime, upperBoundMs, metricId, sums);
+  }
+
+  /**
+   * Sums of a counter or of a rate over a window, the interval count being in flushed intervals.
+   * Only the running sums of the summed metric type are tracked by the tiers, the rate of a rollup being weighted by its flushed intervals
+   */
+  private static class WindowSums {
+    private boolean rate;
+    private long counterSum;
+    private double rateSum;
+    private long intervals;
+
+    private WindowSums(boolean rate) {
+      this.rate = rate;
+    }
+
+    private void add(InMemoryMetricsStore store, int metricId, int start, int end) {
+      if (rate) {
+        rateSum += store.sumRate(metricId, start, end);
+      } else {
+        counterSum += store.sumCounter(metricId, start, end);
+      }
+      intervals += Math.max(0, end - start);
+    }
+
+    private void addRollups(InMemoryMetricsStore store, int metricId, int start, int end, int intervalsCounterId) {
+      if (rate) {
+        for (int i = start; i < end; i++) {
+          IntervalMetrics rollup = store.get(i);
+          rateSum += rollup.getRateValue(metricId) * rollup.getCounterValue(intervalsCounterId);
+        }
+      } else {
+        counterSum += store.sumCounter(metricId, start, end);
+      }
+      intervals += store.sumCounter(intervalsCounterId, start, end);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * {@link gd.engineering.httplogmonitor.queue.LogLineQueue} backed by an {@link java.util.concurrent.ArrayBlockingQueue}.
+ * A new log line is allocated for each claim and the consumer blocks on the queue lock while waiting
+ */
+public class BlockingLogLineQueue implements LogLineQueue {
+
+  private BlockingQueue<HttpLogLine> queue;
+  private int capacity;
+  private HttpLogLine claimed;
+
+  /**
+   * Build a new blocking queue
+   *
+   * @param capacity Queue capacity
+   */
+  public BlockingLogLineQueue(int capacity) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.capacity = capacity;
+  }
+
+  @Override
+  public HttpLogLine claim() {
+    if (claimed == null) {
+      if (queue.remainingCapacity() == 0) {
+        return null;
+      }
+      claimed = new HttpLogLine();
+    }
+    return claimed;
+  }
+
+  @Override
+  public void publish() {
+    if (queue.offer(claimed)) {
+      claimed = null;
+    }
+  }
+
+  @Override
+  public int drain(Consumer<HttpLogLine> handler, long timeoutMs) throws InterruptedException {
+    HttpLogLine logLine = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    int count = 0;
+    while (logLine != null) {
+      handler.accept(logLine);
+      count++;
+      logLine = count < capacity ? queue.poll() : null;
+    }
+    return count;
+  }
+
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+}
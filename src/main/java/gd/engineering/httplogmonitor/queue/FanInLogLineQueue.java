@@ -0,0 +1,59 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Consumer side of several log queues, each one filled by its own producer, e.g one per parser worker.
+ * <p>
+ * Each drain hands every log line published in any of the queues to the consumer, the log lines of a queue in order
+ * but interleaved with the log lines of the other queues. The consumer waits on empty queues following its
+ * {@link gd.engineering.httplogmonitor.queue.QueueWaitStrategy}.
+ * <p>
+ * The producers publish in their own queue, this queue only has a consumer side. A single thread may consume at any time
+ */
+public class FanInLogLineQueue implements LogLineConsumerQueue {
+
+  private LogLineConsumerQueue[] queues;
+  private QueueWaitStrategy waitStrategy;
+  private int capacity;
+
+  /**
+   * Build a new fan-in queue draining the provided queues
+   *
+   * @param queues       Queues filled by the producers
+   * @param waitStrategy Consumer wait strategy while all the queues are empty
+   */
+  public FanInLogLineQueue(List<? extends LogLineConsumerQueue> queues, QueueWaitStrategy waitStrategy) {
+    this.queues = queues.toArray(new LogLineConsumerQueue[0]);
+    this.waitStrategy = waitStrategy;
+    this.capacity = queues.stream().mapToInt(LogLineConsumerQueue::capacity).sum();
+  }
+
+  @Override
+  public int drain(Consumer<HttpLogLine> handler, long timeoutMs) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (true) {
+      int count = 0;
+      for (LogLineConsumerQueue queue : queues) {
+        count += queue.drain(handler, 0L);
+      }
+      if (count > 0) {
+        return count;
+      }
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return 0;
+      }
+      waitStrategy.idle(remainingNanos);
+    }
+  }
+
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+}
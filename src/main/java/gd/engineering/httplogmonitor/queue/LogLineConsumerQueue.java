@@ -0,0 +1,30 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.function.Consumer;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Consumer side of a log queue: the aggregator drains the published log lines by batches.
+ * <p>
+ * The log lines handed to the consumer may be reused once the drain returns, they must not be retained
+ */
+public interface LogLineConsumerQueue {
+
+  /**
+   * Hand every published log line to the handler, in order, waiting up to the provided timeout for the first one
+   *
+   * @param handler   Log line handler
+   * @param timeoutMs Maximum wait in milliseconds when the queue is empty
+   * @return Number of log lines handled, 0 if the timeout elapsed
+   * @throws InterruptedException If interrupted while waiting
+   */
+  int drain(Consumer<HttpLogLine> handler, long timeoutMs) throws InterruptedException;
+
+  /**
+   * Maximum number of published log lines waiting for the consumer
+   *
+   * @return Capacity
+   */
+  int capacity();
+}
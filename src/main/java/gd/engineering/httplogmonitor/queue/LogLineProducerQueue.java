@@ -0,0 +1,22 @@
+package gd.engineering.httplogmonitor.queue;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Producer side of a log queue: the tailer claims a log line to fill, parses the line into it and publishes it.
+ * A claimed log line which is not published, e.g for an invalid line, is claimed again by the next call
+ */
+public interface LogLineProducerQueue {
+
+  /**
+   * Claim the next log line to be filled by the producer
+   *
+   * @return Log line to fill or null if the queue is full
+   */
+  HttpLogLine claim();
+
+  /**
+   * Publish the last claimed log line to the consumer
+   */
+  void publish();
+}
@@ -0,0 +1,10 @@
+package gd.engineering.httplogmonitor.queue;
+
+/**
+ * Hand-off of the parsed log lines from a single producer, the tailer, to a single consumer, the aggregator.
+ * <p>
+ * The producer only sees the {@link gd.engineering.httplogmonitor.queue.LogLineProducerQueue} side of the queue
+ * and the consumer the {@link gd.engineering.httplogmonitor.queue.LogLineConsumerQueue} side
+ */
+public interface LogLineQueue extends LogLineProducerQueue, LogLineConsumerQueue {
+}
@@ -0,0 +1,41 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+
+/**
+ * Lines lost or sampled out by the tailer because of the {@link gd.engineering.httplogmonitor.queue.OverloadPolicy},
+ * counted by the tailer thread and moved to the interval metrics by the aggregator thread on each flush
+ */
+public class OverloadCounters {
+
+  private AtomicLong dropped = new AtomicLong();
+  private AtomicLong sampled = new AtomicLong();
+
+  public void recordDropped(long count) {
+    dropped.addAndGet(count);
+  }
+
+  public void recordSampled(long count) {
+    sampled.addAndGet(count);
+  }
+
+  /**
+   * Move the lines dropped and sampled out since the last call to the {@link HttpLogMetrics#COUNTER_DROPPED} and
+   * {@link HttpLogMetrics#COUNTER_SAMPLED} counters of the provided metrics
+   *
+   * @param metrics Metrics being flushed
+   */
+  public void flushTo(IntervalMetrics metrics) {
+    long droppedCount = dropped.getAndSet(0);
+    if (droppedCount > 0) {
+      metrics.incrBy(HttpLogMetrics.COUNTER_DROPPED, droppedCount);
+    }
+    long sampledCount = sampled.getAndSet(0);
+    if (sampledCount > 0) {
+      metrics.incrBy(HttpLogMetrics.COUNTER_SAMPLED, sampledCount);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package gd.engineering.httplogmonitor.queue;
+
+/**
+ * What the tailer does with a new line when the log queue is full, i.e when the aggregator falls behind:
+ * <ul>
+ * <li>BLOCK: waits for the aggregator to free a slot. Nothing is lost, the tailer falls behind the log file instead</li>
+ * <li>DROP: drops the line, the dropped lines being counted in the metrics</li>
+ * <li>SAMPLE: only keeps 1 line in N until the queue has room again, each kept line counting for the lines sampled out before it</li>
+ * </ul>
+ */
+public enum OverloadPolicy {
+  BLOCK,
+  DROP,
+  SAMPLE
+}
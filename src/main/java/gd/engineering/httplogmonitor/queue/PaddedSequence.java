@@ -0,0 +1,37 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Sequence counter alone on its cache line, padded on both sides so that the producer and consumer sequences never share a cache line.
+ * The padding relies on the fields of a superclass being laid out before the fields of its subclasses.
+ * <p>
+ * Next to the sequence, its owner keeps a plain cached copy of the other side sequence so that the other side volatile is only read
+ * when the cached copy is exhausted
+ */
+class PaddedSequence extends SequenceValue {
+  long p9, p10, p11, p12, p13, p14, p15;
+}
+
+abstract class SequenceLhsPadding {
+  long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class SequenceValue extends SequenceLhsPadding {
+  private static final AtomicLongFieldUpdater<SequenceValue> VALUE_UPDATER = AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+  private volatile long value;
+  long cachedOtherSequence;
+
+  long get() {
+    return value;
+  }
+
+  /**
+   * Ordered write: visible to the other side after every previous write, without the cost of a full volatile write
+   *
+   * @param newValue New sequence value
+   */
+  void lazySet(long newValue) {
+    VALUE_UPDATER.lazySet(this, newValue);
+  }
+}
@@ -0,0 +1,51 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the consumer of a {@link gd.engineering.httplogmonitor.queue.SpscLogLineQueue} waits while the queue is empty.
+ * The producer never signals the consumer, the consumer checks the queue again after each idle step:
+ * <ul>
+ * <li>SPIN: busy spin, lowest latency but burns a core</li>
+ * <li>YIELD: yields the core to other threads between checks</li>
+ * <li>PARK: parks the thread {@link #PARK_NANOS} between checks, almost no cpu when idle</li>
+ * </ul>
+ */
+public enum QueueWaitStrategy {
+  SPIN {
+    @Override
+    void idle(long remainingNanos) throws InterruptedException {
+      checkInterrupted();
+    }
+  },
+  YIELD {
+    @Override
+    void idle(long remainingNanos) throws InterruptedException {
+      Thread.yield();
+      checkInterrupted();
+    }
+  },
+  PARK {
+    @Override
+    void idle(long remainingNanos) throws InterruptedException {
+      LockSupport.parkNanos(Math.min(PARK_NANOS, remainingNanos));
+      checkInterrupted();
+    }
+  };
+
+  public static final long PARK_NANOS = 100_000L;
+
+  /**
+   * Wait for a single idle step
+   *
+   * @param remainingNanos Remaining time before the consumer timeout
+   * @throws InterruptedException If the consumer thread has been interrupted
+   */
+  abstract void idle(long remainingNanos) throws InterruptedException;
+
+  private static void checkInterrupted() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Lock free single producer / single consumer {@link gd.engineering.httplogmonitor.queue.LogLineQueue}.
+ * <p>
+ * The queue is a ring of log lines allocated once, its capacity rounded up to a power of two. The producer fills the slots in place
+ * and the consumer drains all the published slots in a single batch before releasing them, so that the hand-off costs no allocation,
+ * no lock and a single ordered write per side and per batch. The producer and consumer sequences live on their own cache line.
+ * <p>
+ * The consumer waits on an empty queue following its {@link gd.engineering.httplogmonitor.queue.QueueWaitStrategy}.
+ * <p>
+ * Exactly one thread may produce and one thread may consume at any time
+ */
+public class SpscLogLineQueue implements LogLineQueue {
+
+  private HttpLogLine[] slots;
+  private int mask;
+  private QueueWaitStrategy waitStrategy;
+  // Next sequence to be published, caching the consumer sequence
+  private PaddedSequence producerSequence = new PaddedSequence();
+  // Next sequence to be consumed, caching the producer sequence
+  private PaddedSequence consumerSequence = new PaddedSequence();
+
+  /**
+   * Build a new queue, pre-allocating all its log lines
+   *
+   * @param capacity     Minimum capacity, rounded up to the next power of two
+   * @param waitStrategy Consumer wait strategy on an empty queue
+   * @throws IllegalArgumentException If the capacity is not strictly positive or too large
+   */
+  public SpscLogLineQueue(int capacity, QueueWaitStrategy waitStrategy) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Queue capacity has to be between 1 and 2^30");
+    }
+    int ringSize = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+    this.slots = new HttpLogLine[ringSize];
+    for (int i = 0; i < ringSize; i++) {
+      slots[i] = new HttpLogLine();
+    }
+    this.mask = ringSize - 1;
+    this.waitStrategy = waitStrategy;
+  }
+
+  @Override
+  public HttpLogLine claim() {
+    long sequence = producerSequence.get();
+    if (sequence - producerSequence.cachedOtherSequence >= slots.length) {
+      producerSequence.cachedOtherSequence = consumerSequence.get();
+      if (sequence - producerSequence.cachedOtherSequence >= slots.length) {
+        return null;
+      }
+    }
+    return slots[(int) sequence & mask];
+  }
+
+  @Override
+  public void publish() {
+    producerSequence.lazySet(producerSequence.get() + 1);
+  }
+
+  @Override
+  public int drain(Consumer<HttpLogLine> handler, long timeoutMs) throws InterruptedException {
+    long sequence = consumerSequence.get();
+    long available = consumerSequence.cachedOtherSequence - sequence;
+    if (available == 0) {
+      available = awaitPublished(sequence, timeoutMs);
+      if (available == 0) {
+        return 0;
+      }
+    }
+    for (long i = 0; i < available; i++) {
+      handler.accept(slots[(int) (sequence + i) & mask]);
+    }
+    consumerSequence.lazySet(sequence + available);
+    return (int) available;
+  }
+
+  @Override
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Wait for the producer to publish after the provided sequence
+   *
+   * @return Number of published log lines available, 0 if the timeout elapsed
+   */
+  private long awaitPublished(long sequence, long timeoutMs) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (true) {
+      consumerSequence.cachedOtherSequence = producerSequence.get();
+      long available = consumerSequence.cachedOtherSequence - sequence;
+      if (available > 0) {
+        return available;
+      }
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return 0;
+      }
+      waitStrategy.idle(remainingNanos);
+    }
+  }
+}
@@ -23,7 +23,7 @@ import static gd.engineering.httplogmonitor.model.HttpLogMetrics.DELIMITER;
 /**
  * Reports on the console various traffic metrics (see example below), global and per section.
  * The number of sections displayed is controlled by the maxSections argument.
- * The sections displayed are the most hit sections during the last flush
+ * The sections displayed are the most hit sections during the last flush, and over a longer window, e.g the last hour, if the store keeps a section history
  * The metrics come from the metrics store.
  * <p>
  * Each report is triggered when a new flush arrives.
@@ -33,9 +33,20 @@ import static gd.engineering.httplogmonitor.model.HttpLogMetrics.DELIMITER;
  * ---HTTP monitor report between 06/Nov/2018:00:42:42 and 06/Nov/2018:00:42:43---
  * Total hits since start: 24 | Error rate: 0%
  * Interval hits: 2 | Error rate: 0%
+ * Overloaded: 0 lines dropped (not counted) | 120 lines sampled out (counted through the sampled lines)
+ * Late: 3 lines older than the watermark (not counted)
+ * Future: 1 lines ahead of the clock (not counted)
+ * Flush listeners lag: alerter 0ms | reporter 12ms, 1 flush dropped
+ * Store: 360 intervals retained | 1024 KB, 960 KB off heap
  * *** Top 5 sections by traffic
  * section: traffic part | hit count | error rate (4XX, 5XX)
  * POST/api5: 100% | 2 | 0%
+ * *** Top 5 sections over the last 60 minutes
+ * Method/Section: Hit count | Error rate (4XX, 5XX)
+ * POST/api5: 1204 | 3%
+ * *** Hits by file
+ * File: traffic part | hit count | error rate (4XX, 5XX)
+ * /var/log/vhost1.log: 100% | 2 | 0%
  */
 public class HttpSectionConsoleReporter implements MetricsReporter {
 
@@ -43,6 +54,7 @@ public class HttpSectionConsoleReporter implements MetricsReporter {
   private static final DateTimeFormatter REPORT_DATETIME_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss");
   private MetricsStore metricsStore;
   private int maxSections;
+  private long sectionsWindowMs;
 
   /**
    * Creates a new reporter on the provided store, displaying the top maxSections sections
@@ -51,36 +63,97 @@ public class HttpSectionConsoleReporter implements MetricsReporter {
    * @param maxSections Number of top sections to display
    */
   public HttpSectionConsoleReporter(MetricsStore store, int maxSections) {
+    this(store, maxSections, 0);
+  }
+
+  /**
+   * Creates a new reporter on the provided store, displaying the top maxSections sections of the flush and of the provided window
+   *
+   * @param store            Metrics store
+   * @param maxSections      Number of top sections to display
+   * @param sectionsWindowMs Window of the top sections from the store section history in milliseconds, 0 for none
+   */
+  public HttpSectionConsoleReporter(MetricsStore store, int maxSections, long sectionsWindowMs) {
     this.maxSections = maxSections;
     this.metricsStore = store;
+    this.sectionsWindowMs = sectionsWindowMs;
   }
 
   @Override
   public void report(IntervalMetrics latestMetrics) {
     List<String> sortedSectionStatsByHits = getSortedSectionMetricsByHits(latestMetrics.getCounters(), this.maxSections);
-    int historicalHits = metricsStore.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS);
-    int historicalErrors = metricsStore.getTotalSumCounterValue(COUNTER_ERRORS);
-    int historicalErrorRate = historicalHits == 0 ? 0 : 100 * historicalErrors / historicalHits;
-    int totalHits = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_HITS);
-    int requestsPerSecond = latestMetrics.getRateValue(HttpLogMetrics.COUNTER_HITS);
-    int totalErrorRate = totalHits == 0 ? 0 : 100 * latestMetrics.getCounterValue(COUNTER_ERRORS) / totalHits;
+    long historicalHits = metricsStore.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS);
+    long historicalErrors = metricsStore.getTotalSumCounterValue(COUNTER_ERRORS);
+    long historicalErrorRate = historicalHits == 0 ? 0 : 100 * historicalErrors / historicalHits;
+    long totalHits = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_HITS);
+    String requestsPerSecond = String.format("%.2f", latestMetrics.getRateValue(HttpLogMetrics.COUNTER_HITS));
+    long totalErrorRate = totalHits == 0 ? 0 : 100 * latestMetrics.getCounterValue(COUNTER_ERRORS) / totalHits;
     String startTime = Instant.ofEpochMilli(latestMetrics.getStartTime()).atZone(ZoneId.systemDefault()).toLocalDateTime().format(REPORT_DATETIME_FORMAT);
     String endTime = Instant.ofEpochMilli(latestMetrics.getEndTime()).atZone(ZoneId.systemDefault()).toLocalDateTime().format(REPORT_DATETIME_FORMAT);
     LOG.info("---HTTP monitor report between {} and {}---", startTime, endTime);
     LOG.info("Total hits since start: {} | Total error rate:    {}%", historicalHits, historicalErrorRate);
     LOG.info("Interval hits:          {} | Interval requests/s: {} | Interval error rate: {}%", totalHits, requestsPerSecond, totalErrorRate);
+    long droppedLines = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED);
+    long sampledLines = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_SAMPLED);
+    if (droppedLines > 0 || sampledLines > 0) {
+      LOG.info("Overloaded: {} lines dropped (not counted) | {} lines sampled out (counted through the sampled lines)", droppedLines, sampledLines);
+    }
+    long lateLines = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_LATE);
+    if (lateLines > 0) {
+      LOG.info("Late: {} lines older than the watermark (not counted)", lateLines);
+    }
+    long futureLines = latestMetrics.getCounterValue(HttpLogMetrics.COUNTER_FUTURE);
+    if (futureLines > 0) {
+      LOG.info("Future: {} lines ahead of the clock (not counted)", futureLines);
+    }
+    List<String> listenerNames = getListenerNames(latestMetrics.getRates());
+    if (!listenerNames.isEmpty()) {
+      LOG.info("Flush listeners lag: {}", listenerNames.stream().map(listener -> {
+        String listenerPrefix = HttpLogMetrics.getListenerCounterPrefix(listener) + DELIMITER;
+        long droppedFlushes = latestMetrics.getCounterValue(listenerPrefix + HttpLogMetrics.COUNTER_DROPPED);
+        return listener + " " + (long) latestMetrics.getRateValue(listenerPrefix + HttpLogMetrics.RATE_LAG) + "ms"
+            + (droppedFlushes > 0 ? ", " + droppedFlushes + " flush" + (droppedFlushes > 1 ? "es" : "") + " dropped" : "");
+      }).collect(Collectors.joining(" | ")));
+    }
+    long offHeapUsage = metricsStore.getOffHeapMemoryUsage();
+    LOG.info("Store: {} intervals retained | {} KB{}", metricsStore.getIntervalCount(), metricsStore.getMemoryUsage() / 1024,
+        offHeapUsage > 0 ? ", " + offHeapUsage / 1024 + " KB off heap" : "");
     if (!sortedSectionStatsByHits.isEmpty()) {
       LOG.info("*** Top {} sections by traffic", this.maxSections);
       LOG.info("Method/Section: Traffic part | Hit count | Error rate (4XX, 5XX)");
       sortedSectionStatsByHits.forEach(section -> {
         String sectionPrefix = HttpLogMetrics.getSectionCounterPrefix(section);
-        int sectionHits = latestMetrics.getCounterValue(sectionPrefix + DELIMITER + COUNTER_HITS);
-        int sectionErrors = latestMetrics.getCounterValue(sectionPrefix + DELIMITER + COUNTER_ERRORS);
-        int errorRate = 100 * sectionErrors / sectionHits;
-        int sectionSize = 100 * sectionHits / totalHits;
+        long sectionHits = latestMetrics.getCounterValue(sectionPrefix + DELIMITER + COUNTER_HITS);
+        long sectionErrors = latestMetrics.getCounterValue(sectionPrefix + DELIMITER + COUNTER_ERRORS);
+        long errorRate = 100 * sectionErrors / sectionHits;
+        long sectionSize = 100 * sectionHits / totalHits;
         LOG.info("{}: {}% | {} | {}%", section, sectionSize, sectionHits, errorRate);
       });
     }
+    if (sectionsWindowMs > 0) {
+      long nowMs = latestMetrics.getEndTime();
+      List<String> windowSections = metricsStore.getTopSections(COUNTER_HITS, nowMs, sectionsWindowMs, this.maxSections);
+      if (!windowSections.isEmpty()) {
+        LOG.info("*** Top {} sections over the last {} minutes", this.maxSections, sectionsWindowMs / 60000);
+        LOG.info("Method/Section: Hit count | Error rate (4XX, 5XX)");
+        windowSections.forEach(section -> {
+          long sectionHits = metricsStore.getSumSectionCounterValue(section, COUNTER_HITS, nowMs, sectionsWindowMs);
+          long sectionErrors = metricsStore.getSumSectionCounterValue(section, COUNTER_ERRORS, nowMs, sectionsWindowMs);
+          LOG.info("{}: {} | {}%", section, sectionHits, 100 * sectionErrors / sectionHits);
+        });
+      }
+    }
+    List<String> sortedFilesByHits = getSortedFileNamesByHits(latestMetrics.getCounters());
+    if (!sortedFilesByHits.isEmpty()) {
+      LOG.info("*** Hits by file");
+      LOG.info("File: Traffic part | Hit count | Error rate (4XX, 5XX)");
+      sortedFilesByHits.forEach(file -> {
+        String filePrefix = HttpLogMetrics.getFileCounterPrefix(file);
+        long fileHits = latestMetrics.getCounterValue(filePrefix + DELIMITER + COUNTER_HITS);
+        long fileErrors = latestMetrics.getCounterValue(filePrefix + DELIMITER + COUNTER_ERRORS);
+        LOG.info("{}: {}% | {} | {}%", file, 100 * fileHits / totalHits, fileHits, 100 * fileErrors / fileHits);
+      });
+    }
     LOG.info("-------------------------------------------------------------------------------");
   }
 
@@ -96,7 +169,7 @@ public class HttpSectionConsoleReporter implements MetricsReporter {
    * @param maxSections Number of sections to keep
    * @return List of maxSections section names ranked by traffic
    */
-  List<String> getSortedSectionMetricsByHits(Map<String, Integer> counters, int maxSections) {
+  List<String> getSortedSectionMetricsByHits(Map<String, Long> counters, int maxSections) {
     if (counters == null || counters.isEmpty()) {
       return new ArrayList<>();
     }
@@ -106,4 +179,39 @@ public class HttpSectionConsoleReporter implements MetricsReporter {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Retrieve the tailed log file names by hits, only recorded when several log files are tailed.
+   *
+   * @param counters Metric counters
+   * @return List of the log file names ranked by traffic
+   */
+  List<String> getSortedFileNamesByHits(Map<String, Long> counters) {
+    if (counters == null || counters.isEmpty()) {
+      return new ArrayList<>();
+    }
+    String filePrefix = HttpLogMetrics.COUNTER_FILE + DELIMITER;
+    return counters.entrySet().stream().filter(entry -> entry.getKey().startsWith(filePrefix) && entry.getKey().endsWith(DELIMITER + COUNTER_HITS) && entry.getValue() > 0)
+        .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
+        .map(entry -> HttpLogMetrics.getFileNameFromCounter(entry.getKey()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Retrieve the names of the flush listeners notified through their own queue, in alphabetical order.
+   *
+   * @param rates Metric rates
+   * @return List of the queued flush listener names
+   */
+  List<String> getListenerNames(Map<String, Double> rates) {
+    if (rates == null || rates.isEmpty()) {
+      return new ArrayList<>();
+    }
+    String listenerPrefix = HttpLogMetrics.COUNTER_LISTENER + DELIMITER;
+    String lagSuffix = DELIMITER + HttpLogMetrics.RATE_LAG;
+    return rates.keySet().stream().filter(counter -> counter.startsWith(listenerPrefix) && counter.endsWith(lagSuffix))
+        .map(counter -> counter.substring(listenerPrefix.length(), counter.length() - lagSuffix.length()))
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
 }
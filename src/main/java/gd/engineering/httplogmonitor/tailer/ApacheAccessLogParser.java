@@ -1,6 +1,5 @@
 package gd.engineering.httplogmonitor.tailer;
 
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
@@ -39,6 +38,7 @@ public class ApacheAccessLogParser implements HttpLogParser {
   private static final Set<String> HTTP_METHODS = new HashSet<>(Arrays.asList("GET", "POST", "PUT", "DELETE", "HEAD", "CONNECT", "TRACE", "OPTIONS"));
   private Pattern logPattern = Pattern.compile(HttpLogFormatToken.getRegexToken(LOG_TOKEN_SEPARATOR));
   DateTimeFormatter logTimestampFormatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z");
+  LogTimestampDecoder timestampDecoder = new LogTimestampDecoder(logTimestampFormatter);
 
   /**
    * Parse a apache access.log line to a HttpLogLine model
@@ -56,7 +56,6 @@ public class ApacheAccessLogParser implements HttpLogParser {
 
     if (matcher.matches()) {
       parsedLine = new HttpLogLine();
-      String timestampField = matcher.group(HttpLogFormatToken.TIMESTAMP.group);
       String requestSizeField = nullIfHyphen(matcher.group(HttpLogFormatToken.SIZE.group));
       String[] requestField = splitRequestField(matcher.group(HttpLogFormatToken.REQUEST.group), logLine);
       parsedLine.setOriginalLogLine(logLine);
@@ -69,7 +68,7 @@ public class ApacheAccessLogParser implements HttpLogParser {
       parsedLine.setSection(parseSection(requestField[REQUEST_FIELD_RESOURCE_INDEX], logLine));
       parsedLine.setHttpMethod(parseHttpMethod(requestField[REQUEST_FIELD_METHOD_INDEX], logLine));
       try {
-        parsedLine.setDateTime(ZonedDateTime.parse(timestampField, logTimestampFormatter));
+        timestampDecoder.decode(logLine, matcher.start(HttpLogFormatToken.TIMESTAMP.group), matcher.end(HttpLogFormatToken.TIMESTAMP.group), parsedLine);
       } catch (DateTimeParseException pex) {
         throw new InvalidLogLineException("date field not matching pattern", logLine, pex);
       }
@@ -0,0 +1,61 @@
+package gd.engineering.httplogmonitor.tailer;
+
+/**
+ * Polling wait strategy with an exponential backoff.
+ * Each empty read doubles the delay before the next read, from minDelayMs up to maxDelayMs.
+ * Any non empty read resets the delay to minDelayMs. A fixed delay polling is obtained with minDelayMs equal to maxDelayMs
+ */
+public class BackoffPollingWaitStrategy implements TailerWaitStrategy {
+
+  private long minDelayMs;
+  private long maxDelayMs;
+  private long currentDelayMs;
+
+  /**
+   * Build a new polling wait strategy
+   *
+   * @param minDelayMs Delay after the first empty read in milliseconds
+   * @param maxDelayMs Maximum delay between two reads in milliseconds
+   * @throws IllegalArgumentException If the minimum delay is greater than the maximum delay
+   */
+  public BackoffPollingWaitStrategy(long minDelayMs, long maxDelayMs) {
+    if (minDelayMs > maxDelayMs) {
+      throw new IllegalArgumentException("Tailer minimum delay has to be lower than the maximum delay");
+    }
+    this.minDelayMs = minDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.currentDelayMs = minDelayMs;
+  }
+
+  @Override
+  public void await(long bytesRead) throws InterruptedException {
+    long delayMs = nextDelayMs(bytesRead);
+    if (delayMs > 0) {
+      Thread.sleep(delayMs);
+    }
+  }
+
+  /**
+   * Compute the delay before the next read and update the backoff, e.g to schedule the next read instead of sleeping
+   *
+   * @param bytesRead Number of bytes read by the last read
+   * @return Delay in milliseconds, 0 after a non empty read
+   */
+  public long nextDelayMs(long bytesRead) {
+    if (bytesRead > 0) {
+      currentDelayMs = minDelayMs;
+      return 0;
+    }
+    long delayMs = currentDelayMs;
+    currentDelayMs = Math.min(Math.max(1, currentDelayMs * 2), maxDelayMs);
+    return delayMs;
+  }
+
+  long getCurrentDelayMs() {
+    return currentDelayMs;
+  }
+
+  @Override
+  public void close() {
+  }
+}
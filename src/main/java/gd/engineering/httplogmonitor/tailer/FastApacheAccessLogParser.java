@@ -0,0 +1,285 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.time.format.DateTimeParseException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.InvalidLogLineException;
+
+/**
+ * Single pass parser for apache access logs following the same format as {@link gd.engineering.httplogmonitor.tailer.ApacheAccessLogParser}
+ * e.g: 127.0.0.1 - frank [09/May/2018:16:00:42 +0000] "POST /api/user HTTP/1.0" 200 34
+ * <p>
+ * The field boundaries are found by index in one scan of the line, without any regex matching nor splitting.
+ * Only the fields exposed by {@link gd.engineering.httplogmonitor.model.HttpLogLine} are extracted as strings, the http method
+ * is resolved to a shared constant and the timestamp is decoded in place by the {@link gd.engineering.httplogmonitor.tailer.LogTimestampDecoder}
+ * shared with the fallback parser.
+ * <p>
+ * The fast path only accepts lines it fully understands. Any other line is handed to the regex based parser which stays
+ * the reference implementation: it either parses the line or throws the {@link gd.engineering.httplogmonitor.model.InvalidLogLineException}
+ * with the erroneous line and reason
+ */
+public class FastApacheAccessLogParser implements HttpLogParser {
+
+  private static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE", "HEAD", "CONNECT", "TRACE", "OPTIONS"};
+  private static final int IPV4_PARTS = 4;
+  private static final int IPV4_PART_MAX_DIGITS = 3;
+  private static final int STATUS_DIGITS = 3;
+  private static final int SIZE_MAX_DIGITS = 9;
+  private ApacheAccessLogParser fallbackParser;
+
+  public FastApacheAccessLogParser() {
+    this(new ApacheAccessLogParser());
+  }
+
+  /**
+   * Build a new fast parser delegating the lines it rejects to the provided parser
+   *
+   * @param fallbackParser Regex based parser used for the lines rejected by the fast path
+   */
+  public FastApacheAccessLogParser(ApacheAccessLogParser fallbackParser) {
+    this.fallbackParser = fallbackParser;
+  }
+
+  /**
+   * Parse a apache access.log line to a HttpLogLine model, falling back to the regex parser if the fast path rejects the line
+   *
+   * @param logLine Apache access.log line following https://www.w3.org/Daemon/User/Config/Logging.html#common-logfile-format
+   * @return The HttpLogLine model corresponding to the log line
+   * @throws InvalidLogLineException For invalid lines
+   */
+  @Override
+  public HttpLogLine parse(String logLine) {
+    HttpLogLine parsedLine = new HttpLogLine();
+    parse(logLine, parsedLine);
+    return parsedLine;
+  }
+
+  /**
+   * Parse a apache access.log line into the provided log line, falling back to the regex parser if the fast path rejects the line
+   *
+   * @param logLine Apache access.log line
+   * @param target  Log line receiving the parsed fields
+   * @throws InvalidLogLineException For invalid lines
+   */
+  @Override
+  public void parse(String logLine, HttpLogLine target) {
+    if (StringUtils.isEmpty(logLine)) {
+      throw new InvalidLogLineException("empty", logLine);
+    }
+    if (!scan(logLine, target)) {
+      target.copyFrom(fallbackParser.parse(logLine));
+    }
+  }
+
+  /**
+   * Scan the log line once and build the HttpLogLine model from the field boundaries
+   *
+   * @param logLine Non empty log line
+   * @return The HttpLogLine model or null if the line is not accepted by the fast path
+   */
+  HttpLogLine scan(String logLine) {
+    HttpLogLine parsedLine = new HttpLogLine();
+    return scan(logLine, parsedLine) ? parsedLine : null;
+  }
+
+  /**
+   * Scan the log line once and fill the provided log line from the field boundaries
+   *
+   * @param logLine    Non empty log line
+   * @param parsedLine Log line receiving the parsed fields, left untouched if the line is not accepted
+   * @return True if the line is accepted by the fast path
+   */
+  private boolean scan(String logLine, HttpLogLine parsedLine) {
+    int length = logLine.length();
+    int hostEnd = scanRemoteHost(logLine, length);
+    if (hostEnd < 0) {
+      return false;
+    }
+    int remoteUserEnd = scanToken(logLine, hostEnd + 1, length);
+    if (remoteUserEnd < 0) {
+      return false;
+    }
+    int userEnd = scanToken(logLine, remoteUserEnd + 1, length);
+    if (userEnd < 0 || userEnd + 1 >= length || logLine.charAt(userEnd + 1) != '[') {
+      return false;
+    }
+    int timestampStart = userEnd + 2;
+    int timestampEnd = logLine.indexOf(']', timestampStart);
+    if (timestampEnd <= timestampStart || !isFieldBoundary(logLine, timestampEnd + 1, '"', length)) {
+      return false;
+    }
+    int requestStart = timestampEnd + 3;
+    int requestEnd = logLine.indexOf('"', requestStart);
+    if (requestEnd <= requestStart || requestEnd + 1 >= length || logLine.charAt(requestEnd + 1) != ' ') {
+      return false;
+    }
+    int methodEnd = logLine.indexOf(' ', requestStart);
+    int resourceEnd = methodEnd < 0 ? -1 : logLine.indexOf(' ', methodEnd + 1);
+    if (resourceEnd < 0 || resourceEnd >= requestEnd || resourceEnd == methodEnd + 1 || resourceEnd + 1 == requestEnd
+        || logLine.charAt(methodEnd + 1) != '/' || !isPlainRequest(logLine, requestStart, resourceEnd, requestEnd)) {
+      return false;
+    }
+    String httpMethod = matchHttpMethod(logLine, requestStart, methodEnd);
+    if (httpMethod == null) {
+      return false;
+    }
+    int statusStart = requestEnd + 2;
+    int statusEnd = statusStart + STATUS_DIGITS;
+    if (statusEnd >= length || logLine.charAt(statusEnd) != ' ' || parseDigits(logLine, statusStart, statusEnd) < 0) {
+      return false;
+    }
+    int sizeStart = statusEnd + 1;
+    int requestSize;
+    if (sizeStart + 1 == length && logLine.charAt(sizeStart) == '-') {
+      requestSize = 0;
+    } else if (sizeStart < length && length - sizeStart <= SIZE_MAX_DIGITS) {
+      requestSize = parseDigits(logLine, sizeStart, length);
+      if (requestSize < 0) {
+        return false;
+      }
+    } else {
+      return false;
+    }
+    try {
+      fallbackParser.timestampDecoder.decode(logLine, timestampStart, timestampEnd, parsedLine);
+    } catch (DateTimeParseException pex) {
+      return false;
+    }
+    parsedLine.setOriginalLogLine(logLine);
+    parsedLine.setRemoteHost(logLine.substring(0, hostEnd));
+    parsedLine.setRemoteUser(isHyphen(logLine, hostEnd + 1, remoteUserEnd) ? null : logLine.substring(hostEnd + 1, remoteUserEnd));
+    parsedLine.setUser(logLine.substring(remoteUserEnd + 1, userEnd));
+    parsedLine.setFullRequest(logLine.substring(requestStart, requestEnd));
+    parsedLine.setHttpMethod(httpMethod);
+    parsedLine.setSection(logLine.substring(methodEnd + 1, findEndSectionIndex(logLine, methodEnd + 1, resourceEnd)));
+    parsedLine.setStatusCode(parseDigits(logLine, statusStart, statusEnd));
+    parsedLine.setRequestSize(requestSize);
+    return true;
+  }
+
+  /**
+   * Validate the leading IPv4 remote host (4 parts of 1 to 3 digits)
+   *
+   * @param logLine Log line
+   * @param length  Log line length
+   * @return Index of the space ending the remote host or -1 if invalid
+   */
+  private int scanRemoteHost(String logLine, int length) {
+    int index = 0;
+    for (int part = 0; part < IPV4_PARTS; part++) {
+      int partStart = index;
+      while (index < length && index - partStart < IPV4_PART_MAX_DIGITS && isDigit(logLine.charAt(index))) {
+        index++;
+      }
+      char expected = part == IPV4_PARTS - 1 ? ' ' : '.';
+      if (index == partStart || index >= length || logLine.charAt(index) != expected) {
+        return -1;
+      }
+      index++;
+    }
+    return index - 1;
+  }
+
+  /**
+   * Scan a non empty token without any whitespace, ended by a space
+   *
+   * @param logLine Log line
+   * @param start   Token start index
+   * @param length  Log line length
+   * @return Index of the space ending the token or -1 if invalid
+   */
+  private int scanToken(String logLine, int start, int length) {
+    for (int i = start; i < length; i++) {
+      char c = logLine.charAt(i);
+      if (c == ' ') {
+        return i == start ? -1 : i;
+      }
+      if (Character.isWhitespace(c)) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Check that the field is followed by a space then the opening character of the next field
+   */
+  private boolean isFieldBoundary(String logLine, int index, char nextFieldStart, int length) {
+    return index + 1 < length && logLine.charAt(index) == ' ' && logLine.charAt(index + 1) == nextFieldStart;
+  }
+
+  /**
+   * Check that the request has no line terminator and that the protocol has no other space, those lines are left to the regex parser
+   *
+   * @param logLine      Log line
+   * @param requestStart Request start index
+   * @param resourceEnd  Index of the space ending the request resource
+   * @param requestEnd   Request end index
+   * @return True if the request can be handled by the fast path
+   */
+  private boolean isPlainRequest(String logLine, int requestStart, int resourceEnd, int requestEnd) {
+    for (int i = requestStart; i < requestEnd; i++) {
+      char c = logLine.charAt(i);
+      if ((c == ' ' && i > resourceEnd) || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Resolve the http method to its constant without allocating the method string
+   *
+   * @return The http method constant or null if unknown
+   */
+  private String matchHttpMethod(String logLine, int start, int end) {
+    int length = end - start;
+    for (String method : HTTP_METHODS) {
+      if (method.length() == length && logLine.regionMatches(start, method, 0, length)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Given the request resource boundaries, find the index of the last character delimiting the section.
+   * The section stops to either the first forward slash or question mark after the leading slash
+   */
+  private int findEndSectionIndex(String logLine, int start, int end) {
+    for (int i = start + 1; i < end; i++) {
+      char c = logLine.charAt(i);
+      if (c == '/' || c == '?') {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Parse an unsigned decimal value from the provided range
+   *
+   * @return The parsed value or -1 if any character is not a digit
+   */
+  private int parseDigits(String logLine, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = logLine.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private boolean isHyphen(String logLine, int start, int end) {
+    return end - start == 1 && logLine.charAt(start) == '-';
+  }
+
+  private boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -7,4 +7,16 @@ import gd.engineering.httplogmonitor.model.HttpLogLine;
  */
 public interface HttpLogParser {
   HttpLogLine parse(String logLine);
+
+  /**
+   * Parse the log line into the provided log line, e.g a reusable slot of a {@link gd.engineering.httplogmonitor.queue.LogLineProducerQueue}.
+   * By default, the line is parsed to a new log line then copied to the target
+   *
+   * @param logLine Log line
+   * @param target  Log line receiving the parsed fields
+   * @throws gd.engineering.httplogmonitor.model.InvalidLogLineException For invalid lines, the target being left untouched
+   */
+  default void parse(String logLine, HttpLogLine target) {
+    target.copyFrom(parse(logLine));
+  }
 }
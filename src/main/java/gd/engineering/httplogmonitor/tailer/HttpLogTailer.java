@@ -1,51 +1,148 @@
 package gd.engineering.httplogmonitor.tailer;
 
-import java.io.File;
+import java.nio.file.Paths;
+import java.time.Clock;
 
-import org.apache.commons.io.input.Tailer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Wrapper around the apache commons {@link org.apache.commons.io.input.Tailer} with a companion Thread
+ * Log tailer built on a {@link gd.engineering.httplogmonitor.tailer.LogFileReader} with a companion Thread.
+ * <p>
+ * The companion thread reads the log file in a loop. After each read, a {@link gd.engineering.httplogmonitor.tailer.TailerWaitStrategy}
+ * decides how to wait for the next change of the file: file events or polling. A busy log file is read continuously.
+ * The tailing starts from the end of the file.
+ * <p>
+ * The latency between the last write to the file and the hand-off of the lines to the listener is reported regularly
+ * <p>
+ * If a {@link gd.engineering.httplogmonitor.tailer.TailerCheckpointStore} is provided, the tailing resumes from the last saved checkpoint
+ * instead of the end of the file. The checkpoint is saved regularly once the lines read up to it have been processed by the listener,
+ * and once the tailer has stopped, see {@link gd.engineering.httplogmonitor.tailer.LogTailer}
+ * <p>
+ * If a {@link gd.engineering.httplogmonitor.tailer.RotatedArchiveReader} is provided and there is no checkpoint to resume from,
+ * the rotated archives of the log file are read first, then the log file from its start
  */
-public class HttpLogTailer {
+public class HttpLogTailer implements Runnable, LogTailer {
 
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+  public static final long DEFAULT_LATENCY_REPORT_INTERVAL_MS = 10000L;
   private static final Logger LOG = LoggerFactory.getLogger(HttpLogTailer.class);
-  private Tailer logTailer;
+  private LogFileReader reader;
+  private TailerListener listener;
+  private TailerWaitStrategy waitStrategy;
+  private TailLatencyRecorder latencyRecorder;
+  private TailerCheckpointStore checkpointStore;
+  private RotatedArchiveReader archiveReader;
+  private Clock clock;
+  private volatile boolean running = true;
   private Thread thread;
+  private TailerCheckpoint stopCheckpoint;
 
   /**
-   * Create a new log tailer and its companion thread with the provided listener.
-   * The tailer will pull new lines at the tailerDelay interval in milliseconds
+   * Create a new log tailer and its companion thread with the provided listener, reading with a {@link #DEFAULT_BUFFER_SIZE} buffer.
+   * The tailer will pull new lines at the tailerDelay interval in milliseconds when the file is idle
    *
    * @param logFile       File to tail from
    * @param listener      Listener handling each line
    * @param tailerDelayMs Tail interval in milliseconds
    */
-  public HttpLogTailer(String logFile, HttpLogTailerListener listener, long tailerDelayMs) {
-    this.logTailer = new Tailer(new File(logFile), listener, tailerDelayMs, true);
-    this.thread = new Thread(logTailer);
+  public HttpLogTailer(String logFile, TailerListener listener, long tailerDelayMs) {
+    this(logFile, listener, new BackoffPollingWaitStrategy(tailerDelayMs, tailerDelayMs), null, null, DEFAULT_BUFFER_SIZE,
+        DEFAULT_LATENCY_REPORT_INTERVAL_MS, Clock.systemDefaultZone());
+  }
+
+  /**
+   * Create a new log tailer and its companion thread with the provided listener and wait strategy
+   *
+   * @param logFile                 File to tail from
+   * @param listener                Listener handling each line
+   * @param waitStrategy            Strategy waiting for the file changes when the file is idle
+   * @param checkpointStore         Store of the tailer checkpoint, null to always start from the end of the file
+   * @param archiveReader           Reader of the rotated archives, read before the log file when there is no checkpoint. Null to skip the archives
+   * @param bufferSize              Size of the direct read buffer in bytes
+   * @param latencyReportIntervalMs Interval between two tail latency reports in milliseconds
+   * @param clock                   System clock
+   */
+  public HttpLogTailer(String logFile, TailerListener listener, TailerWaitStrategy waitStrategy, TailerCheckpointStore checkpointStore,
+                       RotatedArchiveReader archiveReader, int bufferSize, long latencyReportIntervalMs, Clock clock) {
+    this.reader = new LogFileReader(Paths.get(logFile), listener, bufferSize, true);
+    this.listener = listener;
+    this.waitStrategy = waitStrategy;
+    this.checkpointStore = checkpointStore;
+    this.archiveReader = archiveReader;
+    if (checkpointStore != null) {
+      TailerCheckpoint checkpoint = checkpointStore.load();
+      if (checkpoint != null) {
+        reader.resumeFrom(checkpoint);
+        // The archives have been read by a previous run
+        this.archiveReader = null;
+      }
+    }
+    this.clock = clock;
+    this.latencyRecorder = new TailLatencyRecorder(latencyReportIntervalMs, clock.millis());
+    this.thread = new Thread(this, "tailer");
+  }
+
+  @Override
+  public void run() {
+    try {
+      if (archiveReader != null) {
+        reader.openFromStart();
+        archiveReader.readAll();
+      }
+      while (running) {
+        long bytesRead = reader.poll();
+        if (bytesRead > 0) {
+          latencyRecorder.record(reader.getLastModifiedTimeMs(), clock.millis());
+        }
+        latencyRecorder.reportIfDue(clock.millis());
+        if (checkpointStore != null) {
+          checkpointStore.saveWhenProcessed(reader::getCheckpoint, listener, clock.millis());
+        }
+        waitStrategy.await(bytesRead);
+      }
+    } catch (InterruptedException e) {
+      running = false;
+    } finally {
+      if (checkpointStore != null) {
+        stopCheckpoint = reader.getCheckpoint();
+      }
+      reader.close();
+      waitStrategy.close();
+    }
   }
 
   /**
    * Starts the tailer companion thread
    */
+  @Override
   public void start() {
-    LOG.info("Starting to tail {}", this.logTailer.getFile().getName());
+    LOG.info("Starting to tail {}", reader.getLogFile().getFileName());
     thread.start();
   }
 
   /**
-   * Stops the tailer which will stop the companion thread
+   * Stops the companion thread, the offset read being kept for {@link #saveCheckpoints()}
    */
-  public void stop() {
-    LOG.info("Stopping to tail {}", this.logTailer.getFile().getName());
-    logTailer.stop();
+  @Override
+  public void stopReading() {
+    LOG.info("Stopping to tail {}", reader.getLogFile().getFileName());
+    running = false;
+    thread.interrupt();
     try {
       this.thread.join();
     } catch (InterruptedException e) {
       LOG.error("Tailer interrupted while shutting down");
     }
   }
+
+  /**
+   * Save the checkpoint of the offset read when the companion thread stopped
+   */
+  @Override
+  public void saveCheckpoints() {
+    if (checkpointStore != null) {
+      checkpointStore.save(stopCheckpoint);
+    }
+  }
 }
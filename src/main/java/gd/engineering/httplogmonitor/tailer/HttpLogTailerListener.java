@@ -1,52 +1,223 @@
 package gd.engineering.httplogmonitor.tailer;
 
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
 
-import org.apache.commons.io.input.Tailer;
-import org.apache.commons.io.input.TailerListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import gd.engineering.httplogmonitor.model.HttpLogLine;
 import gd.engineering.httplogmonitor.model.InvalidLogLineException;
+import gd.engineering.httplogmonitor.queue.LogLineProducerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
 
 /**
- * Tailer listener parsing each line to {@link gd.engineering.httplogmonitor.model.HttpLogLine} and putting them in a blocking queue for processing.
+ * Tailer listener parsing each line into a {@link gd.engineering.httplogmonitor.model.HttpLogLine} claimed from the log queue and publishing it for processing.
  * It handles file rotation and truncation
- * The invalid lines are logged and skipped
+ * The invalid lines are logged and skipped.
+ * When the queue is full, the {@link gd.engineering.httplogmonitor.queue.OverloadPolicy} decides whether the tailer waits for the queue,
+ * drops the line or samples the lines, the lines dropped or sampled out being accounted in the {@link gd.engineering.httplogmonitor.queue.OverloadCounters}.
+ * The lines sampled out are carried by the next line published from the same source
+ * <p>
+ * {@link #whenProcessed(Runnable)} publishes a barrier line behind the lines published so far, its action being run by the aggregator once they are flushed
  */
 public class HttpLogTailerListener implements TailerListener {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpLogTailerListener.class);
-  private Queue<HttpLogLine> logQueue;
+  private static final long CLAIM_PARK_NANOS = 50_000L;
+  private LogLineProducerQueue logQueue;
   private HttpLogParser parser;
+  private OverloadPolicy overloadPolicy;
+  private int sampleRate;
+  private OverloadCounters overloadCounters;
+  private String source;
+  private boolean sampling;
+  // Lines sampled out and not carried by a published line yet, by source: a parser worker handles the batches of several log files
+  private Map<String, int[]> pendingWeights = new HashMap<>();
 
-  public HttpLogTailerListener(HttpLogParser parser, Queue<HttpLogLine> logQueue) {
+  /**
+   * Build a new listener dropping the lines when the queue is full, without accounting
+   *
+   * @param parser   Log line parser
+   * @param logQueue Log queue
+   */
+  public HttpLogTailerListener(HttpLogParser parser, LogLineProducerQueue logQueue) {
+    this(parser, logQueue, OverloadPolicy.DROP, 1, new OverloadCounters());
+  }
+
+  /**
+   * Build a new listener
+   *
+   * @param parser           Log line parser
+   * @param logQueue         Log queue
+   * @param overloadPolicy   What to do with the lines when the queue is full
+   * @param sampleRate       N for the sample policy: 1 line in N is kept while the queue is full
+   * @param overloadCounters Counters of the lines dropped and sampled out
+   * @throws IllegalArgumentException If the sample rate is not strictly positive
+   */
+  public HttpLogTailerListener(HttpLogParser parser, LogLineProducerQueue logQueue, OverloadPolicy overloadPolicy, int sampleRate, OverloadCounters overloadCounters) {
+    this(parser, logQueue, overloadPolicy, sampleRate, overloadCounters, null);
+  }
+
+  /**
+   * Build a new listener tagging each line with the log file it comes from, when several log files are tailed
+   *
+   * @param parser           Log line parser, owned by this listener
+   * @param logQueue         Log queue, shared with the listeners of the other log files
+   * @param overloadPolicy   What to do with the lines when the queue is full
+   * @param sampleRate       N for the sample policy: 1 line in N is kept while the queue is full
+   * @param overloadCounters Counters of the lines dropped and sampled out
+   * @param source           Source of the lines, null to not tag them
+   * @throws IllegalArgumentException If the sample rate is not strictly positive
+   */
+  public HttpLogTailerListener(HttpLogParser parser, LogLineProducerQueue logQueue, OverloadPolicy overloadPolicy, int sampleRate, OverloadCounters overloadCounters,
+                               String source) {
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException("Sample rate has to be strictly positive");
+    }
     this.parser = parser;
     this.logQueue = logQueue;
+    this.overloadPolicy = overloadPolicy;
+    this.sampleRate = sampleRate;
+    this.overloadCounters = overloadCounters;
+    this.source = source;
   }
 
+  /**
+   * Handle a batch of lines read from the tailed file, in order.
+   * The log queue having a single producer, the batches of the listeners sharing the queue are handled one at a time
+   *
+   * @param lines Log lines
+   */
   @Override
-  public void init(Tailer tailer) {
+  public void handle(List<String> lines) {
+    handle(lines, source);
   }
 
-  @Override
-  public void fileNotFound() {
+  /**
+   * Handle a batch of lines read from the provided source, e.g by a parser worker handling the batches of several log files
+   *
+   * @param lines      Log lines
+   * @param lineSource Source of the lines, null to not tag them
+   */
+  void handle(List<String> lines, String lineSource) {
+    synchronized (logQueue) {
+      int[] pendingWeight = getPendingWeight(lineSource);
+      for (String line : lines) {
+        handle(line, lineSource, pendingWeight);
+      }
+    }
   }
 
+  /**
+   * Parse a single line into the log queue
+   *
+   * @param line Log line
+   */
   @Override
-  public void fileRotated() {
+  public void handle(String line) {
+    synchronized (logQueue) {
+      handle(line, source, getPendingWeight(source));
+    }
   }
 
-  @Override
-  public void handle(String line) {
+  private int[] getPendingWeight(String lineSource) {
+    return pendingWeights.computeIfAbsent(lineSource, key -> new int[1]);
+  }
+
+  /**
+   * Parse a line of the provided source into the log queue, or sample it out
+   *
+   * @param line          Log line
+   * @param lineSource    Source of the line
+   * @param pendingWeight Lines of the source sampled out and not carried by a published line yet, the line included once handled
+   */
+  private void handle(String line, String lineSource, int[] pendingWeight) {
+    pendingWeight[0]++;
+    if (sampling && pendingWeight[0] < sampleRate) {
+      return;
+    }
+    HttpLogLine logLine = logQueue.claim();
+    if (logLine != null) {
+      // The queue has room again
+      sampling = false;
+    } else if (overloadPolicy == OverloadPolicy.DROP) {
+      overloadCounters.recordDropped(pendingWeight[0]);
+      pendingWeight[0] = 0;
+      return;
+    } else {
+      sampling = overloadPolicy == OverloadPolicy.SAMPLE;
+      logLine = awaitClaim();
+      if (logLine == null) {
+        overloadCounters.recordDropped(pendingWeight[0]);
+        pendingWeight[0] = 0;
+        return;
+      }
+    }
     try {
-      logQueue.offer(parser.parse(line));
+      parser.parse(line, logLine);
+      logLine.setWeight(pendingWeight[0]);
+      logLine.setSource(lineSource);
+      logLine.setBarrier(null);
+      logQueue.publish();
+      overloadCounters.recordSampled(pendingWeight[0] - 1);
+      pendingWeight[0] = 0;
     } catch (InvalidLogLineException ex) {
+      // The lines sampled out are carried by the next valid line
+      pendingWeight[0]--;
       LOG.error("", ex);
     }
   }
 
+  /**
+   * Publish a barrier line running the action once the lines published before it have been flushed.
+   * The barrier is never dropped, the listener waits for room in the queue whatever the overload policy.
+   * The lines sampled out and not carried by a published line yet are accounted as sampled out right away
+   *
+   * @param action Action to run by the aggregator, skipped if the listener is interrupted while waiting for room
+   */
+  @Override
+  public void whenProcessed(Runnable action) {
+    synchronized (logQueue) {
+      HttpLogLine logLine = logQueue.claim();
+      if (logLine == null && (logLine = awaitClaim()) == null) {
+        return;
+      }
+      for (int[] pendingWeight : pendingWeights.values()) {
+        overloadCounters.recordSampled(pendingWeight[0]);
+        pendingWeight[0] = 0;
+      }
+      logLine.setWeight(0);
+      logLine.setSource(source);
+      logLine.setBarrier(action);
+      logQueue.publish();
+    }
+  }
+
+  /**
+   * Wait for the aggregator to free a slot of the queue
+   *
+   * @return The claimed log line or null if the tailer is interrupted, i.e stopping
+   */
+  private HttpLogLine awaitClaim() {
+    HttpLogLine logLine;
+    while ((logLine = logQueue.claim()) == null) {
+      LockSupport.parkNanos(CLAIM_PARK_NANOS);
+      if (Thread.currentThread().isInterrupted()) {
+        return null;
+      }
+    }
+    return logLine;
+  }
+
+  /**
+   * Handle any error happening while tailing
+   *
+   * @param e Tailing error
+   */
   @Override
   public void handle(Exception e) {
     LOG.error("", e);
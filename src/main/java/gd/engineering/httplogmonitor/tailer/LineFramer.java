@@ -0,0 +1,192 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Frames lines at the byte level from consecutive chunks of a byte stream.
+ * <p>
+ * Bytes are appended to an internal pending buffer which is scanned for line feeds. Each complete line is decoded to a String,
+ * without its line terminator (\n or \r\n). The trailing incomplete line stays pending until the next chunk completes it.
+ * <p>
+ * A line longer than the maximum line length is malformed: its bytes are discarded up to the next line feed instead of growing
+ * the pending buffer, and the line is counted in {@link #getMalformedLineCount()}
+ * <p>
+ * This class is not thread safe
+ */
+public class LineFramer {
+
+  public static final int DEFAULT_MAX_LINE_LENGTH = 64 * 1024;
+  private static final Logger LOG = LoggerFactory.getLogger(LineFramer.class);
+  private static final byte LF = '\n';
+  private static final byte CR = '\r';
+  private Charset charset;
+  private int maxLineLength;
+  private byte[] pending;
+  private int pendingLength;
+  // Bytes of the malformed line being discarded, 0 when not discarding
+  private long discardedLength;
+  private long malformedLineCount;
+
+  /**
+   * Build a new line framer discarding the lines longer than {@link #DEFAULT_MAX_LINE_LENGTH}
+   *
+   * @param charset         Charset used to decode the lines
+   * @param initialCapacity Initial capacity of the pending buffer in bytes, it grows with the longest line
+   */
+  public LineFramer(Charset charset, int initialCapacity) {
+    this(charset, initialCapacity, DEFAULT_MAX_LINE_LENGTH);
+  }
+
+  /**
+   * Build a new line framer
+   *
+   * @param charset         Charset used to decode the lines
+   * @param initialCapacity Initial capacity of the pending buffer in bytes, it grows with the longest line
+   * @param maxLineLength   Maximum length of a line in bytes, line terminator excluded, the longer lines being discarded
+   */
+  public LineFramer(Charset charset, int initialCapacity, int maxLineLength) {
+    this.charset = charset;
+    this.maxLineLength = maxLineLength;
+    this.pending = new byte[initialCapacity];
+  }
+
+  /**
+   * Consume all the remaining bytes of the provided buffer and add the completed lines to the output
+   *
+   * @param chunk Buffer ready to be read
+   * @param lines Output receiving the completed lines
+   * @return Number of lines completed
+   */
+  public int frame(ByteBuffer chunk, List<String> lines) {
+    int length = chunk.remaining();
+    ensureCapacity(pendingLength + length);
+    chunk.get(pending, pendingLength, length);
+    return scan(length, lines);
+  }
+
+  /**
+   * Consume the provided bytes and add the completed lines to the output
+   *
+   * @param chunk  Bytes
+   * @param offset Offset of the first byte to consume
+   * @param length Number of bytes to consume
+   * @param lines  Output receiving the completed lines
+   * @return Number of lines completed
+   */
+  public int frame(byte[] chunk, int offset, int length, List<String> lines) {
+    ensureCapacity(pendingLength + length);
+    System.arraycopy(chunk, offset, pending, pendingLength, length);
+    return scan(length, lines);
+  }
+
+  /**
+   * Complete the pending line, if any, at the end of the stream
+   *
+   * @param lines Output receiving the pending line
+   * @return Number of lines completed (0 or 1)
+   */
+  public int flush(List<String> lines) {
+    if (discardedLength > 0) {
+      discard(pendingLength);
+      pendingLength = 0;
+      return 0;
+    }
+    if (pendingLength == 0) {
+      return 0;
+    }
+    lines.add(decode(0, pendingLength));
+    pendingLength = 0;
+    return 1;
+  }
+
+  /**
+   * Discard the pending incomplete line
+   */
+  public void reset() {
+    pendingLength = 0;
+    discardedLength = 0;
+  }
+
+  /**
+   * Number of bytes of the incomplete line waiting for its line feed, the bytes discarded of a malformed line included
+   *
+   * @return Pending bytes
+   */
+  public long getPendingLength() {
+    return discardedLength + pendingLength;
+  }
+
+  /**
+   * Number of lines discarded for being longer than the maximum line length
+   *
+   * @return Malformed lines
+   */
+  public long getMalformedLineCount() {
+    return malformedLineCount;
+  }
+
+  /**
+   * Scan the newly appended bytes for line feeds and compact the pending buffer
+   *
+   * @param appended Number of bytes appended at the end of the pending buffer
+   * @param lines    Output receiving the completed lines
+   * @return Number of lines completed
+   */
+  private int scan(int appended, List<String> lines) {
+    int total = pendingLength + appended;
+    int lineStart = 0;
+    int count = 0;
+    for (int i = pendingLength; i < total; i++) {
+      if (pending[i] == LF) {
+        if (discardedLength > 0 || lineEnd(lineStart, i) - lineStart > maxLineLength) {
+          discard(i - lineStart);
+        } else {
+          lines.add(decode(lineStart, i));
+          count++;
+        }
+        lineStart = i + 1;
+      }
+    }
+    pendingLength = total - lineStart;
+    if (pendingLength > maxLineLength + 1) {
+      // Too long already even with a pending CR, the rest of the line is discarded as it is read
+      discardedLength += pendingLength;
+      pendingLength = 0;
+    } else if (lineStart > 0 && pendingLength > 0) {
+      System.arraycopy(pending, lineStart, pending, 0, pendingLength);
+    }
+    return count;
+  }
+
+  /**
+   * Count the malformed line ending with the provided bytes as discarded
+   *
+   * @param length Last bytes of the line
+   */
+  private void discard(int length) {
+    malformedLineCount++;
+    LOG.warn("Discarded a line of {} bytes, longer than the maximum of {} bytes", discardedLength + length, maxLineLength);
+    discardedLength = 0;
+  }
+
+  private String decode(int start, int end) {
+    return new String(pending, start, lineEnd(start, end) - start, charset);
+  }
+
+  private int lineEnd(int start, int end) {
+    return end > start && pending[end - 1] == CR ? end - 1 : end;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > pending.length) {
+      byte[] grown = new byte[Math.max(capacity, pending.length * 2)];
+      System.arraycopy(pending, 0, grown, 0, pendingLength);
+      pending = grown;
+    }
+  }
+}
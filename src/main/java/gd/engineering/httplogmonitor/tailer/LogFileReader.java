@@ -0,0 +1,372 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the lines appended to a log file through a {@link java.nio.channels.FileChannel}.
+ * <p>
+ * Each poll reads everything appended since the last poll in chunks of the direct read buffer size. Lines are framed at the
+ * byte level by a {@link gd.engineering.httplogmonitor.tailer.LineFramer} and each chunk is handed to the listener as one batch.
+ * <p>
+ * Rotation and truncation are handled as the apache commons Tailer did:
+ * if the file is replaced (different file key, i.e inode), the rest of the old file is read before reopening the new one from its start.
+ * If the file shrinks, it is read again from its start. Both cases notify the listener with fileRotated.
+ * If the file does not exist, the listener is notified with fileNotFound at each poll until it appears.
+ * <p>
+ * The reader can resume from a {@link gd.engineering.httplogmonitor.tailer.TailerCheckpoint}: if the file is still the checkpointed one, the reading
+ * starts at the checkpoint offset. If the file has been rotated in between, the rest of the rotated file (a sibling file named after the log file,
+ * e.g access.log.1) is read first, then the new file from its start.
+ * <p>
+ * This class is not thread safe, a single thread polls a reader at any time
+ */
+public class LogFileReader implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogFileReader.class);
+  private Path logFile;
+  private TailerListener listener;
+  private ByteBuffer readBuffer;
+  private LineFramer framer;
+  private FileChannel channel;
+  private Object fileKey;
+  private long fingerprint;
+  private int fingerprintLength;
+  private TailerCheckpoint resumeCheckpoint;
+  private long position;
+  private long lastModifiedTimeMs;
+  private boolean startFromEnd;
+
+  /**
+   * Build a new reader on the provided file. The file is only opened on the first poll
+   *
+   * @param logFile      File to read from
+   * @param listener     Listener handling the line batches
+   * @param bufferSize   Size of the direct read buffer in bytes
+   * @param startFromEnd True to skip the existing content of the file when first opened
+   */
+  public LogFileReader(Path logFile, TailerListener listener, int bufferSize, boolean startFromEnd) {
+    this.logFile = logFile;
+    this.listener = listener;
+    this.readBuffer = ByteBuffer.allocateDirect(bufferSize);
+    this.framer = new LineFramer(StandardCharsets.UTF_8, bufferSize);
+    this.startFromEnd = startFromEnd;
+  }
+
+  /**
+   * Read every line appended since the last poll and hand them to the listener.
+   * Any IO error is handed to the listener and the file is reopened on the next poll
+   *
+   * @return Number of bytes read
+   */
+  public long poll() {
+    try {
+      if (channel == null && !open()) {
+        return 0;
+      }
+      long read = readToEnd();
+      BasicFileAttributes attributes = readAttributes();
+      if (attributes == null) {
+        // The file has been moved away, the old one is read until a new one appears
+        return read;
+      }
+      if (read > 0) {
+        lastModifiedTimeMs = attributes.lastModifiedTime().toMillis();
+      }
+      if (fileKey != null && !fileKey.equals(attributes.fileKey())) {
+        read += readToEnd();
+        flushPendingLine();
+        closeChannel();
+        LOG.info("{} has been rotated, reopening it", logFile);
+        listener.fileRotated();
+        if (open()) {
+          read += readToEnd();
+        }
+      } else if (attributes.size() < position) {
+        LOG.info("{} has been truncated, reading it from its start", logFile);
+        listener.fileRotated();
+        framer.reset();
+        position = 0;
+        fingerprintLength = 0;
+        read += readToEnd();
+      }
+      return read;
+    } catch (ClosedByInterruptException e) {
+      // The tailer is being stopped
+      Thread.currentThread().interrupt();
+      closeChannel();
+      return 0;
+    } catch (IOException e) {
+      listener.handle(e);
+      closeChannel();
+      return 0;
+    }
+  }
+
+  /**
+   * Offset in the file up to the last complete line handed to the listener
+   *
+   * @return Offset in bytes
+   */
+  public long getOffset() {
+    return position - framer.getPendingLength();
+  }
+
+  /**
+   * Read the log file from its start instead of its end and open it right away, e.g before reading its rotated archives:
+   * if the file is rotated in between, the opened file is still read to its end before the new one is opened
+   */
+  public void openFromStart() {
+    startFromEnd = false;
+    try {
+      if (channel == null) {
+        open();
+      }
+    } catch (IOException e) {
+      listener.handle(e);
+      closeChannel();
+    }
+  }
+
+  /**
+   * Resume the reading from the provided checkpoint when the file is first opened, instead of its start or end
+   *
+   * @param checkpoint Checkpoint saved by a previous run
+   */
+  public void resumeFrom(TailerCheckpoint checkpoint) {
+    this.resumeCheckpoint = checkpoint;
+  }
+
+  /**
+   * Build the checkpoint of the current reading: identity of the opened file and offset of the last complete line handed to the listener
+   *
+   * @return Current checkpoint or null if the file is not opened
+   */
+  public TailerCheckpoint getCheckpoint() {
+    if (channel == null) {
+      return null;
+    }
+    try {
+      if (fingerprintLength < TailerCheckpoint.MAX_FINGERPRINT_LENGTH) {
+        int length = (int) Math.min(channel.size(), TailerCheckpoint.MAX_FINGERPRINT_LENGTH);
+        if (length > fingerprintLength) {
+          fingerprint = fingerprint(channel, length);
+          fingerprintLength = length;
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to fingerprint {}", logFile, e);
+      return null;
+    }
+    return new TailerCheckpoint(fileKey == null ? null : fileKey.toString(), fingerprint, fingerprintLength, getOffset());
+  }
+
+  /**
+   * Last modified time of the log file observed after the last non empty read, i.e the last write time of the lines read
+   *
+   * @return Last modified time in milliseconds
+   */
+  public long getLastModifiedTimeMs() {
+    return lastModifiedTimeMs;
+  }
+
+  public Path getLogFile() {
+    return logFile;
+  }
+
+  @Override
+  public void close() {
+    closeChannel();
+  }
+
+  /**
+   * Open the log file, positioned at its end on the first opening if required or at the checkpoint to resume from.
+   * Reopening the same file after an IO error resumes from the current position
+   *
+   * @return True if opened, false if the file does not exist
+   * @throws IOException If the file cannot be opened
+   */
+  private boolean open() throws IOException {
+    try {
+      channel = FileChannel.open(logFile, StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      listener.fileNotFound();
+      return false;
+    }
+    Object openedFileKey = Files.readAttributes(logFile, BasicFileAttributes.class).fileKey();
+    if (resumeCheckpoint != null) {
+      resume(resumeCheckpoint, openedFileKey);
+      resumeCheckpoint = null;
+    } else if (fileKey == null || !fileKey.equals(openedFileKey)) {
+      position = startFromEnd ? channel.size() : 0;
+      framer.reset();
+      fingerprintLength = 0;
+    }
+    fileKey = openedFileKey;
+    startFromEnd = false;
+    return true;
+  }
+
+  /**
+   * Position the reading of the newly opened log file from the checkpoint.
+   * If the log file is not the checkpointed one, the rest of the checkpointed file is read first if it can be found among the rotated files
+   *
+   * @param checkpoint    Checkpoint to resume from
+   * @param openedFileKey File key of the opened log file
+   * @throws IOException If any file cannot be read
+   */
+  private void resume(TailerCheckpoint checkpoint, Object openedFileKey) throws IOException {
+    framer.reset();
+    fingerprintLength = 0;
+    if (isCheckpointedFile(channel, openedFileKey, checkpoint) && channel.size() >= checkpoint.getOffset()) {
+      LOG.info("Resuming {} from offset {}", logFile, checkpoint.getOffset());
+      position = checkpoint.getOffset();
+      return;
+    }
+    position = 0;
+    Path rotatedFile = findRotatedFile(checkpoint);
+    if (rotatedFile == null) {
+      LOG.warn("{} has been rotated and the checkpointed file cannot be found, reading it from its start", logFile);
+      return;
+    }
+    LOG.info("{} has been rotated, resuming {} from offset {}", logFile, rotatedFile, checkpoint.getOffset());
+    try (FileChannel rotatedChannel = FileChannel.open(rotatedFile, StandardOpenOption.READ)) {
+      readToEnd(rotatedChannel, checkpoint.getOffset());
+    }
+    flushPendingLine();
+    listener.fileRotated();
+  }
+
+  /**
+   * Look for the checkpointed file among the rotated files, i.e the sibling files whose name starts with the log file name
+   *
+   * @param checkpoint Checkpoint to resume from
+   * @return The checkpointed file or null if not found
+   * @throws IOException If the directory cannot be listed
+   */
+  private Path findRotatedFile(TailerCheckpoint checkpoint) throws IOException {
+    Path directory = logFile.toAbsolutePath().getParent();
+    try (DirectoryStream<Path> candidates = Files.newDirectoryStream(directory, logFile.getFileName() + "*")) {
+      for (Path candidate : candidates) {
+        if (candidate.getFileName().equals(logFile.getFileName()) || !Files.isRegularFile(candidate)) {
+          continue;
+        }
+        try (FileChannel candidateChannel = FileChannel.open(candidate, StandardOpenOption.READ)) {
+          Object candidateFileKey = Files.readAttributes(candidate, BasicFileAttributes.class).fileKey();
+          if (isCheckpointedFile(candidateChannel, candidateFileKey, checkpoint) && candidateChannel.size() >= checkpoint.getOffset()) {
+            return candidate;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean isCheckpointedFile(FileChannel candidate, Object candidateFileKey, TailerCheckpoint checkpoint) throws IOException {
+    return candidate.size() >= checkpoint.getFingerprintLength()
+        && checkpoint.isSameFile(candidateFileKey == null ? null : candidateFileKey.toString(), fingerprint(candidate, checkpoint.getFingerprintLength()));
+  }
+
+  /**
+   * Compute the CRC32 of the first bytes of the file
+   *
+   * @param source File channel
+   * @param length Number of bytes
+   * @return CRC32 value
+   * @throws IOException If the file cannot be read
+   */
+  private static long fingerprint(FileChannel source, int length) throws IOException {
+    ByteBuffer head = ByteBuffer.allocate(length);
+    while (head.hasRemaining() && source.read(head, head.position()) > 0) {
+      // Read the head of the file
+    }
+    CRC32 crc = new CRC32();
+    crc.update(head.array(), 0, head.position());
+    return crc.getValue();
+  }
+
+  /**
+   * Read the log file up to its current end, handing a batch of lines to the listener per chunk read
+   *
+   * @return Number of bytes read
+   * @throws IOException If the read fails
+   */
+  private long readToEnd() throws IOException {
+    long read = readToEnd(channel, position);
+    position += read;
+    return read;
+  }
+
+  /**
+   * Read the channel from the provided offset up to its current end, handing a batch of lines to the listener per chunk read
+   *
+   * @param source File channel
+   * @param from   Offset of the first byte to read
+   * @return Number of bytes read
+   * @throws IOException If the read fails
+   */
+  private long readToEnd(FileChannel source, long from) throws IOException {
+    long totalRead = 0;
+    int read;
+    while ((read = readChunk(source, from + totalRead)) > 0) {
+      totalRead += read;
+      List<String> lines = new ArrayList<>();
+      framer.frame(readBuffer, lines);
+      if (!lines.isEmpty()) {
+        listener.handle(lines);
+      }
+    }
+    return totalRead;
+  }
+
+  private int readChunk(FileChannel source, long from) throws IOException {
+    readBuffer.clear();
+    int read = source.read(readBuffer, from);
+    readBuffer.flip();
+    return read;
+  }
+
+  /**
+   * The last line of a rotated file will never be completed, it is handed to the listener as is
+   */
+  private void flushPendingLine() {
+    List<String> lines = new ArrayList<>(1);
+    if (framer.flush(lines) > 0) {
+      listener.handle(lines);
+    }
+  }
+
+  private BasicFileAttributes readAttributes() throws IOException {
+    try {
+      return Files.readAttributes(logFile, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  private void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.warn("Unable to close {}", logFile, e);
+      }
+      channel = null;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package gd.engineering.httplogmonitor.tailer;
+
+/**
+ * Tailer of one or several log files, see {@link gd.engineering.httplogmonitor.tailer.HttpLogTailer} and {@link gd.engineering.httplogmonitor.tailer.MultiFileTailer}.
+ * <p>
+ * Stopping is split in two steps so that the checkpoints are only saved once the lines read have been processed:
+ * the tailer stops reading, the lines handed off are drained down to the metrics store, then the checkpoints are saved
+ */
+public interface LogTailer {
+
+  /**
+   * Start tailing the log files
+   */
+  void start();
+
+  /**
+   * Stop reading the log files and close them, the checkpoints of the offsets read being kept for {@link #saveCheckpoints()}
+   */
+  void stopReading();
+
+  /**
+   * Save the checkpoints of the offsets read when the tailer stopped reading
+   */
+  void saveCheckpoints();
+
+  /**
+   * Stop reading the log files and save their checkpoints right away, when the lines handed off do not have to be processed first
+   */
+  default void stop() {
+    stopReading();
+    saveCheckpoints();
+  }
+}
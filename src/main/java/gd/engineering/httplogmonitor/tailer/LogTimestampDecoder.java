@@ -0,0 +1,213 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Decoder for the access log timestamps following the dd/MMM/yyyy:HH:mm:ss Z format, e.g: 09/May/2018:16:00:42 +0000
+ * <p>
+ * Consecutive log lines almost always share the same timestamp. The decoder remembers the last few distinct timestamps
+ * and their decoded value so that most lines are resolved by a region comparison, without any allocation.
+ * On a cache miss, the timestamp is decoded directly to epoch milliseconds. Only the timestamps the direct decoding does not
+ * understand (non english months, invalid days...) go through the provided {@link java.time.format.DateTimeFormatter}.
+ * <p>
+ * This class is not thread safe, each parser owns its decoder
+ */
+public class LogTimestampDecoder {
+
+  public static final int DEFAULT_CACHE_SIZE = 4;
+  private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+  private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+  private static final int TIMESTAMP_LENGTH = "dd/MMM/yyyy:HH:mm:ss +hhmm".length();
+  private static final long SECONDS_PER_DAY = 86400L;
+  // ZoneOffset bound, +-18:00
+  private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+  private DateTimeFormatter fallbackFormatter;
+  private String[] cachedTimestamps;
+  private long[] cachedTimestampsMs;
+  private int[] cachedZoneOffsets;
+  private int lastHitIndex;
+  private int nextEvictionIndex;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Build a new decoder remembering the last {@link #DEFAULT_CACHE_SIZE} distinct timestamps
+   *
+   * @param fallbackFormatter Formatter used for the timestamps not understood by the direct decoding
+   */
+  public LogTimestampDecoder(DateTimeFormatter fallbackFormatter) {
+    this(fallbackFormatter, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Build a new decoder remembering the last cacheSize distinct timestamps
+   *
+   * @param fallbackFormatter Formatter used for the timestamps not understood by the direct decoding
+   * @param cacheSize         Number of distinct timestamps remembered
+   * @throws IllegalArgumentException If the cache size is not strictly positive
+   */
+  public LogTimestampDecoder(DateTimeFormatter fallbackFormatter, int cacheSize) {
+    if (cacheSize <= 0) {
+      throw new IllegalArgumentException("Timestamp cache size has to be strictly positive");
+    }
+    this.fallbackFormatter = fallbackFormatter;
+    this.cachedTimestamps = new String[cacheSize];
+    this.cachedTimestampsMs = new long[cacheSize];
+    this.cachedZoneOffsets = new int[cacheSize];
+  }
+
+  /**
+   * Decode the timestamp found between start inclusive and end exclusive and set it on the provided log line
+   *
+   * @param text   Text holding the timestamp, usually the full log line
+   * @param start  Timestamp start index
+   * @param end    Timestamp end index
+   * @param target Log line receiving the timestamp
+   * @throws DateTimeParseException If the timestamp is invalid
+   */
+  public void decode(String text, int start, int end, HttpLogLine target) {
+    int index = lookup(text, start, end);
+    if (index < 0) {
+      missCount++;
+      index = store(text, start, end);
+    } else {
+      hitCount++;
+    }
+    lastHitIndex = index;
+    target.setTimestamp(cachedTimestampsMs[index], cachedZoneOffsets[index]);
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Look for the timestamp in the cache, starting with the last one decoded
+   *
+   * @return The cache index or -1 if not found
+   */
+  private int lookup(String text, int start, int end) {
+    int length = end - start;
+    if (matches(lastHitIndex, text, start, length)) {
+      return lastHitIndex;
+    }
+    for (int i = 0; i < cachedTimestamps.length; i++) {
+      if (i != lastHitIndex && matches(i, text, start, length)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean matches(int index, String text, int start, int length) {
+    String cachedTimestamp = cachedTimestamps[index];
+    return cachedTimestamp != null && cachedTimestamp.length() == length && text.regionMatches(start, cachedTimestamp, 0, length);
+  }
+
+  /**
+   * Decode the timestamp and store it in place of the oldest cached one
+   *
+   * @return The cache index of the decoded timestamp
+   * @throws DateTimeParseException If the timestamp is invalid
+   */
+  private int store(String text, int start, int end) {
+    String timestamp = text.substring(start, end);
+    int index = nextEvictionIndex;
+    if (!decodeDirectly(timestamp, index)) {
+      ZonedDateTime dateTime = ZonedDateTime.parse(timestamp, fallbackFormatter);
+      cachedTimestampsMs[index] = dateTime.toInstant().toEpochMilli();
+      cachedZoneOffsets[index] = dateTime.getOffset().getTotalSeconds();
+    }
+    cachedTimestamps[index] = timestamp;
+    nextEvictionIndex = (index + 1) % cachedTimestamps.length;
+    return index;
+  }
+
+  /**
+   * Decode the dd/MMM/yyyy:HH:mm:ss +hhmm timestamp to epoch milliseconds and zone offset in the provided cache slot
+   *
+   * @return True if decoded, false if the timestamp has to go through the fallback formatter
+   */
+  private boolean decodeDirectly(String timestamp, int index) {
+    if (timestamp.length() != TIMESTAMP_LENGTH || timestamp.charAt(2) != '/' || timestamp.charAt(6) != '/' || timestamp.charAt(11) != ':'
+        || timestamp.charAt(14) != ':' || timestamp.charAt(17) != ':' || timestamp.charAt(20) != ' ') {
+      return false;
+    }
+    int day = parseDigits(timestamp, 0, 2);
+    int month = parseMonth(timestamp, 3);
+    int year = parseDigits(timestamp, 7, 11);
+    int hour = parseDigits(timestamp, 12, 14);
+    int minute = parseDigits(timestamp, 15, 17);
+    int second = parseDigits(timestamp, 18, 20);
+    int offsetHours = parseDigits(timestamp, 22, 24);
+    int offsetMinutes = parseDigits(timestamp, 24, 26);
+    char offsetSign = timestamp.charAt(21);
+    if (month < 0 || day < 1 || day > DAYS_IN_MONTH[month - 1] || (month == 2 && day == 29 && !isLeapYear(year)) || year < 0
+        || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+        || offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59 || offsetHours * 3600 + offsetMinutes * 60 > MAX_OFFSET_SECONDS
+        || (offsetSign != '+' && offsetSign != '-')) {
+      return false;
+    }
+    int zoneOffsetSeconds = (offsetSign == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+    long epochSeconds = toEpochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - zoneOffsetSeconds;
+    cachedTimestampsMs[index] = epochSeconds * 1000L;
+    cachedZoneOffsets[index] = zoneOffsetSeconds;
+    return true;
+  }
+
+  /**
+   * Resolve the english three letter month abbreviation
+   *
+   * @return Month of year from 1 to 12 or -1 if unknown
+   */
+  private int parseMonth(String timestamp, int start) {
+    for (int i = 0; i < MONTHS.length; i++) {
+      if (timestamp.regionMatches(start, MONTHS[i], 0, 3)) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parse an unsigned decimal value from the provided range
+   *
+   * @return The parsed value or -1 if any character is not a digit
+   */
+  private int parseDigits(String text, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private boolean isLeapYear(int year) {
+    return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+  }
+
+  /**
+   * Number of days since 1970-01-01 of the provided proleptic gregorian date
+   */
+  static long toEpochDay(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+}
@@ -0,0 +1,257 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tails several log files, listed explicitly or matched by globs on their file name (e.g /var/log/apache2/*access.log),
+ * through a small shared pool of reader threads instead of one thread per file.
+ * <p>
+ * Each log file has its own {@link gd.engineering.httplogmonitor.tailer.LogFileReader} and listener. A read of a file is a task of the pool:
+ * after each read, the next read of the file is scheduled right away if lines have been read, or after an exponential backoff if the file is idle
+ * (see {@link gd.engineering.httplogmonitor.tailer.BackoffPollingWaitStrategy}). A file is never read by two threads at the same time.
+ * <p>
+ * The globs are evaluated again at regular intervals: the files appearing afterwards are tailed from their start,
+ * the files found at startup from their end or from their checkpoint. The files matched by a glob and deleted since are read one last time
+ * and no longer tailed. An error while reading a file or evaluating the globs is logged and the file or the globs are tried again later
+ */
+public class MultiFileTailer implements LogTailer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MultiFileTailer.class);
+  private static final String GLOB_CHARACTERS = "*?[{";
+  private List<String> logFilePatterns;
+  private Function<Path, TailerListener> listenerFactory;
+  private Function<Path, TailerCheckpointStore> checkpointStoreFactory;
+  private int bufferSize;
+  private long minDelayMs;
+  private long maxDelayMs;
+  private long discoveryIntervalMs;
+  private Clock clock;
+  private ScheduledThreadPoolExecutor readerPool;
+  private Map<Path, TailedFile> tailedFiles;
+  private volatile boolean running = true;
+
+  /**
+   * Build a new multi file tailer
+   *
+   * @param logFilePatterns        Log files or globs on the log file names
+   * @param listenerFactory        Builds the listener of each log file
+   * @param checkpointStoreFactory Builds the checkpoint store of each log file, returning null to disable the checkpointing
+   * @param threadCount            Number of reader threads shared by all the log files
+   * @param bufferSize             Size of the direct read buffer of each log file in bytes
+   * @param minDelayMs             Delay before the next read of a log file after its first empty read in milliseconds
+   * @param maxDelayMs             Maximum delay between two reads of an idle log file in milliseconds
+   * @param discoveryIntervalMs    Interval between two evaluations of the globs in milliseconds
+   * @param clock                  System clock
+   */
+  public MultiFileTailer(List<String> logFilePatterns, Function<Path, TailerListener> listenerFactory,
+                         Function<Path, TailerCheckpointStore> checkpointStoreFactory, int threadCount, int bufferSize, long minDelayMs, long maxDelayMs,
+                         long discoveryIntervalMs, Clock clock) {
+    this.logFilePatterns = logFilePatterns;
+    this.listenerFactory = listenerFactory;
+    this.checkpointStoreFactory = checkpointStoreFactory;
+    this.bufferSize = bufferSize;
+    this.minDelayMs = minDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.discoveryIntervalMs = discoveryIntervalMs;
+    this.clock = clock;
+    this.tailedFiles = new ConcurrentHashMap<>();
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.readerPool = new ScheduledThreadPoolExecutor(threadCount, r -> new Thread(r, "tailer-" + threadIndex.incrementAndGet()));
+    // The pending reads are dropped on stop, the reads in progress complete without interruption so that their progress is checkpointed
+    this.readerPool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+  /**
+   * Check whether a log file pattern is a glob rather than a single log file
+   *
+   * @param logFilePattern Log file pattern
+   * @return True if the pattern holds any glob character
+   */
+  public static boolean isGlob(String logFilePattern) {
+    return logFilePattern.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+  }
+
+  /**
+   * Start tailing the log files found and look for new ones at regular intervals
+   */
+  @Override
+  public void start() {
+    discover(true);
+    readerPool.scheduleWithFixedDelay(() -> discover(false), discoveryIntervalMs, discoveryIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop the reader threads once their current read is completed then close the log files, their offsets being kept for {@link #saveCheckpoints()}
+   */
+  @Override
+  public void stopReading() {
+    LOG.info("Stopping to tail {} log files", tailedFiles.size());
+    running = false;
+    readerPool.shutdown();
+    try {
+      if (!readerPool.awaitTermination(maxDelayMs + 1000L, TimeUnit.MILLISECONDS)) {
+        LOG.warn("Tailer pool still running");
+      }
+    } catch (InterruptedException e) {
+      LOG.error("Tailer interrupted while shutting down");
+    }
+    tailedFiles.values().forEach(TailedFile::close);
+  }
+
+  /**
+   * Save the checkpoints of the offsets read when the reader threads stopped
+   */
+  @Override
+  public void saveCheckpoints() {
+    tailedFiles.values().forEach(TailedFile::saveCheckpoint);
+  }
+
+  /**
+   * Log files currently tailed
+   *
+   * @return Tailed log files
+   */
+  public List<Path> getTailedFiles() {
+    return new ArrayList<>(tailedFiles.keySet());
+  }
+
+  /**
+   * Resolve the log file patterns and start tailing the log files not tailed yet
+   *
+   * @param startup True for the first discovery, the log files found being read from their end
+   */
+  void discover(boolean startup) {
+    Set<Path> resolvedFiles = new HashSet<>();
+    for (String logFilePattern : logFilePatterns) {
+      try {
+        for (Path logFile : resolve(logFilePattern)) {
+          resolvedFiles.add(logFile);
+          if (running && !tailedFiles.containsKey(logFile)) {
+            LOG.info("Starting to tail {}", logFile);
+            TailedFile tailedFile = new TailedFile(logFile, startup);
+            tailedFiles.put(logFile, tailedFile);
+            readerPool.execute(tailedFile);
+          }
+        }
+      } catch (RuntimeException e) {
+        LOG.error("Unable to tail the log files matching {}", logFilePattern, e);
+      }
+    }
+    // A single log file is waited for when missing, a file matched by a glob is forgotten once deleted
+    for (TailedFile tailedFile : tailedFiles.values()) {
+      if (!resolvedFiles.contains(tailedFile.logFile) && Files.notExists(tailedFile.logFile)) {
+        tailedFile.deleted = true;
+      }
+    }
+  }
+
+  /**
+   * Resolve a log file pattern: a single log file, existing or not, or the existing files matching a glob on the file name
+   *
+   * @param logFilePattern Log file or glob on the log file name
+   * @return Matching log files
+   */
+  private List<Path> resolve(String logFilePattern) {
+    List<Path> logFiles = new ArrayList<>();
+    if (!isGlob(logFilePattern)) {
+      logFiles.add(Paths.get(logFilePattern));
+      return logFiles;
+    }
+    int lastSeparator = logFilePattern.lastIndexOf('/');
+    Path directory = Paths.get(lastSeparator < 0 ? "." : logFilePattern.substring(0, lastSeparator + 1));
+    String fileNameGlob = logFilePattern.substring(lastSeparator + 1);
+    try (DirectoryStream<Path> candidates = Files.newDirectoryStream(directory, fileNameGlob)) {
+      for (Path candidate : candidates) {
+        if (Files.isRegularFile(candidate)) {
+          logFiles.add(lastSeparator < 0 ? candidate.getFileName() : candidate);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to list the log files matching {}", logFilePattern, e);
+    }
+    return logFiles;
+  }
+
+  /**
+   * Reader task of a single log file, scheduling its own next read
+   */
+  private class TailedFile implements Runnable {
+    private Path logFile;
+    private LogFileReader reader;
+    private TailerListener listener;
+    private BackoffPollingWaitStrategy backoff;
+    private TailerCheckpointStore checkpointStore;
+    private TailerCheckpoint stopCheckpoint;
+    private volatile boolean deleted;
+
+    private TailedFile(Path logFile, boolean startFromEnd) {
+      this.logFile = logFile;
+      this.listener = listenerFactory.apply(logFile);
+      this.reader = new LogFileReader(logFile, listener, bufferSize, startFromEnd);
+      this.backoff = new BackoffPollingWaitStrategy(minDelayMs, maxDelayMs);
+      this.checkpointStore = checkpointStoreFactory.apply(logFile);
+      if (checkpointStore != null) {
+        TailerCheckpoint checkpoint = checkpointStore.load();
+        if (checkpoint != null) {
+          reader.resumeFrom(checkpoint);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      long delayMs;
+      try {
+        long bytesRead = reader.poll();
+        if (checkpointStore != null) {
+          checkpointStore.saveWhenProcessed(reader::getCheckpoint, listener, clock.millis());
+        }
+        if (deleted) {
+          LOG.info("{} has been deleted, stopping to tail it", logFile);
+          reader.close();
+          tailedFiles.remove(logFile, this);
+          return;
+        }
+        delayMs = backoff.nextDelayMs(bytesRead);
+      } catch (RuntimeException e) {
+        // Not rescheduling the read would stop tailing the file silently
+        LOG.error("Unable to tail {}", logFile, e);
+        delayMs = maxDelayMs;
+      }
+      if (running) {
+        readerPool.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    private void close() {
+      if (checkpointStore != null) {
+        stopCheckpoint = reader.getCheckpoint();
+      }
+      reader.close();
+    }
+
+    private void saveCheckpoint() {
+      if (checkpointStore != null) {
+        checkpointStore.save(stopCheckpoint);
+      }
+    }
+  }
+}
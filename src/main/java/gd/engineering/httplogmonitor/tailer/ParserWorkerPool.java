@@ -0,0 +1,267 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gd.engineering.httplogmonitor.queue.FanInLogLineQueue;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.LogLineQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+
+/**
+ * Parses the log lines on a pool of worker threads instead of the tailer thread.
+ * <p>
+ * The tailer listeners built by the pool only hand the batches of raw lines framed by the tailer to the workers.
+ * Each worker owns its parser and its own log queue, which it is the single producer of, and applies the overload policy
+ * when its log queue is full. The aggregator drains all the worker queues through a {@link gd.engineering.httplogmonitor.queue.FanInLogLineQueue}.
+ * <p>
+ * The line order does not matter to the counters: by default a batch goes to the next worker with room for it.
+ * In ordered mode, all the batches of a log file go to the same worker so that the lines of each log file reach the aggregator in order,
+ * the parsing then only runs in parallel across log files.
+ * <p>
+ * A worker holds up to {@link #WORKER_BATCHES} pending batches. When all the workers are busy, the tailer waits for room,
+ * or drops the batch under the drop policy
+ * <p>
+ * A barrier, see {@link TailerListener#whenProcessed(Runnable)}, is queued behind the pending batches of the workers the log file is dispatched to,
+ * all of them in the default mode: its action runs once each of them has had its barrier line flushed.
+ * <p>
+ * On stop, once the tailers have stopped, the workers parse their pending batches into their log queues before exiting:
+ * the aggregator has to keep draining them until the pool is stopped
+ */
+public class ParserWorkerPool {
+
+  public static final int WORKER_BATCHES = 16;
+  private static final Logger LOG = LoggerFactory.getLogger(ParserWorkerPool.class);
+  private List<ParserWorker> workers;
+  private List<LogLineQueue> workerQueues;
+  private LogLineConsumerQueue outputQueue;
+  private boolean ordered;
+  private OverloadPolicy overloadPolicy;
+  private OverloadCounters overloadCounters;
+  private AtomicInteger nextWorker = new AtomicInteger();
+
+  /**
+   * Build a new pool of parser workers, started right away
+   *
+   * @param workerCount      Number of parser workers
+   * @param ordered          True to keep the lines of each log file in order
+   * @param parserFactory    Builds the parser of each worker
+   * @param queueFactory     Builds the log queue of each worker
+   * @param waitStrategy     Aggregator wait strategy while all the worker queues are empty
+   * @param overloadPolicy   What to do with the lines when a worker queue is full
+   * @param sampleRate       N for the sample policy: 1 line in N is kept while a worker queue is full
+   * @param overloadCounters Counters of the lines dropped and sampled out
+   * @throws IllegalArgumentException If the worker count is not strictly positive
+   */
+  public ParserWorkerPool(int workerCount, boolean ordered, Supplier<HttpLogParser> parserFactory, Supplier<LogLineQueue> queueFactory,
+                          QueueWaitStrategy waitStrategy, OverloadPolicy overloadPolicy, int sampleRate, OverloadCounters overloadCounters) {
+    if (workerCount <= 0) {
+      throw new IllegalArgumentException("Parser worker count has to be strictly positive");
+    }
+    this.ordered = ordered;
+    this.overloadPolicy = overloadPolicy;
+    this.overloadCounters = overloadCounters;
+    this.workers = new ArrayList<>();
+    this.workerQueues = new ArrayList<>();
+    for (int i = 0; i < workerCount; i++) {
+      LogLineQueue workerQueue = queueFactory.get();
+      workerQueues.add(workerQueue);
+      ParserWorker worker = new ParserWorker(new HttpLogTailerListener(parserFactory.get(), workerQueue, overloadPolicy, sampleRate, overloadCounters),
+          "parser-" + (i + 1));
+      workers.add(worker);
+      worker.start();
+    }
+    this.outputQueue = new FanInLogLineQueue(workerQueues, waitStrategy);
+  }
+
+  /**
+   * Build a new tailer listener handing its batches to the workers
+   *
+   * @param source Source of the lines, null to not tag them
+   * @return Tailer listener
+   */
+  public TailerListener newListener(String source) {
+    return new DispatchingListener(source);
+  }
+
+  /**
+   * Log queue the aggregator drains the parsed lines of all the workers from
+   *
+   * @return Output log queue
+   */
+  public LogLineConsumerQueue getOutputQueue() {
+    return outputQueue;
+  }
+
+  /**
+   * Log queues of the workers, each one to be drained by a single consumer, e.g by the shards of a {@link gd.engineering.httplogmonitor.aggregator.ShardedStatsAggregator}
+   * instead of the output queue
+   *
+   * @return Worker log queues
+   */
+  public List<LogLineQueue> getWorkerQueues() {
+    return workerQueues;
+  }
+
+  /**
+   * Stop the workers once they have parsed their pending batches, no batch being dispatched anymore
+   */
+  public void stop() {
+    try {
+      for (ParserWorker worker : workers) {
+        worker.batches.put(ParserWorker.STOP);
+      }
+      for (ParserWorker worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      LOG.warn("Parser workers interrupted while stopping, pending batches discarded");
+      workers.forEach(Thread::interrupt);
+    }
+  }
+
+  /**
+   * Hand a batch of lines to a worker, waiting for room if all the workers are busy unless the policy is to drop
+   *
+   * @param lines  Raw log lines
+   * @param source Source of the lines
+   */
+  void dispatch(List<String> lines, String source) {
+    ParserWorker.Batch batch = new ParserWorker.Batch(lines, source, null);
+    int first = ordered ? Math.floorMod(source == null ? 0 : source.hashCode(), workers.size()) : Math.floorMod(nextWorker.getAndIncrement(), workers.size());
+    if (!ordered) {
+      for (int i = 0; i < workers.size(); i++) {
+        if (workers.get((first + i) % workers.size()).batches.offer(batch)) {
+          return;
+        }
+      }
+    }
+    if (overloadPolicy == OverloadPolicy.DROP) {
+      if (!workers.get(first).batches.offer(batch)) {
+        overloadCounters.recordDropped(lines.size());
+      }
+      return;
+    }
+    try {
+      workers.get(first).batches.put(batch);
+    } catch (InterruptedException e) {
+      // The tailer is being stopped
+      Thread.currentThread().interrupt();
+      overloadCounters.recordDropped(lines.size());
+    }
+  }
+
+  /**
+   * Queue a barrier behind the pending batches of the workers the source is dispatched to.
+   * The barrier is never dropped, the tailer waits for room whatever the overload policy
+   *
+   * @param action Action to run once the lines dispatched so far have been flushed, skipped if the tailer is interrupted
+   * @param source Source of the lines
+   */
+  void dispatchBarrier(Runnable action, String source) {
+    List<ParserWorker> targets = ordered ? Collections.singletonList(workers.get(Math.floorMod(source == null ? 0 : source.hashCode(), workers.size()))) : workers;
+    AtomicInteger pending = new AtomicInteger(targets.size());
+    ParserWorker.Batch batch = new ParserWorker.Batch(null, source, () -> {
+      if (pending.decrementAndGet() == 0) {
+        action.run();
+      }
+    });
+    try {
+      for (ParserWorker worker : targets) {
+        worker.batches.put(batch);
+      }
+    } catch (InterruptedException e) {
+      // The tailer is being stopped
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Worker thread parsing the batches into its own log queue
+   */
+  private static class ParserWorker extends Thread {
+    // Queued behind the pending batches on stop
+    private static final Batch STOP = new Batch(null, null, null);
+    private BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(WORKER_BATCHES);
+    private HttpLogTailerListener parsingListener;
+
+    private ParserWorker(HttpLogTailerListener parsingListener, String name) {
+      super(name);
+      this.parsingListener = parsingListener;
+    }
+
+    @Override
+    public void run() {
+      try {
+        Batch batch;
+        while (!isInterrupted() && (batch = batches.take()) != STOP) {
+          if (batch.barrier != null) {
+            parsingListener.whenProcessed(batch.barrier);
+          } else {
+            parsingListener.handle(batch.lines, batch.source);
+          }
+        }
+      } catch (InterruptedException e) {
+        // The pool is being stopped
+      }
+    }
+
+    /**
+     * Raw lines of a log file, or a barrier
+     */
+    private static class Batch {
+      private List<String> lines;
+      private String source;
+      private Runnable barrier;
+
+      private Batch(List<String> lines, String source, Runnable barrier) {
+        this.lines = lines;
+        this.source = source;
+        this.barrier = barrier;
+      }
+    }
+  }
+
+  /**
+   * Tailer listener handing the raw lines to the workers instead of parsing them
+   */
+  private class DispatchingListener implements TailerListener {
+    private String source;
+
+    private DispatchingListener(String source) {
+      this.source = source;
+    }
+
+    @Override
+    public void whenProcessed(Runnable action) {
+      dispatchBarrier(action, source);
+    }
+
+    @Override
+    public void handle(List<String> lines) {
+      dispatch(lines, source);
+    }
+
+    @Override
+    public void handle(String line) {
+      List<String> lines = new ArrayList<>(1);
+      lines.add(line);
+      dispatch(lines, source);
+    }
+
+    @Override
+    public void handle(Exception e) {
+      LOG.error("", e);
+    }
+  }
+}
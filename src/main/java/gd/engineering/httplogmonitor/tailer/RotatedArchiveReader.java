@@ -0,0 +1,229 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the rotated archives of a log file, oldest first, before the live file is tailed.
+ * <p>
+ * The archives are the sibling files named after the log file with a rotation index, compressed or not:
+ * access.log.1, access.log.2.gz... The highest index being the oldest archive, they are read by decreasing index.
+ * Compressed archives are streamed through a {@link java.util.zip.GZIPInputStream}, nothing is decompressed to disk.
+ * <p>
+ * The decompression runs on its own thread, pipelined with the framing and the parsing done by the calling thread:
+ * the inflater fills a small pool of recycled chunks while the previous ones are being parsed.
+ * <p>
+ * This class is not thread safe, a single thread reads the archives
+ */
+public class RotatedArchiveReader {
+
+  public static final int DEFAULT_PREFETCH_CHUNKS = 4;
+  private static final Logger LOG = LoggerFactory.getLogger(RotatedArchiveReader.class);
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  private Path logFile;
+  private TailerListener listener;
+  private LineFramer framer;
+  private BlockingQueue<Chunk> freeChunks;
+  private BlockingQueue<Chunk> filledChunks;
+
+  /**
+   * Build a new reader of the rotated archives of the provided log file, prefetching {@link #DEFAULT_PREFETCH_CHUNKS} chunks
+   *
+   * @param logFile   Live log file
+   * @param listener  Listener handling the line batches
+   * @param chunkSize Size in bytes of the decompressed chunks
+   */
+  public RotatedArchiveReader(Path logFile, TailerListener listener, int chunkSize) {
+    this(logFile, listener, chunkSize, DEFAULT_PREFETCH_CHUNKS);
+  }
+
+  /**
+   * Build a new reader of the rotated archives of the provided log file
+   *
+   * @param logFile        Live log file
+   * @param listener       Listener handling the line batches
+   * @param chunkSize      Size in bytes of the decompressed chunks
+   * @param prefetchChunks Number of chunks the inflater thread can fill ahead of the parsing
+   */
+  public RotatedArchiveReader(Path logFile, TailerListener listener, int chunkSize, int prefetchChunks) {
+    this.logFile = logFile;
+    this.listener = listener;
+    this.framer = new LineFramer(StandardCharsets.UTF_8, chunkSize);
+    this.freeChunks = new ArrayBlockingQueue<>(prefetchChunks);
+    this.filledChunks = new LinkedBlockingQueue<>();
+    for (int i = 0; i < prefetchChunks; i++) {
+      freeChunks.add(new Chunk(new byte[chunkSize]));
+    }
+  }
+
+  /**
+   * Read every rotated archive, oldest first, and hand their lines to the listener.
+   * An archive which cannot be read, e.g a corrupted gzip file, is handed to the listener as an error and skipped
+   * as well as any error listing the archives
+   *
+   * @return Number of decompressed bytes read
+   * @throws InterruptedException If interrupted while reading, the inflater thread is stopped
+   */
+  public long readAll() throws InterruptedException {
+    List<Path> archives;
+    try {
+      archives = findArchives(logFile);
+    } catch (IOException e) {
+      listener.handle(e);
+      return 0;
+    }
+    if (archives.isEmpty()) {
+      return 0;
+    }
+    LOG.info("Reading {} rotated archives of {}", archives.size(), logFile);
+    Thread inflater = new Thread(() -> inflate(archives), "archive-inflater");
+    inflater.start();
+    try {
+      long totalRead = 0;
+      int remainingArchives = archives.size();
+      List<String> lines = new ArrayList<>();
+      while (remainingArchives > 0) {
+        Chunk chunk = filledChunks.take();
+        if (chunk.isEndOfArchive()) {
+          remainingArchives--;
+          if (chunk.error != null) {
+            listener.handle(chunk.error);
+          }
+          // The last line of an archive will never be completed
+          framer.flush(lines);
+        } else {
+          totalRead += chunk.length;
+          framer.frame(chunk.bytes, 0, chunk.length, lines);
+          freeChunks.put(chunk);
+        }
+        if (!lines.isEmpty()) {
+          listener.handle(lines);
+          lines = new ArrayList<>();
+        }
+      }
+      LOG.info("Read {} bytes from the rotated archives of {}", totalRead, logFile);
+      return totalRead;
+    } finally {
+      inflater.interrupt();
+      inflater.join();
+    }
+  }
+
+  /**
+   * List the rotated archives of the log file, oldest first, i.e by decreasing rotation index
+   *
+   * @param logFile Live log file
+   * @return Rotated archives
+   * @throws IOException If the directory cannot be listed
+   */
+  static List<Path> findArchives(Path logFile) throws IOException {
+    Pattern archivePattern = Pattern.compile(Pattern.quote(logFile.getFileName().toString()) + "\\.(\\d+)(" + Pattern.quote(GZIP_EXTENSION) + ")?");
+    List<Path> archives = new ArrayList<>();
+    try (DirectoryStream<Path> candidates = Files.newDirectoryStream(logFile.toAbsolutePath().getParent(), logFile.getFileName() + ".*")) {
+      for (Path candidate : candidates) {
+        if (archivePattern.matcher(candidate.getFileName().toString()).matches() && Files.isRegularFile(candidate)) {
+          archives.add(candidate);
+        }
+      }
+    }
+    archives.sort(Comparator.comparingLong((Path archive) -> rotationIndex(archivePattern, archive)).reversed());
+    return archives;
+  }
+
+  private static long rotationIndex(Pattern archivePattern, Path archive) {
+    Matcher matcher = archivePattern.matcher(archive.getFileName().toString());
+    return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+  }
+
+  /**
+   * Decompress the archives chunk by chunk, ending each archive with an end of archive marker.
+   * Runs on the inflater thread until all the archives are read or the thread is interrupted
+   */
+  private void inflate(List<Path> archives) {
+    try {
+      for (Path archive : archives) {
+        IOException error = null;
+        Chunk chunk = freeChunks.take();
+        try (InputStream in = open(archive)) {
+          while ((chunk.length = readFully(in, chunk.bytes)) > 0) {
+            filledChunks.put(chunk);
+            chunk = freeChunks.take();
+          }
+        } catch (IOException e) {
+          error = e;
+        }
+        freeChunks.put(chunk);
+        filledChunks.put(Chunk.endOfArchive(error));
+      }
+    } catch (InterruptedException e) {
+      // The reading has been stopped
+    }
+  }
+
+  private InputStream open(Path archive) throws IOException {
+    InputStream in = Files.newInputStream(archive);
+    if (!archive.getFileName().toString().endsWith(GZIP_EXTENSION)) {
+      return in;
+    }
+    try {
+      return new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Fill the buffer from the stream, less only at the end of the stream
+   *
+   * @return Number of bytes read, 0 at the end of the stream
+   */
+  private int readFully(InputStream in, byte[] buffer) throws IOException {
+    int length = 0;
+    int read;
+    while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  /**
+   * Decompressed bytes handed from the inflater thread to the reading thread, or end of archive marker
+   */
+  private static class Chunk {
+    private byte[] bytes;
+    private int length;
+    private IOException error;
+
+    private Chunk(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private static Chunk endOfArchive(IOException error) {
+      Chunk marker = new Chunk(null);
+      marker.error = error;
+      return marker;
+    }
+
+    private boolean isEndOfArchive() {
+      return bytes == null;
+    }
+  }
+}
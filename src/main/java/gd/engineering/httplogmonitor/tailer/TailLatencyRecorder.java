@@ -0,0 +1,71 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the tailing latency, from the last write to the log file to the end of the hand-off of the lines read to the listener (enqueue).
+ * The write time is the log file last modified time observed right after the read.
+ * A summary (reads, average and maximum latency) is logged and reset every reportIntervalMs
+ */
+public class TailLatencyRecorder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TailLatencyRecorder.class);
+  private long reportIntervalMs;
+  private long lastReportTimeMs;
+  private long count;
+  private long sumMs;
+  private long maxMs;
+
+  /**
+   * Build a new latency recorder
+   *
+   * @param reportIntervalMs Interval between two latency summaries in milliseconds
+   * @param nowMs            Current time in milliseconds
+   */
+  public TailLatencyRecorder(long reportIntervalMs, long nowMs) {
+    this.reportIntervalMs = reportIntervalMs;
+    this.lastReportTimeMs = nowMs;
+  }
+
+  /**
+   * Record the latency of a read
+   *
+   * @param writeTimeMs   Last write time of the lines read in milliseconds
+   * @param enqueueTimeMs Time at which the lines have been handed to the listener in milliseconds
+   */
+  public void record(long writeTimeMs, long enqueueTimeMs) {
+    long latencyMs = Math.max(0, enqueueTimeMs - writeTimeMs);
+    count++;
+    sumMs += latencyMs;
+    maxMs = Math.max(maxMs, latencyMs);
+  }
+
+  /**
+   * Log the latency summary if the report interval has elapsed
+   *
+   * @param nowMs Current time in milliseconds
+   * @return True if the summary has been logged
+   */
+  public boolean reportIfDue(long nowMs) {
+    if (nowMs - lastReportTimeMs < reportIntervalMs) {
+      return false;
+    }
+    if (count > 0) {
+      LOG.info("Tail latency (write to enqueue) over {} reads: avg {} ms | max {} ms", count, sumMs / count, maxMs);
+    }
+    lastReportTimeMs = nowMs;
+    count = 0;
+    sumMs = 0;
+    maxMs = 0;
+    return true;
+  }
+
+  long getCount() {
+    return count;
+  }
+
+  long getMaxMs() {
+    return maxMs;
+  }
+}
@@ -0,0 +1,60 @@
+package gd.engineering.httplogmonitor.tailer;
+
+/**
+ * POJO representing the tailer progress in a log file: the file identity and the byte offset processed.
+ * <p>
+ * The file identity is its file key (inode on Linux, when available) and a fingerprint, the CRC32 of its first fingerprintLength bytes.
+ * The fingerprint tells a rotated file apart from a new file reusing the same inode
+ */
+public class TailerCheckpoint {
+
+  public static final int MAX_FINGERPRINT_LENGTH = 1024;
+  private String fileKey;
+  private long fingerprint;
+  private int fingerprintLength;
+  private long offset;
+
+  public TailerCheckpoint(String fileKey, long fingerprint, int fingerprintLength, long offset) {
+    this.fileKey = fileKey;
+    this.fingerprint = fingerprint;
+    this.fingerprintLength = fingerprintLength;
+    this.offset = offset;
+  }
+
+  /**
+   * Check if the provided file identity is the one of this checkpoint
+   *
+   * @param otherFileKey     File key, null if not available
+   * @param otherFingerprint CRC32 of the first fingerprintLength bytes of the file
+   * @return True if both identities match
+   */
+  public boolean isSameFile(String otherFileKey, long otherFingerprint) {
+    return (fileKey == null || fileKey.equals(otherFileKey)) && fingerprint == otherFingerprint;
+  }
+
+  public String getFileKey() {
+    return fileKey;
+  }
+
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  public int getFingerprintLength() {
+    return fingerprintLength;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    return "TailerCheckpoint{" +
+        "fileKey='" + fileKey + '\'' +
+        ", fingerprint=" + fingerprint +
+        ", fingerprintLength=" + fingerprintLength +
+        ", offset=" + offset +
+        '}';
+  }
+}
@@ -0,0 +1,154 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable storage of the {@link gd.engineering.httplogmonitor.tailer.TailerCheckpoint} in a small properties file.
+ * <p>
+ * Each save writes a temporary file, fsyncs it and atomically moves it over the checkpoint file, so a crash never leaves a partial checkpoint.
+ * Saves are batched: the offset is updated after every read but written and fsynced at most once per save interval.
+ * While tailing, a checkpoint is only saved once the lines read up to it have been processed, see {@link TailerListener#whenProcessed(Runnable)}:
+ * the checkpoint never gets ahead of the metrics store and a restart resumes right after the last line flushed
+ */
+public class TailerCheckpointStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TailerCheckpointStore.class);
+  private static final String FILE_KEY = "file.key";
+  private static final String FINGERPRINT = "fingerprint";
+  private static final String FINGERPRINT_LENGTH = "fingerprint.length";
+  private static final String OFFSET = "offset";
+  private static final String TMP_SUFFIX = ".tmp";
+  private Path checkpointFile;
+  private long saveIntervalMs;
+  private long lastSaveTimeMs;
+  private volatile TailerCheckpoint lastSaved;
+  private TailerCheckpoint lastRequested;
+
+  /**
+   * Build a new checkpoint store
+   *
+   * @param checkpointFile Checkpoint file
+   * @param saveIntervalMs Minimum interval between two saves in milliseconds
+   */
+  public TailerCheckpointStore(Path checkpointFile, long saveIntervalMs) {
+    this.checkpointFile = checkpointFile;
+    this.saveIntervalMs = saveIntervalMs;
+  }
+
+  /**
+   * Load the last saved checkpoint
+   *
+   * @return The checkpoint or null if none has been saved or if it cannot be read
+   */
+  public TailerCheckpoint load() {
+    Properties properties = new Properties();
+    try (InputStream input = Files.newInputStream(checkpointFile)) {
+      properties.load(input);
+      String fileKey = properties.getProperty(FILE_KEY);
+      lastSaved = new TailerCheckpoint(fileKey == null || fileKey.isEmpty() ? null : fileKey,
+          Long.parseLong(properties.getProperty(FINGERPRINT)),
+          Integer.parseInt(properties.getProperty(FINGERPRINT_LENGTH)),
+          Long.parseLong(properties.getProperty(OFFSET)));
+      return lastSaved;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to load the tailer checkpoint {}, ignoring it", checkpointFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Save the checkpoint if the save interval has elapsed since the last save and if it has changed
+   *
+   * @param checkpoint Supplier of the current checkpoint, only called if the save is due
+   * @param nowMs      Current time in milliseconds
+   * @return True if the checkpoint has been saved
+   */
+  public boolean saveIfDue(Supplier<TailerCheckpoint> checkpoint, long nowMs) {
+    if (nowMs - lastSaveTimeMs < saveIntervalMs) {
+      return false;
+    }
+    lastSaveTimeMs = nowMs;
+    return save(checkpoint.get());
+  }
+
+  /**
+   * Save the checkpoint once the listener has processed the lines read up to it, if the save interval has elapsed since the last save and if it has changed.
+   * The save runs on the thread processing the lines, e.g the aggregator flush thread
+   *
+   * @param checkpoint Supplier of the current checkpoint, only called if the save is due
+   * @param listener   Listener the lines read up to the checkpoint have been handed to
+   * @param nowMs      Current time in milliseconds
+   * @return True if the checkpoint is to be saved
+   */
+  public boolean saveWhenProcessed(Supplier<TailerCheckpoint> checkpoint, TailerListener listener, long nowMs) {
+    if (nowMs - lastSaveTimeMs < saveIntervalMs) {
+      return false;
+    }
+    lastSaveTimeMs = nowMs;
+    TailerCheckpoint current = checkpoint.get();
+    if (current == null || isSame(current, lastSaved) || isSame(current, lastRequested)) {
+      return false;
+    }
+    lastRequested = current;
+    listener.whenProcessed(() -> save(current));
+    return true;
+  }
+
+  /**
+   * Save the checkpoint now if it has changed since the last save
+   *
+   * @param checkpoint Current checkpoint
+   * @return True if the checkpoint has been saved
+   */
+  public synchronized boolean save(TailerCheckpoint checkpoint) {
+    if (checkpoint == null || isSame(checkpoint, lastSaved)) {
+      return false;
+    }
+    Properties properties = new Properties();
+    properties.setProperty(FILE_KEY, checkpoint.getFileKey() == null ? "" : checkpoint.getFileKey());
+    properties.setProperty(FINGERPRINT, Long.toString(checkpoint.getFingerprint()));
+    properties.setProperty(FINGERPRINT_LENGTH, Integer.toString(checkpoint.getFingerprintLength()));
+    properties.setProperty(OFFSET, Long.toString(checkpoint.getOffset()));
+    Path tmpFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + TMP_SUFFIX);
+    try {
+      StringWriter content = new StringWriter();
+      properties.store(content, null);
+      try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      lastSaved = checkpoint;
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Unable to save the tailer checkpoint {}", checkpointFile, e);
+      return false;
+    }
+  }
+
+  private static boolean isSame(TailerCheckpoint checkpoint, TailerCheckpoint other) {
+    return other != null && other.getOffset() == checkpoint.getOffset() && other.getFingerprint() == checkpoint.getFingerprint()
+        && other.getFingerprintLength() == checkpoint.getFingerprintLength()
+        && (other.getFileKey() == null ? checkpoint.getFileKey() == null : other.getFileKey().equals(checkpoint.getFileKey()));
+  }
+}
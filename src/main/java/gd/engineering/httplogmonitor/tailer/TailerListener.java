@@ -0,0 +1,52 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.util.List;
+
+/**
+ * Listener of the lines read from a log file by the tailer and the readers, along with the file events
+ */
+public interface TailerListener {
+
+  /**
+   * Called each time the tailed file cannot be found
+   */
+  default void fileNotFound() {
+  }
+
+  /**
+   * Called when the tailed file has been rotated or truncated, before reading it from its start
+   */
+  default void fileRotated() {
+  }
+
+  /**
+   * Run the action once the lines handed to this listener so far have been processed, e.g flushed to the metrics store.
+   * By default the lines are processed when they are handed, the action runs right away
+   *
+   * @param action Action to run, e.g saving the checkpoint of the lines read
+   */
+  default void whenProcessed(Runnable action) {
+    action.run();
+  }
+
+  /**
+   * Handle a batch of lines read from the tailed file, in order
+   *
+   * @param lines Log lines
+   */
+  void handle(List<String> lines);
+
+  /**
+   * Handle a single line read from the tailed file
+   *
+   * @param line Log line
+   */
+  void handle(String line);
+
+  /**
+   * Handle any error happening while tailing
+   *
+   * @param e Tailing error
+   */
+  void handle(Exception e);
+}
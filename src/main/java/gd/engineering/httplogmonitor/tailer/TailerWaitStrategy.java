@@ -0,0 +1,21 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.Closeable;
+
+/**
+ * Strategy deciding how the tailer waits for the log file to change between two reads
+ */
+public interface TailerWaitStrategy extends Closeable {
+
+  /**
+   * Called after each read of the log file. Returns immediately if the read was not empty,
+   * otherwise waits until the file may have changed
+   *
+   * @param bytesRead Number of bytes returned by the last read
+   * @throws InterruptedException If interrupted while waiting
+   */
+  void await(long bytesRead) throws InterruptedException;
+
+  @Override
+  void close();
+}
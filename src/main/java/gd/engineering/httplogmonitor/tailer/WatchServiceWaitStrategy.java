@@ -0,0 +1,123 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event driven wait strategy based upon a {@link java.nio.file.WatchService} (inotify on Linux) registered on the log file directory.
+ * <p>
+ * An empty read waits until the log file is created, modified or deleted, so new lines are read as soon as they are written
+ * and an idle file does not wake the tailer up. The wait is bounded by maxWaitMs as a safety net against missed events.
+ * Events of the other files of the directory are ignored
+ */
+public class WatchServiceWaitStrategy implements TailerWaitStrategy {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WatchServiceWaitStrategy.class);
+  private static final String POLLING_WATCH_SERVICE = "PollingWatchService";
+  private WatchService watchService;
+  private Path fileName;
+  private long maxWaitMs;
+
+  /**
+   * Build a new wait strategy watching the provided log file
+   *
+   * @param logFile   Tailed log file
+   * @param maxWaitMs Maximum wait without any event in milliseconds
+   * @throws IOException If the directory cannot be watched
+   */
+  public WatchServiceWaitStrategy(Path logFile, long maxWaitMs) throws IOException {
+    Path directory = logFile.toAbsolutePath().getParent();
+    this.fileName = logFile.getFileName();
+    this.maxWaitMs = maxWaitMs;
+    this.watchService = directory.getFileSystem().newWatchService();
+    try {
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Build the wait strategy for the provided log file: event driven if the platform provides native file events,
+   * polling with backoff otherwise
+   *
+   * @param logFile    Tailed log file
+   * @param minDelayMs Minimum polling delay in milliseconds
+   * @param maxDelayMs Maximum polling delay and maximum wait without any event in milliseconds
+   * @return The wait strategy
+   */
+  public static TailerWaitStrategy watchOrPoll(Path logFile, long minDelayMs, long maxDelayMs) {
+    try {
+      WatchServiceWaitStrategy strategy = new WatchServiceWaitStrategy(logFile, maxDelayMs);
+      if (!strategy.isPollingBased()) {
+        return strategy;
+      }
+      strategy.close();
+      LOG.warn("No native file events available, falling back to polling {}", logFile);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Unable to watch {}, falling back to polling", logFile, e);
+    }
+    return new BackoffPollingWaitStrategy(minDelayMs, maxDelayMs);
+  }
+
+  @Override
+  public void await(long bytesRead) throws InterruptedException {
+    if (bytesRead > 0) {
+      WatchKey key;
+      while ((key = watchService.poll()) != null) {
+        consumeEvents(key);
+      }
+      return;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    long remainingNs;
+    while ((remainingNs = deadline - System.nanoTime()) > 0) {
+      WatchKey key = watchService.poll(remainingNs, TimeUnit.NANOSECONDS);
+      if (key == null || consumeEvents(key)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOG.warn("Unable to close the watch service", e);
+    }
+  }
+
+  /**
+   * Consume the events of the watch key
+   *
+   * @param key Signalled watch key
+   * @return True if any event concerns the log file or if events were lost
+   */
+  private boolean consumeEvents(WatchKey key) {
+    boolean logFileChanged = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+        logFileChanged = true;
+      }
+    }
+    key.reset();
+    return logFileChanged;
+  }
+
+  /**
+   * Some platforms (e.g macOS) only provide a watch service polling the directory every few seconds
+   */
+  private boolean isPollingBased() {
+    return watchService.getClass().getSimpleName().equals(POLLING_WATCH_SERVICE);
+  }
+}
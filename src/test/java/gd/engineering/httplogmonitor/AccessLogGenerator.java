@@ -0,0 +1,70 @@
+package gd.engineering.httplogmonitor;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates realistic apache access log lines for tests and benchmarks.
+ * Lines are produced at a constant rate per second, a small part of them being written one or two seconds late
+ * as it happens with several server workers writing to the same access log
+ */
+public class AccessLogGenerator {
+
+  private static final DateTimeFormatter LOG_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+  private static final String[] METHODS = {"GET", "GET", "GET", "POST", "PUT", "DELETE"};
+  private static final String[] RESOURCES = {"/api/user", "/api/user/42", "/report", "/index.html", "/static/app.js", "/search?q=bordeaux", "/admin/settings"};
+  private static final int[] STATUSES = {200, 200, 200, 200, 201, 304, 404, 500};
+  private static final double LATE_LINES_RATIO = 0.05;
+
+  private Random random;
+  private long startTimeMs;
+  private int linesPerSecond;
+
+  /**
+   * Build a new generator
+   *
+   * @param seed           Random seed
+   * @param startTimeMs    Timestamp of the first line in milliseconds
+   * @param linesPerSecond Number of lines generated per second of log time
+   */
+  public AccessLogGenerator(long seed, long startTimeMs, int linesPerSecond) {
+    this.random = new Random(seed);
+    this.startTimeMs = startTimeMs;
+    this.linesPerSecond = linesPerSecond;
+  }
+
+  /**
+   * Generate the provided number of lines
+   *
+   * @param count Number of lines
+   * @return Access log lines
+   */
+  public String[] generate(int count) {
+    String[] lines = new String[count];
+    for (int i = 0; i < count; i++) {
+      long timestampMs = startTimeMs + 1000L * (i / linesPerSecond);
+      if (random.nextDouble() < LATE_LINES_RATIO) {
+        timestampMs -= 1000L * (1 + random.nextInt(2));
+      }
+      lines[i] = generateLine(timestampMs);
+    }
+    return lines;
+  }
+
+  /**
+   * Generate a single line at the provided timestamp
+   *
+   * @param timestampMs Line timestamp in milliseconds
+   * @return Access log line
+   */
+  public String generateLine(long timestampMs) {
+    return String.format("10.0.%d.%d - user%d [%s] \"%s %s HTTP/1.1\" %d %d",
+        random.nextInt(256), random.nextInt(256), random.nextInt(100),
+        LOG_TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestampMs)),
+        METHODS[random.nextInt(METHODS.length)], RESOURCES[random.nextInt(RESOURCES.length)],
+        STATUSES[random.nextInt(STATUSES.length)], random.nextInt(100000));
+  }
+}
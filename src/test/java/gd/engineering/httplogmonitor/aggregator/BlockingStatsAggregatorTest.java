@@ -1,14 +1,23 @@
 package gd.engineering.httplogmonitor.aggregator;
 
 import java.time.Clock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
 import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
 import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.model.metrics.MetricKeyRegistry;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
 import gd.engineering.httplogmonitor.reporter.MetricsReporter;
 
 public class BlockingStatsAggregatorTest {
@@ -37,6 +46,39 @@ public class BlockingStatsAggregatorTest {
     Assert.assertEquals(2L, stats.getEndTime());
   }
 
+  @Test
+  public void testFlushOverloadCounters() {
+    OverloadCounters overloadCounters = new OverloadCounters();
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(null, overloadCounters, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 1000L);
+    overloadCounters.recordDropped(3);
+    overloadCounters.recordSampled(20);
+    IntervalMetrics stats = new IntervalMetrics();
+    aggregator.flush(stats, 1L, 2L, TimeUnit.SECONDS);
+    Assert.assertEquals(3, stats.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+    Assert.assertEquals(20, stats.getCounterValue(HttpLogMetrics.COUNTER_SAMPLED));
+    IntervalMetrics nextStats = new IntervalMetrics();
+    aggregator.flush(nextStats, 2L, 3L, TimeUnit.SECONDS);
+    Assert.assertEquals(0, nextStats.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+  }
+
+  @Test
+  public void testFlushQueuedListener() throws InterruptedException {
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(null, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 1000L);
+    BlockingQueue<IntervalMetrics> reported = new ArrayBlockingQueue<>(4);
+    aggregator.addStatsFlushListener("reporter", reported::add, 4);
+    try {
+      IntervalMetrics stats = new IntervalMetrics();
+      aggregator.flush(stats, 1L, 2L, TimeUnit.SECONDS);
+      Assert.assertSame(stats, reported.poll(5, TimeUnit.SECONDS));
+      String lagRate = HttpLogMetrics.getListenerCounterPrefix("reporter") + HttpLogMetrics.DELIMITER + HttpLogMetrics.RATE_LAG;
+      // A gauge kept through the rates computation, not a counter
+      Assert.assertTrue(stats.getRates().containsKey(lagRate));
+      Assert.assertFalse(stats.getCounters().containsKey(lagRate));
+    } finally {
+      aggregator.stopFlushThread();
+    }
+  }
+
   @Test
   public void testFlushRates() {
     InMemoryMetricsStore store = Mockito.spy(new InMemoryMetricsStore());
@@ -47,9 +89,106 @@ public class BlockingStatsAggregatorTest {
     stats.incrBy("test2", 5);
     stats.incrBy("test3", 1);
     aggregator.flush(stats, 1L, 2L, TimeUnit.MILLISECONDS);
-    Assert.assertEquals(5, stats.getRates().get("test").intValue());
-    Assert.assertEquals(2, stats.getRates().get("test2").intValue());
-    Assert.assertEquals(0, stats.getRates().get("test3").intValue());
+    Assert.assertEquals(10, stats.getRates().get("test"), 0.001);
+    Assert.assertEquals(5, stats.getRates().get("test2"), 0.001);
+    Assert.assertEquals(1, stats.getRates().get("test3"), 0.001);
+  }
+
+  @Test
+  public void testFlushRatesActualInterval() {
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(null, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 10000L);
+    IntervalMetrics stats = new IntervalMetrics();
+    stats.incrBy("test", 10);
+    // First interval, from the start up to the first boundary
+    aggregator.flush(stats, 16000L, 20000L, TimeUnit.SECONDS);
+    Assert.assertEquals(2.5, stats.getRates().get("test"), 0.001);
+  }
+
+  @Test
+  public void testFlushCompactsMetrics() {
+    for (int i = 0; i < 5000; i++) {
+      MetricKeyRegistry.intern("section:/flush" + i + ":hits");
+    }
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(null, store, Clock.systemDefaultZone(), 500L, 10000L);
+    IntervalMetrics stats = new IntervalMetrics();
+    stats.incrBy("section:/flush4999:hits", 10);
+    aggregator.flush(stats, 10000L, 20000L, TimeUnit.SECONDS);
+    // The retained interval does not reserve a slot for every registered section
+    Assert.assertTrue(store.getLatestMetrics().getMemoryFootprint() < 256);
+    Assert.assertEquals(10, store.getLatestMetrics().getCounterValue("section:/flush4999:hits"));
+    Assert.assertEquals(1, store.getLatestMetrics().getRateValue("section:/flush4999:hits"), 0.001);
+  }
+
+  @Test
+  public void testStopFlushesCurrentInterval() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1024, QueueWaitStrategy.PARK);
+    for (int i = 0; i < 100; i++) {
+      HttpLogLine logLine = queue.claim();
+      logLine.setHttpMethod("GET");
+      logLine.setSection("/api");
+      logLine.setStatusCode(200);
+      queue.publish();
+    }
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    // No boundary reached before the stop
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(queue, store, Clock.systemDefaultZone(), 10L, 3600000L);
+    Thread aggregatorThread = new Thread(aggregator);
+    aggregatorThread.start();
+    aggregator.stop();
+    aggregatorThread.join();
+    Assert.assertEquals(1, store.getIntervalCount());
+    Assert.assertEquals(100, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+  }
+
+  @Test
+  public void testBarrierRunAfterFlush() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1024, QueueWaitStrategy.PARK);
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    AtomicLong hitsAtBarrier = new AtomicLong(-1);
+    for (int i = 0; i < 101; i++) {
+      HttpLogLine logLine = queue.claim();
+      logLine.setHttpMethod("GET");
+      logLine.setSection("/api");
+      logLine.setStatusCode(200);
+      logLine.setBarrier(i == 100 ? () -> hitsAtBarrier.set(store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS)) : null);
+      queue.publish();
+    }
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(queue, store, Clock.systemDefaultZone(), 10L, 3600000L);
+    Thread aggregatorThread = new Thread(aggregator);
+    aggregatorThread.start();
+    aggregator.stop();
+    aggregatorThread.join();
+    // The barrier stands for no line and runs once the lines before it are in the store
+    Assert.assertEquals(100, hitsAtBarrier.get());
+    Assert.assertEquals(100, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+  }
+
+  @Test
+  public void testAlignedBoundary() {
+    Assert.assertEquals(20000L, BlockingStatsAggregator.alignedBoundary(20000L, 10000L));
+    Assert.assertEquals(20000L, BlockingStatsAggregator.alignedBoundary(29999L, 10000L));
+    Assert.assertEquals(-10000L, BlockingStatsAggregator.alignedBoundary(-1L, 10000L));
+  }
+
+  @Test
+  public void testFlushRollupWindow() {
+    BlockingStatsAggregator aggregator = new BlockingStatsAggregator(null, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 10000L);
+    InMemoryMetricsStore windowStore = new InMemoryMetricsStore();
+    aggregator.addRollupWindow(60000L, windowStore);
+    for (long start = 0; start < 60000L; start += 10000L) {
+      IntervalMetrics stats = new IntervalMetrics();
+      stats.incrBy("test", 6);
+      aggregator.flush(stats, start, start + 10000L, TimeUnit.SECONDS);
+    }
+    IntervalMetrics window = windowStore.getLatestMetrics();
+    Assert.assertEquals(36, window.getCounterValue("test"));
+    Assert.assertEquals(0.6, window.getRates().get("test"), 0.001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddRollupWindowNotMultiple() {
+    new BlockingStatsAggregator(null, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 10000L).addRollupWindow(15000L, new InMemoryMetricsStore());
   }
 
 }
@@ -0,0 +1,217 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+
+public class EventTimeStatsAggregatorTest {
+
+  @Test
+  public void testWindowsFlushedByWatermark() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L);
+    aggregator.record(logLine(1000L));
+    aggregator.record(logLine(1500L));
+    aggregator.record(logLine(2100L));
+    aggregator.onDrained(0L);
+    // Watermark at 1600: the window [1000, 2000) is still open
+    Assert.assertTrue(flushed.isEmpty());
+    Assert.assertEquals(2, aggregator.getOpenWindowCount());
+    aggregator.record(logLine(2600L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(1, flushed.size());
+    Assert.assertEquals(1000L, flushed.get(0).getStartTime());
+    Assert.assertEquals(2000L, flushed.get(0).getEndTime());
+    Assert.assertEquals(2, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(2, flushed.get(0).getRateValue(HttpLogMetrics.COUNTER_HITS), 0.001);
+  }
+
+  @Test
+  public void testLateLines() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L);
+    aggregator.record(logLine(1000L));
+    aggregator.record(logLine(2600L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(1, flushed.size());
+    // Older than the allowed lateness, its window is already flushed
+    aggregator.record(logLine(1900L));
+    // Within the allowed lateness
+    aggregator.record(logLine(2200L));
+    aggregator.record(logLine(3600L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(2, flushed.size());
+    IntervalMetrics window = flushed.get(1);
+    Assert.assertEquals(2000L, window.getStartTime());
+    Assert.assertEquals(2, window.getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(1, window.getCounterValue(HttpLogMetrics.COUNTER_LATE));
+  }
+
+  @Test
+  public void testWatermarkMovesWhileIdle() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L);
+    Assert.assertEquals(Long.MIN_VALUE, aggregator.getWatermark(0L));
+    aggregator.onDrained(0L);
+    Assert.assertTrue(flushed.isEmpty());
+    aggregator.record(logLine(1000L));
+    aggregator.onDrained(10000L);
+    Assert.assertEquals(500L, aggregator.getWatermark(10000L));
+    Assert.assertTrue(flushed.isEmpty());
+    // No line for 2.5s: the window [1000, 2000) and the empty window [2000, 3000) are flushed
+    aggregator.onDrained(12500L);
+    Assert.assertEquals(3000L, aggregator.getWatermark(12500L));
+    Assert.assertEquals(2, flushed.size());
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(2000L, flushed.get(1).getStartTime());
+    Assert.assertEquals(0, flushed.get(1).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(0, aggregator.getOpenWindowCount());
+  }
+
+  @Test
+  public void testFutureLines() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L, Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+    aggregator.record(logLine(1000L));
+    // A year ahead of the clock: neither counted nor moving the watermark
+    aggregator.record(logLine(10000L + 365L * 86400000L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(500L, aggregator.getWatermark(0L));
+    Assert.assertTrue(flushed.isEmpty());
+    // Within the allowed lateness of the clock
+    aggregator.record(logLine(10500L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(9, flushed.size());
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_FUTURE));
+    Assert.assertEquals(0, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_LATE));
+    Assert.assertEquals(9000L, flushed.get(8).getStartTime());
+  }
+
+  @Test
+  public void testLongGapSkipped() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L, Clock.fixed(Instant.ofEpochMilli(10000000L), ZoneOffset.UTC));
+    aggregator.record(logLine(1000L));
+    aggregator.onDrained(0L);
+    // 1000 empty windows between the two lines: only the window of the first line is flushed
+    aggregator.record(logLine(1001000L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(1, flushed.size());
+    Assert.assertEquals(1000L, flushed.get(0).getStartTime());
+    aggregator.record(logLine(1000100L));
+    aggregator.record(logLine(1002600L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(3, flushed.size());
+    Assert.assertEquals(1000000L, flushed.get(1).getStartTime());
+    Assert.assertEquals(1, flushed.get(1).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(1001000L, flushed.get(2).getStartTime());
+    Assert.assertEquals(1, flushed.get(2).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+  }
+
+  @Test
+  public void testOnlyFutureLinesAfterFirstLine() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L, Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+    aggregator.record(logLine(9800L));
+    aggregator.onDrained(10000L);
+    // The source clock jumps an hour ahead: the windows keep being flushed with the wall clock to report the future lines
+    for (long nowMs = 11000L; nowMs <= 15000L; nowMs += 1000L) {
+      aggregator.record(logLine(nowMs + 3600000L));
+      aggregator.onDrained(nowMs);
+    }
+    Assert.assertEquals(5, flushed.size());
+    Assert.assertEquals(9000L, flushed.get(0).getStartTime());
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(5, flushed.stream().mapToLong(metrics -> metrics.getCounterValue(HttpLogMetrics.COUNTER_FUTURE)).sum());
+  }
+
+  @Test
+  public void testOnlyFutureLines() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L, Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+    for (long nowMs = 10000L; nowMs <= 14000L; nowMs += 1000L) {
+      aggregator.record(logLine(nowMs + 3600000L));
+      aggregator.onDrained(nowMs);
+    }
+    // The windows start from the wall clock minus the allowed lateness
+    Assert.assertEquals(4, flushed.size());
+    Assert.assertEquals(9000L, flushed.get(0).getStartTime());
+    Assert.assertEquals(0, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(5, flushed.stream().mapToLong(metrics -> metrics.getCounterValue(HttpLogMetrics.COUNTER_FUTURE)).sum());
+  }
+
+  @Test
+  public void testOpenWindowsFlushedOnStop() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L);
+    aggregator.record(logLine(1000L));
+    aggregator.record(logLine(2100L));
+    aggregator.onDrained(0L);
+    Assert.assertTrue(flushed.isEmpty());
+    aggregator.record(logLine(500L));
+    aggregator.onStopped(0L);
+    Assert.assertEquals(2, flushed.size());
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(1, flushed.get(0).getCounterValue(HttpLogMetrics.COUNTER_LATE));
+    Assert.assertEquals(2000L, flushed.get(1).getStartTime());
+    Assert.assertEquals(1, flushed.get(1).getCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(0, aggregator.getOpenWindowCount());
+  }
+
+  @Test
+  public void testBarrierWaitsForOpenWindows() {
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    EventTimeStatsAggregator aggregator = buildAggregator(flushed, 500L);
+    List<Integer> flushedAtBarrier = new ArrayList<>();
+    aggregator.record(logLine(1000L));
+    aggregator.record(logLine(2100L));
+    HttpLogLine barrier = new HttpLogLine();
+    barrier.setBarrier(() -> flushedAtBarrier.add(flushed.size()));
+    aggregator.record(barrier);
+    aggregator.record(logLine(2600L));
+    aggregator.onDrained(0L);
+    // Only [1000, 2000) is flushed, the barrier waits for [2000, 3000)
+    Assert.assertEquals(1, flushed.size());
+    Assert.assertTrue(flushedAtBarrier.isEmpty());
+    aggregator.record(logLine(3600L));
+    aggregator.onDrained(0L);
+    Assert.assertEquals(2, flushed.size());
+    Assert.assertEquals(Collections.singletonList(2), flushedAtBarrier);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeLateness() {
+    new EventTimeStatsAggregator(null, null, new InMemoryMetricsStore(), Clock.systemDefaultZone(), 500L, 1000L, -1L);
+  }
+
+  private EventTimeStatsAggregator buildAggregator(List<IntervalMetrics> flushed, long allowedLatenessMs) {
+    return buildAggregator(flushed, allowedLatenessMs, Clock.systemDefaultZone());
+  }
+
+  private EventTimeStatsAggregator buildAggregator(List<IntervalMetrics> flushed, long allowedLatenessMs, Clock clock) {
+    EventTimeStatsAggregator aggregator = new EventTimeStatsAggregator(null, null, new InMemoryMetricsStore(), clock, 500L, 1000L, allowedLatenessMs);
+    aggregator.addStatsFlushListener(flushed::add);
+    return aggregator;
+  }
+
+  private HttpLogLine logLine(long timestampMs) {
+    HttpLogLine logLine = new HttpLogLine();
+    logLine.setTimestamp(timestampMs, 0);
+    logLine.setHttpMethod("GET");
+    logLine.setSection("/api");
+    logLine.setStatusCode(200);
+    return logLine;
+  }
+}
@@ -0,0 +1,93 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+
+public class QueuedFlushListenerTest {
+
+  private static final String LAG_RATE = HttpLogMetrics.getListenerCounterPrefix("slow") + HttpLogMetrics.DELIMITER + HttpLogMetrics.RATE_LAG;
+  private static final String DROPPED_COUNTER = HttpLogMetrics.getListenerCounterPrefix("slow") + HttpLogMetrics.DELIMITER + HttpLogMetrics.COUNTER_DROPPED;
+
+  @Test
+  public void testSlowListenerDoesNotBlockFlush() throws InterruptedException {
+    CountDownLatch processing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<IntervalMetrics> processed = new CopyOnWriteArrayList<>();
+    QueuedFlushListener listener = new QueuedFlushListener("slow", metrics -> {
+      processing.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      processed.add(metrics);
+    }, 2, Clock.systemUTC());
+    try {
+      IntervalMetrics first = new IntervalMetrics();
+      listener.onFlush(first);
+      processing.await();
+      // The listener is stuck on the first metrics: the next ones are queued, the oldest dropped once the queue is full
+      IntervalMetrics second = new IntervalMetrics();
+      IntervalMetrics third = new IntervalMetrics();
+      IntervalMetrics fourth = new IntervalMetrics();
+      listener.onFlush(second);
+      listener.onFlush(third);
+      listener.onFlush(fourth);
+      Assert.assertEquals(2, listener.getPendingFlushCount());
+      Thread.sleep(20L);
+      IntervalMetrics flushed = new IntervalMetrics();
+      listener.flushTo(flushed);
+      Assert.assertEquals(1, flushed.getCounterValue(DROPPED_COUNTER));
+      Assert.assertTrue(flushed.getRateValue(LAG_RATE) >= 20);
+      release.countDown();
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (processed.size() < 3 && System.currentTimeMillis() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(5L);
+      }
+      Assert.assertEquals(3, processed.size());
+      Assert.assertSame(first, processed.get(0));
+      Assert.assertSame(third, processed.get(1));
+      Assert.assertSame(fourth, processed.get(2));
+    } finally {
+      release.countDown();
+      listener.stop();
+    }
+  }
+
+  @Test
+  public void testLagReset() throws InterruptedException {
+    CountDownLatch processed = new CountDownLatch(1);
+    QueuedFlushListener listener = new QueuedFlushListener("slow", metrics -> processed.countDown(), 2, Clock.systemUTC());
+    try {
+      listener.onFlush(new IntervalMetrics());
+      processed.await();
+      while (!listener.isIdle()) {
+        Thread.sleep(1);
+      }
+      IntervalMetrics flushed = new IntervalMetrics();
+      listener.flushTo(flushed);
+      // The lag is always flushed so that the listener is reported, the dropped flushes only when any
+      Assert.assertTrue(flushed.getRates().containsKey(LAG_RATE));
+      Assert.assertFalse(flushed.getCounters().containsKey(DROPPED_COUNTER));
+      IntervalMetrics next = new IntervalMetrics();
+      listener.flushTo(next);
+      Assert.assertEquals(0, next.getRateValue(LAG_RATE), 0.0);
+      // Neither summed nor merged as a counter
+      Assert.assertFalse(flushed.getCounters().containsKey(LAG_RATE));
+      IntervalMetrics merged = new IntervalMetrics();
+      merged.merge(flushed);
+      Assert.assertEquals(0, merged.getRateValue(LAG_RATE), 0.0);
+    } finally {
+      listener.stop();
+    }
+  }
+}
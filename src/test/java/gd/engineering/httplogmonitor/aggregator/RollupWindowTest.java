@@ -0,0 +1,71 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+
+public class RollupWindowTest {
+
+  private static IntervalMetrics interval(long startTime, long endTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("test", hits);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(endTime);
+    return metrics;
+  }
+
+  @Test
+  public void testMergeUpToBoundary() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    RollupWindow window = new RollupWindow(60000L, store, Clock.systemDefaultZone());
+    List<IntervalMetrics> flushed = new ArrayList<>();
+    window.addStatsFlushListener(flushed::add);
+    for (long start = 60000L; start < 120000L; start += 10000L) {
+      window.add(interval(start, start + 10000L, 3));
+      Assert.assertEquals(start + 10000L == 120000L ? 1 : 0, flushed.size());
+    }
+    IntervalMetrics windowMetrics = flushed.get(0);
+    Assert.assertSame(windowMetrics, store.getLatestMetrics());
+    Assert.assertEquals(60000L, windowMetrics.getStartTime());
+    Assert.assertEquals(120000L, windowMetrics.getEndTime());
+    Assert.assertEquals(18, windowMetrics.getCounterValue("test"));
+    Assert.assertEquals(0.3, windowMetrics.getRates().get("test"), 0.001);
+  }
+
+  @Test
+  public void testPartialFirstWindow() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    RollupWindow window = new RollupWindow(60000L, store, Clock.systemDefaultZone());
+    // Started at 1:35, the first interval is shorter and the first window only lasts 25 seconds
+    window.add(interval(95000L, 100000L, 5));
+    window.add(interval(100000L, 110000L, 10));
+    window.add(interval(110000L, 120000L, 10));
+    IntervalMetrics windowMetrics = store.getLatestMetrics();
+    Assert.assertEquals(95000L, windowMetrics.getStartTime());
+    Assert.assertEquals(120000L, windowMetrics.getEndTime());
+    Assert.assertEquals(1, windowMetrics.getRates().get("test"), 0.001);
+    window.add(interval(120000L, 130000L, 10));
+    Assert.assertSame(windowMetrics, store.getLatestMetrics());
+  }
+
+  @Test
+  public void testSkippedBoundary() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    RollupWindow window = new RollupWindow(60000L, store, Clock.systemDefaultZone());
+    window.add(interval(100000L, 110000L, 10));
+    // The aggregator was stalled past the window end
+    window.add(interval(110000L, 130000L, 10));
+    IntervalMetrics windowMetrics = store.getLatestMetrics();
+    Assert.assertEquals(130000L, windowMetrics.getEndTime());
+    Assert.assertEquals(20, windowMetrics.getCounterValue("test"));
+    window.add(interval(130000L, 180000L, 10));
+    Assert.assertEquals(130000L, store.getLatestMetrics().getStartTime());
+    Assert.assertEquals(180000L, store.getLatestMetrics().getEndTime());
+  }
+}
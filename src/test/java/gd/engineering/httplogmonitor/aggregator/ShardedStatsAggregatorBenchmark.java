@@ -0,0 +1,143 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
+import gd.engineering.httplogmonitor.queue.LogLineQueue;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
+
+/**
+ * Measures the log lines per second aggregated by 1 to 8 aggregator shards, each shard draining its own queue filled by its own producer
+ * as the parser workers do. Each invocation spreads the same number of parsed lines over the queues then collects the shards until all the lines are counted,
+ * so the measure includes the merge of the shards.
+ * The shards do not share any write: the throughput scales with the shards as long as there are two cores per shard, one for the producer
+ * and one for the shard
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.aggregator.ShardedStatsAggregatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardedStatsAggregatorBenchmark {
+
+  private static final int LINES = 1 << 18;
+  private static final int QUEUE_CAPACITY = 8192;
+  private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+  private static final String[] SECTIONS = {"/api", "/report", "/static", "/user", "/admin", "/health", "/login", "/search"};
+
+  @Param({"1", "2", "4", "8"})
+  private int shards;
+
+  private ShardedStatsAggregator aggregator;
+  private Thread aggregatorThread;
+  private List<Producer> producers;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<LogLineQueue> queues = new ArrayList<>();
+    producers = new ArrayList<>();
+    for (int i = 0; i < shards; i++) {
+      LogLineQueue queue = new SpscLogLineQueue(QUEUE_CAPACITY, QueueWaitStrategy.YIELD);
+      queues.add(queue);
+      Producer producer = new Producer(queue, LINES / shards, "producer-" + (i + 1));
+      producers.add(producer);
+      producer.start();
+    }
+    // Never flushes by itself, the benchmark collects the shards
+    aggregator = new ShardedStatsAggregator(queues, shards, QueueWaitStrategy.YIELD, null, new InMemoryMetricsStore(), Clock.systemUTC(), 1L, Long.MAX_VALUE / 2);
+    aggregatorThread = new Thread(aggregator, "aggregator");
+    aggregatorThread.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    producers.forEach(Thread::interrupt);
+    aggregatorThread.interrupt();
+    aggregatorThread.join();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public long aggregate() throws InterruptedException {
+    producers.forEach(producer -> producer.batches.release());
+    long hits = 0;
+    while (hits < LINES) {
+      hits += aggregator.collectShards().getCounterValue(HttpLogMetrics.COUNTER_HITS);
+    }
+    return hits;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ShardedStatsAggregatorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  /**
+   * Publishes a batch of parsed lines in its queue on each release
+   */
+  private static class Producer extends Thread {
+    private LogLineQueue queue;
+    private int batchLines;
+    private Semaphore batches = new Semaphore(0);
+    private HttpLogLine[] logLines;
+
+    private Producer(LogLineQueue queue, int batchLines, String name) {
+      super(name);
+      this.queue = queue;
+      this.batchLines = batchLines;
+      this.logLines = new HttpLogLine[SECTIONS.length * METHODS.length];
+      for (int i = 0; i < logLines.length; i++) {
+        logLines[i] = new HttpLogLine();
+        logLines[i].setHttpMethod(METHODS[i % METHODS.length]);
+        logLines[i].setSection(SECTIONS[i / METHODS.length]);
+        logLines[i].setStatusCode(i % 10 == 0 ? 503 : 200);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!isInterrupted()) {
+          batches.acquire();
+          for (int i = 0; i < batchLines; i++) {
+            HttpLogLine slot;
+            while ((slot = queue.claim()) == null) {
+              Thread.yield();
+            }
+            slot.copyFrom(logLines[i % logLines.length]);
+            queue.publish();
+          }
+        }
+      } catch (InterruptedException e) {
+        // The benchmark is over
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package gd.engineering.httplogmonitor.aggregator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
+import gd.engineering.httplogmonitor.queue.LogLineQueue;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
+
+public class ShardedStatsAggregatorTest {
+
+  @Test
+  public void testShardCountCappedToQueues() {
+    Assert.assertEquals(4, buildAggregator(queues(4), 8, new InMemoryMetricsStore()).getShardCount());
+    Assert.assertEquals(3, buildAggregator(queues(4), 3, new InMemoryMetricsStore()).getShardCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidShardCount() {
+    buildAggregator(queues(1), 0, new InMemoryMetricsStore());
+  }
+
+  @Test
+  public void testShardsMergedAtFlush() throws InterruptedException {
+    List<LogLineQueue> queues = queues(4);
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    // 3 shards, one of them draining 2 queues
+    ShardedStatsAggregator aggregator = buildAggregator(queues, 3, store);
+    Thread aggregatorThread = new Thread(aggregator);
+    aggregatorThread.start();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        for (LogLineQueue queue : queues) {
+          HttpLogLine logLine = queue.claim();
+          logLine.setHttpMethod("GET");
+          logLine.setSection(i % 2 == 0 ? "/api" : "/report");
+          logLine.setStatusCode(i % 10 == 0 ? 500 : 200);
+          queue.publish();
+        }
+      }
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS) < 4000 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+    } finally {
+      aggregatorThread.interrupt();
+      aggregatorThread.join();
+    }
+    Assert.assertEquals(4000, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(400, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_ERRORS));
+    Assert.assertEquals(2000, store.getTotalSumCounterValue("section:GET/api:hits"));
+    Assert.assertEquals(2000, store.getTotalSumCounterValue("section:GET/report:hits"));
+  }
+
+  @Test
+  public void testStopFlushesShards() throws InterruptedException {
+    List<LogLineQueue> queues = queues(4);
+    for (LogLineQueue queue : queues) {
+      for (int i = 0; i < 100; i++) {
+        HttpLogLine logLine = queue.claim();
+        logLine.setHttpMethod("GET");
+        logLine.setSection("/api");
+        logLine.setStatusCode(200);
+        queue.publish();
+      }
+    }
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    // No boundary reached before the stop
+    ShardedStatsAggregator aggregator = new ShardedStatsAggregator(queues, 3, QueueWaitStrategy.PARK, null, store, Clock.systemDefaultZone(), 10L, 3600000L);
+    Thread aggregatorThread = new Thread(aggregator);
+    aggregatorThread.start();
+    aggregator.stop();
+    aggregatorThread.join();
+    Assert.assertEquals(1, store.getIntervalCount());
+    Assert.assertEquals(400, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+  }
+
+  private ShardedStatsAggregator buildAggregator(List<LogLineQueue> queues, int shardCount, InMemoryMetricsStore store) {
+    return new ShardedStatsAggregator(queues, shardCount, QueueWaitStrategy.PARK, null, store, Clock.systemDefaultZone(), 10L, 50L);
+  }
+
+  private List<LogLineQueue> queues(int count) {
+    List<LogLineQueue> queues = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      queues.add(new SpscLogLineQueue(1024, QueueWaitStrategy.PARK));
+    }
+    return queues;
+  }
+}
@@ -12,7 +12,7 @@ public class AlertBuilderTest {
   public void testBuildHighTrafficAlertFromValidName() {
     Alert alert = AlertBuilder.buildAlert("traffic", 1, 2, 3);
     Assert.assertEquals(alert.getClass(), HighTrafficAlert.class);
-    Assert.assertEquals(1, alert.getThreshold());
+    Assert.assertEquals(1, alert.getThreshold(), 0.001);
     Assert.assertEquals(2, alert.getAlertWindowInMs());
     Assert.assertEquals(3, alert.getRecoveryWindowInMs());
   }
@@ -33,7 +33,7 @@ public class AlertBuilderTest {
     Assert.assertEquals(1, alerts.size());
     Alert alert = alerts.get(0);
     Assert.assertEquals(alert.getClass(), HighTrafficAlert.class);
-    Assert.assertEquals(1, alert.getThreshold());
+    Assert.assertEquals(1, alert.getThreshold(), 0.001);
     Assert.assertEquals(2, alert.getAlertWindowInMs());
     Assert.assertEquals(3, alert.getRecoveryWindowInMs());
   }
@@ -1,7 +1,5 @@
 package gd.engineering.httplogmonitor.alerter;
 
-import java.time.Clock;
-
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -16,32 +14,32 @@ public class AlertTaskTest {
   public void updateAlertHighTrafficTestNotAlerting() {
     HighTrafficAlert alert = Mockito.spy(new HighTrafficAlert(1, 2, 2));
     MetricsStore store = buildStore();
-    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store, Clock.systemDefaultZone());
+    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store);
     task.updateAlert(alert, store, 2L, 2L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0, alert.getValue(), 0.001);
     Assert.assertEquals(2L, alert.getLastCheck());
     task.updateAlert(alert, store, 3L, 3L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0, alert.getValue(), 0.001);
     Assert.assertEquals(3L, alert.getLastCheck());
     task.updateAlert(alert, store, 4L, 4L);
     Assert.assertTrue(alert.isAlerting());
-    Assert.assertEquals(2, alert.getValue());
+    Assert.assertEquals(2.5, alert.getValue(), 0.001);
     Assert.assertEquals(4L, alert.getLastCheck());
     Mockito.verify(alert).getMessage();
     task.updateAlert(alert, store, 5L, 5L);
     Assert.assertTrue(alert.isAlerting());
-    Assert.assertEquals(2, alert.getValue());
+    Assert.assertEquals(2, alert.getValue(), 0.001);
     Assert.assertEquals(5L, alert.getLastCheck());
     task.updateAlert(alert, store, 6L, 6L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(1, alert.getValue());
+    Assert.assertEquals(1, alert.getValue(), 0.001);
     Assert.assertEquals(6L, alert.getLastCheck());
     Mockito.verify(alert).getRecoveryMessage();
     task.updateAlert(alert, store, 7L, 7L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0.5, alert.getValue(), 0.001);
     Assert.assertEquals(7L, alert.getLastCheck());
   }
 
@@ -50,15 +48,15 @@ public class AlertTaskTest {
     HighTrafficAlert alert = Mockito.spy(new HighTrafficAlert(1, 2, 2));
     alert.setAlerting(true);
     MetricsStore store = buildStore();
-    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store, Clock.systemDefaultZone());
+    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store);
     task.updateAlert(alert, store, 6L, 6L);
     Mockito.verify(alert).getRecoveryMessage();
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(1, alert.getValue());
+    Assert.assertEquals(1, alert.getValue(), 0.001);
     Assert.assertEquals(6L, alert.getLastCheck());
     task.updateAlert(alert, store, 7L, 7L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0.5, alert.getValue(), 0.001);
     Assert.assertEquals(7L, alert.getLastCheck());
   }
 
@@ -66,32 +64,32 @@ public class AlertTaskTest {
   public void updateAlertHighTrafficTestNotAlertingDifferentWindow() {
     HighTrafficAlert alert = Mockito.spy(new HighTrafficAlert(1, 2, 1));
     MetricsStore store = buildStore();
-    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store, Clock.systemDefaultZone());
+    AlertTask task = new AlertTask(alert, store.getLatestMetrics(), store);
     task.updateAlert(alert, store, 2L, 2L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0, alert.getValue(), 0.001);
     Assert.assertEquals(2L, alert.getLastCheck());
     task.updateAlert(alert, store, 3L, 3L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0, alert.getValue(), 0.001);
     Assert.assertEquals(3L, alert.getLastCheck());
     task.updateAlert(alert, store, 4L, 4L);
     Assert.assertTrue(alert.isAlerting());
-    Assert.assertEquals(2, alert.getValue());
+    Assert.assertEquals(2.5, alert.getValue(), 0.001);
     Assert.assertEquals(4L, alert.getLastCheck());
     Mockito.verify(alert).getMessage();
     task.updateAlert(alert, store, 5L, 5L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(1, alert.getValue());
+    Assert.assertEquals(1, alert.getValue(), 0.001);
     Assert.assertEquals(5L, alert.getLastCheck());
     Mockito.verify(alert).getRecoveryMessage();
     task.updateAlert(alert, store, 6L, 6L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(1, alert.getValue());
+    Assert.assertEquals(1, alert.getValue(), 0.001);
     Assert.assertEquals(6L, alert.getLastCheck());
     task.updateAlert(alert, store, 7L, 7L);
     Assert.assertFalse(alert.isAlerting());
-    Assert.assertEquals(0, alert.getValue());
+    Assert.assertEquals(0.5, alert.getValue(), 0.001);
     Assert.assertEquals(7L, alert.getLastCheck());
   }
 
@@ -22,12 +22,12 @@ public class HighTrafficAlertTest {
   public void testAlertComputeMetric() {
     HighTrafficAlert alert = new HighTrafficAlert(1, 1, 1);
     MetricsStore store = buildStore();
-    int requestsPerSecond = alert.computeAlertValue(store, 5L, 5L);
-    Assert.assertEquals(0, requestsPerSecond);
+    double requestsPerSecond = alert.computeAlertValue(store, 5L, 5L);
+    Assert.assertEquals(0, requestsPerSecond, 0.001);
     requestsPerSecond = alert.computeAlertValue(store, 5L, 1L);
-    Assert.assertEquals(0, requestsPerSecond);
+    Assert.assertEquals(0, requestsPerSecond, 0.001);
     requestsPerSecond = alert.computeAlertValue(store, 5L, 3L);
-    Assert.assertEquals(1, requestsPerSecond);
+    Assert.assertEquals(1.5, requestsPerSecond, 0.001);
   }
 
   private InMemoryMetricsStore buildStore() {
@@ -22,10 +22,10 @@ public class NoTrafficAlertTest {
   public void testAlertComputeMetric() {
     NoTrafficAlert alert = new NoTrafficAlert(0, 1, 1);
     MetricsStore store = buildStore();
-    int hits = alert.computeAlertValue(store, 2L, 1L);
-    Assert.assertEquals(1, hits);
+    double hits = alert.computeAlertValue(store, 2L, 1L);
+    Assert.assertEquals(1, hits, 0.001);
     hits = alert.computeAlertValue(store, 5L, 3L);
-    Assert.assertEquals(0, hits);
+    Assert.assertEquals(0, hits, 0.001);
   }
 
   private InMemoryMetricsStore buildStore() {
@@ -0,0 +1,93 @@
+package gd.engineering.httplogmonitor.backfill;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gd.engineering.httplogmonitor.AccessLogGenerator;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStore;
+import gd.engineering.httplogmonitor.tailer.FastApacheAccessLogParser;
+
+public class LogFileBackfillTest {
+
+  private static final long START_TIME_MS = 1525881600000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSplitOnLines() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    byte[] content = "first\nsecond line\nthird\n\nfifth line\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(logFile, content);
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+      long[] boundaries = LogFileBackfill.splitOnLines(channel, 4);
+      Assert.assertEquals(5, boundaries.length);
+      Assert.assertEquals(0L, boundaries[0]);
+      Assert.assertEquals(content.length, boundaries[4]);
+      for (int i = 1; i < boundaries.length; i++) {
+        Assert.assertTrue(boundaries[i] >= boundaries[i - 1]);
+        Assert.assertTrue(boundaries[i] == content.length || content[(int) boundaries[i] - 1] == '\n');
+      }
+    }
+  }
+
+  @Test
+  public void testSplitOnLinesMoreRangesThanLines() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    Files.write(logFile, "a single line without line feed".getBytes(StandardCharsets.UTF_8));
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+      Assert.assertArrayEquals(new long[]{0L, 31L, 31L, 31L}, LogFileBackfill.splitOnLines(channel, 3));
+    }
+  }
+
+  @Test
+  public void testBackfillSameMetricsWhateverTheThreadCount() throws IOException, InterruptedException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    String[] lines = new AccessLogGenerator(42L, START_TIME_MS, 100).generate(5000);
+    // Invalid line and last line without line feed
+    Files.write(logFile, (String.join("\n", lines) + "\ninvalid line\n" + lines[0]).getBytes(StandardCharsets.UTF_8));
+
+    InMemoryMetricsStore singleThreadStore = new InMemoryMetricsStore();
+    BackfillReport singleThreadReport = new LogFileBackfill(logFile, FastApacheAccessLogParser::new, singleThreadStore, 1, 1024, 10000L).run();
+    InMemoryMetricsStore multiThreadStore = new InMemoryMetricsStore();
+    BackfillReport multiThreadReport = new LogFileBackfill(logFile, FastApacheAccessLogParser::new, multiThreadStore, 4, 1024, 10000L).run();
+
+    Assert.assertEquals(5002L, multiThreadReport.getLineCount());
+    Assert.assertEquals(1L, multiThreadReport.getInvalidLineCount());
+    Assert.assertEquals(4, multiThreadReport.getRangeCount());
+    Assert.assertEquals(Files.size(logFile), multiThreadReport.getByteCount());
+    Assert.assertEquals(singleThreadReport.getIntervalCount(), multiThreadReport.getIntervalCount());
+    Assert.assertEquals(5001, multiThreadStore.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+    Assert.assertEquals(singleThreadStore.getTotalSumCounterValue(HttpLogMetrics.COUNTER_ERRORS), multiThreadStore.getTotalSumCounterValue(HttpLogMetrics.COUNTER_ERRORS));
+    // 100 lines per second over 50 seconds in 10 seconds intervals keyed by log time, plus the interval before the start for the late lines
+    Assert.assertEquals(6, multiThreadReport.getIntervalCount());
+    Assert.assertEquals(singleThreadStore.getLatestMetrics().getCounters(), multiThreadStore.getLatestMetrics().getCounters());
+    Assert.assertEquals(START_TIME_MS + 40000L, multiThreadStore.getLatestMetrics().getStartTime());
+    Assert.assertEquals(START_TIME_MS + 50000L, multiThreadStore.getLatestMetrics().getEndTime());
+  }
+
+  @Test
+  public void testBackfillIdleIntervals() throws IOException, InterruptedException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    Files.write(logFile, ("127.0.0.1 - james [09/May/2018:16:00:00 +0000] \"GET /report HTTP/1.0\" 200 123\n"
+        + "127.0.0.1 - james [09/May/2018:16:00:35 +0000] \"GET /report HTTP/1.0\" 200 123\n").getBytes(StandardCharsets.UTF_8));
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    BackfillReport report = new LogFileBackfill(logFile, FastApacheAccessLogParser::new, store, 2, 1024, 10000L).run();
+    // The two intervals without any line are stored empty, as the aggregators flush them
+    Assert.assertEquals(4, report.getIntervalCount());
+    Assert.assertEquals(4, store.getIntervalCount());
+    // 1 hit in 10 seconds in the first and last intervals
+    Assert.assertEquals(0.05, store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, START_TIME_MS + 40000L, 40000L), 0.001);
+    Assert.assertEquals(2, store.getTotalSumCounterValue(HttpLogMetrics.COUNTER_HITS));
+  }
+}
@@ -0,0 +1,74 @@
+package gd.engineering.httplogmonitor.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+
+/**
+ * Measures the cost per log line of recording its metrics in the interval metrics, i.e the aggregator hot path.
+ * The log lines hold new section strings as parsed lines do. Run with -prof gc to check that the recording does not allocate
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.model.HttpLogMetricsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpLogMetricsBenchmark {
+
+  private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+  private static final String[] SECTIONS = {"/api", "/report", "/static", "/user", "/admin", "/health", "/login", "/search"};
+  private static final int LINES = 1024;
+
+  private HttpLogLine[] logLines;
+  private IntervalMetrics metrics;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    logLines = new HttpLogLine[LINES];
+    for (int i = 0; i < LINES; i++) {
+      HttpLogLine logLine = new HttpLogLine();
+      logLine.setHttpMethod(METHODS[i % METHODS.length]);
+      // Not interned, as substrings of the parsed lines
+      logLine.setSection(new String(SECTIONS[i % SECTIONS.length].toCharArray()));
+      logLine.setStatusCode(i % 10 == 0 ? 503 : 200);
+      logLines[i] = logLine;
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void newInterval() {
+    metrics = new IntervalMetrics();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public IntervalMetrics record() {
+    for (HttpLogLine logLine : logLines) {
+      HttpLogMetrics.record(metrics, logLine);
+    }
+    return metrics;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(HttpLogMetricsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,96 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Contract of the metrics stores, the results of which are checked against the {@link InMemoryMetricsStore}
+ */
+public abstract class AbstractMetricsStoreTest {
+
+  private MetricsStore store;
+
+  /**
+   * Build an empty store retaining all the intervals added by the contract tests
+   *
+   * @return Store to be tested
+   * @throws IOException If the store cannot be opened
+   */
+  protected abstract MetricsStore newStore() throws IOException;
+
+  protected static IntervalMetrics interval(long startTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("store:hits", hits);
+    metrics.incrBy("store:errors", hits / 2);
+    if (hits % 3 == 0) {
+      metrics.incrBy("store:sparse", hits);
+    }
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + 10L);
+    metrics.computeRates(10L, TimeUnit.SECONDS);
+    return metrics;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    store = newStore();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (store instanceof Closeable) {
+      ((Closeable) store).close();
+    }
+  }
+
+  @Test
+  public void testQueries() {
+    InMemoryMetricsStore expected = new InMemoryMetricsStore();
+    // More intervals than a compressed block, with a missing interval
+    for (long start = 10; start < 5000; start += start == 2000 ? 20 : 10) {
+      IntervalMetrics metrics = interval(start, start * 7 % 101);
+      Assert.assertTrue(store.add(metrics));
+      expected.add(metrics);
+    }
+    Assert.assertEquals(expected.getIntervalCount(), store.getIntervalCount());
+    Assert.assertEquals(expected.getTotalSumCounterValue("store:hits"), store.getTotalSumCounterValue("store:hits"));
+    Assert.assertSame(expected.getLatestMetrics(), store.getLatestMetrics());
+    for (long window = 10; window <= 4990; window += 70) {
+      Assert.assertEquals(expected.getSumCounterValue("store:hits", 5000L, window), store.getSumCounterValue("store:hits", 5000L, window));
+      Assert.assertEquals(expected.getSumCounterValue("store:sparse", 5000L, window), store.getSumCounterValue("store:sparse", 5000L, window));
+      Assert.assertEquals(expected.getAverageCounterValue("store:errors", 5000L, window), store.getAverageCounterValue("store:errors", 5000L, window), 0.001);
+      Assert.assertEquals(expected.getAverageCounterValue("store:sparse", 5000L, window), store.getAverageCounterValue("store:sparse", 5000L, window), 0.001);
+      Assert.assertEquals(expected.getAverageRateValue("store:hits", 5000L, window), store.getAverageRateValue("store:hits", 5000L, window), 0.001);
+    }
+    // A window before the first interval
+    Assert.assertEquals(0, store.getSumCounterValue("store:hits", 5000L, 5000L));
+    Assert.assertEquals(0, store.getSumCounterValue("store:unknown", 5000L, 100L));
+    Assert.assertEquals(0, store.getAverageCounterValue("store:unknown", 5000L, 100L), 0.001);
+    Assert.assertEquals(0, store.getAverageRateValue("store:unknown", 5000L, 100L), 0.001);
+  }
+
+  @Test
+  public void testEmptyStore() {
+    Assert.assertNull(store.getLatestMetrics());
+    Assert.assertEquals(0, store.getIntervalCount());
+    Assert.assertEquals(0, store.getTotalSumCounterValue("store:hits"));
+    Assert.assertEquals(0, store.getSumCounterValue("store:hits", 1L, 1L));
+    Assert.assertEquals(0, store.getAverageCounterValue("store:hits", 1L, 1L), 0.001);
+    Assert.assertEquals(0, store.getAverageRateValue("store:hits", 1L, 1L), 0.001);
+  }
+
+  @Test
+  public void testAddOrder() {
+    Assert.assertTrue(store.add(interval(20L, 1)));
+    Assert.assertFalse(store.add(interval(20L, 2)));
+    Assert.assertFalse(store.add(interval(10L, 2)));
+    Assert.assertEquals(1, store.getIntervalCount());
+    Assert.assertEquals(1, store.getTotalSumCounterValue("store:hits"));
+  }
+}
@@ -0,0 +1,112 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+
+/**
+ * Compares the compressed store with the in memory store on 50k intervals of 10 seconds (about 6 days), each one holding the hits,
+ * errors and successes counters and 10 sections out of 200, with their rates.
+ * The memory used per interval and per recorded value of each store is printed at setup, the window queries are measured
+ * for a 2 minutes window (the traffic alert) and a 1 day window, on a global counter and on a section counter
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.model.metrics.CompressedMetricsStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CompressedMetricsStoreBenchmark {
+
+  private static final int INTERVALS = 50_000;
+  private static final long INTERVAL_MS = 10000L;
+  private static final int SECTIONS = 200;
+  private static final int SECTIONS_PER_INTERVAL = 10;
+  private static final String SECTION_COUNTER = HttpLogMetrics.getSectionCounterPrefix("/section0") + HttpLogMetrics.DELIMITER + HttpLogMetrics.COUNTER_HITS;
+
+  @Param({"memory", "compressed"})
+  private String storeType;
+
+  @Param({"120000", "86400000"})
+  private long windowMs;
+
+  private MetricsStore store;
+  private long nowMs;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    store = "memory".equals(storeType) ? new InMemoryMetricsStore(INTERVALS) : new CompressedMetricsStore(INTERVALS * INTERVAL_MS);
+    Random random = new Random(42);
+    long values = 0;
+    for (int i = 0; i < INTERVALS; i++) {
+      IntervalMetrics metrics = interval(random, i * INTERVAL_MS);
+      values += metrics.getCounters().size() + metrics.getRates().size();
+      store.add(metrics);
+    }
+    nowMs = INTERVALS * INTERVAL_MS;
+    // Tracks the metrics before the measure, as the first alert evaluation does
+    store.getSumCounterValue(HttpLogMetrics.COUNTER_HITS, nowMs, nowMs);
+    store.getSumCounterValue(SECTION_COUNTER, nowMs, nowMs);
+    store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, nowMs, nowMs);
+    System.out.printf("%n%s store: %d bytes per interval, %.2f bytes per recorded value%n", storeType, store.getMemoryUsage() / INTERVALS,
+        store.getMemoryUsage() / (double) values);
+  }
+
+  @Benchmark
+  public long sumCounter() {
+    return store.getSumCounterValue(HttpLogMetrics.COUNTER_HITS, nowMs, windowMs);
+  }
+
+  @Benchmark
+  public long sumSectionCounter() {
+    return store.getSumCounterValue(SECTION_COUNTER, nowMs, windowMs);
+  }
+
+  @Benchmark
+  public double averageRate() {
+    return store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, nowMs, windowMs);
+  }
+
+  private static IntervalMetrics interval(Random random, long startTime) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    long hits = 0;
+    for (int i = 0; i < SECTIONS_PER_INTERVAL; i++) {
+      // Skewed towards the first sections
+      int section = (int) (SECTIONS * Math.pow(random.nextDouble(), 3));
+      long sectionHits = 1 + random.nextInt(50);
+      metrics.incrBy(HttpLogMetrics.getSectionCounterPrefix("/section" + section) + HttpLogMetrics.DELIMITER + HttpLogMetrics.COUNTER_HITS, sectionHits);
+      hits += sectionHits;
+    }
+    long errors = random.nextInt(10);
+    metrics.incrBy(HttpLogMetrics.COUNTER_HITS, hits);
+    metrics.incrBy(HttpLogMetrics.COUNTER_ERRORS, errors);
+    metrics.incrBy(HttpLogMetrics.COUNTER_SUCCESSES, hits - errors);
+    metrics.computeRates(INTERVAL_MS, TimeUnit.SECONDS);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + INTERVAL_MS);
+    return metrics;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CompressedMetricsStoreBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,63 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressedMetricsStoreTest extends AbstractMetricsStoreTest {
+
+  @Override
+  protected MetricsStore newStore() {
+    return new CompressedMetricsStore(100000L);
+  }
+
+  @Test
+  public void testRetention() {
+    CompressedMetricsStore store = new CompressedMetricsStore(1000L);
+    for (long start = 10; start <= 10 * 4 * CompressedSeries.BLOCK_SAMPLES; start += 10) {
+      store.add(interval(start, 4));
+    }
+    // The blocks are dropped whole, the block holding the retention boundary is kept
+    Assert.assertTrue(store.getIntervalCount() <= 100 + CompressedSeries.BLOCK_SAMPLES);
+    Assert.assertTrue(store.getIntervalCount() >= 100);
+    Assert.assertEquals(4L * 4 * CompressedSeries.BLOCK_SAMPLES, store.getTotalSumCounterValue("store:hits"));
+    Assert.assertEquals(400, store.getAverageRateValue("store:hits", 5120L, 1000L), 0.001);
+  }
+
+  @Test
+  public void testMemoryUsage() {
+    InMemoryMetricsStore memory = new InMemoryMetricsStore();
+    CompressedMetricsStore store = new CompressedMetricsStore(100000L);
+    for (long start = 10; start < 5000; start += 10) {
+      IntervalMetrics metrics = interval(start, 5);
+      memory.add(metrics);
+      store.add(metrics);
+    }
+    Assert.assertTrue(store.getMemoryUsage() > 0);
+    Assert.assertTrue(store.getMemoryUsage() < memory.getMemoryUsage() / 4);
+  }
+
+  @Test
+  public void testSeriesEncoding() {
+    CompressedSeries counters = new CompressedSeries(false);
+    CompressedSeries rates = new CompressedSeries(true);
+    double[] values = {0, 1.5, 1.5, -3.25, 1e12, Double.MIN_VALUE, 1e-300, 0.1};
+    long time = 0;
+    long expectedSum = 0;
+    double expectedRates = 0;
+    for (int i = 0; i < 1000; i++) {
+      // Irregular times and large counter swings
+      time += 10 + (i % 7 == 0 ? 3000 : 0);
+      long value = i % 5 == 0 ? Long.MAX_VALUE / 4 : -i;
+      counters.append(time, value);
+      rates.append(time, Double.doubleToRawLongBits(values[i % values.length] / 1000));
+      expectedSum += value;
+      expectedRates += values[i % values.length] / 1000;
+    }
+    Assert.assertEquals(1000, counters.getSampleCount());
+    Assert.assertEquals(1000, counters.count(0, time + 1));
+    Assert.assertEquals(expectedSum, counters.sum(0, time + 1));
+    Assert.assertEquals(expectedRates, rates.sumDouble(0, time + 1), 0.001);
+    Assert.assertEquals(-1, counters.sum(3020, 3021));
+    Assert.assertEquals(0, counters.sum(3021, 3030));
+  }
+}
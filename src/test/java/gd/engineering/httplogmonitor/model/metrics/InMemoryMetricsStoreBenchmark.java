@@ -0,0 +1,91 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+
+/**
+ * Measures the cost of the window queries of the alerts on a store holding 1M intervals of 10 seconds (about 4 months),
+ * for a 2 minutes window (the traffic alert), a 1 day window and the whole history, and the cost of adding an interval to the full store.
+ * The window queries cost a binary search whatever the window length and the history retained
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class InMemoryMetricsStoreBenchmark {
+
+  private static final int INTERVALS = 1_000_000;
+  private static final long INTERVAL_MS = 10000L;
+
+  @Param({"120000", "86400000", "10000000000"})
+  private long windowMs;
+
+  private InMemoryMetricsStore store;
+  private long nowMs;
+  private long nextStartTime;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    store = new InMemoryMetricsStore(INTERVALS);
+    for (int i = 0; i < INTERVALS; i++) {
+      store.add(interval(i * INTERVAL_MS, i % 100));
+    }
+    nextStartTime = INTERVALS * INTERVAL_MS;
+    nowMs = nextStartTime;
+    // Tracks the metrics before the measure, as the first alert evaluation does
+    store.getSumCounterValue(HttpLogMetrics.COUNTER_HITS, nowMs, nowMs);
+    store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, nowMs, nowMs);
+  }
+
+  @Benchmark
+  public long sumCounter() {
+    return store.getSumCounterValue(HttpLogMetrics.COUNTER_HITS, nowMs, Math.min(windowMs, nowMs));
+  }
+
+  @Benchmark
+  public double averageRate() {
+    return store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, nowMs, Math.min(windowMs, nowMs));
+  }
+
+  @Benchmark
+  public boolean add() {
+    // Evicts the oldest interval, the queries stay on the intervals of the setup
+    boolean added = store.add(interval(nextStartTime, 1));
+    nextStartTime += INTERVAL_MS;
+    return added;
+  }
+
+  private static IntervalMetrics interval(long startTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy(HttpLogMetrics.COUNTER_HITS, hits);
+    metrics.computeRates(INTERVAL_MS, TimeUnit.SECONDS);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + INTERVAL_MS);
+    return metrics;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(InMemoryMetricsStoreBenchmark.class.getSimpleName()).build()).run();
+  }
+}
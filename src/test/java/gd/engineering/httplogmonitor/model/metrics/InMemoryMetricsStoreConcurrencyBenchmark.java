@@ -0,0 +1,98 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+
+/**
+ * Measures the read throughput of the store under many parallel alert evaluations, each one a 2 minutes average rate and sum,
+ * on a store holding one day of 10 seconds intervals: without writes (alerts), and while the aggregator keeps adding intervals (alertsWhileFlushing).
+ * The reads only scale with the available cores
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.model.metrics.InMemoryMetricsStoreConcurrencyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryMetricsStoreConcurrencyBenchmark {
+
+  private static final long INTERVAL_MS = 10000L;
+  private static final long WINDOW_MS = 120000L;
+
+  private InMemoryMetricsStore store;
+  private volatile long nowMs;
+  private long nextStartTime;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    store = new InMemoryMetricsStore(InMemoryMetricsStore.DEFAULT_CAPACITY);
+    for (int i = 0; i < InMemoryMetricsStore.DEFAULT_CAPACITY; i++) {
+      store.add(interval(i * INTERVAL_MS, i % 100));
+    }
+    nextStartTime = InMemoryMetricsStore.DEFAULT_CAPACITY * INTERVAL_MS;
+    nowMs = nextStartTime;
+  }
+
+  @Benchmark
+  @Threads(8)
+  public double alerts() {
+    return evaluate();
+  }
+
+  @Benchmark
+  @Group("alertsWhileFlushing")
+  @GroupThreads(7)
+  public double evaluateWhileFlushing() {
+    return evaluate();
+  }
+
+  @Benchmark
+  @Group("alertsWhileFlushing")
+  @GroupThreads(1)
+  public boolean flush() {
+    boolean added = store.add(interval(nextStartTime, 1));
+    nextStartTime += INTERVAL_MS;
+    nowMs = nextStartTime;
+    return added;
+  }
+
+  private double evaluate() {
+    long now = nowMs;
+    return store.getAverageRateValue(HttpLogMetrics.COUNTER_HITS, now, WINDOW_MS) + store.getSumCounterValue(HttpLogMetrics.COUNTER_HITS, now, WINDOW_MS);
+  }
+
+  private static IntervalMetrics interval(long startTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy(HttpLogMetrics.COUNTER_HITS, hits);
+    metrics.incrBy(HttpLogMetrics.COUNTER_ERRORS, hits / 10);
+    metrics.computeRates(INTERVAL_MS, TimeUnit.SECONDS);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + INTERVAL_MS);
+    return metrics;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(InMemoryMetricsStoreConcurrencyBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -1,5 +1,9 @@
 package gd.engineering.httplogmonitor.model.metrics;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -17,26 +21,26 @@ public class InMemoryMetricsStoreTest {
   @Test
   public void testAverageCounterValue() {
     InMemoryMetricsStore store = buildStore();
-    int value = store.getAverageCounterValue("test", 5L, 3L);
-    Assert.assertEquals(10, value);
+    double value = store.getAverageCounterValue("test", 5L, 3L);
+    Assert.assertEquals(10, value, 0.001);
     value = store.getAverageCounterValue("test", 5L, 4L);
-    Assert.assertEquals(15, value);
+    Assert.assertEquals(15, value, 0.001);
     value = store.getAverageCounterValue("test", 5L, 1L);
-    Assert.assertEquals(0, value);
+    Assert.assertEquals(0, value, 0.001);
     value = store.getAverageCounterValue("test2", 3L, 1L);
-    Assert.assertEquals(0, value);
+    Assert.assertEquals(0, value, 0.001);
     value = store.getAverageCounterValue("test2", 3L, 2L);
-    Assert.assertEquals(20, value);
+    Assert.assertEquals(20, value, 0.001);
     value = store.getAverageCounterValue("test3", 3L, 1L);
-    Assert.assertEquals(30, value);
+    Assert.assertEquals(30, value, 0.001);
     value = store.getAverageCounterValue("test3", 3L, 2L);
-    Assert.assertEquals(15, value);
+    Assert.assertEquals(15, value, 0.001);
   }
 
   @Test
   public void testSumCounterValue() {
     InMemoryMetricsStore store = buildStore();
-    int value = store.getSumCounterValue("test", 5L, 1L);
+    long value = store.getSumCounterValue("test", 5L, 1L);
     Assert.assertEquals(0, value);
     value = store.getSumCounterValue("test", 5L, 3L);
     Assert.assertEquals(10, value);
@@ -53,27 +57,188 @@ public class InMemoryMetricsStoreTest {
   @Test
   public void testAverageRateValue() {
     InMemoryMetricsStore store = buildStore();
-    int value = store.getAverageRateValue("test", 5L, 1L);
-    Assert.assertEquals(0, value);
+    double value = store.getAverageRateValue("test", 5L, 1L);
+    Assert.assertEquals(0, value, 0.001);
     value = store.getAverageRateValue("test", 5L, 3L);
-    Assert.assertEquals(1, value);
+    Assert.assertEquals(1, value, 0.001);
     value = store.getAverageRateValue("test", 5L, 4L);
-    Assert.assertEquals(1, value);
+    Assert.assertEquals(1.5, value, 0.001);
     value = store.getAverageRateValue("test2", 5L, 3L);
-    Assert.assertEquals(0, value);
+    Assert.assertEquals(0, value, 0.001);
     value = store.getAverageRateValue("test", 1L, 2L);
-    Assert.assertEquals(0, value);
+    Assert.assertEquals(0, value, 0.001);
   }
 
   @Test
   public void testEmptyStore() {
     InMemoryMetricsStore store = new InMemoryMetricsStore();
-    Assert.assertEquals(0, store.getAverageCounterValue("test", 1L, 1L));
+    Assert.assertEquals(0, store.getAverageCounterValue("test", 1L, 1L), 0.001);
     Assert.assertEquals(0, store.getSumCounterValue("test", 1L, 1L));
-    Assert.assertEquals(0, store.getAverageRateValue("test", 1L, 1L));
+    Assert.assertEquals(0, store.getAverageRateValue("test", 1L, 1L), 0.001);
     Assert.assertEquals(0, store.getTotalSumCounterValue("test"));
   }
 
+  @Test
+  public void testEviction() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore(3);
+    for (long start = 1; start <= 5; start++) {
+      Assert.assertTrue(store.add(interval(start, 10)));
+    }
+    Assert.assertEquals(3, store.getIntervalCount());
+    Assert.assertEquals(5, store.getLatestMetrics().getStartTime());
+    Assert.assertEquals(30, store.getSumCounterValue("test", 6L, 3L));
+    // The evicted intervals are not covered anymore, they are still in the totals
+    Assert.assertEquals(0, store.getSumCounterValue("test", 6L, 4L));
+    Assert.assertEquals(50, store.getTotalSumCounterValue("test"));
+  }
+
+  @Test
+  public void testAddOrder() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore(3);
+    Assert.assertTrue(store.add(interval(2, 10)));
+    Assert.assertFalse(store.add(interval(1, 10)));
+    IntervalMetrics replacement = interval(2, 20);
+    Assert.assertTrue(store.add(replacement));
+    Assert.assertEquals(1, store.getIntervalCount());
+    Assert.assertSame(replacement, store.getLatestMetrics());
+  }
+
+  @Test
+  public void testMemoryUsage() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore(2);
+    long emptyUsage = store.getMemoryUsage();
+    store.add(interval(1, 10));
+    long usage = store.getMemoryUsage();
+    Assert.assertTrue(usage > emptyUsage);
+    store.add(interval(2, 10));
+    long fullUsage = store.getMemoryUsage();
+    Assert.assertTrue(fullUsage > usage);
+    store.add(interval(3, 10));
+    store.add(interval(4, 10));
+    // Bounded by the capacity
+    Assert.assertEquals(2, store.getIntervalCount());
+    Assert.assertEquals(fullUsage, store.getMemoryUsage());
+  }
+
+  @Test
+  public void testRunningSums() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore(20);
+    // Tracked from the first interval on, then kept along the adds, the evictions and a replacement
+    long[] hits = new long[25];
+    for (int start = 1; start <= 24; start++) {
+      hits[start] = start * 3L % 7;
+      IntervalMetrics metrics = new IntervalMetrics();
+      metrics.incrBy("sums", hits[start]);
+      metrics.putRate("sums", hits[start] / 2.);
+      metrics.setStartTime(start);
+      store.add(metrics);
+      if (start == 1) {
+        Assert.assertEquals(hits[1], store.getSumCounterValue("sums", 2L, 1L));
+        Assert.assertEquals(hits[1] / 2., store.getAverageRateValue("sums", 2L, 1L), 0.001);
+      }
+    }
+    IntervalMetrics replacement = new IntervalMetrics();
+    replacement.incrBy("sums", 100);
+    replacement.putRate("sums", 50);
+    replacement.setStartTime(24);
+    store.add(replacement);
+    hits[24] = 100;
+    // The counter windows have to be longer than the first retained start time
+    for (int from = 5; from <= 19; from++) {
+      for (int to = from + 5; to <= 25; to++) {
+        long expected = 0;
+        for (int start = from; start < to; start++) {
+          expected += hits[start];
+        }
+        Assert.assertEquals(expected, store.getSumCounterValue("sums", to, to - from));
+        Assert.assertEquals(expected / (double) (to - from), store.getAverageCounterValue("sums", to, to - from), 0.001);
+        Assert.assertEquals(expected / 2. / (to - from), store.getAverageRateValue("sums", to, to - from), 0.001);
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownMetricsNotTracked() {
+    InMemoryMetricsStore store = buildStore();
+    MetricKeyRegistry.intern("registered");
+    long usage = store.getMemoryUsage();
+    int registrySize = MetricKeyRegistry.size();
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(0, store.getSumCounterValue("unknown" + i, 10L, 10L));
+      Assert.assertEquals(0, store.getAverageCounterValue("unknown" + i, 10L, 10L), 0.0);
+      Assert.assertEquals(0, store.getAverageRateValue("unknown" + i, 10L, 10L), 0.0);
+    }
+    // Registered but never added to this store
+    Assert.assertEquals(0, store.getSumCounterValue("registered", 3L, 2L));
+    Assert.assertEquals(0, store.getAverageRateValue("registered", 3L, 2L), 0.0);
+    Assert.assertEquals(registrySize, MetricKeyRegistry.size());
+    Assert.assertEquals(usage, store.getMemoryUsage());
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    InMemoryMetricsStore store = new InMemoryMetricsStore(64);
+    int count = 200_000;
+    Thread writer = new Thread(() -> {
+      for (int i = 1; i <= count; i++) {
+        IntervalMetrics metrics = new IntervalMetrics();
+        metrics.incrBy("stress", i);
+        metrics.putRate("stress", i);
+        metrics.setStartTime(i * 10L);
+        metrics.setEndTime(i * 10L + 10L);
+        store.add(metrics);
+      }
+    });
+    AtomicReference<String> error = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int reader = 0; reader < 3; reader++) {
+      readers.add(new Thread(() -> {
+        while (writer.isAlive()) {
+          IntervalMetrics latest = store.getLatestMetrics();
+          if (latest == null) {
+            continue;
+          }
+          // Average of the 10 intervals up to the latest one, unless the window was evicted meanwhile
+          long i = latest.getStartTime() / 10L;
+          double average = store.getAverageRateValue("stress", latest.getEndTime(), 100L);
+          if (average != 0 && average != i - 4.5) {
+            error.compareAndSet(null, "expected " + (i - 4.5) + " but was " + average);
+          }
+          if (store.getIntervalCount() > 64) {
+            error.compareAndSet(null, "interval count over the capacity " + store.getIntervalCount());
+          }
+        }
+      }));
+    }
+    readers.forEach(Thread::start);
+    writer.start();
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assert.assertNull(error.get(), error.get());
+    Assert.assertEquals(count - 4.5, store.getAverageRateValue("stress", count * 10L + 10L, 100L), 0.001);
+  }
+
+  @Test
+  public void testCapacityFor() {
+    Assert.assertEquals(360, InMemoryMetricsStore.capacityFor(3600000L, 10000L));
+    Assert.assertEquals(2, InMemoryMetricsStore.capacityFor(15000L, 10000L));
+    Assert.assertEquals(1, InMemoryMetricsStore.capacityFor(0L, 10000L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new InMemoryMetricsStore(0);
+  }
+
+  private static IntervalMetrics interval(long startTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("test", hits);
+    metrics.setStartTime(startTime);
+    return metrics;
+  }
+
   private InMemoryMetricsStore buildStore() {
     IntervalMetrics s1 = new IntervalMetrics();
     s1.incrBy("test", 20);
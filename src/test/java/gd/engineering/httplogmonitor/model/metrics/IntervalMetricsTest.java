@@ -0,0 +1,114 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntervalMetricsTest {
+
+  @Test
+  public void testCountersByNameAndId() {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("interval.test.hits", 3);
+    metrics.incr("interval.test.hits");
+    int id = MetricKeyRegistry.find("interval.test.hits");
+    Assert.assertEquals("interval.test.hits", MetricKeyRegistry.name(id));
+    Assert.assertEquals(4L, metrics.getCounterValue(id));
+    metrics.incrBy(id, 6L);
+    Assert.assertEquals(10, metrics.getCounterValue("interval.test.hits"));
+    Assert.assertEquals(0, metrics.getCounterValue("interval.test.unknown"));
+    Assert.assertEquals(MetricKeyRegistry.UNKNOWN_ID, MetricKeyRegistry.find("interval.test.unknown"));
+  }
+
+  @Test
+  public void testCountersView() {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("interval.test.view1", 2);
+    metrics.incrBy("interval.test.view2", 0);
+    // Registered by another metrics only
+    new IntervalMetrics().incr("interval.test.view3");
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("interval.test.view1", 2L);
+    expected.put("interval.test.view2", 0L);
+    Assert.assertEquals(expected, metrics.getCounters());
+  }
+
+  @Test
+  public void testMergeAndRates() {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("interval.test.merge1", 10);
+    IntervalMetrics other = new IntervalMetrics();
+    other.incrBy("interval.test.merge1", 10);
+    other.incrBy("interval.test.merge2", 5);
+    metrics.merge(other);
+    Assert.assertEquals(20, metrics.getCounterValue("interval.test.merge1"));
+    Assert.assertEquals(5, metrics.getCounterValue("interval.test.merge2"));
+    Assert.assertTrue(metrics.getRates().isEmpty());
+    metrics.computeRates(2000L, TimeUnit.SECONDS);
+    Assert.assertEquals(10, metrics.getRateValue("interval.test.merge1"), 0.001);
+    Assert.assertEquals(2.5, metrics.getRateValue("interval.test.merge2"), 0.001);
+  }
+
+  @Test
+  public void testMergeAll() {
+    IntervalMetrics first = new IntervalMetrics();
+    first.incrBy("interval.test.mergeAll1", 3);
+    IntervalMetrics second = new IntervalMetrics();
+    second.incrBy("interval.test.mergeAll1", 4);
+    second.incrBy("interval.test.mergeAll2", 1);
+    IntervalMetrics merged = IntervalMetrics.mergeAll(Arrays.asList(first, second));
+    Assert.assertEquals(7, merged.getCounterValue("interval.test.mergeAll1"));
+    Assert.assertEquals(1, merged.getCounterValue("interval.test.mergeAll2"));
+    Assert.assertEquals(IntervalMetrics.mergeAll(Arrays.asList(second, first)).getCounters(), merged.getCounters());
+    // The merged metrics are left untouched
+    Assert.assertEquals(3, first.getCounterValue("interval.test.mergeAll1"));
+    Assert.assertTrue(IntervalMetrics.mergeAll(Collections.emptyList()).getCounters().isEmpty());
+  }
+
+  @Test
+  public void testGrowWithNewIds() {
+    IntervalMetrics metrics = new IntervalMetrics();
+    for (int i = 0; i < 500; i++) {
+      metrics.incrBy("interval.test.grow" + i, i);
+    }
+    for (int i = 0; i < 500; i++) {
+      Assert.assertEquals(i, metrics.getCounterValue("interval.test.grow" + i));
+    }
+    Assert.assertEquals(500, metrics.getCounters().size());
+  }
+
+  @Test
+  public void testCompact() {
+    for (int i = 0; i < 5000; i++) {
+      MetricKeyRegistry.intern("interval.test.compact" + i);
+    }
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("interval.test.compact10", 4);
+    metrics.incrBy("interval.test.compact4000", 6);
+    metrics.computeRates(2000L, TimeUnit.SECONDS);
+    Assert.assertTrue(metrics.getMemoryFootprint() > 8L * 5000);
+    // A retained interval only holds the metrics it saw, whatever the number of registered metrics
+    metrics.compact();
+    Assert.assertTrue(metrics.getMemoryFootprint() < 256);
+    Assert.assertEquals(4, metrics.getCounterValue("interval.test.compact10"));
+    Assert.assertEquals(3, metrics.getRateValue("interval.test.compact4000"), 0.001);
+    Assert.assertEquals(0, metrics.getCounterValue("interval.test.compact11"));
+    Assert.assertEquals(2, metrics.getCounters().size());
+    Assert.assertEquals(2, metrics.getRates().size());
+    Assert.assertTrue(metrics.hasCounter(MetricKeyRegistry.find("interval.test.compact4000")));
+    IntervalMetrics merged = new IntervalMetrics();
+    merged.merge(metrics);
+    Assert.assertEquals(6, merged.getCounterValue("interval.test.compact4000"));
+    // Still updatable once compacted
+    metrics.incrBy("interval.test.compact20", 1);
+    metrics.incrBy("interval.test.compact10", 1);
+    Assert.assertEquals(5, metrics.getCounterValue("interval.test.compact10"));
+    Assert.assertEquals(6, metrics.getCounterValue("interval.test.compact4000"));
+    Assert.assertEquals(3, metrics.getCounters().size());
+  }
+}
@@ -0,0 +1,67 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapMetricsStoreTest extends AbstractMetricsStoreTest {
+
+  private static final int SLAB_SIZE = 1024;
+
+  @Override
+  protected MetricsStore newStore() {
+    return new OffHeapMetricsStore(100000L, SLAB_SIZE, 1 << 20);
+  }
+
+  @Test
+  public void testSlabUsage() {
+    OffHeapMetricsStore store = new OffHeapMetricsStore(10000L, SLAB_SIZE, 1 << 20);
+    for (long start = 10; start < 500; start += 10) {
+      Assert.assertTrue(store.add(interval(start, 4)));
+    }
+    // 76 bytes per record, 13 records per slab
+    Assert.assertEquals(49, store.getIntervalCount());
+    Assert.assertEquals(4, store.getSlabCount());
+    Assert.assertEquals(4L * SLAB_SIZE, store.getOffHeapMemoryUsage());
+    Assert.assertTrue(store.getMemoryUsage() > store.getOffHeapMemoryUsage());
+  }
+
+  @Test
+  public void testRetentionReusesSlabs() {
+    OffHeapMetricsStore store = new OffHeapMetricsStore(200L, SLAB_SIZE, 1 << 20);
+    for (long start = 10; start < 10000; start += 10) {
+      store.add(interval(start, 4));
+    }
+    // The expired slabs are released and reused: 20 intervals retained over 2 to 3 slabs
+    Assert.assertTrue(store.getSlabCount() <= 3);
+    Assert.assertTrue(store.getOffHeapMemoryUsage() <= 4L * SLAB_SIZE);
+    Assert.assertTrue(store.getIntervalCount() >= 20);
+    Assert.assertEquals(400, store.getAverageRateValue("store:hits", 10000L, 200L), 0.001);
+    Assert.assertEquals(4L * 999, store.getTotalSumCounterValue("store:hits"));
+  }
+
+  @Test
+  public void testMaxBytes() {
+    OffHeapMetricsStore store = new OffHeapMetricsStore(100000L, SLAB_SIZE, 2 * SLAB_SIZE);
+    for (long start = 10; start < 1000; start += 10) {
+      Assert.assertTrue(store.add(interval(start, 4)));
+    }
+    // Bounded to 2 slabs, the oldest intervals being evicted before the retention
+    Assert.assertEquals(2L * SLAB_SIZE, store.getOffHeapMemoryUsage());
+    Assert.assertEquals(2, store.getSlabCount());
+    Assert.assertTrue(store.getIntervalCount() <= 26);
+    Assert.assertEquals(400, store.getAverageRateValue("store:hits", 1000L, 20L), 0.001);
+  }
+
+  @Test
+  public void testIntervalLargerThanSlab() {
+    OffHeapMetricsStore store = new OffHeapMetricsStore(10000L, 64, 1 << 20);
+    Assert.assertFalse(store.add(interval(10L, 1)));
+    Assert.assertNull(store.getLatestMetrics());
+    Assert.assertEquals(0, store.getOffHeapMemoryUsage());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSlabSize() {
+    new OffHeapMetricsStore(10000L, 0, 1 << 20);
+  }
+}
@@ -0,0 +1,118 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+
+/**
+ * Compares the top 5 sections and the error count of a section over a 15 minutes, 1 hour and 1 day window, answered by the section index
+ * and by a scan of the intervals of the window, on one day of 10 seconds intervals holding 10 sections out of 200 each
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.model.metrics.SectionIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SectionIndexBenchmark {
+
+  private static final int INTERVALS = 8640;
+  private static final long INTERVAL_MS = 10000L;
+  private static final int SECTIONS = 200;
+  private static final int SECTIONS_PER_INTERVAL = 10;
+  private static final String SECTION_PREFIX = HttpLogMetrics.COUNTER_SECTION + HttpLogMetrics.DELIMITER;
+
+  @Param({"900000", "3600000", "86400000"})
+  private long windowMs;
+
+  private SectionIndex index;
+  private List<IntervalMetrics> intervals = new ArrayList<>();
+  private long nowMs;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    index = new SectionIndex(SECTION_PREFIX, HttpLogMetrics.DELIMITER, INTERVALS * INTERVAL_MS);
+    Random random = new Random(42);
+    for (int i = 0; i < INTERVALS; i++) {
+      IntervalMetrics metrics = new IntervalMetrics();
+      for (int j = 0; j < SECTIONS_PER_INTERVAL; j++) {
+        // Skewed towards the first sections
+        String prefix = SECTION_PREFIX + "GET/section" + (int) (SECTIONS * Math.pow(random.nextDouble(), 3)) + HttpLogMetrics.DELIMITER;
+        int hits = 1 + random.nextInt(50);
+        metrics.incrBy(prefix + HttpLogMetrics.COUNTER_HITS, hits);
+        metrics.incrBy(prefix + HttpLogMetrics.COUNTER_ERRORS, random.nextInt(hits));
+      }
+      metrics.setStartTime(i * INTERVAL_MS);
+      metrics.setEndTime(i * INTERVAL_MS + INTERVAL_MS);
+      index.add(metrics);
+      intervals.add(metrics);
+    }
+    nowMs = INTERVALS * INTERVAL_MS;
+  }
+
+  @Benchmark
+  public List<String> topSectionsIndex() {
+    return index.top(HttpLogMetrics.COUNTER_HITS, nowMs - windowMs, nowMs, 5);
+  }
+
+  @Benchmark
+  public List<String> topSectionsScan() {
+    Map<String, Long> sectionHits = new HashMap<>();
+    String hitsSuffix = HttpLogMetrics.DELIMITER + HttpLogMetrics.COUNTER_HITS;
+    for (IntervalMetrics metrics : window()) {
+      metrics.getCounters().forEach((counter, value) -> {
+        if (counter.startsWith(SECTION_PREFIX) && counter.endsWith(hitsSuffix)) {
+          sectionHits.merge(counter.substring(SECTION_PREFIX.length(), counter.length() - hitsSuffix.length()), value, Long::sum);
+        }
+      });
+    }
+    return sectionHits.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed()).limit(5).map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public long sectionErrorsIndex() {
+    return index.sum("GET/section0", HttpLogMetrics.COUNTER_ERRORS, nowMs - windowMs, nowMs);
+  }
+
+  @Benchmark
+  public long sectionErrorsScan() {
+    long errors = 0;
+    for (IntervalMetrics metrics : window()) {
+      errors += metrics.getCounterValue(SECTION_PREFIX + "GET/section0" + HttpLogMetrics.DELIMITER + HttpLogMetrics.COUNTER_ERRORS);
+    }
+    return errors;
+  }
+
+  private List<IntervalMetrics> window() {
+    return intervals.subList(INTERVALS - (int) (windowMs / INTERVAL_MS), INTERVALS);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SectionIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+}
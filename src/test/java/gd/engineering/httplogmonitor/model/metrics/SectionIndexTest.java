@@ -0,0 +1,96 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SectionIndexTest {
+
+  private static IntervalMetrics interval(long startTime, Object... sectionHits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    for (int i = 0; i < sectionHits.length; i += 2) {
+      metrics.incrBy("section:" + sectionHits[i] + ":hits", (Integer) sectionHits[i + 1]);
+      metrics.incrBy("section:" + sectionHits[i] + ":errors", (Integer) sectionHits[i + 1] / 2);
+    }
+    metrics.incrBy("hits", 1000);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + 10L);
+    return metrics;
+  }
+
+  @Test
+  public void testSectionSums() {
+    SectionIndex index = new SectionIndex("section:", ":", 100000L);
+    index.add(interval(0L, "GET/api", 4));
+    index.add(interval(10L, "GET/api", 6, "POST/api", 10));
+    index.add(interval(20L, "POST/api", 2));
+    index.add(interval(30L, "GET/api", 8));
+    Assert.assertEquals(2, index.getSectionCount());
+    Assert.assertEquals(18, index.sum("GET/api", "hits", 0L, 40L));
+    Assert.assertEquals(14, index.sum("GET/api", "hits", 10L, 40L));
+    Assert.assertEquals(6, index.sum("GET/api", "hits", 5L, 30L));
+    Assert.assertEquals(3, index.sum("GET/api", "errors", 10L, 20L));
+    Assert.assertEquals(12, index.sum("POST/api", "hits", 0L, 100L));
+    Assert.assertEquals(0, index.sum("POST/api", "hits", 30L, 100L));
+    Assert.assertEquals(0, index.sum("GET/api", "successes", 0L, 40L));
+    Assert.assertEquals(0, index.sum("PUT/api", "hits", 0L, 40L));
+    Assert.assertTrue(index.getMemoryUsage() > 0);
+  }
+
+  @Test
+  public void testTopSections() {
+    SectionIndex index = new SectionIndex("section:", ":", 100000L);
+    index.add(interval(0L, "a", 50, "b", 1));
+    index.add(interval(10L, "b", 2, "c", 3));
+    index.add(interval(20L, "c", 4, "d", 4));
+    index.add(interval(30L, "e", 1));
+    Assert.assertEquals(Arrays.asList("a", "c", "d"), index.top("hits", 0L, 40L, 3));
+    Assert.assertEquals(Arrays.asList("c", "d", "b", "e"), index.top("hits", 10L, 40L, 10));
+    // Ties ranked by name
+    Assert.assertEquals(Arrays.asList("c", "d"), index.top("hits", 20L, 30L, 5));
+    Assert.assertEquals(Collections.singletonList("e"), index.top("hits", 30L, 40L, 5));
+    Assert.assertEquals(Collections.emptyList(), index.top("hits", 40L, 50L, 5));
+    Assert.assertEquals(Collections.emptyList(), index.top("hits", 0L, 40L, 0));
+  }
+
+  @Test
+  public void testRetention() {
+    SectionIndex index = new SectionIndex("section:", ":", 100L);
+    index.add(interval(0L, "old", 5));
+    for (long start = 10; start < 10000; start += 10) {
+      index.add(interval(start, "recent", (int) (start / 10 % 3)));
+    }
+    // Not seen during the retention
+    Assert.assertEquals(1, index.getSectionCount());
+    Assert.assertEquals(0, index.sum("old", "hits", 0L, 10000L));
+    long expected = 0;
+    for (long start = 9900; start < 10000; start += 10) {
+      expected += start / 10 % 3;
+    }
+    Assert.assertEquals(expected, index.sum("recent", "hits", 9900L, 10000L));
+    Assert.assertEquals(Collections.singletonList("recent"), index.top("hits", 9900L, 10000L, 5));
+  }
+
+  @Test
+  public void testAddOrder() {
+    SectionIndex index = new SectionIndex("section:", ":", 100000L);
+    Assert.assertTrue(index.add(interval(10L, "a", 1)));
+    Assert.assertFalse(index.add(interval(10L, "a", 5)));
+    Assert.assertFalse(index.add(interval(0L, "a", 5)));
+    Assert.assertEquals(1, index.sum("a", "hits", 0L, 20L));
+  }
+
+  @Test
+  public void testNewCounterOfKnownSection() {
+    SectionIndex index = new SectionIndex("section:", ":", 100000L);
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("section:a:hits", 3);
+    metrics.setStartTime(0L);
+    index.add(metrics);
+    index.add(interval(10L, "a", 4));
+    Assert.assertEquals(2, index.sum("a", "errors", 0L, 20L));
+    Assert.assertEquals(7, index.sum("a", "hits", 0L, 20L));
+  }
+}
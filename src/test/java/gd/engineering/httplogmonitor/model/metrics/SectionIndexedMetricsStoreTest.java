@@ -0,0 +1,48 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SectionIndexedMetricsStoreTest {
+
+  private static IntervalMetrics interval(long startTime, long apiHits, long adminHits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("section:GET/api:hits", apiHits);
+    metrics.incrBy("section:GET/admin:hits", adminHits);
+    metrics.incrBy("hits", apiHits + adminHits);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + 10L);
+    return metrics;
+  }
+
+  @Test
+  public void testSectionQueries() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    SectionIndexedMetricsStore indexedStore = new SectionIndexedMetricsStore(store, new SectionIndex("section:", ":", 100000L));
+    for (long start = 10; start < 200; start += 10) {
+      Assert.assertTrue(indexedStore.add(interval(start, start < 100 ? 5 : 1, 2)));
+    }
+    Assert.assertEquals(Arrays.asList("GET/api", "GET/admin"), indexedStore.getTopSections("hits", 100L, 90L, 2));
+    Assert.assertEquals(Arrays.asList("GET/admin", "GET/api"), indexedStore.getTopSections("hits", 200L, 100L, 2));
+    Assert.assertEquals(10, indexedStore.getSumSectionCounterValue("GET/api", "hits", 200L, 100L));
+    // The other queries are answered by the store
+    Assert.assertEquals(store.getSumCounterValue("hits", 200L, 100L), indexedStore.getSumCounterValue("hits", 200L, 100L));
+    Assert.assertEquals(store.getTotalSumCounterValue("hits"), indexedStore.getTotalSumCounterValue("hits"));
+    Assert.assertEquals(19, indexedStore.getIntervalCount());
+    Assert.assertTrue(indexedStore.getMemoryUsage() > store.getMemoryUsage());
+    // Refused by the store, not indexed
+    Assert.assertFalse(indexedStore.add(interval(0L, 100, 100)));
+    Assert.assertEquals(0, indexedStore.getSumSectionCounterValue("GET/api", "hits", 10L, 10L));
+  }
+
+  @Test
+  public void testNoSectionHistory() {
+    InMemoryMetricsStore store = new InMemoryMetricsStore();
+    store.add(interval(10L, 5, 2));
+    Assert.assertEquals(Collections.emptyList(), store.getTopSections("hits", 20L, 10L, 5));
+    Assert.assertEquals(0, store.getSumSectionCounterValue("GET/api", "hits", 20L, 10L));
+  }
+}
@@ -0,0 +1,129 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentMetricsStoreTest extends AbstractMetricsStoreTest {
+
+  private static final int SEGMENT_SIZE = 1 << 16;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected MetricsStore newStore() throws IOException {
+    return new SegmentMetricsStore(folder.newFolder().toPath(), 1000L, 100000L, SEGMENT_SIZE);
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    Path directory = folder.newFolder().toPath();
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      for (long start = 10; start < 300; start += 10) {
+        store.add(interval(start, 4));
+      }
+    }
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      Assert.assertEquals(29, store.getIntervalCount());
+      Assert.assertEquals(3, store.getSegmentCount());
+      IntervalMetrics latest = store.getLatestMetrics();
+      Assert.assertEquals(290L, latest.getStartTime());
+      Assert.assertEquals(300L, latest.getEndTime());
+      Assert.assertEquals(4, latest.getCounterValue("store:hits"));
+      Assert.assertEquals(400, latest.getRateValue("store:hits"), 0.001);
+      // The evaluation windows survive the restart, the totals start over
+      Assert.assertEquals(40, store.getSumCounterValue("store:hits", 300L, 100L));
+      Assert.assertEquals(0, store.getTotalSumCounterValue("store:hits"));
+      Assert.assertFalse(store.add(interval(290L, 1)));
+      IntervalMetrics next = interval(300L, 6);
+      next.incrBy("segment:new", 1);
+      Assert.assertTrue(store.add(next));
+    }
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      Assert.assertEquals(1, store.getLatestMetrics().getCounterValue("segment:new"));
+      Assert.assertEquals(46, store.getSumCounterValue("store:hits", 310L, 110L));
+    }
+  }
+
+  @Test
+  public void testNameTooLong() throws IOException {
+    Path directory = folder.newFolder().toPath();
+    StringBuilder longName = new StringBuilder("section:GET/");
+    while (longName.length() <= SegmentMetricsStore.MAX_NAME_BYTES) {
+      longName.append("very/long/path/");
+    }
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      IntervalMetrics metrics = interval(10L, 4);
+      metrics.incrBy(longName + ":hits", 1);
+      Assert.assertTrue(store.add(metrics));
+      metrics = interval(20L, 6);
+      metrics.incrBy(longName + ":hits", 1);
+      metrics.incrBy("segment:after", 3);
+      Assert.assertTrue(store.add(metrics));
+      Assert.assertEquals(2, store.getSkippedMetricCount());
+      Assert.assertEquals(0, store.getSumCounterValue(longName + ":hits", 30L, 20L));
+    }
+    // The dictionary entries following the skipped name are read back
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      Assert.assertEquals(10, store.getSumCounterValue("store:hits", 30L, 20L));
+      Assert.assertEquals(3, store.getLatestMetrics().getCounterValue("segment:after"));
+      Assert.assertEquals(0, store.getLatestMetrics().getCounterValue(longName + ":hits"));
+    }
+  }
+
+  @Test
+  public void testTornRecord() throws IOException {
+    Path directory = folder.newFolder().toPath();
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      store.add(interval(10L, 4));
+    }
+    // A record written without its length, as left by a crash
+    Path segmentFile = directory.resolve(10L + MetricsSegment.SUFFIX);
+    byte[] bytes = Files.readAllBytes(segmentFile);
+    int recordLength = MetricsSegment.recordSize(2, 2);
+    System.arraycopy(bytes, 4, bytes, recordLength + 4, recordLength - 4);
+    Files.write(segmentFile, bytes);
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 10000L, SEGMENT_SIZE)) {
+      Assert.assertEquals(1, store.getIntervalCount());
+      Assert.assertTrue(store.add(interval(20L, 4)));
+      Assert.assertEquals(8, store.getSumCounterValue("store:hits", 30L, 20L));
+    }
+  }
+
+  @Test
+  public void testRetention() throws IOException {
+    Path directory = folder.newFolder().toPath();
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100L, 200L, SEGMENT_SIZE)) {
+      for (long start = 0; start < 1000; start += 10) {
+        store.add(interval(start, 1));
+      }
+      // The current segment and the ones ending within the retention
+      Assert.assertEquals(3, store.getSegmentCount());
+      Assert.assertEquals(30, store.getIntervalCount());
+      Assert.assertEquals(100, store.getAverageRateValue("store:hits", 1000L, 300L), 0.001);
+      Assert.assertEquals(0, store.getAverageRateValue("store:hits", 1000L, 310L), 0.001);
+      try (Stream<Path> files = Files.list(directory)) {
+        Assert.assertEquals(3, files.filter(file -> file.toString().endsWith(MetricsSegment.SUFFIX)).count());
+      }
+    }
+  }
+
+  @Test
+  public void testFullSegment() throws IOException {
+    Path directory = folder.newFolder().toPath();
+    try (SegmentMetricsStore store = new SegmentMetricsStore(directory, 100000L, 1000000L, MetricsSegment.recordSize(2, 2) * 3)) {
+      for (long start = 0; start < 100; start += 10) {
+        store.add(interval(start, 1));
+      }
+      Assert.assertEquals(4, store.getSegmentCount());
+      Assert.assertEquals(10, store.getSumCounterValue("store:hits", 100L, 100L));
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package gd.engineering.httplogmonitor.model.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TieredMetricsStoreTest {
+
+  private static IntervalMetrics interval(long startTime, long hits) {
+    IntervalMetrics metrics = new IntervalMetrics();
+    metrics.incrBy("tiered", hits);
+    metrics.setStartTime(startTime);
+    metrics.setEndTime(startTime + 10000L);
+    metrics.computeRates(10000L, TimeUnit.SECONDS);
+    return metrics;
+  }
+
+  private static long hits(long startTime) {
+    return startTime / 10000L % 7;
+  }
+
+  @Test
+  public void testRollup() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L, 360000L}, new long[]{60000L, 360000L, 3600000L}, "tiered");
+    for (long start = 0; start < 720000L; start += 10000L) {
+      Assert.assertTrue(store.add(interval(start, hits(start))));
+    }
+    // 6 retained intervals of 10 seconds, 6 of 1 minute, 2 of 6 minutes
+    Assert.assertEquals(6, store.getTier(0).getIntervalCount());
+    Assert.assertEquals(6, store.getTier(1).getIntervalCount());
+    Assert.assertEquals(2, store.getTier(2).getIntervalCount());
+    IntervalMetrics minute = store.getTier(1).getLatestMetrics();
+    Assert.assertEquals(660000L, minute.getStartTime());
+    Assert.assertEquals(720000L, minute.getEndTime());
+    long minuteHits = 0;
+    double minRate = Double.MAX_VALUE;
+    double maxRate = 0;
+    for (long start = 660000L; start < 720000L; start += 10000L) {
+      minuteHits += hits(start);
+      minRate = Math.min(minRate, hits(start) / 10.);
+      maxRate = Math.max(maxRate, hits(start) / 10.);
+    }
+    Assert.assertEquals(minuteHits, minute.getCounterValue("tiered"));
+    Assert.assertEquals(minuteHits / 60., minute.getRateValue("tiered"), 0.001);
+    Assert.assertEquals(minRate, minute.getRateValue(TieredMetricsStore.getMinRateName("tiered")), 0.001);
+    Assert.assertEquals(maxRate, minute.getRateValue(TieredMetricsStore.getMaxRateName("tiered")), 0.001);
+    // The extremes of the coarser tier are the extremes of the flushed rates, not of the minute averages
+    IntervalMetrics sixMinutes = store.getTier(2).getLatestMetrics();
+    Assert.assertEquals(0, sixMinutes.getRateValue(TieredMetricsStore.getMinRateName("tiered")), 0.001);
+    Assert.assertEquals(0.6, sixMinutes.getRateValue(TieredMetricsStore.getMaxRateName("tiered")), 0.001);
+  }
+
+  @Test
+  public void testWindowAcrossTiers() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L, 360000L}, new long[]{60000L, 600000L, 3600000L}, "tiered");
+    for (long start = 0; start < 750000L; start += 10000L) {
+      store.add(interval(start, hits(start)));
+    }
+    // From 3 minutes 20 to 12 minutes 30: the 6 minutes interval from 6 to 12, the minutes from 4 to 6, then the flushed intervals from 12
+    long lowerBound = 200000L;
+    long upperBound = 750000L;
+    long expected = 0;
+    double expectedRates = 0;
+    for (long start = 240000L; start < upperBound; start += 10000L) {
+      expected += hits(start);
+      expectedRates += hits(start) / 10.;
+    }
+    // The edge from 3 minutes 20 to 4 minutes is older than the retention of the flushed intervals and of the minutes
+    Assert.assertEquals(expected, store.getSumCounterValue("tiered", upperBound, upperBound - lowerBound));
+    Assert.assertEquals(expected / 51., store.getAverageCounterValue("tiered", upperBound, upperBound - lowerBound), 0.001);
+    Assert.assertEquals(expectedRates / 51., store.getAverageRateValue("tiered", upperBound, upperBound - lowerBound), 0.001);
+    // Recent window within the flushed intervals
+    Assert.assertEquals(hits(740000L) + hits(730000L), store.getSumCounterValue("tiered", upperBound, 20000L));
+  }
+
+  @Test
+  public void testGappedRollups() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L, 3600000L}, new long[]{60000L, 3600000L, 86400000L}, "tiered");
+    // No traffic between the two intervals, e.g a backfill or skipped empty windows
+    store.add(interval(600000L, 60));
+    store.add(interval(900000L, 60));
+    store.add(interval(930000L, 60));
+    // The first minute is closed by the gap at its own boundary, the next one is aligned on the minute of the interval
+    IntervalMetrics minute = store.getTier(1).getLatestMetrics();
+    Assert.assertEquals(1, store.getTier(1).getIntervalCount());
+    Assert.assertEquals(600000L, minute.getStartTime());
+    Assert.assertEquals(660000L, minute.getEndTime());
+    Assert.assertEquals(1, minute.getCounterValue(TieredMetricsStore.INTERVALS_COUNTER));
+    Assert.assertEquals(6, minute.getRateValue("tiered"), 0.001);
+    Assert.assertEquals(60, store.getSumCounterValue("tiered", 660000L, 60000L));
+    Assert.assertEquals(6, store.getAverageRateValue("tiered", 660000L, 60000L), 0.001);
+    store.add(interval(960000L, 60));
+    minute = store.getTier(1).getLatestMetrics();
+    Assert.assertEquals(900000L, minute.getStartTime());
+    Assert.assertEquals(960000L, minute.getEndTime());
+    Assert.assertEquals(120, minute.getCounterValue("tiered"));
+  }
+
+  @Test
+  public void testPartialRollupAverage() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L, 3600000L}, new long[]{600000L, 3600000L, 86400000L}, "tiered");
+    for (long start = 640000L; start < 960000L; start += 10000L) {
+      store.add(interval(start, 60));
+    }
+    // The first minute only merged 2 flushed intervals, it accounts for 2 intervals and not 6
+    IntervalMetrics firstMinute = store.getTier(1).get(0);
+    Assert.assertEquals(600000L, firstMinute.getStartTime());
+    Assert.assertEquals(2, firstMinute.getCounterValue(TieredMetricsStore.INTERVALS_COUNTER));
+    Assert.assertEquals(1560, store.getSumCounterValue("tiered", 900000L, 260000L));
+    Assert.assertEquals(6, store.getAverageRateValue("tiered", 900000L, 260000L), 0.001);
+    Assert.assertEquals(60, store.getAverageCounterValue("tiered", 900000L, 260000L), 0.001);
+    Assert.assertEquals(1560, store.getSumCounterValue("tiered", 900000L, 300000L));
+    Assert.assertEquals(6, store.getAverageRateValue("tiered", 900000L, 300000L), 0.001);
+  }
+
+  @Test
+  public void testWindowBeforeHistory() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L}, new long[]{60000L, 360000L}, "tiered");
+    store.add(interval(60000L, 3));
+    Assert.assertEquals(0, store.getSumCounterValue("tiered", 70000L, 20000L));
+    Assert.assertEquals(3, store.getSumCounterValue("tiered", 70000L, 10000L));
+    Assert.assertEquals(0, new TieredMetricsStore(new long[]{10000L}, new long[]{60000L}).getAverageRateValue("tiered", 1L, 1L), 0.001);
+  }
+
+  @Test
+  public void testAddOrder() {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10000L, 60000L}, new long[]{60000L, 360000L}, "tiered");
+    Assert.assertTrue(store.add(interval(10000L, 1)));
+    Assert.assertFalse(store.add(interval(0L, 1)));
+    Assert.assertEquals(1, store.getIntervalCount());
+    Assert.assertEquals(10000L, store.getLatestMetrics().getStartTime());
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    TieredMetricsStore store = new TieredMetricsStore(new long[]{10L, 60L}, new long[]{640L, 6000L}, "stress");
+    int count = 200_000;
+    Thread writer = new Thread(() -> {
+      for (int i = 1; i <= count; i++) {
+        IntervalMetrics metrics = new IntervalMetrics();
+        metrics.incrBy("stress", i);
+        metrics.setStartTime(i * 10L);
+        metrics.setEndTime(i * 10L + 10L);
+        // i per 10 milliseconds, as the rollups compute it
+        metrics.computeRates(10L, TimeUnit.SECONDS);
+        store.add(metrics);
+      }
+    });
+    AtomicReference<String> error = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int reader = 0; reader < 3; reader++) {
+      readers.add(new Thread(() -> {
+        while (writer.isAlive()) {
+          IntervalMetrics latest = store.getLatestMetrics();
+          if (latest == null) {
+            continue;
+          }
+          // A window aligned on the rollups has the same sums whether it is read from the flushed intervals or from the rollup,
+          // unless it was evicted meanwhile
+          long nowMs = latest.getStartTime() - latest.getStartTime() % 60L;
+          long first = (nowMs - 60L) / 10L;
+          double average = store.getAverageRateValue("stress", nowMs, 60L);
+          if (average != 0 && Math.abs(average - (first + 2.5) * 100) > 0.001) {
+            error.compareAndSet(null, "expected average " + (first + 2.5) * 100 + " but was " + average);
+          }
+          long sum = store.getSumCounterValue("stress", nowMs, 60L);
+          if (sum != 0 && sum != 6 * first + 15) {
+            error.compareAndSet(null, "expected sum " + (6 * first + 15) + " but was " + sum);
+          }
+        }
+      }));
+    }
+    readers.forEach(Thread::start);
+    writer.start();
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assert.assertNull(error.get(), error.get());
+    Assert.assertEquals((count - 4.5) * 100, store.getAverageRateValue("stress", count * 10L + 10L, 100L), 0.001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTierNotMultiple() {
+    new TieredMetricsStore(new long[]{10000L, 15000L}, new long[]{60000L, 60000L});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingRetention() {
+    new TieredMetricsStore(new long[]{10000L, 60000L}, new long[]{60000L});
+  }
+}
@@ -0,0 +1,29 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+public class BlockingLogLineQueueTest {
+
+  @Test
+  public void testClaimPublishDrain() throws InterruptedException {
+    BlockingLogLineQueue queue = new BlockingLogLineQueue(2);
+    HttpLogLine claimed = queue.claim();
+    Assert.assertSame(claimed, queue.claim());
+    claimed.setStatusCode(200);
+    queue.publish();
+    queue.claim().setStatusCode(404);
+    queue.publish();
+    Assert.assertNull(queue.claim());
+    List<Integer> statusCodes = new ArrayList<>();
+    Assert.assertEquals(2, queue.drain(logLine -> statusCodes.add(logLine.getStatusCode()), 0L));
+    Assert.assertEquals(Arrays.asList(200, 404), statusCodes);
+    Assert.assertEquals(0, queue.drain(logLine -> Assert.fail(), 1L));
+  }
+}
@@ -0,0 +1,49 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FanInLogLineQueueTest {
+
+  @Test
+  public void testDrainAllQueues() throws InterruptedException {
+    SpscLogLineQueue first = new SpscLogLineQueue(4, QueueWaitStrategy.PARK);
+    BlockingLogLineQueue second = new BlockingLogLineQueue(4);
+    FanInLogLineQueue queue = new FanInLogLineQueue(Arrays.asList(first, second), QueueWaitStrategy.PARK);
+    Assert.assertEquals(8, queue.capacity());
+    first.claim().setStatusCode(200);
+    first.publish();
+    second.claim().setStatusCode(404);
+    second.publish();
+    first.claim().setStatusCode(201);
+    first.publish();
+    List<Integer> statusCodes = new ArrayList<>();
+    Assert.assertEquals(3, queue.drain(logLine -> statusCodes.add(logLine.getStatusCode()), 0L));
+    // Each queue in order
+    Assert.assertEquals(Arrays.asList(200, 201, 404), statusCodes);
+    Assert.assertEquals(0, queue.drain(logLine -> Assert.fail(), 1L));
+  }
+
+  @Test
+  public void testDrainWaitsForAnyQueue() throws InterruptedException {
+    SpscLogLineQueue first = new SpscLogLineQueue(4, QueueWaitStrategy.PARK);
+    SpscLogLineQueue second = new SpscLogLineQueue(4, QueueWaitStrategy.PARK);
+    FanInLogLineQueue queue = new FanInLogLineQueue(Arrays.asList(first, second), QueueWaitStrategy.PARK);
+    Thread producer = new Thread(() -> {
+      second.claim().setStatusCode(500);
+      second.publish();
+    });
+    producer.start();
+    List<Integer> statusCodes = new ArrayList<>();
+    int drained = 0;
+    while (drained == 0) {
+      drained = queue.drain(logLine -> statusCodes.add(logLine.getStatusCode()), 1000L);
+    }
+    producer.join();
+    Assert.assertEquals(Arrays.asList(500), statusCodes);
+  }
+}
@@ -0,0 +1,92 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Compares the hand-off throughput between the tailer thread (producer) and the aggregator thread (consumer)
+ * of the {@link BlockingLogLineQueue} and the {@link SpscLogLineQueue}.
+ * The published and consumed counters are the log lines handed off per second, the failed claims on a full queue are counted apart
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.queue.LogLineQueueBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogLineQueueBenchmark {
+
+  private static final int CAPACITY = 8192;
+
+  @Param({"blocking", "spsc"})
+  private String queueType;
+
+  private LogLineQueue queue;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    queue = "spsc".equals(queueType) ? new SpscLogLineQueue(CAPACITY, QueueWaitStrategy.YIELD) : new BlockingLogLineQueue(CAPACITY);
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class ProducerCounters {
+    public long published;
+    public long queueFull;
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class ConsumerCounters {
+    public long consumed;
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public void produce(ProducerCounters counters) {
+    HttpLogLine logLine = queue.claim();
+    if (logLine == null) {
+      counters.queueFull++;
+      return;
+    }
+    logLine.setStatusCode(200);
+    logLine.setRequestSize(1234);
+    queue.publish();
+    counters.published++;
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public void consume(ConsumerCounters counters, Blackhole blackhole) throws InterruptedException {
+    counters.consumed += queue.drain(logLine -> blackhole.consume(logLine.getRequestSize()), 0L);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LogLineQueueBenchmark.class.getSimpleName()).build()).run();
+  }
+}
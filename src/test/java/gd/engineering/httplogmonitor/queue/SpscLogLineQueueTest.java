@@ -0,0 +1,107 @@
+package gd.engineering.httplogmonitor.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+public class SpscLogLineQueueTest {
+
+  @Test
+  public void testCapacityRoundedUpToPowerOfTwo() {
+    Assert.assertEquals(8, new SpscLogLineQueue(5, QueueWaitStrategy.PARK).capacity());
+    Assert.assertEquals(8, new SpscLogLineQueue(8, QueueWaitStrategy.PARK).capacity());
+    Assert.assertEquals(1, new SpscLogLineQueue(1, QueueWaitStrategy.PARK).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new SpscLogLineQueue(0, QueueWaitStrategy.PARK);
+  }
+
+  @Test
+  public void testClaimPublishDrain() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(4, QueueWaitStrategy.PARK);
+    for (int i = 0; i < 4; i++) {
+      queue.claim().setStatusCode(200 + i);
+      queue.publish();
+    }
+    Assert.assertNull(queue.claim());
+    List<Integer> statusCodes = new ArrayList<>();
+    Assert.assertEquals(4, queue.drain(logLine -> statusCodes.add(logLine.getStatusCode()), 0L));
+    Assert.assertEquals(Arrays.asList(200, 201, 202, 203), statusCodes);
+    Assert.assertNotNull(queue.claim());
+  }
+
+  @Test
+  public void testClaimWithoutPublishReusesTheSlot() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(4, QueueWaitStrategy.PARK);
+    HttpLogLine claimed = queue.claim();
+    Assert.assertSame(claimed, queue.claim());
+    Assert.assertEquals(0, queue.drain(logLine -> Assert.fail(), 0L));
+  }
+
+  @Test
+  public void testSlotsAreReused() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(2, QueueWaitStrategy.PARK);
+    HttpLogLine first = queue.claim();
+    queue.publish();
+    queue.drain(logLine -> {
+    }, 0L);
+    queue.claim();
+    queue.publish();
+    Assert.assertSame(first, queue.claim());
+  }
+
+  @Test
+  public void testDrainTimeout() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(2, QueueWaitStrategy.PARK);
+    long start = System.nanoTime();
+    Assert.assertEquals(0, queue.drain(logLine -> {
+    }, 20L));
+    Assert.assertTrue(System.nanoTime() - start >= 20_000_000L);
+  }
+
+  @Test
+  public void testConcurrentProducerConsumer() throws InterruptedException {
+    for (QueueWaitStrategy waitStrategy : QueueWaitStrategy.values()) {
+      SpscLogLineQueue queue = new SpscLogLineQueue(64, waitStrategy);
+      int count = 200_000;
+      Thread producer = new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          HttpLogLine logLine;
+          while ((logLine = queue.claim()) == null) {
+            Thread.yield();
+          }
+          logLine.setRequestSize(i);
+          queue.publish();
+        }
+      });
+      producer.start();
+      AtomicReference<String> error = new AtomicReference<>();
+      int[] expected = {0};
+      while (expected[0] < count) {
+        queue.drain(logLine -> {
+          if (logLine.getRequestSize() != expected[0]) {
+            error.compareAndSet(null, "expected " + expected[0] + " but was " + logLine.getRequestSize());
+          }
+          expected[0]++;
+        }, 10L);
+      }
+      producer.join();
+      Assert.assertNull(waitStrategy + ": " + error.get(), error.get());
+    }
+  }
+
+  @Test(expected = InterruptedException.class)
+  public void testDrainInterrupted() throws InterruptedException {
+    Thread.currentThread().interrupt();
+    new SpscLogLineQueue(2, QueueWaitStrategy.SPIN).drain(logLine -> {
+    }, 1000L);
+  }
+}
@@ -1,5 +1,6 @@
 package gd.engineering.httplogmonitor.reporter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,15 +14,15 @@ public class HttpSectionConsoleReporterTest {
 
   @Test
   public void testGetSortedSectionsByHitsValid() {
-    Map<String, Integer> counters = new HashMap<>();
-    counters.put("hits", 30);
-    counters.put("section:POST/api1:errors", 5);
-    counters.put("section:POST/api1:hits", 10);
-    counters.put("section:POST/api2:hits", 5);
-    counters.put("section:GET/api3:hits", 1);
-    counters.put("section:PUT/api4:hits", 20);
-    counters.put("section:GET/api5:hits", 50);
-    counters.put("section:GET/api5:successes", 42);
+    Map<String, Long> counters = new HashMap<>();
+    counters.put("hits", 30L);
+    counters.put("section:POST/api1:errors", 5L);
+    counters.put("section:POST/api1:hits", 10L);
+    counters.put("section:POST/api2:hits", 5L);
+    counters.put("section:GET/api3:hits", 1L);
+    counters.put("section:PUT/api4:hits", 20L);
+    counters.put("section:GET/api5:hits", 50L);
+    counters.put("section:GET/api5:successes", 42L);
     HttpSectionConsoleReporter reporter = new HttpSectionConsoleReporter(new InMemoryMetricsStore(), 3);
     List<String> result = reporter.getSortedSectionMetricsByHits(counters, 3);
     Assert.assertEquals(3, result.size());
@@ -30,6 +31,34 @@ public class HttpSectionConsoleReporterTest {
     Assert.assertEquals("POST/api1", result.get(2));
   }
 
+  @Test
+  public void testGetSortedFileNamesByHits() {
+    Map<String, Long> counters = new HashMap<>();
+    counters.put("hits", 30L);
+    counters.put("section:POST/api1:hits", 30L);
+    counters.put("file:/var/log/vhost1.log:hits", 10L);
+    counters.put("file:/var/log/vhost1.log:errors", 2L);
+    counters.put("file:/var/log/vhost2.log:hits", 20L);
+    HttpSectionConsoleReporter reporter = new HttpSectionConsoleReporter(new InMemoryMetricsStore(), 3);
+    List<String> result = reporter.getSortedFileNamesByHits(counters);
+    Assert.assertEquals(2, result.size());
+    Assert.assertEquals("/var/log/vhost2.log", result.get(0));
+    Assert.assertEquals("/var/log/vhost1.log", result.get(1));
+    Assert.assertTrue(reporter.getSortedFileNamesByHits(null).isEmpty());
+  }
+
+  @Test
+  public void testGetListenerNames() {
+    Map<String, Double> rates = new HashMap<>();
+    rates.put("hits", 3.0);
+    rates.put("listener:reporter:lag", 12.0);
+    rates.put("listener:reporter:dropped", 0.1);
+    rates.put("listener:alerter:lag", 0.0);
+    HttpSectionConsoleReporter reporter = new HttpSectionConsoleReporter(new InMemoryMetricsStore(), 3);
+    Assert.assertEquals(Arrays.asList("alerter", "reporter"), reporter.getListenerNames(rates));
+    Assert.assertTrue(reporter.getListenerNames(null).isEmpty());
+  }
+
   @Test
   public void testGetSortedSectionsByHitsValidNullEmpty() {
     HttpSectionConsoleReporter reporter = new HttpSectionConsoleReporter(new InMemoryMetricsStore(), 3);
@@ -0,0 +1,47 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BackoffPollingWaitStrategyTest {
+
+  @Test
+  public void testBackoffAndReset() throws InterruptedException {
+    BackoffPollingWaitStrategy strategy = new BackoffPollingWaitStrategy(1L, 5L);
+    Assert.assertEquals(1L, strategy.getCurrentDelayMs());
+    strategy.await(0);
+    Assert.assertEquals(2L, strategy.getCurrentDelayMs());
+    strategy.await(0);
+    Assert.assertEquals(4L, strategy.getCurrentDelayMs());
+    strategy.await(0);
+    Assert.assertEquals(5L, strategy.getCurrentDelayMs());
+    strategy.await(0);
+    Assert.assertEquals(5L, strategy.getCurrentDelayMs());
+    strategy.await(10);
+    Assert.assertEquals(1L, strategy.getCurrentDelayMs());
+  }
+
+  @Test
+  public void testFixedDelay() throws InterruptedException {
+    BackoffPollingWaitStrategy strategy = new BackoffPollingWaitStrategy(2L, 2L);
+    strategy.await(0);
+    strategy.await(0);
+    Assert.assertEquals(2L, strategy.getCurrentDelayMs());
+  }
+
+  @Test
+  public void testNextDelay() {
+    BackoffPollingWaitStrategy strategy = new BackoffPollingWaitStrategy(1L, 3L);
+    Assert.assertEquals(1L, strategy.nextDelayMs(0));
+    Assert.assertEquals(2L, strategy.nextDelayMs(0));
+    Assert.assertEquals(3L, strategy.nextDelayMs(0));
+    Assert.assertEquals(3L, strategy.nextDelayMs(0));
+    Assert.assertEquals(0L, strategy.nextDelayMs(10));
+    Assert.assertEquals(1L, strategy.nextDelayMs(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDelays() {
+    new BackoffPollingWaitStrategy(2L, 1L);
+  }
+}
@@ -0,0 +1,140 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.InvalidLogLineException;
+
+public class FastApacheAccessLogParserTest {
+
+  private ApacheAccessLogParser regexParser = new ApacheAccessLogParser();
+  private FastApacheAccessLogParser parser = new FastApacheAccessLogParser(regexParser);
+
+  @Test
+  public void testParserValidLine() {
+    String validLogLine = "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34";
+    HttpLogLine parsedLog = parser.scan(validLogLine);
+    Assert.assertNotNull(parsedLog);
+    Assert.assertEquals(validLogLine, parsedLog.getOriginalLogLine());
+    Assert.assertEquals("127.0.0.1", parsedLog.getRemoteHost());
+    Assert.assertNull(parsedLog.getRemoteUser());
+    Assert.assertEquals("frank", parsedLog.getUser());
+    Assert.assertEquals("POST /api/user HTTP/1.0", parsedLog.getFullRequest());
+    Assert.assertEquals("POST", parsedLog.getHttpMethod());
+    Assert.assertEquals("/api", parsedLog.getSection());
+    Assert.assertEquals(200, parsedLog.getStatusCode());
+    Assert.assertEquals(34, parsedLog.getRequestSize());
+    Assert.assertEquals("09/May/2018:16:00:42 +0000", parsedLog.getDateTime().format(regexParser.logTimestampFormatter));
+  }
+
+  @Test
+  public void testParserValidLineEmptySize() {
+    String validLogLine = "127.0.0.1 bob frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 -";
+    HttpLogLine parsedLog = parser.scan(validLogLine);
+    Assert.assertNotNull(parsedLog);
+    Assert.assertEquals("127.0.0.1", parsedLog.getRemoteHost());
+    Assert.assertEquals("bob", parsedLog.getRemoteUser());
+    Assert.assertEquals("frank", parsedLog.getUser());
+    Assert.assertEquals(200, parsedLog.getStatusCode());
+    Assert.assertEquals(0, parsedLog.getRequestSize());
+  }
+
+  @Test
+  public void testParserSections() {
+    Assert.assertEquals("/bob", parser.scan(buildLine("GET /bob HTTP/1.0")).getSection());
+    Assert.assertEquals("/bob", parser.scan(buildLine("GET /bob?city=bordeaux&ts=123 HTTP/1.0")).getSection());
+    Assert.assertEquals("/index.html", parser.scan(buildLine("GET /index.html HTTP/1.0")).getSection());
+    Assert.assertEquals("/index.php", parser.scan(buildLine("GET /index.php?where=bordeaux HTTP/1.0")).getSection());
+    Assert.assertEquals("/", parser.scan(buildLine("GET / HTTP/1.0")).getSection());
+  }
+
+  @Test
+  public void testParserSameResultAsRegexParser() {
+    String[] logLines = {
+        "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34",
+        "10.0.12.254 - - [10/Jun/2018:01:02:03 -0700] \"DELETE /users/1?force=true HTTP/1.1\" 404 123456789",
+        "192.168.1.1 alice bob [01/Jan/2019:00:00:00 +0130] \"OPTIONS /health HTTP/2.0\" 503 -"
+    };
+    for (String logLine : logLines) {
+      HttpLogLine expected = regexParser.parse(logLine);
+      HttpLogLine actual = parser.scan(logLine);
+      Assert.assertNotNull(actual);
+      Assert.assertEquals(expected.toString(), actual.toString());
+    }
+  }
+
+  @Test
+  public void testParserFallbackOnRejectedValidLine() {
+    String validLogLine = "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0 \" 200 34";
+    Assert.assertNull(parser.scan(validLogLine));
+    HttpLogLine parsedLog = parser.parse(validLogLine);
+    Assert.assertEquals("/api", parsedLog.getSection());
+    Assert.assertEquals(34, parsedLog.getRequestSize());
+  }
+
+  @Test
+  public void testParserIntoReusedLogLine() {
+    HttpLogLine target = new HttpLogLine();
+    parser.parse("127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34", target);
+    Assert.assertEquals("/api", target.getSection());
+    // Rejected by the fast path, parsed by the fallback parser
+    parser.parse("127.0.0.2 bob - [09/May/2018:16:00:43 +0000] \"GET /report HTTP/1.0 \" 404 -", target);
+    Assert.assertEquals("127.0.0.2", target.getRemoteHost());
+    Assert.assertEquals("bob", target.getRemoteUser());
+    Assert.assertEquals("/report", target.getSection());
+    Assert.assertEquals(404, target.getStatusCode());
+    Assert.assertEquals(0, target.getRequestSize());
+    Assert.assertEquals(regexParser.parse("127.0.0.2 bob - [09/May/2018:16:00:43 +0000] \"GET /report HTTP/1.0 \" 404 -").toString(), target.toString());
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserEmptyLine() {
+    parser.parse("");
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidLine() {
+    parser.parse("- frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34");
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidTimestampFormat() {
+    parser.parse("127.0.0.1 - frank [09/May/2018:16:00:42] \"POST /api/user HTTP/1.0\" 200 34");
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidHttpMethod() {
+    parser.parse(buildLine("BOB /api/user HTTP/1.0"));
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidSection() {
+    parser.parse(buildLine("GET api/user HTTP/1.0"));
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidRequestManyFields() {
+    parser.parse(buildLine("GET GET /bob HTTP/1.0"));
+  }
+
+  @Test(expected = InvalidLogLineException.class)
+  public void testParserInvalidRequestLessFields() {
+    parser.parse(buildLine("/bob HTTP/1.0"));
+  }
+
+  @Test
+  public void testScanRejectsInvalidFields() {
+    Assert.assertNull(parser.scan("192.169.1 - frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 200 34"));
+    Assert.assertNull(parser.scan("1234.169.1.1 - frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 200 34"));
+    Assert.assertNull(parser.scan("127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 4044 34"));
+    Assert.assertNull(parser.scan("127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 200 1-234"));
+    Assert.assertNull(parser.scan("127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 200 "));
+    Assert.assertNull(parser.scan("127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"\" 200 34"));
+    Assert.assertNull(parser.scan("127.0.0.1  frank [09/May/2018:16:00:42 +0000] \"GET /bob HTTP/1.0\" 200 34"));
+  }
+
+  private String buildLine(String request) {
+    return "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"" + request + "\" 200 34";
+  }
+}
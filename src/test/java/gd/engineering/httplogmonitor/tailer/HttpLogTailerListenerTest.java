@@ -0,0 +1,175 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
+
+public class HttpLogTailerListenerTest {
+
+  private static final String VALID_LINE = "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34";
+
+  @Test
+  public void testDropWhenFull() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(2, QueueWaitStrategy.PARK);
+    OverloadCounters counters = new OverloadCounters();
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.DROP, 1, counters);
+    for (int i = 0; i < 5; i++) {
+      listener.handle(VALID_LINE);
+    }
+    List<Integer> weights = drainWeights(queue);
+    Assert.assertEquals(2, weights.size());
+    IntervalMetrics metrics = new IntervalMetrics();
+    counters.flushTo(metrics);
+    Assert.assertEquals(3, metrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+    Assert.assertEquals(0, metrics.getCounterValue(HttpLogMetrics.COUNTER_SAMPLED));
+    counters.flushTo(metrics);
+    Assert.assertEquals(3, metrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+  }
+
+  @Test
+  public void testBlockWhenFull() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1, QueueWaitStrategy.PARK);
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    Thread tailer = new Thread(() -> {
+      for (int i = 0; i < 100; i++) {
+        listener.handle(VALID_LINE);
+      }
+    });
+    tailer.start();
+    int drained = 0;
+    while (drained < 100) {
+      drained += queue.drain(logLine -> Assert.assertEquals(1, logLine.getWeight()), 1000L);
+    }
+    tailer.join();
+    Assert.assertEquals(100, drained);
+  }
+
+  @Test
+  public void testBlockStopsWhenInterrupted() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1, QueueWaitStrategy.PARK);
+    OverloadCounters counters = new OverloadCounters();
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.BLOCK, 1, counters);
+    listener.handle(VALID_LINE);
+    Thread.currentThread().interrupt();
+    listener.handle(VALID_LINE);
+    Assert.assertTrue(Thread.interrupted());
+    IntervalMetrics metrics = new IntervalMetrics();
+    counters.flushTo(metrics);
+    Assert.assertEquals(1, metrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+  }
+
+  @Test
+  public void testSampleWhenFull() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1, QueueWaitStrategy.PARK);
+    OverloadCounters counters = new OverloadCounters();
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.SAMPLE, 4, counters);
+    listener.handle(VALID_LINE);
+    List<Integer> weights = new ArrayList<>();
+    AtomicBoolean produced = new AtomicBoolean();
+    Thread consumer = new Thread(() -> {
+      try {
+        while (queue.drain(logLine -> weights.add(logLine.getWeight()), 100L) > 0 || !produced.get()) {
+          // Drain until the producer is done and the queue is empty
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    // The second line finds the queue full and waits for the consumer, then 1 line in 4 is kept as long as the queue is full
+    consumer.start();
+    for (int i = 0; i < 9; i++) {
+      listener.handle(VALID_LINE);
+    }
+    produced.set(true);
+    consumer.join(5000L);
+    // Depending on when the consumer frees the queue, the last lines sampled out may wait for the next kept line to carry them
+    int publishedWeight = weights.stream().mapToInt(Integer::intValue).sum();
+    Assert.assertTrue(publishedWeight <= 10);
+    Assert.assertTrue(publishedWeight > 10 - 4);
+    IntervalMetrics metrics = new IntervalMetrics();
+    counters.flushTo(metrics);
+    Assert.assertEquals(publishedWeight - weights.size(), metrics.getCounterValue(HttpLogMetrics.COUNTER_SAMPLED));
+    Assert.assertEquals(0, metrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+  }
+
+  @Test
+  public void testSampledOutLinesCarriedByTheNextValidLine() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1, QueueWaitStrategy.PARK);
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.SAMPLE, 2, new OverloadCounters());
+    listener.handle(VALID_LINE);
+    Thread.currentThread().interrupt();
+    // Queue full and interrupted: dropped, but the listener is now sampling
+    listener.handle(VALID_LINE);
+    Thread.interrupted();
+    Assert.assertEquals(1, drainWeights(queue).size());
+    listener.handle(VALID_LINE);
+    listener.handle("invalid line");
+    listener.handle(VALID_LINE);
+    Assert.assertEquals(2, drainWeights(queue).get(0).intValue());
+  }
+
+  @Test
+  public void testSampledOutLinesCarriedBySameSource() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(1, QueueWaitStrategy.PARK);
+    OverloadCounters counters = new OverloadCounters();
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.SAMPLE, 2, counters);
+    listener.handle(Collections.singletonList(VALID_LINE), "a.log");
+    Thread.currentThread().interrupt();
+    // Queue full and interrupted: dropped, but the listener is now sampling
+    listener.handle(Collections.singletonList(VALID_LINE), "a.log");
+    Thread.interrupted();
+    Assert.assertEquals(1, drainWeights(queue).size());
+    // A worker handles the batches of both files: each line sampled out is carried by the next line of its own file
+    listener.handle(Collections.singletonList(VALID_LINE), "a.log");
+    listener.handle(Collections.singletonList(VALID_LINE), "b.log");
+    listener.handle(Collections.singletonList(VALID_LINE), "b.log");
+    List<String> published = new ArrayList<>();
+    queue.drain(logLine -> published.add(logLine.getSource() + ":" + logLine.getWeight()), 0L);
+    listener.handle(Collections.singletonList(VALID_LINE), "a.log");
+    queue.drain(logLine -> published.add(logLine.getSource() + ":" + logLine.getWeight()), 0L);
+    Assert.assertEquals(Arrays.asList("b.log:2", "a.log:2"), published);
+    IntervalMetrics metrics = new IntervalMetrics();
+    counters.flushTo(metrics);
+    Assert.assertEquals(2, metrics.getCounterValue(HttpLogMetrics.COUNTER_SAMPLED));
+  }
+
+  @Test
+  public void testBarrierPublishedBehindLines() throws InterruptedException {
+    SpscLogLineQueue queue = new SpscLogLineQueue(2, QueueWaitStrategy.PARK);
+    HttpLogTailerListener listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.DROP, 1, new OverloadCounters());
+    Runnable barrier = () -> {
+    };
+    listener.handle(VALID_LINE);
+    listener.whenProcessed(barrier);
+    List<Runnable> barriers = new ArrayList<>();
+    queue.drain(logLine -> barriers.add(logLine.getBarrier()), 0L);
+    Assert.assertNull(barriers.get(0));
+    Assert.assertSame(barrier, barriers.get(1));
+    // The slots of the barrier are reused for plain lines
+    listener.handle(VALID_LINE);
+    listener.handle(VALID_LINE);
+    barriers.clear();
+    queue.drain(logLine -> barriers.add(logLine.getBarrier()), 0L);
+    Assert.assertEquals(2, barriers.size());
+    Assert.assertNull(barriers.get(0));
+    Assert.assertNull(barriers.get(1));
+  }
+
+  private List<Integer> drainWeights(SpscLogLineQueue queue) throws InterruptedException {
+    List<Integer> weights = new ArrayList<>();
+    queue.drain(logLine -> weights.add(logLine.getWeight()), 0L);
+    return weights;
+  }
+}
@@ -0,0 +1,76 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineFramerTest {
+
+  @Test
+  public void testFrameCompleteLines() {
+    LineFramer framer = new LineFramer(StandardCharsets.UTF_8, 4);
+    List<String> lines = new ArrayList<>();
+    Assert.assertEquals(3, framer.frame(ByteBuffer.wrap(bytes("first\nsecond\r\n\nfourth")), lines));
+    Assert.assertEquals(Arrays.asList("first", "second", ""), lines);
+    Assert.assertEquals(6, framer.getPendingLength());
+  }
+
+  @Test
+  public void testFrameLineSplitAcrossChunks() {
+    LineFramer framer = new LineFramer(StandardCharsets.UTF_8, 4);
+    List<String> lines = new ArrayList<>();
+    byte[] chunk = bytes("a long first line\nsec");
+    Assert.assertEquals(1, framer.frame(chunk, 0, chunk.length, lines));
+    chunk = bytes("ond line\n");
+    Assert.assertEquals(1, framer.frame(chunk, 0, chunk.length, lines));
+    Assert.assertEquals(Arrays.asList("a long first line", "second line"), lines);
+    Assert.assertEquals(0, framer.getPendingLength());
+  }
+
+  @Test
+  public void testFlushAndReset() {
+    LineFramer framer = new LineFramer(StandardCharsets.UTF_8, 16);
+    List<String> lines = new ArrayList<>();
+    framer.frame(ByteBuffer.wrap(bytes("incomplete")), lines);
+    Assert.assertTrue(lines.isEmpty());
+    Assert.assertEquals(1, framer.flush(lines));
+    Assert.assertEquals(Arrays.asList("incomplete"), lines);
+    Assert.assertEquals(0, framer.flush(lines));
+    framer.frame(ByteBuffer.wrap(bytes("discarded")), lines);
+    framer.reset();
+    framer.frame(ByteBuffer.wrap(bytes("kept\n")), lines);
+    Assert.assertEquals(Arrays.asList("incomplete", "kept"), lines);
+  }
+
+  @Test
+  public void testDiscardLinesTooLong() {
+    LineFramer framer = new LineFramer(StandardCharsets.UTF_8, 4, 8);
+    List<String> lines = new ArrayList<>();
+    Assert.assertEquals(2, framer.frame(ByteBuffer.wrap(bytes("12345678\r\nnine bytes\nkept\ntoo long ")), lines));
+    Assert.assertEquals(Arrays.asList("12345678", "kept"), lines);
+    Assert.assertEquals(1, framer.getMalformedLineCount());
+    // The pending line does not grow past the maximum length, its discarded bytes are still pending for the offsets
+    for (int i = 0; i < 100; i++) {
+      framer.frame(ByteBuffer.wrap(bytes("and longer ")), lines);
+    }
+    Assert.assertEquals(9 + 100 * 11, framer.getPendingLength());
+    Assert.assertEquals(1, framer.frame(ByteBuffer.wrap(bytes("\nnext\n")), lines));
+    Assert.assertEquals(Arrays.asList("12345678", "kept", "next"), lines);
+    Assert.assertEquals(2, framer.getMalformedLineCount());
+    Assert.assertEquals(0, framer.getPendingLength());
+    // A line still too long at the end of the stream is not flushed
+    framer.frame(ByteBuffer.wrap(bytes("unterminated")), lines);
+    Assert.assertEquals(0, framer.flush(lines));
+    Assert.assertEquals(3, framer.getMalformedLineCount());
+    Assert.assertEquals(3, lines.size());
+  }
+
+  private byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,186 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogFileReaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPollFromEnd() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "skipped\n");
+    RecordingListener listener = new RecordingListener();
+    LogFileReader reader = new LogFileReader(logFile, listener, 8, true);
+    Assert.assertEquals(0, reader.poll());
+    append(logFile, "first\nsecond\nthi");
+    Assert.assertEquals(16, reader.poll());
+    Assert.assertEquals(Arrays.asList("first", "second"), listener.lines);
+    Assert.assertEquals(21, reader.getOffset());
+    append(logFile, "rd\n");
+    reader.poll();
+    Assert.assertEquals(Arrays.asList("first", "second", "third"), listener.lines);
+    Assert.assertTrue(listener.batches > 1);
+    reader.close();
+  }
+
+  @Test
+  public void testPollFileNotFound() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    RecordingListener listener = new RecordingListener();
+    LogFileReader reader = new LogFileReader(logFile, listener, 64, true);
+    Assert.assertEquals(0, reader.poll());
+    Assert.assertEquals(1, listener.notFound);
+    append(logFile, "existing\n");
+    reader.poll();
+    append(logFile, "appended\n");
+    reader.poll();
+    Assert.assertEquals(Arrays.asList("appended"), listener.lines);
+    reader.close();
+  }
+
+  @Test
+  public void testPollTruncation() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "");
+    RecordingListener listener = new RecordingListener();
+    LogFileReader reader = new LogFileReader(logFile, listener, 64, true);
+    reader.poll();
+    append(logFile, "first line\nsecond line\n");
+    reader.poll();
+    Files.write(logFile, "new\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+    reader.poll();
+    Assert.assertEquals(1, listener.rotations);
+    Assert.assertEquals(Arrays.asList("first line", "second line", "new"), listener.lines);
+    reader.close();
+  }
+
+  @Test
+  public void testPollRotation() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "");
+    RecordingListener listener = new RecordingListener();
+    LogFileReader reader = new LogFileReader(logFile, listener, 64, true);
+    reader.poll();
+    append(logFile, "first\n");
+    reader.poll();
+    append(logFile, "before rotation\nlast");
+    Files.move(logFile, folder.getRoot().toPath().resolve("access.log.1"));
+    append(logFile, "after rotation\n");
+    reader.poll();
+    Assert.assertEquals(1, listener.rotations);
+    Assert.assertEquals(Arrays.asList("first", "before rotation", "last", "after rotation"), listener.lines);
+    reader.close();
+  }
+
+  @Test
+  public void testOpenFromStart() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "before rotation\n");
+    RecordingListener listener = new RecordingListener();
+    LogFileReader reader = new LogFileReader(logFile, listener, 64, true);
+    reader.openFromStart();
+    // Rotated while the archives are being read
+    append(logFile, "rotated\n");
+    Files.move(logFile, folder.getRoot().toPath().resolve("access.log.1"));
+    append(logFile, "after rotation\n");
+    reader.poll();
+    Assert.assertEquals(Arrays.asList("before rotation", "rotated", "after rotation"), listener.lines);
+    reader.close();
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "");
+    LogFileReader reader = new LogFileReader(logFile, new RecordingListener(), 64, true);
+    reader.poll();
+    append(logFile, "first\nsecond\n");
+    reader.poll();
+    TailerCheckpoint checkpoint = reader.getCheckpoint();
+    Assert.assertEquals(13L, checkpoint.getOffset());
+    Assert.assertEquals(13, checkpoint.getFingerprintLength());
+    reader.close();
+
+    append(logFile, "while down\n");
+    RecordingListener listener = new RecordingListener();
+    reader = new LogFileReader(logFile, listener, 64, true);
+    reader.resumeFrom(checkpoint);
+    reader.poll();
+    Assert.assertEquals(Arrays.asList("while down"), listener.lines);
+    Assert.assertEquals(0, listener.rotations);
+    reader.close();
+  }
+
+  @Test
+  public void testResumeFromCheckpointAcrossRotation() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    append(logFile, "");
+    LogFileReader reader = new LogFileReader(logFile, new RecordingListener(), 64, true);
+    reader.poll();
+    append(logFile, "first\n");
+    reader.poll();
+    TailerCheckpoint checkpoint = reader.getCheckpoint();
+    reader.close();
+
+    append(logFile, "before rotation\n");
+    Files.move(logFile, folder.getRoot().toPath().resolve("access.log.1"));
+    append(logFile, "after rotation\n");
+    RecordingListener listener = new RecordingListener();
+    reader = new LogFileReader(logFile, listener, 64, true);
+    reader.resumeFrom(checkpoint);
+    reader.poll();
+    Assert.assertEquals(Arrays.asList("before rotation", "after rotation"), listener.lines);
+    Assert.assertEquals(1, listener.rotations);
+    reader.close();
+  }
+
+  private void append(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private static class RecordingListener implements TailerListener {
+    private List<String> lines = new ArrayList<>();
+    private int batches;
+    private int rotations;
+    private int notFound;
+
+    @Override
+    public void handle(List<String> batch) {
+      batches++;
+      lines.addAll(batch);
+    }
+
+    @Override
+    public void handle(String line) {
+      handle(Arrays.asList(line));
+    }
+
+    @Override
+    public void handle(Exception e) {
+    }
+
+    @Override
+    public void fileRotated() {
+      rotations++;
+    }
+
+    @Override
+    public void fileNotFound() {
+      notFound++;
+    }
+  }
+}
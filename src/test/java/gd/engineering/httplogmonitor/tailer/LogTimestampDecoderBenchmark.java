@@ -0,0 +1,102 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.AccessLogGenerator;
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+/**
+ * Compares the timestamp decoding cost per log line between {@link java.time.ZonedDateTime#parse} and the {@link LogTimestampDecoder}
+ * on generated traffic (constant rate per second with 5% of lines written late).
+ * The decoder cache hit rate is printed at the end of each iteration
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.tailer.LogTimestampDecoderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogTimestampDecoderBenchmark {
+
+  private static final int LINES = 100_000;
+
+  @Param({"100", "1000", "10000"})
+  private int linesPerSecond;
+
+  private String[] lines;
+  private int[] timestampStarts;
+  private int[] timestampEnds;
+  private DateTimeFormatter formatter;
+  private LogTimestampDecoder decoder;
+  private HttpLogLine target;
+
+  @Setup
+  public void setUp() {
+    lines = new AccessLogGenerator(42L, 1525881600000L, linesPerSecond).generate(LINES);
+    timestampStarts = new int[LINES];
+    timestampEnds = new int[LINES];
+    for (int i = 0; i < LINES; i++) {
+      timestampStarts[i] = lines[i].indexOf('[') + 1;
+      timestampEnds[i] = lines[i].indexOf(']');
+    }
+    formatter = new ApacheAccessLogParser().logTimestampFormatter;
+    target = new HttpLogLine();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpDecoder() {
+    decoder = new LogTimestampDecoder(formatter);
+  }
+
+  @TearDown(Level.Iteration)
+  public void printHitRate() {
+    long lookups = decoder.getHitCount() + decoder.getMissCount();
+    if (lookups > 0) {
+      System.out.printf("%n[%d lines/s] decoder cache hit rate: %.2f%% (%d lookups)%n", linesPerSecond, 100. * decoder.getHitCount() / lookups, lookups);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void zonedDateTimeParse(Blackhole blackhole) {
+    for (int i = 0; i < LINES; i++) {
+      blackhole.consume(ZonedDateTime.parse(lines[i].subSequence(timestampStarts[i], timestampEnds[i]), formatter).toInstant().toEpochMilli());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void cachedDecoder(Blackhole blackhole) {
+    for (int i = 0; i < LINES; i++) {
+      decoder.decode(lines[i], timestampStarts[i], timestampEnds[i], target);
+      blackhole.consume(target.getTimestampMs());
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LogTimestampDecoderBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+
+public class LogTimestampDecoderTest {
+
+  private DateTimeFormatter formatter = new ApacheAccessLogParser().logTimestampFormatter;
+
+  @Test
+  public void testDecodeSameAsFormatter() {
+    String[] timestamps = {"09/May/2018:16:00:42 +0000", "29/Feb/2016:23:59:59 -0730", "01/Jan/1970:00:00:00 +0100", "31/Dec/2099:12:30:00 +1400"};
+    LogTimestampDecoder decoder = new LogTimestampDecoder(formatter);
+    HttpLogLine line = new HttpLogLine();
+    for (String timestamp : timestamps) {
+      ZonedDateTime expected = ZonedDateTime.parse(timestamp, formatter);
+      decoder.decode(timestamp, 0, timestamp.length(), line);
+      Assert.assertEquals(expected.toInstant().toEpochMilli(), line.getTimestampMs());
+      Assert.assertEquals(expected.getOffset().getTotalSeconds(), line.getZoneOffsetSeconds());
+      Assert.assertEquals(timestamp, line.getDateTime().format(formatter));
+    }
+  }
+
+  @Test
+  public void testDecodeRegionOfLine() {
+    String logLine = "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"POST /api/user HTTP/1.0\" 200 34";
+    LogTimestampDecoder decoder = new LogTimestampDecoder(formatter);
+    HttpLogLine line = new HttpLogLine();
+    decoder.decode(logLine, logLine.indexOf('[') + 1, logLine.indexOf(']'), line);
+    Assert.assertEquals(1525881642000L, line.getTimestampMs());
+  }
+
+  @Test
+  public void testDecodeCache() {
+    LogTimestampDecoder decoder = new LogTimestampDecoder(formatter, 2);
+    HttpLogLine line = new HttpLogLine();
+    decoder.decode("09/May/2018:16:00:42 +0000", 0, 26, line);
+    decoder.decode("09/May/2018:16:00:42 +0000", 0, 26, line);
+    decoder.decode("09/May/2018:16:00:43 +0000", 0, 26, line);
+    decoder.decode("09/May/2018:16:00:42 +0000", 0, 26, line);
+    Assert.assertEquals(1525881642000L, line.getTimestampMs());
+    Assert.assertEquals(2, decoder.getHitCount());
+    Assert.assertEquals(2, decoder.getMissCount());
+    decoder.decode("09/May/2018:16:00:44 +0000", 0, 26, line);
+    decoder.decode("09/May/2018:16:00:42 +0000", 0, 26, line);
+    Assert.assertEquals(1525881642000L, line.getTimestampMs());
+    Assert.assertEquals(4, decoder.getMissCount());
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void testDecodeInvalidTimestamp() {
+    new LogTimestampDecoder(formatter).decode("09/May/2018:16:00:42", 0, 20, new HttpLogLine());
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void testDecodeInvalidMonth() {
+    new LogTimestampDecoder(formatter).decode("09/Bob/2018:16:00:42 +0000", 0, 26, new HttpLogLine());
+  }
+
+  @Test
+  public void testDecodeOffsetBounds() {
+    LogTimestampDecoder decoder = new LogTimestampDecoder(formatter);
+    HttpLogLine line = new HttpLogLine();
+    decoder.decode("09/May/2018:16:00:42 -1800", 0, 26, line);
+    Assert.assertEquals(-64800, line.getZoneOffsetSeconds());
+    Assert.assertEquals(-64800, line.getDateTime().getOffset().getTotalSeconds());
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void testDecodeOffsetOutOfBounds() {
+    new LogTimestampDecoder(formatter).decode("09/May/2018:16:00:42 +1859", 0, 26, new HttpLogLine());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCacheSize() {
+    new LogTimestampDecoder(formatter, 0);
+  }
+
+}
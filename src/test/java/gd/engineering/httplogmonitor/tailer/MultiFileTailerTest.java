@@ -0,0 +1,198 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.queue.BlockingLogLineQueue;
+import gd.engineering.httplogmonitor.queue.LogLineQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+
+public class MultiFileTailerTest {
+
+  private static final String LOG_LINE = "127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200 123\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testIsGlob() {
+    Assert.assertTrue(MultiFileTailer.isGlob("/var/log/*.log"));
+    Assert.assertTrue(MultiFileTailer.isGlob("/var/log/access.log.?"));
+    Assert.assertTrue(MultiFileTailer.isGlob("/var/log/{a,b}.log"));
+    Assert.assertFalse(MultiFileTailer.isGlob("/var/log/access.log"));
+  }
+
+  @Test
+  public void testTailGlobAndDiscoverNewFiles() throws IOException, InterruptedException {
+    Path vhost1 = folder.getRoot().toPath().resolve("vhost1.access.log");
+    Path vhost2 = folder.getRoot().toPath().resolve("vhost2.access.log");
+    Path vhost3 = folder.getRoot().toPath().resolve("vhost3.access.log");
+    Files.write(vhost1, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    Files.write(vhost2, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    Files.write(folder.getRoot().toPath().resolve("error.log"), LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    LogLineQueue queue = new BlockingLogLineQueue(100);
+    MultiFileTailer tailer = new MultiFileTailer(Collections.singletonList(folder.getRoot() + "/*.access.log"),
+        path -> new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.BLOCK, 1,
+            new OverloadCounters(), path.getFileName().toString()),
+        path -> new TailerCheckpointStore(checkpointFile(path), 0L), 2, 1024, 1L, 5L, 10L, Clock.systemUTC());
+    try {
+      tailer.start();
+      Assert.assertEquals(2, tailer.getTailedFiles().size());
+      awaitOpened(queue, vhost1, vhost2);
+      // The existing lines are skipped, the new file is read from its start
+      append(vhost1, LOG_LINE + LOG_LINE);
+      append(vhost2, LOG_LINE);
+      Files.write(vhost3, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+      Map<String, Integer> linesBySource = drain(queue, 4);
+      Assert.assertEquals(Integer.valueOf(2), linesBySource.get("vhost1.access.log"));
+      Assert.assertEquals(Integer.valueOf(1), linesBySource.get("vhost2.access.log"));
+      Assert.assertEquals(Integer.valueOf(1), linesBySource.get("vhost3.access.log"));
+      Assert.assertEquals(3, tailer.getTailedFiles().size());
+    } finally {
+      tailer.stop();
+    }
+  }
+
+  @Test
+  public void testCheckpointPerFile() throws IOException, InterruptedException {
+    Path vhost1 = folder.getRoot().toPath().resolve("vhost1.log");
+    Path vhost2 = folder.getRoot().toPath().resolve("vhost2.log");
+    Files.write(vhost1, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    Files.write(vhost2, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    List<String> logFiles = Arrays.asList(vhost1.toString(), vhost2.toString());
+    LogLineQueue queue = new BlockingLogLineQueue(100);
+    MultiFileTailer tailer = new MultiFileTailer(logFiles, path -> new HttpLogTailerListener(new FastApacheAccessLogParser(), queue),
+        path -> new TailerCheckpointStore(checkpointFile(path), 0L), 1, 1024, 1L, 5L, 1000L, Clock.systemUTC());
+    tailer.start();
+    awaitOpened(queue, vhost1, vhost2);
+    tailer.stop();
+    // Lines appended while stopped are read on restart from each file checkpoint
+    append(vhost1, LOG_LINE);
+    append(vhost2, LOG_LINE + LOG_LINE);
+    tailer = new MultiFileTailer(logFiles, path -> new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.BLOCK, 1,
+        new OverloadCounters(), path.getFileName().toString()),
+        path -> new TailerCheckpointStore(checkpointFile(path), 0L), 1, 1024, 1L, 5L, 1000L, Clock.systemUTC());
+    try {
+      tailer.start();
+      Map<String, Integer> linesBySource = drain(queue, 3);
+      Assert.assertEquals(Integer.valueOf(1), linesBySource.get("vhost1.log"));
+      Assert.assertEquals(Integer.valueOf(2), linesBySource.get("vhost2.log"));
+    } finally {
+      tailer.stop();
+    }
+  }
+
+  @Test
+  public void testDeletedFilesNoLongerTailed() throws IOException, InterruptedException {
+    Path vhost1 = folder.getRoot().toPath().resolve("vhost1.access.log");
+    Path vhost2 = folder.getRoot().toPath().resolve("vhost2.access.log");
+    Files.write(vhost1, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    Files.write(vhost2, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    LogLineQueue queue = new BlockingLogLineQueue(100);
+    MultiFileTailer tailer = new MultiFileTailer(Collections.singletonList(folder.getRoot() + "/*.access.log"),
+        path -> new HttpLogTailerListener(new FastApacheAccessLogParser(), queue),
+        path -> new TailerCheckpointStore(checkpointFile(path), 0L), 1, 1024, 1L, 5L, 10L, Clock.systemUTC());
+    try {
+      tailer.start();
+      awaitOpened(queue, vhost1, vhost2);
+      Files.delete(vhost2);
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (tailer.getTailedFiles().size() > 1 && System.currentTimeMillis() < deadline) {
+        drain(queue, 0);
+      }
+      Assert.assertEquals(Collections.singletonList(vhost1), tailer.getTailedFiles());
+    } finally {
+      tailer.stop();
+    }
+  }
+
+  @Test
+  public void testTailingGoesOnAfterError() throws IOException, InterruptedException {
+    Path vhost1 = folder.getRoot().toPath().resolve("vhost1.log");
+    Files.write(vhost1, LOG_LINE.getBytes(StandardCharsets.UTF_8));
+    LogLineQueue queue = new BlockingLogLineQueue(100);
+    AtomicBoolean failed = new AtomicBoolean();
+    MultiFileTailer tailer = new MultiFileTailer(Collections.singletonList(vhost1.toString()),
+        path -> new HttpLogTailerListener(new FastApacheAccessLogParser(), queue, OverloadPolicy.BLOCK, 1, new OverloadCounters(), "vhost1.log") {
+          @Override
+          public void handle(List<String> lines) {
+            if (failed.compareAndSet(false, true)) {
+              throw new IllegalStateException("listener failure");
+            }
+            super.handle(lines);
+          }
+        },
+        path -> new TailerCheckpointStore(checkpointFile(path), 0L), 1, 1024, 1L, 5L, 1000L, Clock.systemUTC());
+    try {
+      tailer.start();
+      awaitOpened(queue, vhost1);
+      append(vhost1, LOG_LINE);
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (!failed.get() && System.currentTimeMillis() < deadline) {
+        drain(queue, 0);
+      }
+      // The file is still read after the failed read
+      append(vhost1, LOG_LINE);
+      Assert.assertEquals(Integer.valueOf(1), drain(queue, 1).get("vhost1.log"));
+    } finally {
+      tailer.stop();
+    }
+  }
+
+  /**
+   * Wait for the log files to be opened, i.e checkpointed for the first time once the queue is drained
+   */
+  private void awaitOpened(LogLineQueue queue, Path... logFiles) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (!Arrays.stream(logFiles).allMatch(logFile -> Files.exists(checkpointFile(logFile))) && System.currentTimeMillis() < deadline) {
+      drain(queue, 0);
+      Thread.sleep(10L);
+    }
+  }
+
+  private Path checkpointFile(Path logFile) {
+    return logFile.resolveSibling(logFile.getFileName() + ".checkpoint");
+  }
+
+  private void append(Path logFile, String lines) throws IOException {
+    Files.write(logFile, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+  }
+
+  private Map<String, Integer> drain(LogLineQueue queue, int expectedLines) throws InterruptedException {
+    List<HttpLogLine> lines = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + 5000L;
+    do {
+      queue.drain(line -> {
+        if (line.getBarrier() != null) {
+          // Processed as the aggregator would once the lines before it are flushed
+          line.getBarrier().run();
+          return;
+        }
+        HttpLogLine copy = new HttpLogLine();
+        copy.copyFrom(line);
+        lines.add(copy);
+      }, 50L);
+    } while (lines.size() < expectedLines && System.currentTimeMillis() < deadline);
+    Map<String, Integer> linesBySource = new HashMap<>();
+    lines.forEach(line -> linesBySource.merge(line.getSource(), 1, Integer::sum));
+    return linesBySource;
+  }
+}
@@ -0,0 +1,102 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
+
+/**
+ * Measures the parsed lines per second handed to the aggregator when the lines are parsed by 1 to 8 parser workers,
+ * compared to the parsing on the tailer thread (0 worker).
+ * The benchmark thread plays both the tailer, handing batches of raw lines, and the aggregator, draining the parsed lines.
+ * The scaling is bounded by the number of cores available beside the benchmark thread
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=gd.engineering.httplogmonitor.tailer.ParserWorkerPoolBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserWorkerPoolBenchmark {
+
+  private static final int BATCHES = 8;
+  private static final int BATCH_LINES = 256;
+  private static final int QUEUE_CAPACITY = 8192;
+  private static final String[] SECTIONS = {"/api/user", "/report", "/api/order/42", "/static/app.js?v=3"};
+
+  @Param({"0", "1", "2", "4", "8"})
+  private int workers;
+
+  private List<String> batch;
+  private ParserWorkerPool pool;
+  private TailerListener listener;
+  private LogLineConsumerQueue queue;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    batch = new ArrayList<>();
+    for (int i = 0; i < BATCH_LINES; i++) {
+      batch.add(String.format("10.0.%d.%d - user%d [09/May/2018:16:%02d:%02d +0000] \"GET %s HTTP/1.0\" %d %d", i % 256, i % 7, i % 13, i % 60, i % 60,
+          SECTIONS[i % SECTIONS.length], i % 10 == 0 ? 500 : 200, 100 + i));
+    }
+    if (workers == 0) {
+      SpscLogLineQueue logQueue = new SpscLogLineQueue(QUEUE_CAPACITY, QueueWaitStrategy.PARK);
+      queue = logQueue;
+      listener = new HttpLogTailerListener(new FastApacheAccessLogParser(), logQueue, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    } else {
+      pool = new ParserWorkerPool(workers, false, FastApacheAccessLogParser::new, () -> new SpscLogLineQueue(QUEUE_CAPACITY, QueueWaitStrategy.PARK),
+          QueueWaitStrategy.PARK, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+      queue = pool.getOutputQueue();
+      listener = pool.newListener(null);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (pool != null) {
+      pool.stop();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCHES * BATCH_LINES)
+  public void parse(Blackhole blackhole) throws InterruptedException {
+    for (int i = 0; i < BATCHES; i++) {
+      listener.handle(batch);
+    }
+    int drained = 0;
+    while (drained < BATCHES * BATCH_LINES) {
+      drained += queue.drain(logLine -> blackhole.consume(logLine.getStatusCode()), 1000L);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ParserWorkerPoolBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,176 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gd.engineering.httplogmonitor.model.HttpLogLine;
+import gd.engineering.httplogmonitor.model.HttpLogMetrics;
+import gd.engineering.httplogmonitor.model.metrics.IntervalMetrics;
+import gd.engineering.httplogmonitor.queue.LogLineConsumerQueue;
+import gd.engineering.httplogmonitor.queue.OverloadCounters;
+import gd.engineering.httplogmonitor.queue.OverloadPolicy;
+import gd.engineering.httplogmonitor.queue.QueueWaitStrategy;
+import gd.engineering.httplogmonitor.queue.SpscLogLineQueue;
+
+public class ParserWorkerPoolTest {
+
+  private static final String LINE_FORMAT = "127.0.0.1 - frank [09/May/2018:16:00:42 +0000] \"GET /api/user HTTP/1.0\" 200 %d";
+
+  @Test
+  public void testParseOnAllWorkers() throws InterruptedException {
+    ParserWorkerPool pool = new ParserWorkerPool(3, false, FastApacheAccessLogParser::new, () -> new SpscLogLineQueue(1024, QueueWaitStrategy.PARK),
+        QueueWaitStrategy.PARK, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    try {
+      TailerListener vhost1 = pool.newListener("vhost1.log");
+      TailerListener vhost2 = pool.newListener("vhost2.log");
+      for (int i = 0; i < 50; i++) {
+        vhost1.handle(lines(0, 10));
+        vhost2.handle(lines(0, 5));
+      }
+      Map<String, List<Integer>> sizesBySource = drain(pool.getOutputQueue(), 750);
+      Assert.assertEquals(500, sizesBySource.get("vhost1.log").size());
+      Assert.assertEquals(250, sizesBySource.get("vhost2.log").size());
+    } finally {
+      pool.stop();
+    }
+  }
+
+  @Test
+  public void testOrderedPerSource() throws InterruptedException {
+    ParserWorkerPool pool = new ParserWorkerPool(2, true, FastApacheAccessLogParser::new, () -> new SpscLogLineQueue(1024, QueueWaitStrategy.PARK),
+        QueueWaitStrategy.PARK, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    try {
+      TailerListener vhost1 = pool.newListener("vhost1.log");
+      TailerListener vhost2 = pool.newListener("vhost2.log");
+      for (int i = 0; i < 100; i += 10) {
+        vhost1.handle(lines(i, 10));
+        vhost2.handle(lines(i, 10));
+      }
+      Map<String, List<Integer>> sizesBySource = drain(pool.getOutputQueue(), 200);
+      for (List<Integer> sizes : sizesBySource.values()) {
+        List<Integer> sorted = new ArrayList<>(sizes);
+        Collections.sort(sorted);
+        Assert.assertEquals(100, sizes.size());
+        Assert.assertEquals(sorted, sizes);
+      }
+    } finally {
+      pool.stop();
+    }
+  }
+
+  @Test
+  public void testDropWhenWorkersBusy() throws InterruptedException {
+    CountDownLatch parsing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    OverloadCounters counters = new OverloadCounters();
+    HttpLogParser blockingParser = new FastApacheAccessLogParser() {
+      @Override
+      public void parse(String logLine, HttpLogLine target) {
+        parsing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.parse(logLine, target);
+      }
+    };
+    ParserWorkerPool pool = new ParserWorkerPool(1, false, () -> blockingParser, () -> new SpscLogLineQueue(16, QueueWaitStrategy.PARK),
+        QueueWaitStrategy.PARK, OverloadPolicy.DROP, 1, counters);
+    try {
+      TailerListener listener = pool.newListener(null);
+      listener.handle(lines(0, 1));
+      parsing.await();
+      for (int i = 0; i < ParserWorkerPool.WORKER_BATCHES + 1; i++) {
+        listener.handle(lines(0, 2));
+      }
+      IntervalMetrics metrics = new IntervalMetrics();
+      counters.flushTo(metrics);
+      Assert.assertEquals(2, metrics.getCounterValue(HttpLogMetrics.COUNTER_DROPPED));
+    } finally {
+      release.countDown();
+      pool.stop();
+    }
+  }
+
+  @Test
+  public void testStopParsesPendingBatches() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    HttpLogParser blockingParser = new FastApacheAccessLogParser() {
+      @Override
+      public void parse(String logLine, HttpLogLine target) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.parse(logLine, target);
+      }
+    };
+    ParserWorkerPool pool = new ParserWorkerPool(1, false, () -> blockingParser, () -> new SpscLogLineQueue(1024, QueueWaitStrategy.PARK),
+        QueueWaitStrategy.PARK, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    TailerListener listener = pool.newListener("vhost1.log");
+    for (int i = 0; i < ParserWorkerPool.WORKER_BATCHES; i++) {
+      listener.handle(lines(0, 10));
+    }
+    release.countDown();
+    pool.stop();
+    Map<String, List<Integer>> sizesBySource = drain(pool.getOutputQueue(), ParserWorkerPool.WORKER_BATCHES * 10);
+    Assert.assertEquals(ParserWorkerPool.WORKER_BATCHES * 10, sizesBySource.get("vhost1.log").size());
+  }
+
+  @Test
+  public void testBarrierBehindAllWorkers() throws InterruptedException {
+    ParserWorkerPool pool = new ParserWorkerPool(3, false, FastApacheAccessLogParser::new, () -> new SpscLogLineQueue(1024, QueueWaitStrategy.PARK),
+        QueueWaitStrategy.PARK, OverloadPolicy.BLOCK, 1, new OverloadCounters());
+    try {
+      TailerListener listener = pool.newListener("vhost1.log");
+      for (int i = 0; i < 30; i++) {
+        listener.handle(lines(0, 10));
+      }
+      AtomicInteger linesAtBarrier = new AtomicInteger(-1);
+      AtomicInteger drained = new AtomicInteger();
+      listener.whenProcessed(() -> linesAtBarrier.set(drained.get()));
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (linesAtBarrier.get() < 0 && System.currentTimeMillis() < deadline) {
+        pool.getOutputQueue().drain(logLine -> {
+          if (logLine.getBarrier() != null) {
+            logLine.getBarrier().run();
+          } else {
+            drained.incrementAndGet();
+          }
+        }, 50L);
+      }
+      // Run once, after the barrier line of every worker
+      Assert.assertEquals(300, linesAtBarrier.get());
+    } finally {
+      pool.stop();
+    }
+  }
+
+  private List<String> lines(int firstSize, int count) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      lines.add(String.format(LINE_FORMAT, firstSize + i));
+    }
+    return lines;
+  }
+
+  private Map<String, List<Integer>> drain(LogLineConsumerQueue queue, int expectedLines) throws InterruptedException {
+    Map<String, List<Integer>> sizesBySource = new HashMap<>();
+    int drained = 0;
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (drained < expectedLines && System.currentTimeMillis() < deadline) {
+      drained += queue.drain(logLine -> sizesBySource.computeIfAbsent(logLine.getSource(), source -> new ArrayList<>()).add(logLine.getRequestSize()), 50L);
+    }
+    return sizesBySource;
+  }
+}
@@ -0,0 +1,92 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RotatedArchiveReaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFindArchivesOldestFirst() throws IOException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    for (String name : new String[]{"access.log", "access.log.1", "access.log.2.gz", "access.log.10.gz", "access.log.9.gz", "access.log.old", "access.log.3.gz.tmp", "other.log.4.gz"}) {
+      Files.createFile(folder.getRoot().toPath().resolve(name));
+    }
+    List<String> archives = new ArrayList<>();
+    RotatedArchiveReader.findArchives(logFile).forEach(archive -> archives.add(archive.getFileName().toString()));
+    Assert.assertEquals(Arrays.asList("access.log.10.gz", "access.log.9.gz", "access.log.2.gz", "access.log.1"), archives);
+  }
+
+  @Test
+  public void testReadAllInChronologicalOrder() throws IOException, InterruptedException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    gzip(folder.getRoot().toPath().resolve("access.log.3.gz"), "first\nsecond\n");
+    // Last line without line feed
+    gzip(folder.getRoot().toPath().resolve("access.log.2.gz"), "third\nfourth");
+    Files.write(folder.getRoot().toPath().resolve("access.log.1"), "fifth\n".getBytes(StandardCharsets.UTF_8));
+    RecordingListener listener = new RecordingListener();
+    // Chunks smaller than the lines and a single prefetched chunk
+    long read = new RotatedArchiveReader(logFile, listener, 4, 1).readAll();
+    Assert.assertEquals(Arrays.asList("first", "second", "third", "fourth", "fifth"), listener.lines);
+    Assert.assertEquals(31L, read);
+    Assert.assertTrue(listener.errors.isEmpty());
+  }
+
+  @Test
+  public void testReadAllSkipsCorruptedArchive() throws IOException, InterruptedException {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    Files.write(folder.getRoot().toPath().resolve("access.log.2.gz"), "not compressed\n".getBytes(StandardCharsets.UTF_8));
+    gzip(folder.getRoot().toPath().resolve("access.log.1.gz"), "valid\n");
+    RecordingListener listener = new RecordingListener();
+    new RotatedArchiveReader(logFile, listener, 1024).readAll();
+    Assert.assertEquals(Arrays.asList("valid"), listener.lines);
+    Assert.assertEquals(1, listener.errors.size());
+  }
+
+  @Test
+  public void testReadAllWithoutArchive() throws InterruptedException {
+    RecordingListener listener = new RecordingListener();
+    Assert.assertEquals(0L, new RotatedArchiveReader(folder.getRoot().toPath().resolve("access.log"), listener, 1024).readAll());
+    Assert.assertTrue(listener.lines.isEmpty());
+  }
+
+  private void gzip(Path file, String content) throws IOException {
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static class RecordingListener implements TailerListener {
+    private List<String> lines = new ArrayList<>();
+    private List<Exception> errors = new ArrayList<>();
+
+    @Override
+    public void handle(List<String> batch) {
+      lines.addAll(batch);
+    }
+
+    @Override
+    public void handle(String line) {
+      lines.add(line);
+    }
+
+    @Override
+    public void handle(Exception e) {
+      errors.add(e);
+    }
+  }
+}
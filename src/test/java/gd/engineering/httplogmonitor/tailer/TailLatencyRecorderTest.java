@@ -0,0 +1,19 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TailLatencyRecorderTest {
+
+  @Test
+  public void testTailLatencyRecorder() {
+    TailLatencyRecorder recorder = new TailLatencyRecorder(100L, 0L);
+    recorder.record(10L, 15L);
+    recorder.record(20L, 19L);
+    Assert.assertEquals(2, recorder.getCount());
+    Assert.assertEquals(5L, recorder.getMaxMs());
+    Assert.assertFalse(recorder.reportIfDue(50L));
+    Assert.assertTrue(recorder.reportIfDue(100L));
+    Assert.assertEquals(0, recorder.getCount());
+  }
+}
@@ -0,0 +1,98 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TailerCheckpointStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSaveAndLoad() {
+    Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+    TailerCheckpointStore store = new TailerCheckpointStore(checkpointFile, 1000L);
+    Assert.assertNull(store.load());
+    Assert.assertTrue(store.save(new TailerCheckpoint("(dev=1,ino=2)", 42L, 1024, 123456789L)));
+    TailerCheckpoint checkpoint = new TailerCheckpointStore(checkpointFile, 1000L).load();
+    Assert.assertEquals("(dev=1,ino=2)", checkpoint.getFileKey());
+    Assert.assertEquals(42L, checkpoint.getFingerprint());
+    Assert.assertEquals(1024, checkpoint.getFingerprintLength());
+    Assert.assertEquals(123456789L, checkpoint.getOffset());
+    Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("checkpoint.tmp")));
+  }
+
+  @Test
+  public void testSaveWithoutFileKey() {
+    Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+    new TailerCheckpointStore(checkpointFile, 1000L).save(new TailerCheckpoint(null, 1L, 2, 3L));
+    Assert.assertNull(new TailerCheckpointStore(checkpointFile, 1000L).load().getFileKey());
+  }
+
+  @Test
+  public void testSaveIfDue() {
+    TailerCheckpointStore store = new TailerCheckpointStore(folder.getRoot().toPath().resolve("checkpoint"), 1000L);
+    Assert.assertTrue(store.saveIfDue(() -> new TailerCheckpoint("key", 1L, 1, 10L), 1000L));
+    Assert.assertFalse(store.saveIfDue(() -> new TailerCheckpoint("key", 1L, 1, 20L), 1500L));
+    Assert.assertFalse(store.saveIfDue(() -> new TailerCheckpoint("key", 1L, 1, 10L), 2000L));
+    Assert.assertTrue(store.saveIfDue(() -> new TailerCheckpoint("key", 1L, 1, 20L), 3000L));
+    Assert.assertEquals(20L, store.load().getOffset());
+  }
+
+  @Test
+  public void testSaveWhenProcessed() {
+    TailerCheckpointStore store = new TailerCheckpointStore(folder.getRoot().toPath().resolve("checkpoint"), 1000L);
+    List<Runnable> pending = new ArrayList<>();
+    TailerListener listener = new TailerListener() {
+      @Override
+      public void whenProcessed(Runnable action) {
+        pending.add(action);
+      }
+
+      @Override
+      public void handle(List<String> lines) {
+      }
+
+      @Override
+      public void handle(String line) {
+      }
+
+      @Override
+      public void handle(Exception e) {
+      }
+    };
+    Assert.assertTrue(store.saveWhenProcessed(() -> new TailerCheckpoint("key", 1L, 1, 10L), listener, 1000L));
+    // Not saved until the lines read are processed
+    Assert.assertNull(store.load());
+    pending.remove(0).run();
+    Assert.assertEquals(10L, store.load().getOffset());
+    Assert.assertFalse(store.saveWhenProcessed(() -> new TailerCheckpoint("key", 1L, 1, 20L), listener, 1500L));
+    Assert.assertFalse(store.saveWhenProcessed(() -> new TailerCheckpoint("key", 1L, 1, 10L), listener, 2000L));
+    Assert.assertTrue(pending.isEmpty());
+  }
+
+  @Test
+  public void testLoadCorruptedCheckpoint() throws IOException {
+    Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+    Files.write(checkpointFile, "offset=bob".getBytes(StandardCharsets.ISO_8859_1));
+    Assert.assertNull(new TailerCheckpointStore(checkpointFile, 1000L).load());
+  }
+
+  @Test
+  public void testIsSameFile() {
+    TailerCheckpoint checkpoint = new TailerCheckpoint("key", 1L, 1, 10L);
+    Assert.assertTrue(checkpoint.isSameFile("key", 1L));
+    Assert.assertFalse(checkpoint.isSameFile("other", 1L));
+    Assert.assertFalse(checkpoint.isSameFile("key", 2L));
+    Assert.assertTrue(new TailerCheckpoint(null, 1L, 1, 10L).isSameFile("any", 1L));
+  }
+}
@@ -0,0 +1,49 @@
+package gd.engineering.httplogmonitor.tailer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchServiceWaitStrategyTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAwaitWakesUpOnWrite() throws Exception {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    TailerWaitStrategy strategy = WatchServiceWaitStrategy.watchOrPoll(logFile, 10L, 10000L);
+    Thread writer = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+        Files.write(logFile, "line\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      } catch (InterruptedException | IOException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    long start = System.currentTimeMillis();
+    writer.start();
+    strategy.await(0);
+    writer.join();
+    Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+    strategy.close();
+  }
+
+  @Test
+  public void testAwaitIgnoresOtherFiles() throws Exception {
+    Path logFile = folder.getRoot().toPath().resolve("access.log");
+    TailerWaitStrategy strategy = WatchServiceWaitStrategy.watchOrPoll(logFile, 300L, 300L);
+    Files.write(folder.getRoot().toPath().resolve("other.log"), "line\n".getBytes(StandardCharsets.UTF_8));
+    long start = System.currentTimeMillis();
+    strategy.await(0);
+    Assert.assertTrue(System.currentTimeMillis() - start >= 250L);
+    strategy.close();
+  }
+}